@@ -0,0 +1,52 @@
+package com.example.blackjack.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * Reports the heap retained by one million completed games, both as the {@code PlayableGame} that was played and as the {@code FrozenGame} that replaces it.
+ * <p>
+ * Each game is completed by the player standing. The 52 shared {@code Card} instances are excluded from the layout of a single game, as they exist once per
+ * JVM rather than once per game.
+ * <p>
+ * Run using the jar created by {@code gradlew jmhJar}, e.g.
+ * {@code java -Xmx2g -cp build/libs/*-jmh.jar com.example.blackjack.model.CompletedGameFootprint}
+ */
+public class CompletedGameFootprint {
+   private static final int NUMBER_OF_GAMES = 1_000_000;
+
+   public static void main(String[] args) {
+      GraphLayout sharedCards = GraphLayout.parseInstance(DeckFactory.CARDS.toArray());
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), DeckFactory.Mode.SHUFFLED);
+
+      for (boolean freeze : new boolean[] { false, true }) {
+         Game[] games = new Game[NUMBER_OF_GAMES];
+         long before = usedHeap();
+         for (int i = 0; i < games.length; i++) {
+            Game game = new PlayableGame("game" + i, deckFactory.createDeck());
+            if (!game.isComplete()) {
+               game.stand();
+            }
+            games[i] = freeze ? new FrozenGame(game.snapshotCurrentState()) : game;
+         }
+         long after = usedHeap();
+
+         GraphLayout game = GraphLayout.parseInstance(games[0]).subtract(sharedCards);
+         System.out.println((freeze ? "frozen" : "live") + ": " + ((after - before) / (1024 * 1024)) + " MB for " + NUMBER_OF_GAMES + " games, "
+               + game.totalSize() + " bytes per game");
+         System.out.println(game.toFootprint());
+      }
+   }
+
+   private static long usedHeap() {
+      MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+      for (int i = 0; i < 3; i++) {
+         System.gc();
+      }
+      return memory.getHeapMemoryUsage().getUsed();
+   }
+}
@@ -0,0 +1,50 @@
+package com.example.blackjack.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * Measures the time taken, for each {@code DeckFactory.Mode}, to create a deck and deal the number of cards used by a typical game.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DeckBenchmark {
+   @Param({"shuffled", "lazy-shuffle"})
+   private String mode;
+
+   @Param({"5", "52"})
+   private int cardsDealt;
+
+   private DeckFactory deckFactory;
+
+   @Setup
+   public void setUp() {
+      deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), mode);
+   }
+
+   @Benchmark
+   public void createAndDeal(Blackhole blackhole) {
+      Deck deck = deckFactory.createDeck();
+      for (int i = 0; i < cardsDealt; i++) {
+         blackhole.consume(deck.deal());
+      }
+   }
+}
@@ -0,0 +1,30 @@
+package com.example.blackjack.model;
+
+import java.util.LinkedList;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * Reports the heap retained by a single {@code Deck}, compared to the {@code LinkedList} of {@code Card}s previously used to store the contents of a deck.
+ * <p>
+ * The 52 shared {@code Card} instances (and the {@code Rank} and {@code Suit} constants they refer to) are excluded from both measurements, as they exist
+ * once per JVM rather than once per deck.
+ * <p>
+ * Run using the jar created by {@code gradlew jmhJar}, e.g. {@code java -cp build/libs/*-jmh.jar com.example.blackjack.model.DeckFootprint}
+ */
+public class DeckFootprint {
+   public static void main(String[] args) {
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>());
+      GraphLayout sharedCards = GraphLayout.parseInstance(DeckFactory.CARDS.toArray());
+
+      GraphLayout linkedList = GraphLayout.parseInstance(new LinkedList<>(DeckFactory.CARDS)).subtract(sharedCards);
+      GraphLayout deck = GraphLayout.parseInstance(deckFactory.createDeck()).subtract(sharedCards);
+
+      System.out.println("LinkedList<Card>: " + linkedList.totalSize() + " bytes in " + linkedList.totalCount() + " objects");
+      System.out.println(linkedList.toFootprint());
+      System.out.println("Deck: " + deck.totalSize() + " bytes in " + deck.totalCount() + " objects");
+      System.out.println(deck.toFootprint());
+   }
+}
@@ -0,0 +1,95 @@
+package com.example.blackjack.model;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * Reports the heap used by completed games in a {@code MemoryGameStore}, and the time taken by a full garbage collection, both while the games are in memory
+ * and once they have been moved to a {@code GameArchive} - then how long it takes to find every game in the archive.
+ * <p>
+ * Creates the given number of games (default 1,000,000), shared between users with 10 games each, each completed by the player standing.
+ * <p>
+ * Run using the jar created by {@code gradlew jmhJar}, e.g.
+ * {@code java -Xmx2g -cp build/libs/*-jmh.jar com.example.blackjack.model.GameArchiveFootprint 1000000}
+ */
+public class GameArchiveFootprint {
+   private static final int GAMES_PER_USER = 10;
+
+   public static void main(String[] args) throws IOException {
+      int numberOfGames = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+      int numberOfUsers = (numberOfGames + GAMES_PER_USER - 1) / GAMES_PER_USER;
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), DeckFactory.Mode.SHUFFLED);
+      Path directory = Files.createTempDirectory("game-archive");
+      AtomicLong clock = new AtomicLong();
+      GameArchive archive = new GameArchive(directory, Duration.ZERO, 64 << 20);
+      MemoryGameStore store = new MemoryGameStore(new GameIdGenerator(0), deckFactory, GameEvictionPolicy.NONE, IdleGamePolicy.NONE, clock::get);
+      store.setArchive(archive);
+      archive.open();
+      try {
+         long empty = usedHeap();
+         for (int i = 0; i < numberOfGames; i++) {
+            Game game = store.createGame("user" + (i / GAMES_PER_USER));
+            if (!game.isComplete()) {
+               game.stand();
+            }
+         }
+         report("In memory", usedHeap() - empty, numberOfGames);
+
+         clock.set(1);
+         long start = System.nanoTime();
+         store.evict();
+         System.out.printf("Archived %,d games in %,dms - %,d MB of segments%n", archive.getGameCount(), millisSince(start),
+                     archive.getSegmentBytes() >> 20);
+         report("Archived", usedHeap() - empty, numberOfGames);
+
+         start = System.nanoTime();
+         int found = 0;
+         for (int u = 0; u < numberOfUsers; u++) {
+            String username = "user" + u;
+            for (String gameId : store.findGameIdsByUsername(username, null, null, GAMES_PER_USER).getGameIds()) {
+               found += store.findByUsernameAndGameId(username, gameId).getStatus().isComplete() ? 1 : 0;
+            }
+         }
+         long nanos = System.nanoTime() - start;
+         System.out.printf("Listed and found %,d archived games in %,dms - %,dns per game%n", found, nanos / 1_000_000, nanos / found);
+      } finally {
+         archive.close();
+         delete(directory);
+      }
+   }
+
+   private static void report(String description, long heap, int numberOfGames) {
+      long start = System.nanoTime();
+      System.gc();
+      System.out.printf("%s: %,d MB of heap, %,d bytes per game - full GC took %,dms%n", description, heap >> 20, heap / numberOfGames, millisSince(start));
+   }
+
+   private static long usedHeap() {
+      MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+      for (int i = 0; i < 3; i++) {
+         System.gc();
+      }
+      return memory.getHeapMemoryUsage().getUsed();
+   }
+
+   private static long millisSince(long start) {
+      return Duration.ofNanos(System.nanoTime() - start).toMillis();
+   }
+
+   private static void delete(Path directory) throws IOException {
+      try (Stream<Path> files = Files.list(directory)) {
+         for (Path file : (Iterable<Path>) files::iterator) {
+            Files.delete(file);
+         }
+      }
+      Files.delete(directory);
+   }
+}
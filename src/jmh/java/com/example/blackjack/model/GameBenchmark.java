@@ -0,0 +1,76 @@
+package com.example.blackjack.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+/**
+ * Measures the time taken to play a complete game, and to view the state of a completed game.
+ * <p>
+ * The player hits until their hand is worth at least 17 and then stands, which exercises dealing, hand valuation, outcome determination and the taking of
+ * snapshots. Decks are created from a fixed set of pre-shuffled orders so that shuffling is not included in the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GameBenchmark {
+   private static final int NUMBER_OF_DECKS = 1024;
+   private static final int PLAYERS_MINIMUM = 17;
+
+   private final List<List<Card>> decks = new ArrayList<>();
+   private int next;
+   private Game completedGame;
+
+   @Setup
+   public void setUp() {
+      Random random = new Random(42);
+      for (int i = 0; i < NUMBER_OF_DECKS; i++) {
+         List<Card> deck = new ArrayList<>(DeckFactory.CARDS);
+         Collections.shuffle(deck, random);
+         decks.add(deck);
+      }
+
+      completedGame = new PlayableGame("benchmark", new ShuffledDeck(decks.get(0)));
+      if (completedGame.snapshotCurrentState().getStatus() == Status.PLAYERS_TURN) {
+         completedGame.stand();
+      }
+   }
+
+   @Benchmark
+   public GameState playGame() {
+      Game game = new PlayableGame("benchmark", new ShuffledDeck(decks.get(next++ % NUMBER_OF_DECKS)));
+      GameState state = game.snapshotCurrentState();
+      while (state.getStatus() == Status.PLAYERS_TURN && state.getPlayer().getValue() < PLAYERS_MINIMUM) {
+         state = game.hit();
+      }
+      if (state.getStatus() == Status.PLAYERS_TURN) {
+         state = game.stand();
+      }
+      return state;
+   }
+
+   @Benchmark
+   public GameState viewCompletedGame() {
+      return completedGame.snapshotCurrentState();
+   }
+}
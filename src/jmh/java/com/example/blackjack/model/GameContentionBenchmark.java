@@ -0,0 +1,68 @@
+package com.example.blackjack.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+/**
+ * Measures the throughput of viewing a single "hot" game from many threads while another thread is repeatedly updating it.
+ * <p>
+ * This reflects spectator and polling clients that all request the state of the same game while the player is playing it. The writer hits until the game is
+ * complete, at which point it replaces the hot game with a new one.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GameContentionBenchmark {
+   private DeckFactory deckFactory;
+   private volatile Game game;
+
+   @Setup
+   public void setUp() {
+      deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), DeckFactory.Mode.SEEDED);
+      game = newGame();
+   }
+
+   @Benchmark
+   @Group("hotGame")
+   @GroupThreads(7)
+   public GameState view() {
+      return game.snapshotCurrentState();
+   }
+
+   @Benchmark
+   @Group("hotGame")
+   @GroupThreads(1)
+   public GameState update() {
+      Game g = game;
+      GameState state = g.snapshotCurrentState();
+      if (state.getStatus() == Status.PLAYERS_TURN) {
+         return g.hit();
+      } else {
+         game = newGame();
+         return state;
+      }
+   }
+
+   private Game newGame() {
+      return new PlayableGame("benchmark", deckFactory.createDeck());
+   }
+}
@@ -0,0 +1,48 @@
+package com.example.blackjack.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * Reports the heap retained by one million live games, for each {@code DeckFactory.Mode}.
+ * <p>
+ * For each mode, the heap used after creating one million games is compared to the heap used before. The layout of a single game and its deck is also
+ * printed. The 52 shared {@code Card} instances are excluded, as they exist once per JVM rather than once per game.
+ * <p>
+ * Run using the jar created by {@code gradlew jmhJar}, e.g. {@code java -Xmx2g -cp build/libs/*-jmh.jar com.example.blackjack.model.GameFootprint}
+ */
+public class GameFootprint {
+   private static final int NUMBER_OF_GAMES = 1_000_000;
+
+   public static void main(String[] args) {
+      GraphLayout sharedCards = GraphLayout.parseInstance(DeckFactory.CARDS.toArray());
+
+      for (DeckFactory.Mode mode : DeckFactory.Mode.values()) {
+         DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), mode);
+
+         Game[] games = new Game[NUMBER_OF_GAMES];
+         long before = usedHeap();
+         for (int i = 0; i < games.length; i++) {
+            games[i] = new PlayableGame("game" + i, deckFactory.createDeck());
+         }
+         long after = usedHeap();
+
+         GraphLayout game = GraphLayout.parseInstance(games[0]).subtract(sharedCards);
+         System.out.println(mode.getPropertyValue() + ": " + ((after - before) / (1024 * 1024)) + " MB for " + NUMBER_OF_GAMES + " games, "
+               + game.totalSize() + " bytes per game");
+         System.out.println(game.toFootprint());
+      }
+   }
+
+   private static long usedHeap() {
+      MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+      for (int i = 0; i < 3; i++) {
+         System.gc();
+      }
+      return memory.getHeapMemoryUsage().getUsed();
+   }
+}
@@ -0,0 +1,42 @@
+package com.example.blackjack.model;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of generating game IDs when many threads are creating games at the same time.
+ * <p>
+ * {@code randomUuid} is included for comparison - it is how game IDs were previously generated, and obtains random numbers from a single
+ * {@code SecureRandom} shared by every thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(Threads.MAX)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GameIdGeneratorBenchmark {
+   private final GameIdGenerator generator = new GameIdGenerator(0);
+
+   @Benchmark
+   public String randomUuid() {
+      return UUID.randomUUID().toString();
+   }
+
+   @Benchmark
+   public String generate() {
+      return generator.generate();
+   }
+}
@@ -0,0 +1,94 @@
+package com.example.blackjack.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of appending events to a {@link GameJournal} and waiting until they are durable - i.e. the cost the journal adds to each hit or
+ * stand.
+ * <p>
+ * Run with different numbers of threads (e.g. {@code -t 1} and {@code -t 64}) to see the effect of group commit - with {@code fsync} durability a single
+ * thread is limited to one event per {@code fsync}, whereas many threads share each {@code fsync}. The number of events per batch is printed at the end of
+ * each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GameJournalBenchmark {
+   @Param({"fsync", "write"})
+   private String durability;
+
+   private Path directory;
+   private GameJournal journal;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      directory = Files.createTempDirectory("journal-benchmark");
+      journal = new GameJournal(directory, durability, Duration.ZERO, Duration.ZERO);
+      journal.open(new GameJournal.Listener() {
+         @Override
+         public void restored(String gameId, String username, Deck deck, int hits, boolean complete) {
+         }
+
+         @Override
+         public void restored(String username, FrozenGame game) {
+         }
+
+         @Override
+         public void created(String gameId, String username, Deck deck) {
+         }
+
+         @Override
+         public void hit(String gameId, int version) {
+         }
+
+         @Override
+         public void stood(String gameId, int version) {
+         }
+
+         @Override
+         public void removed(String gameId) {
+         }
+      });
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws IOException {
+      System.out.printf("%n%.1f events per batch%n", (double) journal.getEventCount() / journal.getBatchCount());
+      journal.close();
+      try (Stream<Path> files = Files.list(directory)) {
+         for (Path file : (Iterable<Path>) files::iterator) {
+            Files.delete(file);
+         }
+      }
+      Files.delete(directory);
+   }
+
+   @Benchmark
+   public long hit() {
+      long position = journal.appendHit("00ETd1DpA4S", 0);
+      journal.awaitDurable(position);
+      return position;
+   }
+}
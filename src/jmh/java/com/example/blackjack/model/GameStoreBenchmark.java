@@ -0,0 +1,116 @@
+package com.example.blackjack.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Compares the throughput of a {@link MemoryGameStore} with a {@link JdbcGameStore} backed by an embedded H2 database in file mode, with and without a
+ * {@link CachingGameStore} in front of it - playing a game (creating it, then standing) and finding an existing game.
+ * <p>
+ * Run with different numbers of threads (e.g. {@code -t 1} and {@code -t 64}) to see the effect of batching - a single thread waits for a transaction per
+ * write, whereas many threads share each transaction. The number of writes per batch is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GameStoreBenchmark {
+   private static final int NUMBER_OF_USERS = 1_000;
+   private static final int GAMES_TO_FIND = 10_000;
+
+   @Param({"memory", "jdbc", "cached-jdbc"})
+   private String store;
+
+   private Path directory;
+   private HikariDataSource dataSource;
+   private JdbcGameStore jdbcGameStore;
+   private CachingGameStore cachingGameStore;
+   private GameStore gameStore;
+   private String[] usernames;
+   private String[] gameIds;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), DeckFactory.Mode.SHUFFLED);
+      GameIdGenerator gameIdGenerator = new GameIdGenerator(0);
+      if (store.endsWith("jdbc")) {
+         directory = Files.createTempDirectory("game-store-benchmark");
+         dataSource = new HikariDataSource();
+         dataSource.setJdbcUrl("jdbc:h2:file:" + directory.resolve("blackjack"));
+         dataSource.setMaximumPoolSize(64);
+         jdbcGameStore = new JdbcGameStore(dataSource, gameIdGenerator, deckFactory, 256);
+         jdbcGameStore.start();
+         gameStore = jdbcGameStore;
+         if (store.startsWith("cached")) {
+            cachingGameStore = new CachingGameStore(jdbcGameStore, 100_000, 256, 8);
+            cachingGameStore.start();
+            gameStore = cachingGameStore;
+         }
+      } else {
+         gameStore = new MemoryGameStore(gameIdGenerator, deckFactory);
+      }
+
+      usernames = new String[GAMES_TO_FIND];
+      gameIds = new String[GAMES_TO_FIND];
+      for (int i = 0; i < GAMES_TO_FIND; i++) {
+         usernames[i] = "user" + (i % NUMBER_OF_USERS);
+         gameIds[i] = gameStore.createGame(usernames[i]).getId();
+      }
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws IOException {
+      if (cachingGameStore != null) {
+         cachingGameStore.stop();
+         System.out.printf("%n%.2f hit ratio, %.1f updates per flush%n", cachingGameStore.getHitRatio(),
+               (double) cachingGameStore.getFlushedUpdateCount() / cachingGameStore.getFlushCount());
+      }
+      if (jdbcGameStore != null) {
+         System.out.printf("%n%.1f writes per batch%n", (double) jdbcGameStore.getWriteCount() / jdbcGameStore.getBatchCount());
+         jdbcGameStore.stop();
+         dataSource.close();
+         try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+               Files.delete(file);
+            }
+         }
+         Files.delete(directory);
+      }
+   }
+
+   @Benchmark
+   public GameState play() {
+      Game game = gameStore.createGame("user" + ThreadLocalRandom.current().nextInt(NUMBER_OF_USERS));
+      return game.isComplete() ? game.snapshotCurrentState() : game.stand();
+   }
+
+   @Benchmark
+   public GameState find() {
+      int i = ThreadLocalRandom.current().nextInt(GAMES_TO_FIND);
+      return gameStore.findByUsernameAndGameId(usernames[i], gameIds[i]).snapshotCurrentState();
+   }
+}
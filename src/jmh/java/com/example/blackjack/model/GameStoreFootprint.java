@@ -0,0 +1,57 @@
+package com.example.blackjack.model;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * Reports the heap used by {@code MemoryGameStore} to index games, per user, for users with 1, 10 and 10,000 games.
+ * <p>
+ * The games themselves, their IDs and the usernames are excluded - only the overhead of the maps used to find and list the games of each user is reported.
+ * <p>
+ * Run using the jar created by {@code gradlew jmhJar}, e.g. {@code java -Xmx2g -cp build/libs/*-jmh.jar com.example.blackjack.model.GameStoreFootprint}
+ */
+public class GameStoreFootprint {
+   private static final int NUMBER_OF_GAMES = 100_000;
+
+   public static void main(String[] args) throws IllegalAccessException {
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), DeckFactory.Mode.SEEDED);
+      for (int gamesPerUser : new int[] { 1, 10, 10_000 }) {
+         GameIdGenerator idGenerator = new GameIdGenerator(0);
+         MemoryGameStore store = new MemoryGameStore(idGenerator, deckFactory);
+         store.setFreezeCompletedGames(false);
+
+         int numberOfUsers = NUMBER_OF_GAMES / gamesPerUser;
+         Game[] games = new Game[NUMBER_OF_GAMES];
+         String[] usernames = new String[numberOfUsers];
+         for (int u = 0; u < numberOfUsers; u++) {
+            usernames[u] = "user" + u;
+            for (int g = 0; g < gamesPerUser; g++) {
+               games[u * gamesPerUser + g] = store.createGame(usernames[u]);
+            }
+         }
+
+         GraphLayout index = GraphLayout.parseInstance(indexes(store)).subtract(GraphLayout.parseInstance(games, usernames));
+         System.out.println(gamesPerUser + " games per user: " + (index.totalSize() / numberOfUsers) + " bytes per user, "
+               + (index.totalSize() / NUMBER_OF_GAMES) + " bytes per game");
+         System.out.println(index.toFootprint());
+      }
+   }
+
+   /** Returns every map used by the store - parsing the whole store would include its background threads, and so the rest of the JVM. */
+   private static Object[] indexes(MemoryGameStore store) throws IllegalAccessException {
+      List<Object> indexes = new ArrayList<>();
+      for (Field f : MemoryGameStore.class.getDeclaredFields()) {
+         if (Map.class.isAssignableFrom(f.getType())) {
+            f.setAccessible(true);
+            indexes.add(f.get(store));
+         }
+      }
+      return indexes.toArray();
+   }
+}
@@ -0,0 +1,99 @@
+package com.example.blackjack.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * Reports how long a {@code MemoryGameStore} takes to restore its games from a {@code GameJournal} - both by replaying every event, and by loading a
+ * checkpoint then replaying the events that follow it.
+ * <p>
+ * Creates the given number of games (default 10,000,000), shared between users with 10 games each. Nine out of ten games are completed by the player
+ * standing, the rest are left in progress - so most games are restored as a {@code FrozenGame}. After the checkpoint, a further 1% of games are created and
+ * completed, so there are events to replay after the checkpoint.
+ * <p>
+ * Run using the jar created by {@code gradlew jmhJar}, e.g.
+ * {@code java -Xmx3g -cp build/libs/*-jmh.jar com.example.blackjack.model.GameStoreRecovery 10000000}
+ */
+public class GameStoreRecovery {
+   private static final int GAMES_PER_USER = 10;
+
+   public static void main(String[] args) throws IOException {
+      int numberOfGames = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), DeckFactory.Mode.SHUFFLED);
+      Path directory = Files.createTempDirectory("journal-recovery");
+      try {
+         GameJournal journal = open(directory);
+         MemoryGameStore store = start(deckFactory, journal);
+         long start = System.nanoTime();
+         createGames(store, 0, numberOfGames);
+         System.out.printf("Created %,d games in %,dms - %,d bytes%n", numberOfGames, millisSince(start), size(directory));
+         // closed without stopping the store, so no checkpoint is written
+         journal.close();
+         store = null;
+
+         journal = open(directory);
+         store = start(deckFactory, journal);
+         System.out.printf("Replayed %,d events in %,dms%n", journal.getRecoveredEventCount(), journal.getRecoveryMillis());
+
+         store.checkpoint();
+         System.out.printf("Wrote checkpoint of %,d games in %,dms - %,d bytes%n", journal.getCheckpointGameCount(), journal.getCheckpointMillis(),
+                     size(directory));
+         createGames(store, numberOfGames, numberOfGames / 100);
+         journal.close();
+         store = null;
+
+         journal = open(directory);
+         store = start(deckFactory, journal);
+         System.out.printf("Restored %,d games from checkpoint and replayed %,d events in %,dms - %,d games%n", journal.getRestoredGameCount(),
+                     journal.getRecoveredEventCount(), journal.getRecoveryMillis(), store.getGameCount());
+         journal.close();
+      } finally {
+         delete(directory);
+      }
+   }
+
+   private static GameJournal open(Path directory) {
+      System.gc();
+      return new GameJournal(directory, GameJournal.Durability.NONE, Duration.ZERO);
+   }
+
+   private static MemoryGameStore start(DeckFactory deckFactory, GameJournal journal) {
+      MemoryGameStore store = new MemoryGameStore(new GameIdGenerator(0), deckFactory);
+      store.setJournal(journal);
+      store.start();
+      return store;
+   }
+
+   private static void createGames(MemoryGameStore store, int first, int numberOfGames) {
+      for (int i = first; i < first + numberOfGames; i++) {
+         Game game = store.createGame("user" + (i / GAMES_PER_USER));
+         if (i % 10 != 0 && !game.isComplete()) {
+            game.stand();
+         }
+      }
+   }
+
+   private static long millisSince(long start) {
+      return Duration.ofNanos(System.nanoTime() - start).toMillis();
+   }
+
+   private static long size(Path directory) throws IOException {
+      try (Stream<Path> files = Files.list(directory)) {
+         return files.mapToLong(f -> f.toFile().length()).sum();
+      }
+   }
+
+   private static void delete(Path directory) throws IOException {
+      try (Stream<Path> files = Files.list(directory)) {
+         for (Path file : (Iterable<Path>) files::iterator) {
+            Files.delete(file);
+         }
+      }
+      Files.delete(directory);
+   }
+}
@@ -0,0 +1,82 @@
+package com.example.blackjack.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * Measures the throughput of shuffling a deck of cards, for each {@code ShuffleStrategy}, when many threads are shuffling at the same time.
+ * <p>
+ * {@code collections-shuffle} is included for comparison - it uses {@code Collections.shuffle(List, Random)}, which obtains random numbers from a single
+ * {@code Random} shared by every thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(Threads.MAX)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ShuffleStrategyBenchmark {
+   @Param({"collections-shuffle", "thread-local-random", "splittable-random", "secure-random"})
+   private String strategy;
+
+   private ShuffleStrategy<Card> shuffleStrategy;
+
+   @Setup
+   public void setUp() {
+      shuffleStrategy = createShuffleStrategy(strategy);
+   }
+
+   @Benchmark
+   public List<Card> shuffle() {
+      return shuffleStrategy.shuffle(DeckFactory.CARDS);
+   }
+
+   private static ShuffleStrategy<Card> createShuffleStrategy(String name) {
+      switch (name) {
+         case "collections-shuffle":
+            return new ShuffleStrategy<Card>() {
+               private final Random random = new Random();
+
+               @Override
+               public List<Card> shuffle(List<Card> input) {
+                  List<Card> copy = new ArrayList<>(input);
+                  Collections.shuffle(copy, random);
+                  return copy;
+               }
+
+               @Override
+               public RandomGenerator random() {
+                  return random;
+               }
+            };
+         case "thread-local-random":
+            return new ThreadLocalRandomShuffleStrategy<>();
+         case "splittable-random":
+            return new SplittableRandomShuffleStrategy<>();
+         case "secure-random":
+            return new SecureRandomShuffleStrategy<>();
+         default:
+            throw new IllegalArgumentException(name);
+      }
+   }
+}
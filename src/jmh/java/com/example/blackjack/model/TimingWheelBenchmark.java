@@ -0,0 +1,81 @@
+package com.example.blackjack.model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost, per timer, of scheduling a million timers in a {@code TimingWheel} and then advancing the wheel until every timer has expired.
+ * <p>
+ * Deadlines are spread over an hour, with a tick of one second, to reflect the idle game timers of {@code MemoryGameStore}. Half of the timers are
+ * rescheduled once when they first expire, as happens to the timer of a game that was accessed after its timer was scheduled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TimingWheelBenchmark {
+   private static final int NUMBER_OF_TIMERS = 1_000_000;
+   private static final long TICK_MILLIS = 1000;
+   private static final long HOUR_MILLIS = 3_600_000;
+
+   private BenchmarkTimer[] timers;
+   private long[] deadlines;
+
+   @Setup
+   public void setUp() {
+      SplittableRandom random = new SplittableRandom(42);
+      timers = new BenchmarkTimer[NUMBER_OF_TIMERS];
+      deadlines = new long[NUMBER_OF_TIMERS];
+      for (int i = 0; i < NUMBER_OF_TIMERS; i++) {
+         timers[i] = new BenchmarkTimer(i % 2 == 0);
+         deadlines[i] = random.nextLong(HOUR_MILLIS);
+      }
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(NUMBER_OF_TIMERS)
+   public long scheduleAndExpire() {
+      TimingWheel<BenchmarkTimer> wheel = new TimingWheel<>(TICK_MILLIS, 0);
+      for (int i = 0; i < NUMBER_OF_TIMERS; i++) {
+         timers[i].rescheduled = false;
+         wheel.schedule(timers[i], deadlines[i]);
+      }
+
+      long[] expired = new long[1];
+      for (long now = 0; wheel.size() > 0; now += TICK_MILLIS) {
+         long t = now;
+         wheel.advance(now, timer -> {
+            if (timer.reschedule && !timer.rescheduled) {
+               timer.rescheduled = true;
+               wheel.schedule(timer, t + HOUR_MILLIS / 2);
+            } else {
+               expired[0]++;
+            }
+         });
+      }
+      return expired[0];
+   }
+
+   private static final class BenchmarkTimer extends TimingWheel.Timer {
+      private final boolean reschedule;
+      private boolean rescheduled;
+
+      BenchmarkTimer(boolean reschedule) {
+         this.reschedule = reschedule;
+      }
+   }
+}
@@ -0,0 +1,88 @@
+package com.example.blackjack.security;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.example.blackjack.Application;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A load test of requests to view a game, comparing the ways a request can be authenticated.
+ * <p>
+ * Requests are passed through the full Spring MVC and Spring Security filter chain of the application (using {@code MockMvc}, so no sockets are involved)
+ * - so the score, divided by the number of cores, is the number of requests each core can serve. {@code authentication} is one of:
+ * <ul>
+ * <li>{@code basic} - Basic authentication with the password verification cache disabled, so every request runs BCrypt.</li>
+ * <li>{@code basic-cached} - Basic authentication with the password verification cache enabled.</li>
+ * <li>{@code bearer} - a bearer token, obtained once from {@code POST /token}.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(Threads.MAX)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuthenticatedRequestBenchmark {
+   private static final String BASIC_AUTHORIZATION = "Basic " + Base64.getEncoder().encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+   @Param({"basic", "basic-cached", "bearer"})
+   private String authentication;
+
+   private ConfigurableApplicationContext context;
+   private MockMvc mockMvc;
+   private String gamePath;
+   private String authorization;
+
+   @Setup(Level.Trial)
+   public void setUp() throws Exception {
+      // passed as command line arguments, so they take precedence over application.properties
+      context = new SpringApplicationBuilder(Application.class).run("--server.port=0", "--spring.jmx.enabled=false", "--logging.level.root=WARN",
+                  "--blackjack.security.verification-cache.ttl=" + ("basic".equals(authentication) ? "0s" : "5m"));
+      mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).addFilters(context.getBean(FilterChainProxy.class)).build();
+      gamePath = mockMvc.perform(post("/blackjack").header("Authorization", BASIC_AUTHORIZATION)).andReturn().getResponse().getHeader("Location")
+                  .replace("http://localhost", "");
+      if ("bearer".equals(authentication)) {
+         String response = mockMvc.perform(post("/token").header("Authorization", BASIC_AUTHORIZATION)).andReturn().getResponse().getContentAsString();
+         authorization = "Bearer " + new ObjectMapper().readTree(response).get("access_token").asText();
+      } else {
+         authorization = BASIC_AUTHORIZATION;
+      }
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      context.close();
+   }
+
+   @Benchmark
+   public int viewGame() throws Exception {
+      return mockMvc.perform(get(gamePath).header("Authorization", authorization)).andReturn().getResponse().getStatus();
+   }
+}
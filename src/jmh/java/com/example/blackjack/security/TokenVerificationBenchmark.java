@@ -0,0 +1,42 @@
+package com.example.blackjack.security;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Measures the time taken to verify the credentials of a single request - a bearer token issued by {@link TokenService}, compared to a password
+ * encoded with BCrypt (using the default cost, as used by {@link WebSecurityConfiguration}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TokenVerificationBenchmark {
+   private final TokenService tokenService = new TokenService("", Duration.ofMinutes(15));
+   private final String token = tokenService.issue("user");
+   private final BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder();
+   private final String encodedPassword = bcrypt.encode("password");
+
+   @Benchmark
+   public String verifyToken() {
+      return tokenService.verify(token);
+   }
+
+   @Benchmark
+   public boolean verifyBCrypt() {
+      return bcrypt.matches("password", encodedPassword);
+   }
+}
@@ -0,0 +1,53 @@
+package com.example.blackjack.view;
+
+import static java.util.Arrays.asList;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Measures the cost of converting a {@code GameState} to JSON each time it is viewed, compared to reusing the JSON cached by
+ * {@link GameState#toJson(ObjectWriter)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GameStateJsonBenchmark {
+   private ObjectWriter writer;
+   private GameState gameState;
+
+   @Setup
+   public void setUp() {
+      writer = new ObjectMapper().writer();
+      Hand dealer = new Hand(asList(new Card(Rank.ACE, Suit.SPADES), new Card(Rank.SIX, Suit.CLUBS), new Card(Rank.TEN, Suit.HEARTS)));
+      Hand player = new Hand(asList(new Card(Rank.EIGHT, Suit.DIAMONDS), new Card(Rank.QUEEN, Suit.HEARTS)));
+      gameState = new GameState("1fb8aae0-0305-4088-9866-769a7a1a37a8", Status.PLAYER_WON, dealer, player);
+   }
+
+   @Benchmark
+   public byte[] serialize() throws JsonProcessingException {
+      return writer.writeValueAsBytes(gameState);
+   }
+
+   @Benchmark
+   public byte[] cached() throws JsonProcessingException {
+      return gameState.toJson(writer);
+   }
+}
@@ -1,24 +1,31 @@
 package com.example.blackjack.controller;
 
-import java.util.Set;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import com.example.blackjack.model.Game;
+import com.example.blackjack.model.GameIdPage;
 import com.example.blackjack.model.GameStore;
 import com.example.blackjack.view.Action;
 import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -28,22 +35,62 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
-/** The {@code RestController} which provides the API to create and play blackjack games. */
+/**
+ * The {@code RestController} which provides the API to create and play blackjack games.
+ * <p>
+ * Responses containing the state of a game include an {@code ETag} header derived from the version of the game. Requests to view a game can provide the
+ * {@code ETag} in an {@code If-None-Match} header, in which case a {@code 304} (Not Modified) response is returned if the game has not changed. Requests to
+ * update a game can provide the {@code ETag} in an {@code If-Match} header, in which case a {@code 412} (Precondition Failed) response is returned, and the
+ * game is not updated, if the game has changed.
+ * <p>
+ * Game IDs are listed a page at a time, so the size of a response does not grow with the number of games a user has. If there may be further games, the
+ * response includes a {@code Link} header containing the URL of the next page.
+ */
 @Tag(name = "An API for playing the blackjack card game.")
 @RestController
 @RequestMapping("/blackjack")
 public final class BlackjackController {
    private static final Logger LOG = LoggerFactory.getLogger(BlackjackController.class);
+   /** The {@code If-Match} header value that matches any version of a game. */
+   private static final String ANY_ETAG = "*";
+   /** The number of game IDs returned by a request to list games, if a limit is not specified. */
+   private static final int DEFAULT_LIST_LIMIT = 100;
+   /** The maximum number of game IDs that can be returned by a request to list games. */
+   private static final int MAX_LIST_LIMIT = 1000;
 
    /** Used to create and retrieve games. */
    @Autowired
    private GameStore gameStore;
 
    @RequestMapping(method = RequestMethod.GET)
-   @Operation(summary = "Returns IDs of games belonging to the given user.", description = "All games for the given user, regardless of if they have already been completed, will be returned.")
-   @ApiResponses(@ApiResponse(responseCode = "200", description = "OK"))
-   public Set<String> listGames(@AuthenticationPrincipal @Parameter(description = "The user to find games for.") User activeUser) {
-      return gameStore.findGameIdsByUsername(activeUser.getUsername());
+   @Operation(summary = "Returns IDs of games belonging to the given user.", description = "Games are listed in the order they were created, a page at a time. If there may be further games then the response includes a Link header, with a relation type of next, containing the URL of the next page. A page may contain fewer than the requested number of IDs even if it is not the last page.")
+   @ApiResponses({
+               @ApiResponse(responseCode = "200", description = "OK"),
+               @ApiResponse(responseCode = "400", description = "The limit is out of range, or the cursor was not provided by the Link header of a previous response.")})
+   public List<String> listGames(@AuthenticationPrincipal @Parameter(description = "The user to find games for.") User activeUser,
+               @RequestParam(name = "status", required = false) @Parameter(description = "Only list games that currently have this status. If not specified then games are listed regardless of their status.") Status status,
+               @RequestParam(name = "cursor", required = false) @Parameter(description = "Where to continue listing from, as provided in the Link header of the previous page. If not specified then the first page is returned.") String cursor,
+               @RequestParam(name = "limit", defaultValue = "" + DEFAULT_LIST_LIMIT) @Parameter(description = "The maximum number of IDs to return. Between 1 and " + MAX_LIST_LIMIT + ".") int limit,
+               HttpServletRequest request, HttpServletResponse response) {
+      if (limit < 1 || limit > MAX_LIST_LIMIT) {
+         throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIST_LIMIT + " but was " + limit);
+      }
+      GameIdPage page = gameStore.findGameIdsByUsername(activeUser.getUsername(), status, cursor, limit);
+      if (page.hasNext()) {
+         response.setHeader(HttpHeaders.LINK, createNextLinkHeaderValue(request, page));
+      }
+      return page.getGameIds();
+   }
+
+   /**
+    * Returns the value to set for the {@code Link} header of a response containing a page of game IDs that is not the last page.
+    * <p>
+    * The URL of the request with the {@code cursor} parameter replaced by the cursor of the next page. e.g.
+    * {@code <http://localhost:8080/blackjack?limit=100&cursor=99>; rel="next"}
+    */
+   private static String createNextLinkHeaderValue(HttpServletRequest request, GameIdPage page) {
+      String url = ServletUriComponentsBuilder.fromRequest(request).replaceQueryParam("cursor", page.getNextCursor()).toUriString();
+      return '<' + url + ">; rel=\"next\"";
    }
 
    @RequestMapping(method = RequestMethod.POST)
@@ -56,14 +103,16 @@ public final class BlackjackController {
       Game game = gameStore.createGame(username);
       LOG.info("username: " + username + " has created: " + game.getId());
       response.setHeader("Location", createLocationHeaderValue(request, game));
-      return game.snapshotCurrentState();
+      GameState gameState = game.snapshotCurrentState();
+      response.setHeader(HttpHeaders.ETAG, createETagHeaderValue(gameState.getVersion()));
+      return gameState;
    }
 
    /**
     * Returns the value to set for the {@code Location} header of the response.
     * <p>
     * The path to the newly created game resource. e.g.
-    * {@code http://localhost:8080/blackjack/d344d4ec-00fc-42e0-b2f1-f5e9f77e69c8}
+    * {@code http://localhost:8080/blackjack/00ETd1DpA4S}
     */
    private String createLocationHeaderValue(HttpServletRequest request, Game game) {
       return request.getRequestURL().append("/").append(game.getId()).toString();
@@ -71,11 +120,25 @@ public final class BlackjackController {
 
    @RequestMapping(path = "/{gameId}", method = RequestMethod.GET)
    @Operation(summary = "Retrieves the state of an existing game.", description = "Returns a snapshot of the current stage of a game.")
-   @ApiResponses({@ApiResponse(responseCode = "200", description = "OK"), @ApiResponse(responseCode = "404", description = "A game for the given ID and user cannot be found.")})
+   @ApiResponses({
+               @ApiResponse(responseCode = "200", description = "OK"),
+               @ApiResponse(responseCode = "304", description = "The game has not changed since the version identified by the If-None-Match header."),
+               @ApiResponse(responseCode = "404", description = "A game for the given ID and user cannot be found.")})
    public GameState viewGame(@PathVariable("gameId") @Parameter(description = "The ID of the game that is to be retrieved.") String gameId,
-               @AuthenticationPrincipal @Parameter(description = "The user who owns the game that will be retrieved.") User activeUser) {
+               @AuthenticationPrincipal @Parameter(description = "The user who owns the game that will be retrieved.") User activeUser, WebRequest request,
+               HttpServletResponse response) {
       Game game = gameStore.findByUsernameAndGameId(activeUser.getUsername(), gameId);
-      return game.snapshotCurrentState();
+      int version = game.getVersion();
+      // sets the ETag header, and the 304 status if the request's If-None-Match header matches it - before creating a snapshot, as none is then needed
+      if (request.checkNotModified(createETagHeaderValue(version))) {
+         return null;
+      }
+      GameState gameState = game.snapshotCurrentState();
+      if (gameState.getVersion() != version) {
+         // updated since the version was checked
+         response.setHeader(HttpHeaders.ETAG, createETagHeaderValue(gameState.getVersion()));
+      }
+      return gameState;
    }
 
    @RequestMapping(path = "/{gameId}", method = RequestMethod.POST)
@@ -83,13 +146,50 @@ public final class BlackjackController {
    @ApiResponses({
                @ApiResponse(responseCode = "200", description = "OK"),
                @ApiResponse(responseCode = "404", description = "A game for the given ID and user cannot be found."),
-               @ApiResponse(responseCode = "405", description = "The game with the given ID is not in an appropriate state to be updated. A game will only be updatable if its current status is PLAYERS_TURN.")})
+               @ApiResponse(responseCode = "405", description = "The game with the given ID is not in an appropriate state to be updated. A game will only be updatable if its current status is PLAYERS_TURN."),
+               @ApiResponse(responseCode = "412", description = "The game has changed since the version identified by the If-Match header.")})
    public GameState updateGame(@PathVariable("gameId") @Parameter(description = "The ID of the game that is to be updated.") String gameId,
                @RequestParam("action") @Parameter(description = "The action to perform on the game that is to be updated. HIT indicates that the player requests another card. STAND indicates that the player requests to end their turn.", required = true) Action action,
-               @AuthenticationPrincipal @Parameter(description = "The user who owns the game that will be updated.") User activeUser) {
+               @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) @Parameter(description = "The ETag of the version of the game the update is based on. If specified, the game will only be updated if it has not changed since that version.") String ifMatch,
+               @AuthenticationPrincipal @Parameter(description = "The user who owns the game that will be updated.") User activeUser, HttpServletResponse response) {
       String username = activeUser.getUsername();
       LOG.info("username: " + username + " game: " + gameId + " action: " + action);
       Game game = gameStore.findByUsernameAndGameId(username, gameId);
-      return action.update(game);
+      GameState gameState = ifMatch == null || ANY_ETAG.equals(ifMatch.trim()) ? action.update(game) : action.update(game, parseIfMatchHeaderValue(ifMatch));
+      response.setHeader(HttpHeaders.ETAG, createETagHeaderValue(gameState.getVersion()));
+      return gameState;
+   }
+
+   /** Returns the value to set for the {@code ETag} header of a response containing the given version of a game. e.g. {@code "3"} */
+   private static String createETagHeaderValue(int version) {
+      return '"' + Integer.toString(version) + '"';
+   }
+
+   /**
+    * Returns the version of a game identified by the given {@code If-Match} header value.
+    * <p>
+    * If the header value contains more than one {@code ETag} then the highest version is returned - as the version of a game only ever increases, it is the
+    * only one of the versions that the game could currently be at.
+    *
+    * @throws ResponseStatusException
+    *            with the {@code 412} (Precondition Failed) status if the header value does not contain an {@code ETag} created by
+    *            {@link #createETagHeaderValue(int)} - as such a value can never match the current version of a game
+    */
+   private static int parseIfMatchHeaderValue(String ifMatch) {
+      int version = -1;
+      for (String eTag : ifMatch.split(",")) {
+         eTag = eTag.trim();
+         if (eTag.length() > 2 && eTag.length() < 12 && eTag.charAt(0) == '"' && eTag.charAt(eTag.length() - 1) == '"') {
+            try {
+               version = Math.max(version, Integer.parseInt(eTag.substring(1, eTag.length() - 1)));
+            } catch (NumberFormatException e) {
+               // ignore - not an ETag created by this controller
+            }
+         }
+      }
+      if (version < 0) {
+         throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "unrecognised If-Match header value: " + ifMatch);
+      }
+      return version;
    }
 }
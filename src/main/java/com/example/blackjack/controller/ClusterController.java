@@ -0,0 +1,97 @@
+package com.example.blackjack.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.blackjack.model.Game;
+import com.example.blackjack.model.GameIdPage;
+import com.example.blackjack.model.ShardedGameStore;
+import com.example.blackjack.view.Action;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+import io.swagger.v3.oas.annotations.Hidden;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * The {@code RestController} which fulfils requests forwarded by another node of a cluster, using only the games held by this node - see
+ * {@link ShardedGameStore} and {@link HttpClusterClient}.
+ * <p>
+ * Requests are never forwarded again, even if the user is not assigned to this node - so requests cannot loop between nodes that disagree about which
+ * node a user is assigned to. Only other nodes can access these endpoints (see {@code ClusterAuthenticationFilter}), so they are not included in the
+ * documentation of the API.
+ */
+@Hidden
+@RestController
+@RequestMapping("/cluster")
+@ConditionalOnProperty(name = "blackjack.cluster.enabled", havingValue = "true")
+public final class ClusterController {
+   private static final Logger LOG = LoggerFactory.getLogger(ClusterController.class);
+
+   @Autowired
+   private ShardedGameStore gameStore;
+
+   @RequestMapping(path = "/games", method = RequestMethod.GET)
+   public GameIdPage listGames(@AuthenticationPrincipal User activeUser, @RequestParam(name = "status", required = false) Status status,
+               @RequestParam(name = "cursor", required = false) String cursor, @RequestParam(name = "limit") int limit) {
+      return gameStore.findLocalGameIds(activeUser.getUsername(), status, cursor, limit);
+   }
+
+   @RequestMapping(path = "/games", method = RequestMethod.POST)
+   @ResponseStatus(HttpStatus.CREATED)
+   public GameState newGame(@AuthenticationPrincipal User activeUser, HttpServletResponse response) {
+      return withETag(gameStore.createLocalGame(activeUser.getUsername()).snapshotCurrentState(), response);
+   }
+
+   @RequestMapping(path = "/games/{gameId}", method = RequestMethod.GET)
+   public GameState viewGame(@PathVariable("gameId") String gameId, @AuthenticationPrincipal User activeUser, HttpServletResponse response) {
+      return withETag(gameStore.findLocalGame(activeUser.getUsername(), gameId).snapshotCurrentState(), response);
+   }
+
+   /** Updates a game - if {@code version} is specified, only if the game is at that version. */
+   @RequestMapping(path = "/games/{gameId}", method = RequestMethod.POST)
+   public GameState updateGame(@PathVariable("gameId") String gameId, @RequestParam("action") Action action,
+               @RequestParam(name = "version", required = false) Integer version, @AuthenticationPrincipal User activeUser, HttpServletResponse response) {
+      Game game = gameStore.findLocalGame(activeUser.getUsername(), gameId);
+      return withETag(version == null ? action.update(game) : action.update(game, version), response);
+   }
+
+   /**
+    * Adds games moved from another node - responding with 400 (bad request) if they cannot be decoded, so the node that sent them does not treat it as a
+    * fault of this node.
+    * <p>
+    * The status is returned directly rather than by throwing a {@code ResponseStatusException}, as the request would then be forwarded to {@code /error} -
+    * which is not authenticated as a request from another node, so would respond with 401 (unauthorized) instead.
+    */
+   @RequestMapping(path = "/moved-games", method = RequestMethod.POST, consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+   public ResponseEntity<Void> addMovedGames(@RequestBody byte[] games, @AuthenticationPrincipal User activeUser) {
+      try {
+         gameStore.addMovedGames(activeUser.getUsername(), games);
+      } catch (IllegalArgumentException e) {
+         LOG.warn("Rejected games moved for user " + activeUser.getUsername(), e);
+         return ResponseEntity.badRequest().build();
+      }
+      return ResponseEntity.noContent().build();
+   }
+
+   /** Sets the {@code ETag} header of the response to the version of the given state, in the same format as {@link BlackjackController}. */
+   private static GameState withETag(GameState gameState, HttpServletResponse response) {
+      response.setHeader(HttpHeaders.ETAG, '"' + Integer.toString(gameState.getVersion()) + '"');
+      return gameState;
+   }
+}
@@ -0,0 +1,79 @@
+package com.example.blackjack.controller;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import com.example.blackjack.model.GameAlreadyCompleteException;
+import com.example.blackjack.model.GameNotFoundException;
+import com.example.blackjack.model.GameVersionMismatchException;
+import com.example.blackjack.model.InvalidCursorException;
+import com.example.blackjack.view.ErrorDetails;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Handles the exceptions thrown by {@link BlackjackController}, and {@link ClusterController}, when a request cannot be fulfilled due to the state of a
+ * game - e.g. the game does not exist or is already complete.
+ * <p>
+ * These are expected outcomes of a request, rather than faults, so are handled here rather than by {@link CustomErrorController}. That avoids the servlet
+ * container forwarding the request to {@code /error} (which passes the request through the security filter chain again and builds a map of error
+ * attributes). The response has the same status and {@code ErrorDetails} body as if it had been handled by {@code CustomErrorController} - and, as the
+ * body does not include the message of the exception, it is the same for every occurrence so is created once.
+ */
+@RestControllerAdvice(assignableTypes = {BlackjackController.class, ClusterController.class})
+@ManagedResource(objectName = "com.example.blackjack.controller:name=GameExceptionHandler", description = "Handles requests that are invalid for the state of a game.")
+public final class GameExceptionHandler {
+   private static final Logger LOG = LoggerFactory.getLogger(GameExceptionHandler.class);
+
+   private static final ResponseEntity<ErrorDetails> NOT_FOUND = createResponse(HttpStatus.NOT_FOUND);
+   private static final ResponseEntity<ErrorDetails> METHOD_NOT_ALLOWED = createResponse(HttpStatus.METHOD_NOT_ALLOWED);
+   private static final ResponseEntity<ErrorDetails> PRECONDITION_FAILED = createResponse(HttpStatus.PRECONDITION_FAILED);
+   private static final ResponseEntity<ErrorDetails> BAD_REQUEST = createResponse(HttpStatus.BAD_REQUEST);
+
+   private final LongAdder handledCounter = new LongAdder();
+
+   private static ResponseEntity<ErrorDetails> createResponse(HttpStatus status) {
+      return ResponseEntity.status(status).body(new ErrorDetails(status.value(), status.getReasonPhrase(), null));
+   }
+
+   @ExceptionHandler
+   public ResponseEntity<ErrorDetails> handle(GameNotFoundException e, HttpServletRequest request) {
+      return handle(e, request, NOT_FOUND);
+   }
+
+   @ExceptionHandler
+   public ResponseEntity<ErrorDetails> handle(GameAlreadyCompleteException e, HttpServletRequest request) {
+      return handle(e, request, METHOD_NOT_ALLOWED);
+   }
+
+   @ExceptionHandler
+   public ResponseEntity<ErrorDetails> handle(GameVersionMismatchException e, HttpServletRequest request) {
+      return handle(e, request, PRECONDITION_FAILED);
+   }
+
+   @ExceptionHandler
+   public ResponseEntity<ErrorDetails> handle(InvalidCursorException e, HttpServletRequest request) {
+      return handle(e, request, BAD_REQUEST);
+   }
+
+   private ResponseEntity<ErrorDetails> handle(RuntimeException e, HttpServletRequest request, ResponseEntity<ErrorDetails> response) {
+      handledCounter.increment();
+      if (LOG.isDebugEnabled()) {
+         LOG.debug("Returning {} for request to {} {}: {}", response.getStatusCode().value(), request.getMethod(), request.getRequestURI(), e.getMessage());
+      }
+      return response;
+   }
+
+   @ManagedAttribute(description = "Number of requests rejected due to the state of a game.")
+   public long getHandledCount() {
+      return handledCounter.sum();
+   }
+}
@@ -0,0 +1,56 @@
+package com.example.blackjack.controller;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import com.example.blackjack.view.GameState;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Writes {@code GameState} responses using the JSON cached by {@link GameState#toJson(ObjectWriter)}.
+ * <p>
+ * A {@code Game} returns the same {@code GameState} instance until it is next updated, so repeatedly viewing a game only requires its state to be converted
+ * to JSON once. The JSON is created using the application's {@code ObjectMapper}, so is identical to what would otherwise have been written by Spring's
+ * default Jackson converter.
+ * <p>
+ * As a bean of type {@code HttpMessageConverter} this is automatically registered ahead of the default converters.
+ */
+@Component
+final class GameStateHttpMessageConverter extends AbstractHttpMessageConverter<GameState> {
+   private final ObjectWriter writer;
+
+   @Autowired
+   GameStateHttpMessageConverter(ObjectMapper objectMapper) {
+      super(MediaType.APPLICATION_JSON);
+      this.writer = objectMapper.writer();
+   }
+
+   @Override
+   protected boolean supports(Class<?> clazz) {
+      return GameState.class == clazz;
+   }
+
+   /** Always returns {@code false} as this converter is only used to write responses. */
+   @Override
+   public boolean canRead(Class<?> clazz, MediaType mediaType) {
+      return false;
+   }
+
+   @Override
+   protected GameState readInternal(Class<? extends GameState> clazz, HttpInputMessage inputMessage) {
+      throw new HttpMessageNotReadableException("reading " + clazz.getName() + " is not supported", inputMessage);
+   }
+
+   @Override
+   protected void writeInternal(GameState gameState, HttpOutputMessage outputMessage) throws IOException {
+      outputMessage.getBody().write(gameState.toJson(writer));
+   }
+}
@@ -0,0 +1,218 @@
+package com.example.blackjack.controller;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.example.blackjack.model.ClusterClient;
+import com.example.blackjack.model.GameAlreadyCompleteException;
+import com.example.blackjack.model.GameIdPage;
+import com.example.blackjack.model.GameNotFoundException;
+import com.example.blackjack.model.GameVersionMismatchException;
+import com.example.blackjack.model.InvalidCursorException;
+import com.example.blackjack.security.ClusterAuthenticationFilter;
+import com.example.blackjack.view.Action;
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Hand;
+import com.example.blackjack.view.Rank;
+import com.example.blackjack.view.Status;
+import com.example.blackjack.view.Suit;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A {@code ClusterClient} which sends requests to the {@link ClusterController} of other nodes over HTTP.
+ * <p>
+ * Each request contains {@code blackjack.cluster.secret}, and the name of the user it is made on behalf of, so it can be authenticated by the node it is sent
+ * to. The responses of {@code ClusterController} use the same representation of a game, and the same status for each exception, as
+ * {@link BlackjackController} - so each exception is thrown again by this client. A node that cannot be reached, or that returns an unexpected response,
+ * causes a {@code ResponseStatusException} with a status of {@code 503} (Service Unavailable) or {@code 502} (Bad Gateway) respectively.
+ * <p>
+ * Requests use the JDK's {@code HttpClient}, which keeps connections to each node open to be reused by later requests. Connecting, and waiting for each
+ * response, times out after {@code blackjack.cluster.timeout}.
+ */
+@Component
+@ConditionalOnProperty(name = "blackjack.cluster.enabled", havingValue = "true")
+final class HttpClusterClient implements ClusterClient {
+   private final RestClient restClient;
+   private final ObjectMapper objectMapper;
+
+   /**
+    * @param secret
+    *           the secret shared by the nodes of the cluster
+    * @throws IllegalArgumentException
+    *            if {@code secret} is empty
+    */
+   @Autowired
+   HttpClusterClient(ObjectMapper objectMapper, @Value("${blackjack.cluster.secret:}") String secret,
+               @Value("${blackjack.cluster.timeout:5s}") Duration timeout) {
+      if (secret.isEmpty()) {
+         throw new IllegalArgumentException("blackjack.cluster.secret must be set, to the same value on every node of the cluster");
+      }
+      JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder().connectTimeout(timeout).build());
+      requestFactory.setReadTimeout(timeout);
+      this.restClient = RestClient.builder().requestFactory(requestFactory).defaultHeader(ClusterAuthenticationFilter.KEY_HEADER, secret).build();
+      this.objectMapper = objectMapper;
+   }
+
+   @Override
+   public GameState createGame(String node, String username) {
+      try {
+         return restClient.post().uri(node + "/cluster/games").header(ClusterAuthenticationFilter.USER_HEADER, encode(username))
+                     .exchange((request, response) -> {
+                        if (response.getStatusCode().is2xxSuccessful()) {
+                           return readGameState(response.getBody().readAllBytes(), response.getHeaders().getETag());
+                        }
+                        throw unexpected(node, response.getStatusCode());
+                     });
+      } catch (ResourceAccessException e) {
+         throw unavailable(node, e);
+      }
+   }
+
+   @Override
+   public GameState findGame(String node, String username, String gameId) {
+      try {
+         return restClient.get().uri(node + "/cluster/games/{gameId}", gameId).header(ClusterAuthenticationFilter.USER_HEADER, encode(username))
+                     .exchange((request, response) -> {
+                        HttpStatusCode status = response.getStatusCode();
+                        if (status.is2xxSuccessful()) {
+                           return readGameState(response.getBody().readAllBytes(), response.getHeaders().getETag());
+                        } else if (status.value() == HttpStatus.NOT_FOUND.value()) {
+                           throw new GameNotFoundException(username, gameId);
+                        }
+                        throw unexpected(node, status);
+                     });
+      } catch (ResourceAccessException e) {
+         throw unavailable(node, e);
+      }
+   }
+
+   @Override
+   public GameState updateGame(String node, String username, String gameId, Action action, int expectedVersion) {
+      UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(node).path("/cluster/games/{gameId}").queryParam("action", action);
+      if (expectedVersion >= 0) {
+         uri.queryParam("version", expectedVersion);
+      }
+      GameState updated;
+      try {
+         updated = restClient.post().uri(uri.buildAndExpand(gameId).encode().toUri()).header(ClusterAuthenticationFilter.USER_HEADER, encode(username))
+                     .exchange((request, response) -> {
+                        HttpStatusCode status = response.getStatusCode();
+                        if (status.is2xxSuccessful()) {
+                           return readGameState(response.getBody().readAllBytes(), response.getHeaders().getETag());
+                        } else if (status.value() == HttpStatus.NOT_FOUND.value()) {
+                           throw new GameNotFoundException(username, gameId);
+                        } else if (status.value() == HttpStatus.METHOD_NOT_ALLOWED.value()) {
+                           throw new GameAlreadyCompleteException(gameId);
+                        } else if (status.value() == HttpStatus.PRECONDITION_FAILED.value()) {
+                           return null;
+                        }
+                        throw unexpected(node, status);
+                     });
+      } catch (ResourceAccessException e) {
+         throw unavailable(node, e);
+      }
+      if (updated == null) {
+         // the response does not include the current version, so it is requested separately
+         throw new GameVersionMismatchException(gameId, expectedVersion, findGame(node, username, gameId).getVersion());
+      }
+      return updated;
+   }
+
+   @Override
+   public GameIdPage findGameIds(String node, String username, Status status, String cursor, int limit) {
+      UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(node).path("/cluster/games").queryParam("limit", limit);
+      if (status != null) {
+         uri.queryParam("status", status);
+      }
+      if (cursor != null) {
+         uri.queryParam("cursor", cursor);
+      }
+      try {
+         return restClient.get().uri(uri.encode().build().toUri()).header(ClusterAuthenticationFilter.USER_HEADER, encode(username))
+                     .exchange((request, response) -> {
+                        HttpStatusCode responseStatus = response.getStatusCode();
+                        if (responseStatus.is2xxSuccessful()) {
+                           return readGameIdPage(response.getBody().readAllBytes());
+                        } else if (responseStatus.value() == HttpStatus.BAD_REQUEST.value() && cursor != null) {
+                           throw new InvalidCursorException(cursor);
+                        }
+                        throw unexpected(node, responseStatus);
+                     });
+      } catch (ResourceAccessException e) {
+         throw unavailable(node, e);
+      }
+   }
+
+   @Override
+   public void moveGames(String node, String username, byte[] games) {
+      try {
+         restClient.post().uri(node + "/cluster/moved-games").header(ClusterAuthenticationFilter.USER_HEADER, encode(username))
+                     .contentType(MediaType.APPLICATION_OCTET_STREAM).body(games).exchange((request, response) -> {
+                        if (response.getStatusCode().is2xxSuccessful()) {
+                           return null;
+                        }
+                        throw unexpected(node, response.getStatusCode());
+                     });
+      } catch (ResourceAccessException e) {
+         throw unavailable(node, e);
+      }
+   }
+
+   private static String encode(String username) {
+      return URLEncoder.encode(username, StandardCharsets.UTF_8);
+   }
+
+   /** Returns the state of a game from the JSON written by {@link GameStateHttpMessageConverter} and the {@code ETag} containing its version. */
+   private GameState readGameState(byte[] body, String eTag) throws IOException {
+      JsonNode json = objectMapper.readTree(body);
+      int version = Integer.parseInt(eTag.substring(1, eTag.length() - 1));
+      return new GameState(json.get("id").asText(), version, Status.valueOf(json.get("status").asText()), readHand(json.get("dealer")),
+                  readHand(json.get("player")));
+   }
+
+   private static Hand readHand(JsonNode json) {
+      List<Card> cards = new ArrayList<>();
+      for (JsonNode card : json.get("cards")) {
+         cards.add(new Card(Rank.valueOf(card.get("rank").asText()), Suit.valueOf(card.get("suit").asText())));
+      }
+      return new Hand(cards, json.get("value").asInt());
+   }
+
+   private GameIdPage readGameIdPage(byte[] body) throws IOException {
+      JsonNode json = objectMapper.readTree(body);
+      List<String> gameIds = new ArrayList<>();
+      for (JsonNode gameId : json.get("gameIds")) {
+         gameIds.add(gameId.asText());
+      }
+      JsonNode nextCursor = json.get("nextCursor");
+      return new GameIdPage(gameIds, nextCursor == null || nextCursor.isNull() ? null : nextCursor.asText());
+   }
+
+   private static ResponseStatusException unexpected(String node, HttpStatusCode status) {
+      return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "unexpected response " + status.value() + " from " + node);
+   }
+
+   private static ResponseStatusException unavailable(String node, ResourceAccessException e) {
+      return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "could not reach " + node, e);
+   }
+}
@@ -0,0 +1,61 @@
+package com.example.blackjack.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.blackjack.security.TokenService;
+import com.example.blackjack.view.AccessToken;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+/**
+ * The {@code RestController} which issues bearer tokens.
+ * <p>
+ * A client can log in once, using Basic authentication, to obtain a token - and then provide the token in an {@code Authorization: Bearer <token>} header
+ * of subsequent requests, rather than the username and password. Verifying a token is far cheaper than verifying a password.
+ */
+@Tag(name = "Issues bearer tokens, as an alternative to providing a username and password with every request.")
+@RestController
+@RequestMapping("/token")
+public final class TokenController {
+   private static final Logger LOG = LoggerFactory.getLogger(TokenController.class);
+
+   @Autowired
+   private TokenService tokenService;
+
+   /**
+    * Returns a new token for the authenticated user.
+    *
+    * @throws ResponseStatusException
+    *            with the {@code 403} (Forbidden) status if the request was authenticated with a bearer token - so a token cannot be used to extend its own
+    *            life indefinitely, without the password ever being provided again
+    */
+   @RequestMapping(method = RequestMethod.POST)
+   @Operation(summary = "Issues a bearer token.", description = "The request must be authenticated using Basic authentication. The token is valid until it expires.")
+   @ApiResponses({
+               @ApiResponse(responseCode = "200", description = "OK"),
+               @ApiResponse(responseCode = "403", description = "The request was authenticated using a bearer token, rather than a username and password.")})
+   public AccessToken createToken(@AuthenticationPrincipal @Parameter(description = "The user to issue a token to.") User activeUser,
+               Authentication authentication) {
+      if (authentication instanceof PreAuthenticatedAuthenticationToken) {
+         throw new ResponseStatusException(HttpStatus.FORBIDDEN, "a token can only be issued to a request authenticated with a username and password");
+      }
+      String username = activeUser.getUsername();
+      LOG.info("username: " + username + " has been issued a token");
+      return new AccessToken(tokenService.issue(username), tokenService.getTtl().toSeconds());
+   }
+}
@@ -0,0 +1,788 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * A write-behind cache in front of another {@code GameStore} - so hitting or standing does not wait for the store that holds the game.
+ * <p>
+ * Games that have recently been created or found are kept in memory. A game in progress is cached as a copy, created by dealing from a copy of the deck of
+ * the game returned by the underlying store and repeating each hit - so the copy deals exactly the cards the original would. Updates are applied to the copy,
+ * and return as soon as they have been, while background threads apply them to the original - and so to the underlying store - later. Creating a game is not
+ * deferred, as the underlying store decides its ID and deck.
+ * <p>
+ * A game is queued to be flushed when it is first updated since it was last flushed. Any further updates made while it waits are flushed with it, so however
+ * often a game is updated it is only queued once. Each of the {@code blackjack.store.cache.flush-threads} flushers takes up to
+ * {@code blackjack.store.cache.max-batch-size} games at a time from the queue, and applies the updates of each game in the order they were made. If the
+ * underlying store writes each update before returning it, but lets it be started without waiting (see {@link DeferredWriteGame}), then every update of the
+ * batch is started before waiting for any of them - so the store can write the whole batch together, rather than one game per flusher. Each update
+ * is applied at the version it was made at, so is never applied to a game that has since been changed by something other than this cache (e.g. another
+ * instance of the service). If the underlying store rejects an update as the game has been changed, or removed, by something else then the game is removed
+ * from the cache, and the updates of the game not yet flushed are discarded - the next request finds the game as the underlying store has it. Any other
+ * failure (e.g. the database being briefly unavailable) is assumed to be temporary: the updates not yet flushed are kept, so the game is not evicted, and
+ * the game is flushed again after a delay - starting at {@link #MIN_RETRY_DELAY} and doubling with each consecutive failure, up to
+ * {@link #MAX_RETRY_DELAY}. {@link #stop()} waits until every update has been flushed - making a final attempt to flush any game waiting to be retried -
+ * and any update made after the cache is stopped is flushed before it returns.
+ * <p>
+ * Only games whose decks are shuffled or seeded can be copied - the order of a lazily shuffled deck is not decided until each card is dealt. Other games, and
+ * games that are already complete, are cached as returned by the underlying store - so updates to them are applied directly.
+ * <p>
+ * At most {@code blackjack.store.cache.max-size} games are cached. Once full, a game is evicted for each game added - chosen using the CLOCK algorithm, an
+ * approximation of least recently used: games are considered in the order they were added, and a game that has been found since it was last considered is
+ * given another chance. A game is never evicted while it has updates waiting to be flushed, so the cache can briefly exceed its maximum size if most of its
+ * games are waiting.
+ * <p>
+ * Listing the games of a user with a given status first flushes that user's games, so the underlying store lists each game by its current status.
+ * <p>
+ * The cache is only used if the {@code blackjack.store.cache.enabled} property is {@code true} - in which case it is used in front of whichever store is
+ * enabled. It cannot be combined with {@code blackjack.cluster.enabled}, so is not created if that is also {@code true} - leaving {@link ShardedGameStore}
+ * to reject the combination, rather than both being the primary store.
+ */
+@Component
+@Primary
+@ConditionalOnExpression("${blackjack.store.cache.enabled:false} and !${blackjack.cluster.enabled:false}")
+@ManagedResource(objectName = "com.example.blackjack.model:name=CachingGameStore", description = "Write-behind cache of recently used games.")
+public final class CachingGameStore implements GameStore {
+   private static final Logger LOG = LoggerFactory.getLogger(CachingGameStore.class);
+   /** The maximum number of games considered each time a game is evicted, so adding a game to a cache of games waiting to be flushed does not spin. */
+   private static final int MAX_EVICTION_SCAN = 64;
+   /** How long to wait before flushing a game again, after the first failure to flush it. */
+   static final Duration MIN_RETRY_DELAY = Duration.ofMillis(100);
+   /** The longest to wait before flushing a game again, however many times flushing it has failed. */
+   static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(30);
+   /** Added to {@link #flushQueue} by {@link #stop()} to tell the flushers to stop once every game before it has been flushed. */
+   private static final Entry STOP = new Entry("", "");
+
+   private final GameStore delegate;
+   private final int maxSize;
+   private final int maxBatchSize;
+   /** The cached games, by game ID. */
+   private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+   /** Every cached game, in the order it will next be considered for eviction. May also contain games already removed from {@link #entries}. */
+   private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+   /** Games waiting to be flushed, in the order they were first updated since they were last flushed. */
+   private final LinkedBlockingQueue<Entry> flushQueue = new LinkedBlockingQueue<>();
+   /** Games that could not be flushed, each added to {@link #flushQueue} by {@link #retrier} once its delay has passed. */
+   private final DelayQueue<Retry> retryQueue = new DelayQueue<>();
+   /** Games with updates that have not yet been flushed - whether waiting in {@link #flushQueue} or being flushed. */
+   private final Set<Entry> unflushedGames = ConcurrentHashMap.newKeySet();
+   private final Thread[] flushers;
+   private final Thread retrier;
+   /** Held, for reading, while a game is added to {@link #flushQueue} - and, for writing, while the cache is stopped. So nothing is added after {@link #STOP}. */
+   private final StampedLock stateLock = new StampedLock();
+   private final LongAdder hitCounter = new LongAdder();
+   private final LongAdder missCounter = new LongAdder();
+   private final LongAdder evictionCounter = new LongAdder();
+   private final LongAdder pendingUpdateCounter = new LongAdder();
+   private final LongAdder flushCounter = new LongAdder();
+   private final LongAdder flushedUpdateCounter = new LongAdder();
+   private final LongAdder failureCounter = new LongAdder();
+   private final LongAdder retryCounter = new LongAdder();
+   private boolean running;
+
+   /**
+    * @param delegate
+    *           the store that games are created in, found in when not cached and flushed to
+    * @param maxSize
+    *           the maximum number of games to cache
+    * @param maxBatchSize
+    *           the maximum number of games a flusher takes from the queue at a time, and starts flushing before waiting for any of them
+    * @param flushThreads
+    *           the number of threads flushing games
+    * @throws IllegalArgumentException
+    *            if {@code maxSize}, {@code maxBatchSize} or {@code flushThreads} is not positive
+    */
+   @Autowired
+   CachingGameStore(GameStore delegate, @Value("${blackjack.store.cache.max-size:100000}") int maxSize,
+               @Value("${blackjack.store.cache.max-batch-size:256}") int maxBatchSize, @Value("${blackjack.store.cache.flush-threads:8}") int flushThreads) {
+      if (maxSize < 1) {
+         throw new IllegalArgumentException("max size must be positive but was " + maxSize);
+      }
+      if (maxBatchSize < 1) {
+         throw new IllegalArgumentException("max batch size must be positive but was " + maxBatchSize);
+      }
+      if (flushThreads < 1) {
+         throw new IllegalArgumentException("flush threads must be positive but was " + flushThreads);
+      }
+      this.delegate = requireNonNull(delegate);
+      this.maxSize = maxSize;
+      this.maxBatchSize = maxBatchSize;
+      this.flushers = new Thread[flushThreads];
+      for (int i = 0; i < flushThreads; i++) {
+         flushers[i] = new Thread(this::flushBatches, "game-cache-flusher-" + i);
+         flushers[i].setDaemon(true);
+      }
+      this.retrier = new Thread(this::requeueRetries, "game-cache-retrier");
+      retrier.setDaemon(true);
+   }
+
+   /** Starts the threads that flush games. Until started, each update is flushed before it returns. */
+   @PostConstruct
+   void start() {
+      running = true;
+      for (Thread flusher : flushers) {
+         flusher.start();
+      }
+      retrier.start();
+   }
+
+   /**
+    * Waits until every update already made has been flushed, then stops the threads that flush games. Games waiting to be retried are flushed once more
+    * without waiting for their delay - if that fails too, their updates are discarded.
+    */
+   @PreDestroy
+   void stop() {
+      long stamp = stateLock.writeLock();
+      try {
+         if (!running) {
+            return;
+         }
+         running = false;
+         flushQueue.add(STOP);
+      } finally {
+         stateLock.unlockWrite(stamp);
+      }
+
+      try {
+         for (Thread flusher : flushers) {
+            flusher.join();
+         }
+         retrier.interrupt();
+         retrier.join();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+
+      List<Retry> retries = new ArrayList<>(retryQueue);
+      retryQueue.clear();
+      for (Retry retry : retries) {
+         flush(retry.entry);
+      }
+   }
+
+   @Override
+   public Game createGame(String username) {
+      return cache(username, delegate.createGame(username));
+   }
+
+   @Override
+   public Game findByUsernameAndGameId(String username, String gameId) {
+      Entry entry = entries.get(gameId);
+      if (nonNull(entry)) {
+         if (!entry.username.equals(username)) {
+            throw new GameNotFoundException(username, gameId);
+         }
+         entry.referenced = true;
+         hitCounter.increment();
+         return entry.game;
+      }
+
+      missCounter.increment();
+      return cache(username, delegate.findByUsernameAndGameId(username, gameId));
+   }
+
+   /** Flushes the user's games first if {@code status} is specified, as the underlying store only knows the status each game had when it was last flushed. */
+   @Override
+   public GameIdPage findGameIdsByUsername(String username, Status status, String cursor, int limit) {
+      if (nonNull(status)) {
+         for (Entry entry : unflushedGames) {
+            if (entry.username.equals(username)) {
+               flush(entry);
+            }
+         }
+      }
+      return delegate.findGameIdsByUsername(username, status, cursor, limit);
+   }
+
+   /** Adds a game returned by the underlying store to the cache - returning the cached game, which is the game already cached if there is one. */
+   private Game cache(String username, Game game) {
+      Entry entry = new Entry(game.getId(), username);
+      entry.game = copy(entry, game);
+      Entry existing = entries.putIfAbsent(entry.gameId, entry);
+      if (nonNull(existing)) {
+         return existing.game;
+      }
+
+      clock.add(entry);
+      if (entries.size() > maxSize) {
+         evict();
+      }
+      return entry.game;
+   }
+
+   /** Returns a copy of a game returned by the underlying store, whose updates are flushed to it - or the game itself, if it cannot be copied. */
+   private Game copy(Entry entry, Game game) {
+      if (game.isComplete() || !(game instanceof PlayableGame)) {
+         return game;
+      }
+      Deck deck = ((PlayableGame) game).getDeck();
+      Deck deckCopy;
+      if (deck instanceof ShuffledDeck) {
+         deckCopy = new ShuffledDeck(((ShuffledDeck) deck).getCards());
+      } else if (deck instanceof SeededDeck) {
+         deckCopy = new SeededDeck(((SeededDeck) deck).getSeed());
+      } else {
+         return game;
+      }
+
+      GameState original = game.snapshotCurrentState();
+      CachedGame copy = new CachedGame(entry, deckCopy);
+      // every update of a game in progress was a hit, as standing completes the game
+      copy.replay(original.getVersion());
+      GameState copied = copy.snapshotCurrentState();
+      if (copied.getStatus() != original.getStatus() || copied.getVersion() != original.getVersion()
+            || copied.getPlayer().getCards().size() != original.getPlayer().getCards().size()) {
+         LOG.warn("Game " + game.getId() + " is " + original.getStatus() + " at version " + original.getVersion() + " but was copied as " + copied.getStatus()
+               + " at version " + copied.getVersion() + " - updates will be applied directly");
+         return game;
+      }
+      entry.delegate = game;
+      return copy;
+   }
+
+   /**
+    * Removes a game from the cache - the first, in the order of {@link #clock}, that has not been found since it was last considered and has no updates
+    * waiting to be flushed.
+    */
+   private void evict() {
+      for (int i = 0; i < MAX_EVICTION_SCAN; i++) {
+         Entry entry = clock.poll();
+         if (isNull(entry)) {
+            return;
+         }
+         synchronized (entry) {
+            if (entry.removed) {
+               continue;
+            }
+            if (entry.referenced || entry.isDirty()) {
+               entry.referenced = false;
+               clock.add(entry);
+               continue;
+            }
+            entry.removed = true;
+         }
+         entries.remove(entry.gameId, entry);
+         evictionCounter.increment();
+         return;
+      }
+   }
+
+   /**
+    * Adds an update to those of the given game that are waiting to be flushed - queueing the game, unless it is already queued. Must be called while holding
+    * the monitor of {@code entry}.
+    *
+    * @return {@code true} if the update will be flushed by a flusher, or {@code false} if the cache is not running - so the caller must flush it
+    */
+   private boolean addUpdate(Entry entry, Update update) {
+      entry.updates.add(update);
+      pendingUpdateCounter.increment();
+      unflushedGames.add(entry);
+      if (entry.queued) {
+         return true;
+      }
+
+      long stamp = stateLock.readLock();
+      try {
+         if (!running) {
+            return false;
+         }
+         entry.queued = true;
+         entry.queuedAt = System.nanoTime();
+         flushQueue.add(entry);
+         return true;
+      } finally {
+         stateLock.unlockRead(stamp);
+      }
+   }
+
+   private void flushBatches() {
+      List<Entry> batch = new ArrayList<>(maxBatchSize);
+      List<Flush> flushes = new ArrayList<>(maxBatchSize);
+      List<Entry> contended = new ArrayList<>();
+      boolean stopping = false;
+      while (!stopping) {
+         batch.add(take());
+         flushQueue.drainTo(batch, maxBatchSize - 1);
+         for (Entry entry : batch) {
+            if (entry == STOP) {
+               stopping = true;
+            } else if (!entry.flushLock.tryLock()) {
+               // being flushed by another thread, e.g. a request listing games - so waiting for it while holding the locks of other games could deadlock
+               contended.add(entry);
+            } else {
+               Flush flush = begin(entry);
+               if (nonNull(flush)) {
+                  flushes.add(flush);
+               }
+            }
+         }
+         // start every update of the batch before waiting for any, so the underlying store can write them together
+         for (Flush flush : flushes) {
+            start(flush);
+         }
+         for (Flush flush : flushes) {
+            finish(flush);
+         }
+         for (Entry entry : contended) {
+            flush(entry);
+         }
+         batch.clear();
+         flushes.clear();
+         contended.clear();
+      }
+      // nothing is added after STOP, so put it back for the other flushers to stop at
+      flushQueue.add(STOP);
+   }
+
+   /** Run by {@link #retrier} - adds each game waiting to be retried to {@link #flushQueue} once its delay has passed, until the cache is stopped. */
+   private void requeueRetries() {
+      while (true) {
+         Retry retry;
+         try {
+            retry = retryQueue.take();
+         } catch (InterruptedException e) {
+            // interrupted by stop(), which flushes the games still waiting
+            return;
+         }
+
+         long stamp = stateLock.readLock();
+         try {
+            if (!running) {
+               // nothing is added after STOP, so leave it for stop() to flush
+               retryQueue.add(retry);
+               return;
+            }
+            retry.entry.queuedAt = System.nanoTime();
+            flushQueue.add(retry.entry);
+         } finally {
+            stateLock.unlockRead(stamp);
+         }
+      }
+   }
+
+   private Entry take() {
+      while (true) {
+         try {
+            return flushQueue.take();
+         } catch (InterruptedException e) {
+            // only stopped by STOP, so every update made before the cache was stopped is flushed
+         }
+      }
+   }
+
+   /**
+    * Applies every update of the given game that is waiting to be flushed to the game returned by the underlying store, in the order they were made.
+    * <p>
+    * Only one thread flushes a game at a time, so updates are flushed in order even if the game is queued again while it is being flushed. If the underlying
+    * store rejects an update as the game has been changed or removed then the game is removed from the cache, and its remaining updates discarded. If
+    * applying an update fails for any other reason then it, and the updates after it, are kept to be flushed again later - see {@link #retryLater(Entry)}.
+    */
+   private void flush(Entry entry) {
+      entry.flushLock.lock();
+      Flush flush = begin(entry);
+      if (nonNull(flush)) {
+         start(flush);
+         finish(flush);
+      }
+   }
+
+   /**
+    * Takes the updates of the given game that are waiting to be flushed. Must be called while holding {@link Entry#flushLock}, which is released if there is
+    * nothing to flush - else by {@link #finish(Flush)}.
+    *
+    * @return the updates to flush, or {@code null} if there are none
+    */
+   private Flush begin(Entry entry) {
+      List<Update> updates;
+      synchronized (entry) {
+         if (entry.updates.isEmpty()) {
+            // already flushed, e.g. by a request listing games
+            entry.flushLock.unlock();
+            return null;
+         }
+         updates = new ArrayList<>(entry.updates);
+         entry.updates.clear();
+         entry.queued = false;
+         entry.flushing = true;
+      }
+      pendingUpdateCounter.add(-updates.size());
+      return new Flush(entry, updates);
+   }
+
+   /**
+    * Starts applying the updates of a flush to the game returned by the underlying store, in order - stopping at the first that fails to start. Waiting for
+    * each to complete is left to {@link #finish(Flush)}.
+    */
+   private void start(Flush flush) {
+      Entry entry = flush.entry;
+      try {
+         if (isNull(entry.delegate)) {
+            // the previous attempt failed, so the game it was flushing to may not have been left as the underlying store has it
+            entry.delegate = delegate.findByUsernameAndGameId(entry.username, entry.gameId);
+         }
+         for (Update update : flush.updates) {
+            flush.results.add(start(entry.delegate, update));
+         }
+      } catch (RuntimeException e) {
+         flush.failure = e;
+      }
+   }
+
+   /** Starts applying an update to a game - returning what waits for it to complete, which is the update itself unless the game defers writing it. */
+   private static Supplier<GameState> start(Game game, Update update) {
+      if (game instanceof DeferredWriteGame) {
+         DeferredWriteGame deferred = (DeferredWriteGame) game;
+         return update.hit ? deferred.startHit(update.version) : deferred.startStand(update.version);
+      }
+      GameState updated = update.hit ? game.hit(update.version) : game.stand(update.version);
+      return () -> updated;
+   }
+
+   /** Waits for the updates started by {@link #start(Flush)} to complete, then records the outcome of the flush and releases {@link Entry#flushLock}. */
+   private void finish(Flush flush) {
+      Entry entry = flush.entry;
+      List<Update> updates = flush.updates;
+      try {
+         RuntimeException failure = flush.failure;
+         int flushed = 0;
+         for (Supplier<GameState> result : flush.results) {
+            try {
+               result.get();
+               flushed++;
+            } catch (RuntimeException e) {
+               // fails before any update that failed to start, so is the first failure
+               failure = e;
+               break;
+            }
+         }
+
+         boolean conflict = failure instanceof GameVersionMismatchException || failure instanceof GameNotFoundException;
+         boolean retrying = false;
+         int discarded = 0;
+         if (nonNull(failure) && !conflict) {
+            entry.failures++;
+            entry.delegate = null;
+         } else {
+            entry.failures = 0;
+         }
+         synchronized (entry) {
+            entry.flushing = false;
+            if (isNull(failure)) {
+               if (entry.updates.isEmpty()) {
+                  freezeIfComplete(entry);
+               }
+            } else if (!conflict && retryLater(entry)) {
+               // ahead of any updates made since, so they are still applied in the order they were made
+               entry.updates.addAll(0, updates.subList(flushed, updates.size()));
+               retrying = true;
+            } else {
+               discarded = entry.updates.size();
+               entry.updates.clear();
+               entry.removed = true;
+            }
+            if (!entry.isDirty()) {
+               unflushedGames.remove(entry);
+            }
+         }
+
+         flushedUpdateCounter.add(flushed);
+         if (retrying) {
+            pendingUpdateCounter.add(updates.size() - flushed);
+            retryCounter.increment();
+            LOG.warn("Could not flush " + (updates.size() - flushed) + " updates to game " + entry.gameId + " - will retry in " + retryDelay(entry.failures),
+                  failure);
+         } else if (nonNull(failure)) {
+            pendingUpdateCounter.add(-discarded);
+            entries.remove(entry.gameId, entry);
+            failureCounter.increment();
+            LOG.error("Could not flush " + (updates.size() - flushed) + " updates to game " + entry.gameId + " - removed it from the cache and discarded "
+                  + discarded + " later updates", failure);
+         } else {
+            flushCounter.increment();
+         }
+      } finally {
+         entry.flushLock.unlock();
+      }
+   }
+
+   /**
+    * Queues a game that could not be flushed to be flushed again once {@link #retryDelay(int)} has passed - unless it is already queued. Must be called while
+    * holding both {@link Entry#flushLock} and the monitor of {@code entry}.
+    *
+    * @return {@code true} if the game will be flushed again, or {@code false} if the cache has been stopped
+    */
+   private boolean retryLater(Entry entry) {
+      long stamp = stateLock.readLock();
+      try {
+         if (!running) {
+            return false;
+         }
+         if (!entry.queued) {
+            entry.queued = true;
+            retryQueue.add(new Retry(entry, System.nanoTime() + retryDelay(entry.failures).toNanos()));
+         }
+         return true;
+      } finally {
+         stateLock.unlockRead(stamp);
+      }
+   }
+
+   /** Returns how long to wait before flushing a game again after it has failed the given number of consecutive times. */
+   static Duration retryDelay(int failures) {
+      Duration delay = MIN_RETRY_DELAY.multipliedBy(1L << Math.min(failures - 1, 20));
+      return delay.compareTo(MAX_RETRY_DELAY) < 0 ? delay : MAX_RETRY_DELAY;
+   }
+
+   /**
+    * Replaces the cached copy of a game with a {@link FrozenGame} once it is complete and flushed, so its deck, and the game it was flushed to, can be
+    * reclaimed. Must be called while holding both {@link Entry#flushLock} and the monitor of {@code entry}.
+    */
+   private static void freezeIfComplete(Entry entry) {
+      GameState state = entry.game.snapshotCurrentState();
+      if (FrozenGame.canFreeze(state)) {
+         entry.game = new FrozenGame(state);
+         entry.delegate = null;
+      }
+   }
+
+   @ManagedAttribute(description = "Number of games currently cached.")
+   public int getSize() {
+      return entries.size();
+   }
+
+   @ManagedAttribute(description = "Maximum number of games cached.")
+   public int getMaxSize() {
+      return maxSize;
+   }
+
+   @ManagedAttribute(description = "Number of times a game was found in the cache.")
+   public long getHitCount() {
+      return hitCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of times a game was not in the cache, so was found in the underlying store.")
+   public long getMissCount() {
+      return missCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Proportion of games found in the cache, or NaN if no games have been found.")
+   public double getHitRatio() {
+      long hits = hitCounter.sum();
+      long total = hits + missCounter.sum();
+      return total == 0 ? Double.NaN : (double) hits / total;
+   }
+
+   @ManagedAttribute(description = "Number of games evicted to make room for others.")
+   public long getEvictionCount() {
+      return evictionCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of games waiting to be flushed, including those waiting to be retried.")
+   public int getQueueDepth() {
+      return (int) flushQueue.stream().filter(entry -> entry != STOP).count() + retryQueue.size();
+   }
+
+   @ManagedAttribute(description = "Number of updates that have not yet been flushed.")
+   public long getPendingUpdateCount() {
+      return pendingUpdateCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Milliseconds the game at the head of the queue has been waiting to be flushed, or 0 if the queue is empty.")
+   public long getFlushLagMillis() {
+      Entry head = flushQueue.peek();
+      return isNull(head) || head == STOP ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - head.queuedAt);
+   }
+
+   @ManagedAttribute(description = "Number of times the updates of a game have been flushed.")
+   public long getFlushCount() {
+      return flushCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of updates flushed.")
+   public long getFlushedUpdateCount() {
+      return flushedUpdateCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of games removed from the cache as the underlying store rejected their updates.")
+   public long getFlushFailureCount() {
+      return failureCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of times flushing a game failed for a reason other than a conflicting update, so it was kept to be retried.")
+   public long getFlushRetryCount() {
+      return retryCounter.sum();
+   }
+
+   /** A cached game, along with the updates made to it that are waiting to be flushed. */
+   private static final class Entry {
+      final String gameId;
+      final String username;
+      /** Serializes the flushing of this game. */
+      final ReentrantLock flushLock = new ReentrantLock();
+      /** The game returned when found - a {@link CachedGame}, a {@link FrozenGame} once the copy is complete, or else the game from the underlying store. */
+      volatile Game game;
+      /** Set each time this game is found, and cleared each time it is considered for eviction. */
+      volatile boolean referenced;
+      /** When this game was last added to {@link CachingGameStore#flushQueue}, from {@link System#nanoTime()}. */
+      volatile long queuedAt;
+      /**
+       * The game, returned by the underlying store, that the updates to a {@link CachedGame} are flushed to - or {@code null} if it must be found again as the
+       * last attempt to flush to it failed. Only accessed while holding {@link #flushLock}, as is {@link #failures}.
+       */
+      Game delegate;
+      /** The number of consecutive times flushing this game has failed, other than due to a conflicting update. */
+      int failures;
+      /** The updates waiting to be flushed, in the order they were made. Guarded by the monitor of this entry, as are the fields that follow. */
+      final List<Update> updates = new ArrayList<>();
+      /** {@code true} if this game is in {@link CachingGameStore#flushQueue}, or {@link CachingGameStore#retryQueue}. */
+      boolean queued;
+      /** {@code true} while updates taken from {@link #updates} are being flushed. */
+      boolean flushing;
+      /** {@code true} once this game has been removed from the cache. */
+      boolean removed;
+
+      Entry(String gameId, String username) {
+         this.gameId = gameId;
+         this.username = username;
+      }
+
+      boolean isDirty() {
+         return !updates.isEmpty() || flushing;
+      }
+   }
+
+   /** The updates of a game being flushed, taken by {@link CachingGameStore#begin(Entry)}, along with the outcome of starting them. */
+   private static final class Flush {
+      final Entry entry;
+      final List<Update> updates;
+      /** Waits for each update that was started, in the same order as {@link #updates}. */
+      final List<Supplier<GameState>> results;
+      /** Why the update after the last started failed to start, or {@code null} if every update was started. */
+      RuntimeException failure;
+
+      Flush(Entry entry, List<Update> updates) {
+         this.entry = entry;
+         this.updates = updates;
+         this.results = new ArrayList<>(updates.size());
+      }
+   }
+
+   /** A game waiting to be flushed again, after flushing it failed. */
+   private static final class Retry implements Delayed {
+      final Entry entry;
+      /** When the game can be flushed again, from {@link System#nanoTime()}. */
+      final long dueAt;
+
+      Retry(Entry entry, long dueAt) {
+         this.entry = entry;
+         this.dueAt = dueAt;
+      }
+
+      @Override
+      public long getDelay(TimeUnit unit) {
+         return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+      }
+
+      @Override
+      public int compareTo(Delayed o) {
+         return Long.compare(dueAt, ((Retry) o).dueAt);
+      }
+   }
+
+   /** A hit, or stand, made to a cached game. */
+   private static final class Update {
+      final boolean hit;
+      /** The version of the game the update was made to. */
+      final int version;
+
+      Update(boolean hit, int version) {
+         this.hit = hit;
+         this.version = version;
+      }
+   }
+
+   /** A copy of a game returned by the underlying store, whose updates are recorded so they can be flushed to it. */
+   private final class CachedGame extends PlayableGame {
+      private final Entry entry;
+
+      CachedGame(Entry entry, Deck deck) {
+         super(entry.gameId, deck);
+         this.entry = entry;
+      }
+
+      /** Repeats the hits already made to the game this is a copy of - so without recording them. */
+      void replay(int hits) {
+         for (int i = 0; i < hits; i++) {
+            super.hit(ANY_VERSION);
+         }
+      }
+
+      @Override
+      public GameState hit(int expectedVersion) {
+         return update(expectedVersion, true);
+      }
+
+      @Override
+      public GameState stand(int expectedVersion) {
+         return update(expectedVersion, false);
+      }
+
+      /**
+       * Applies an update to this copy and records it to be flushed.
+       * <p>
+       * If this copy has been removed from the cache then the update is instead applied to the game as the underlying store has it - as every update made
+       * to this copy has then either been flushed or discarded.
+       */
+      private GameState update(int expectedVersion, boolean hit) {
+         GameState updated = null;
+         boolean queued = true;
+         synchronized (entry) {
+            if (!entry.removed) {
+               updated = hit ? super.hit(expectedVersion) : super.stand(expectedVersion);
+               queued = addUpdate(entry, new Update(hit, updated.getVersion() - 1));
+            }
+         }
+
+         if (isNull(updated)) {
+            Game current = findByUsernameAndGameId(entry.username, getId());
+            return hit ? current.hit(expectedVersion) : current.stand(expectedVersion);
+         }
+         if (!queued) {
+            flush(entry);
+         }
+         return updated;
+      }
+   }
+}
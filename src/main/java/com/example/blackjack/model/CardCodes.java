@@ -0,0 +1,34 @@
+package com.example.blackjack.model;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.Suit;
+
+/**
+ * Converts between {@code Card}s and the single byte codes used to store them compactly.
+ * <p>
+ * The code of a card is its index in {@link DeckFactory#CARDS}. As a result decoding a code always returns one of the 52 shared {@code Card} instances rather
+ * than creating a new one.
+ */
+final class CardCodes {
+   private static final int NUMBER_OF_SUITS = Suit.values().length;
+
+   /** Private constructor as all methods are static. */
+   private CardCodes() {
+      // do nothing
+   }
+
+   /** Returns the code which represents a card with the same rank and suit as the given card. */
+   static byte encode(Card card) {
+      return (byte) (card.getRank().ordinal() * NUMBER_OF_SUITS + card.getSuit().ordinal());
+   }
+
+   /**
+    * Returns the shared {@code Card} represented by the given code.
+    *
+    * @throws IndexOutOfBoundsException
+    *            if {@code code} does not represent a card
+    */
+   static Card decode(int code) {
+      return DeckFactory.CARDS.get(code);
+   }
+}
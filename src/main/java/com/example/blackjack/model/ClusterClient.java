@@ -0,0 +1,54 @@
+package com.example.blackjack.model;
+
+import com.example.blackjack.view.Action;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+/**
+ * Performs operations on the games held by another node of a cluster, on behalf of a user - see {@link ShardedGameStore}.
+ * <p>
+ * Each node is identified by the base URL it is reached at. The operations act only on the games held by the given node - the node does not forward them
+ * again, even if it does not consider itself the owner of the user's games. The exceptions a {@link GameStore} throws when a request cannot be fulfilled due
+ * to the state of a game are thrown in the same circumstances.
+ */
+public interface ClusterClient {
+   /** Creates a game for the given user on the given node, returning its initial state. */
+   GameState createGame(String node, String username);
+
+   /**
+    * Returns the current state of the game with the given ID held by the given node.
+    *
+    * @throws GameNotFoundException
+    *            if the node does not hold a game with the given ID belonging to the given user
+    */
+   GameState findGame(String node, String username, String gameId);
+
+   /**
+    * Applies the given action to the game with the given ID held by the given node.
+    *
+    * @param expectedVersion
+    *           the version the game must be at for the action to be applied, or a negative number to apply it regardless of the version
+    * @return the updated state of the game
+    * @throws GameNotFoundException
+    *            if the node does not hold a game with the given ID belonging to the given user
+    * @throws GameVersionMismatchException
+    *            if the game is not at {@code expectedVersion}
+    * @throws GameAlreadyCompleteException
+    *            if the game is not in an appropriate state to be updated
+    */
+   GameState updateGame(String node, String username, String gameId, Action action, int expectedVersion);
+
+   /**
+    * Returns a page of the IDs of the games of the given user held by the given node.
+    *
+    * @see GameStore#findGameIdsByUsername(String, Status, String, int)
+    */
+   GameIdPage findGameIds(String node, String username, Status status, String cursor, int limit);
+
+   /**
+    * Adds games of the given user, encoded by {@link ShardedGameStore}, to the given node.
+    *
+    * @see ShardedGameStore#addMovedGames(String, byte[])
+    */
+   void moveGames(String node, String username, byte[] games);
+}
@@ -0,0 +1,102 @@
+package com.example.blackjack.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Assigns each username to one of a set of nodes using consistent hashing.
+ * <p>
+ * Each node is placed at {@value #POINTS_PER_NODE} points on a ring of 64-bit hashes, and a username is assigned to the node owning the first point at, or
+ * after, the hash of the username. When a node is added only the users whose hash falls just before one of its points move to it, and when a node is removed
+ * only its users move - so changing the membership moves roughly {@code 1/n} of the users, rather than almost every user as assigning by the hash modulo
+ * the number of nodes would. Placing each node at many points evens out the share of the ring, and so of the users, each node is assigned.
+ * <p>
+ * Instances are immutable. The points are held in a sorted array, so finding the owner of a username is a binary search that does not allocate. The
+ * assignment only depends on the set of nodes, not the order they are given in - so every node given the same membership assigns users in the same way.
+ */
+final class ConsistentHashRing {
+   /** The number of points on the ring for each node. */
+   static final int POINTS_PER_NODE = 128;
+   /** The FNV-1a 64-bit offset basis. */
+   private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+   /** The FNV-1a 64-bit prime. */
+   private static final long FNV_PRIME = 0x100000001b3L;
+
+   private final List<String> nodes;
+   /** The hash of each point on the ring, in ascending order. */
+   private final long[] points;
+   /** The index, in {@link #nodes}, of the node owning the point at the same index of {@link #points}. */
+   private final int[] owners;
+
+   /**
+    * @param nodes
+    *           the nodes users can be assigned to - duplicates are ignored
+    * @throws IllegalArgumentException
+    *            if {@code nodes} is empty
+    */
+   ConsistentHashRing(Collection<String> nodes) {
+      if (nodes.isEmpty()) {
+         throw new IllegalArgumentException("at least one node is required");
+      }
+      this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodes)));
+
+      int size = this.nodes.size() * POINTS_PER_NODE;
+      // each point is sorted as its hash paired with its index, so the owner of each point can be found once they are in order
+      long[][] unsorted = new long[size][];
+      for (int n = 0; n < this.nodes.size(); n++) {
+         for (int i = 0; i < POINTS_PER_NODE; i++) {
+            unsorted[n * POINTS_PER_NODE + i] = new long[] {hash(this.nodes.get(n) + '#' + i), n};
+         }
+      }
+      // ties (which are vanishingly unlikely) are broken by node, so the order does not depend on the order of the given nodes
+      Arrays.sort(unsorted, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+      this.points = new long[size];
+      this.owners = new int[size];
+      for (int i = 0; i < size; i++) {
+         points[i] = unsorted[i][0];
+         owners[i] = (int) unsorted[i][1];
+      }
+   }
+
+   /** Returns the nodes of this ring, in ascending order. */
+   List<String> getNodes() {
+      return nodes;
+   }
+
+   /** Returns {@code true} if the given node is one of the nodes of this ring, else {@code false}. */
+   boolean contains(String node) {
+      return Collections.binarySearch(nodes, node) >= 0;
+   }
+
+   /** Returns the node the given username is assigned to. */
+   String ownerOf(String username) {
+      int index = Arrays.binarySearch(points, hash(username));
+      if (index < 0) {
+         // the insertion point - i.e. the first point after the hash
+         index = -index - 1;
+         if (index == points.length) {
+            // wrap around the ring
+            index = 0;
+         }
+      }
+      return nodes.get(owners[index]);
+   }
+
+   /**
+    * Returns the 64-bit hash of the given string - FNV-1a of its characters, followed by the SplitMix64 finalizer (as used by {@link SeededDeck}) so that
+    * strings differing only in their last characters, such as the points of a node, are spread across the whole ring.
+    */
+   static long hash(String s) {
+      long h = FNV_OFFSET_BASIS;
+      for (int i = 0; i < s.length(); i++) {
+         h = (h ^ s.charAt(i)) * FNV_PRIME;
+      }
+      h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+      h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+      return h ^ (h >>> 31);
+   }
+}
@@ -6,34 +6,117 @@ import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toList;
 
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.example.blackjack.view.Card;
 import com.example.blackjack.view.Rank;
 import com.example.blackjack.view.Suit;
 
-/** Creates new {@code Deck} instances. */
+/**
+ * Creates new {@code Deck} instances.
+ * <p>
+ * The type of {@code Deck} created is selected by the {@code blackjack.deck.mode} property - see {@link Mode}.
+ */
 @Component
 class DeckFactory {
-   /** Contains a {@code Card} for every possible combination of {@code Rank} and {@code Suit}. */
-   private static final List<Card> CARDS = unmodifiableList(stream(Rank.values()).map(r -> stream(Suit.values()).map(s -> new Card(r, s))).flatMap(identity())
+   /**
+    * Contains a {@code Card} for every possible combination of {@code Rank} and {@code Suit}.
+    * <p>
+    * These are the only {@code Card} instances dealt by {@code Deck}s, which refer to them by their index in this list.
+    *
+    * @see CardCodes
+    */
+   static final List<Card> CARDS = unmodifiableList(stream(Rank.values()).map(r -> stream(Suit.values()).map(s -> new Card(r, s))).flatMap(identity())
          .collect(toList()));
 
    private final ShuffleStrategy<Card> shuffleStrategy;
+   private final Supplier<RandomGenerator> random;
+   private final Mode mode;
 
    /**
+    * Creates a factory which creates decks using {@link Mode#SHUFFLED}.
+    *
     * @param shuffleStrategy
     *           the strategy to use to randomly shuffle the cards contained in {@code Deck} instances created by {@link #createDeck()}
     */
-   @Autowired
    DeckFactory(ShuffleStrategy<Card> shuffleStrategy) {
+      this(shuffleStrategy, Mode.SHUFFLED);
+   }
+
+   /**
+    * @param shuffleStrategy
+    *           the strategy to use to randomly order the cards contained in {@code Deck} instances created by {@link #createDeck()}
+    * @param mode
+    *           the property value of the {@code Mode} to use
+    * @throws IllegalArgumentException
+    *            if {@code mode} is not the property value of a {@code Mode}
+    */
+   @Autowired
+   DeckFactory(ShuffleStrategy<Card> shuffleStrategy, @Value("${blackjack.deck.mode:shuffled}") String mode) {
+      this(shuffleStrategy, Mode.fromPropertyValue(mode));
+   }
+
+   DeckFactory(ShuffleStrategy<Card> shuffleStrategy, Mode mode) {
       this.shuffleStrategy = shuffleStrategy;
+      this.random = shuffleStrategy::random;
+      this.mode = mode;
+   }
+
+   /** Returns the type of {@code Deck} created by this factory. */
+   Mode getMode() {
+      return mode;
    }
 
-   /** Returns a new {@code Deck} which uses a newly copied and randomly shuffled collection of {@code Card}s. */
+   /** Returns a new {@code Deck} containing a {@code Card} for every possible combination of {@code Rank} and {@code Suit} in a random order. */
    Deck createDeck() {
-      return new Deck(shuffleStrategy.shuffle(CARDS));
+      switch (mode) {
+         case LAZY_SHUFFLE:
+            return new LazyShuffleDeck(random);
+         case SEEDED:
+            return new SeededDeck(random.get().nextLong());
+         default:
+            return new ShuffledDeck(shuffleStrategy.shuffle(CARDS));
+      }
+   }
+
+   /** The types of {@code Deck} that can be created. */
+   enum Mode {
+      /** Create a {@link ShuffledDeck} - the order of every card is decided, by shuffling a newly copied list of cards, when the deck is created. */
+      SHUFFLED("shuffled"),
+      /** Create a {@link LazyShuffleDeck} - nothing is shuffled when the deck is created, instead each card is selected at random when it is dealt. */
+      LAZY_SHUFFLE("lazy-shuffle"),
+      /** Create a {@link SeededDeck} - the order of the cards is derived from a randomly generated seed, which can be used to replay the game. */
+      SEEDED("seeded");
+
+      private final String propertyValue;
+
+      Mode(String propertyValue) {
+         this.propertyValue = propertyValue;
+      }
+
+      /** Returns the value of the {@code blackjack.deck.mode} property used to select this mode. */
+      String getPropertyValue() {
+         return propertyValue;
+      }
+
+      /**
+       * Returns the {@code Mode} selected by the given value of the {@code blackjack.deck.mode} property.
+       *
+       * @throws IllegalArgumentException
+       *            if {@code propertyValue} does not identify a {@code Mode}
+       */
+      static Mode fromPropertyValue(String propertyValue) {
+         for (Mode m : values()) {
+            if (m.propertyValue.equals(propertyValue)) {
+               return m;
+            }
+         }
+         throw new IllegalArgumentException("unknown deck mode: " + propertyValue);
+      }
    }
 }
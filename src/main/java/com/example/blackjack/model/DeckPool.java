@@ -0,0 +1,150 @@
+package com.example.blackjack.model;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * A bounded pool of decks that have already been shuffled.
+ * <p>
+ * A background thread keeps the pool topped up, so that the cost of shuffling is not incurred by the thread creating a game. Once the number of decks in the
+ * pool falls to the refill watermark the background thread adds decks until the pool is full again. If the pool is empty when a deck is requested then no
+ * deck is returned, and the caller should instead create one itself.
+ * <p>
+ * The pool is only used if the {@code blackjack.deck-pool.enabled} property is {@code true}. Its size is set by {@code blackjack.deck-pool.capacity} and
+ * its refill watermark by {@code blackjack.deck-pool.refill-watermark}.
+ *
+ * @see MemoryGameStore#createGame(String)
+ */
+@Component
+@ConditionalOnProperty(name = "blackjack.deck-pool.enabled", havingValue = "true")
+@ManagedResource(objectName = "com.example.blackjack.model:name=DeckPool", description = "Pool of pre-shuffled decks.")
+public final class DeckPool {
+   private static final Logger LOG = LoggerFactory.getLogger(DeckPool.class);
+
+   private final DeckFactory deckFactory;
+   private final BlockingQueue<Deck> decks;
+   private final int capacity;
+   private final int refillWatermark;
+   private final LongAdder hitCounter = new LongAdder();
+   private final LongAdder missCounter = new LongAdder();
+   private final Thread producer = new Thread(this::produce, "deck-pool-producer");
+   private volatile boolean running;
+
+   /**
+    * @param deckFactory
+    *           used to create the decks added to the pool
+    * @param capacity
+    *           the maximum number of decks the pool can contain
+    * @param refillWatermark
+    *           the number of decks in the pool at, or below, which the pool will be refilled
+    * @throws IllegalArgumentException
+    *            if {@code capacity} is not positive or {@code refillWatermark} is not in the range 0 (inclusive) to {@code capacity} (exclusive)
+    */
+   @Autowired
+   DeckPool(DeckFactory deckFactory, @Value("${blackjack.deck-pool.capacity:1024}") int capacity,
+               @Value("${blackjack.deck-pool.refill-watermark:512}") int refillWatermark) {
+      if (capacity < 1) {
+         throw new IllegalArgumentException("capacity must be positive but was " + capacity);
+      }
+      if (refillWatermark < 0 || refillWatermark >= capacity) {
+         throw new IllegalArgumentException("refill watermark must be at least 0 and less than " + capacity + " but was " + refillWatermark);
+      }
+      this.deckFactory = deckFactory;
+      this.decks = new ArrayBlockingQueue<>(capacity);
+      this.capacity = capacity;
+      this.refillWatermark = refillWatermark;
+      this.producer.setDaemon(true);
+   }
+
+   /** Starts the background thread which keeps the pool topped up. */
+   @PostConstruct
+   void start() {
+      running = true;
+      producer.start();
+   }
+
+   /** Stops the background thread which keeps the pool topped up. */
+   @PreDestroy
+   void stop() {
+      running = false;
+      producer.interrupt();
+   }
+
+   /**
+    * Removes and returns a deck from the pool.
+    *
+    * @return a shuffled deck, or {@code null} if the pool is empty
+    */
+   Deck poll() {
+      Deck deck = decks.poll();
+      if (deck == null) {
+         missCounter.increment();
+      } else {
+         hitCounter.increment();
+      }
+
+      if (decks.size() <= refillWatermark) {
+         LockSupport.unpark(producer);
+      }
+
+      return deck;
+   }
+
+   /** Adds newly created decks to the pool until it is full. */
+   void refill() {
+      while (decks.remainingCapacity() > 0) {
+         decks.offer(deckFactory.createDeck());
+      }
+   }
+
+   private void produce() {
+      while (running) {
+         try {
+            refill();
+         } catch (RuntimeException e) {
+            LOG.error("Failed to refill deck pool", e);
+         }
+         // wait until poll() signals that the pool has fallen to the refill watermark
+         LockSupport.park(this);
+      }
+   }
+
+   @ManagedAttribute(description = "Maximum number of decks the pool can contain.")
+   public int getCapacity() {
+      return capacity;
+   }
+
+   @ManagedAttribute(description = "Number of decks currently in the pool.")
+   public int getSize() {
+      return decks.size();
+   }
+
+   @ManagedAttribute(description = "Number of decks in the pool at, or below, which the pool is refilled.")
+   public int getRefillWatermark() {
+      return refillWatermark;
+   }
+
+   @ManagedAttribute(description = "Number of requests for a deck that were served from the pool.")
+   public long getHitCount() {
+      return hitCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of requests for a deck that found the pool empty.")
+   public long getMissCount() {
+      return missCounter.sum();
+   }
+}
@@ -0,0 +1,36 @@
+package com.example.blackjack.model;
+
+import java.util.function.Supplier;
+
+import com.example.blackjack.view.GameState;
+
+/**
+ * A game, returned by a store that writes each update before returning it, whose updates can be started without waiting for them to be written.
+ * <p>
+ * Lets {@link CachingGameStore} start flushing the updates of many games before waiting for any of them - so a store that writes the updates requested
+ * at the same time together (see {@link JdbcGameStore}) can write a whole batch of games at once, rather than one game per flush thread.
+ */
+interface DeferredWriteGame extends Game {
+   /**
+    * Deals another card to the player, if this game is at the given version, and starts writing the update.
+    *
+    * @return waits for the update to be written, then returns or throws exactly as {@link #hit(int)} would have
+    * @throws GameVersionMismatchException
+    *            if this game is not at {@code expectedVersion}
+    * @throws GameAlreadyCompleteException
+    *            if this game is not in an appropriate state to be updated
+    */
+   Supplier<GameState> startHit(int expectedVersion);
+
+   /**
+    * Updates the status of this game to indicate that the player has completed their turn, if this game is at the given version, and starts writing the
+    * update.
+    *
+    * @return waits for the update to be written, then returns or throws exactly as {@link #stand(int)} would have
+    * @throws GameVersionMismatchException
+    *            if this game is not at {@code expectedVersion}
+    * @throws GameAlreadyCompleteException
+    *            if this game is not in an appropriate state to be updated
+    */
+   Supplier<GameState> startStand(int expectedVersion);
+}
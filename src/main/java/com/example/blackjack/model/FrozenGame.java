@@ -0,0 +1,204 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Hand;
+import com.example.blackjack.view.Status;
+
+/**
+ * An immutable, compact representation of a completed game.
+ * <p>
+ * A completed game can no longer be updated, so its deck, the lock used to coordinate updates and the lists used to accumulate each hand are no longer
+ * needed. Instead, the cards of each hand are packed into a single {@code long} - the number of cards in the lowest 4 bits followed by the
+ * {@link CardCodes code} of each card, in the order they were dealt, in 6 bits each. This limits each hand to {@value #MAX_CARDS_PER_HAND} cards - which
+ * only excludes the rare games where the player has been dealt 11 low cards. See {@link #canFreeze(GameState)}.
+ * <p>
+ * As every field is final there is no need to synchronize reads. The {@code GameState} is only recreated from the packed cards when the game is viewed - and
+ * is then kept in a small cache, shared by every frozen game, so a game that is viewed repeatedly returns the same instance (and so the JSON it caches)
+ * without retaining the state of every completed game. The version, needed to check whether a client's copy is still current, is available without
+ * recreating the state.
+ */
+final class FrozenGame implements Game {
+   /** The maximum number of cards that can be packed into a {@code long}, alongside the number of cards. */
+   static final int MAX_CARDS_PER_HAND = 10;
+   private static final int COUNT_BITS = 4;
+   private static final int CODE_BITS = 6;
+   private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+   private static final long CODE_MASK = (1L << CODE_BITS) - 1;
+   /** The number of slots in {@link #STATES}. A power of two. */
+   private static final int CACHED_STATES = 1024;
+   /** The state most recently recreated by a frozen game whose ID hashes to each slot. */
+   private static final AtomicReferenceArray<CachedState> STATES = new AtomicReferenceArray<>(CACHED_STATES);
+
+   private final String id;
+   private final Status status;
+   private final int version;
+   private final long dealerCards;
+   private final long playerCards;
+
+   /**
+    * @param completed
+    *           the final state of the game to freeze
+    * @throws IllegalArgumentException
+    *            if {@link #canFreeze(GameState)} is {@code false} for {@code completed}
+    */
+   FrozenGame(GameState completed) {
+      this.id = completed.getId();
+      if (!canFreeze(completed)) {
+         throw new IllegalArgumentException("cannot freeze game with id " + completed.getId() + " as " + completed.getStatus());
+      }
+      this.status = completed.getStatus();
+      this.version = completed.getVersion();
+      this.dealerCards = pack(completed.getDealer().getCards());
+      this.playerCards = pack(completed.getPlayer().getCards());
+   }
+
+   /**
+    * Recreates a frozen game from the values returned by its {@link #getVersion()}, {@link #getDealerCards()} and {@link #getPlayerCards()}.
+    *
+    * @throws IllegalArgumentException
+    *            if {@code status} is not complete
+    */
+   FrozenGame(String id, Status status, int version, long dealerCards, long playerCards) {
+      this.id = requireNonNull(id);
+      if (!status.isComplete()) {
+         throw new IllegalArgumentException("cannot freeze game with id " + id + " as " + status);
+      }
+      this.status = status;
+      this.version = version;
+      this.dealerCards = dealerCards;
+      this.playerCards = playerCards;
+   }
+
+   /** Returns {@code true} if the game is complete and neither hand has more than {@value #MAX_CARDS_PER_HAND} cards, else {@code false}. */
+   static boolean canFreeze(GameState state) {
+      return state.getStatus().isComplete() && state.getDealer().getCards().size() <= MAX_CARDS_PER_HAND
+            && state.getPlayer().getCards().size() <= MAX_CARDS_PER_HAND;
+   }
+
+   private static long pack(List<Card> cards) {
+      long packed = cards.size();
+      for (int i = 0; i < cards.size(); i++) {
+         packed |= (long) CardCodes.encode(cards.get(i)) << (COUNT_BITS + i * CODE_BITS);
+      }
+      return packed;
+   }
+
+   private static Hand unpack(long packed) {
+      Card[] cards = new Card[(int) (packed & COUNT_MASK)];
+      for (int i = 0; i < cards.length; i++) {
+         cards[i] = CardCodes.decode((int) ((packed >>> (COUNT_BITS + i * CODE_BITS)) & CODE_MASK));
+      }
+      return new Hand(Arrays.asList(cards));
+   }
+
+   @Override
+   public String getId() {
+      return id;
+   }
+
+   /** Returns a {@code GameState} equal to the final state of the game when it was frozen - the same instance as last time, if it is still cached. */
+   @Override
+   public GameState snapshotCurrentState() {
+      int slot = slot(id);
+      CachedState cached = STATES.get(slot);
+      if (cached != null && cached.isStateOf(this)) {
+         return cached.state;
+      }
+      GameState result = new GameState(id, version, status, unpack(dealerCards), unpack(playerCards));
+      STATES.set(slot, new CachedState(this, result));
+      return result;
+   }
+
+   private static int slot(String id) {
+      int h = id.hashCode();
+      return (h ^ (h >>> 16)) & (CACHED_STATES - 1);
+   }
+
+   @Override
+   public int getVersion() {
+      return version;
+   }
+
+   /** Returns the cards of the dealer, packed into a {@code long}. */
+   long getDealerCards() {
+      return dealerCards;
+   }
+
+   /** Returns the cards of the player, packed into a {@code long}. */
+   long getPlayerCards() {
+      return playerCards;
+   }
+
+   @Override
+   public Status getStatus() {
+      return status;
+   }
+
+   @Override
+   public boolean isComplete() {
+      return true;
+   }
+
+   /**
+    * Always throws an exception, as a frozen game is complete.
+    *
+    * @throws GameVersionMismatchException
+    *            if this game is not at {@code expectedVersion}
+    * @throws GameAlreadyCompleteException
+    *            if this game is at {@code expectedVersion}
+    */
+   @Override
+   public GameState hit(int expectedVersion) {
+      throw rejectUpdate(expectedVersion);
+   }
+
+   /**
+    * Always throws an exception, as a frozen game is complete.
+    *
+    * @throws GameVersionMismatchException
+    *            if this game is not at {@code expectedVersion}
+    * @throws GameAlreadyCompleteException
+    *            if this game is at {@code expectedVersion}
+    */
+   @Override
+   public GameState stand(int expectedVersion) {
+      throw rejectUpdate(expectedVersion);
+   }
+
+   /** Returns the same exception as {@code Game} would throw when attempting to update it once complete - checking the version first. */
+   private RuntimeException rejectUpdate(int expectedVersion) {
+      if (expectedVersion != ANY_VERSION && expectedVersion != version) {
+         return new GameVersionMismatchException(id, expectedVersion, version);
+      } else {
+         return new GameAlreadyCompleteException(id);
+      }
+   }
+
+   /**
+    * A state recreated by a frozen game, along with the packed cards it was recreated from - so it is only reused by a game with the same final state, even
+    * if another game has the same ID (e.g. as it was created by another store).
+    */
+   private static final class CachedState {
+      private final long dealerCards;
+      private final long playerCards;
+      private final GameState state;
+
+      CachedState(FrozenGame game, GameState state) {
+         this.dealerCards = game.dealerCards;
+         this.playerCards = game.playerCards;
+         this.state = state;
+      }
+
+      boolean isStateOf(FrozenGame game) {
+         return dealerCards == game.dealerCards && playerCards == game.playerCards && state.getVersion() == game.version
+               && state.getStatus() == game.status && state.getId().equals(game.id);
+      }
+   }
+}
@@ -0,0 +1,982 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.example.blackjack.view.Status;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * A cold tier for the completed games of a {@link MemoryGameStore} - completed games that have not been accessed for {@code blackjack.store.archive.after}
+ * are moved off the heap, into fixed-size memory-mapped segment files in {@code blackjack.store.archive.directory}.
+ * <p>
+ * Even once frozen, a completed game held by the store costs around 200 bytes of heap spread over several objects - the entry, the {@link FrozenGame}, its
+ * ID and a node of the map - every one of which the garbage collector has to trace. An archived game is instead a record of {@value #RECORD_SIZE} bytes in a
+ * segment, holding the same values as a {@code FrozenGame} - so it is the operating system that decides which segments are kept in memory, paging out those
+ * that are not being read. The only heap used for each archived game is a slot in a table mapping its ID (as the {@code long} generated by
+ * {@link GameIdGenerator}) to the position of its record, and a slot in the arrays listing the games of its user. These are all primitive arrays, which the
+ * garbage collector never has to look inside - however many games are archived.
+ * <p>
+ * Records are only ever written to the newest segment. Removing a game only removes it from the table, leaving its record in place. Once fewer than half of
+ * the records of a segment remain, {@link #compact()} copies them to the newest segment and deletes the old one - so the space used on disk is at most around
+ * twice that needed by the games in the archive. A segment whose games have all been removed is deleted straight away.
+ * <p>
+ * Each archived game keeps the sequence number it was given by the {@link UserGameIndex} of its user, so the store can list the games of a user in the order
+ * they were created, whether they are archived or not. Records are never updated, so a game that is read from the archive still expires according to when
+ * it was last accessed before it was archived.
+ * <p>
+ * The archive extends the memory of the store, rather than persisting it. Any segments left in the directory are deleted when the archive is opened, and
+ * every segment is deleted when it is closed - if the journal is enabled, archived games are restored from the journal along with every other game.
+ * <p>
+ * Thread-safe. Finding and listing games share a read lock, so are only blocked while games are being added, removed or moved between segments.
+ * <p>
+ * The archive is only used if the {@code blackjack.store.archive.enabled} property is {@code true}.
+ */
+@Component
+@ConditionalOnProperty(name = "blackjack.store.archive.enabled", havingValue = "true")
+@ManagedResource(objectName = "com.example.blackjack.model:name=GameArchive", description = "Memory-mapped archive of completed games.")
+public final class GameArchive {
+   private static final Logger LOG = LoggerFactory.getLogger(GameArchive.class);
+   // offsets, within each record, of the values of a game
+   private static final int ID_OFFSET = 0;
+   private static final int LAST_ACCESSED_OFFSET = 8;
+   private static final int DEALER_CARDS_OFFSET = 16;
+   private static final int PLAYER_CARDS_OFFSET = 24;
+   private static final int USER_OFFSET = 32;
+   private static final int SEQUENCE_OFFSET = 36;
+   private static final int VERSION_OFFSET = 40;
+   private static final int STATUS_OFFSET = 44;
+   /** The size of each record - the 45 bytes of values, rounded up so that every {@code long} is aligned. */
+   static final int RECORD_SIZE = 48;
+   /** Returned by {@link #list(String, int, int, int, Status, List)} once every game has been examined, the same as by {@link UserGameIndex}. */
+   static final int START = UserGameIndex.START;
+   /** The position of a game that is not in the archive. No real position is negative, nor is any ID generated by {@link GameIdGenerator}. */
+   private static final long NONE = -1;
+   private static final String SEGMENT_PREFIX = "segment-";
+   private static final Status[] STATUSES = Status.values();
+
+   private final Path directory;
+   private final Duration archiveAfter;
+   private final int recordsPerSegment;
+
+   /** Guards every field below that is not thread-safe. Held for reading to find or list games, and for writing to change them. */
+   private final StampedLock lock = new StampedLock();
+   private final GameIndex index = new GameIndex();
+   private final Map<String, UserGames> users = new HashMap<>();
+   /** The games of each user, by the number used to refer to the user from a record. {@code null} for numbers not currently in use. */
+   private UserGames[] usersByNumber = new UserGames[16];
+   /** Numbers in {@link #usersByNumber} that have been used, and since freed, by a user whose games have all been removed. */
+   private int[] freeUserNumbers = new int[16];
+   private int freeUserNumberCount;
+   private int nextUserNumber;
+   /** Each segment, by the number used to refer to it from a position. {@code null} for numbers not currently in use. */
+   private Segment[] segments = new Segment[16];
+   private int segmentCount;
+   /** The segment that records are written to. {@code null} until the first game is added. */
+   private Segment active;
+   /** The number included in the name of the next segment file, so a file is never reused. */
+   private long nextFileNumber = 1;
+   private State state = State.NEW;
+
+   private final LongAdder foundCounter = new LongAdder();
+   private final LongAdder compactedCounter = new LongAdder();
+
+   /**
+    * @param directory
+    *           the directory containing the segments of the archive, created if it does not exist
+    * @param archiveAfter
+    *           how long after a completed game was last accessed it is moved to the archive
+    * @param segmentSize
+    *           the size of each segment file
+    * @throws IllegalArgumentException
+    *            if {@code archiveAfter} is negative, or {@code segmentSize} is smaller than one record or larger than 2GB
+    */
+   @Autowired
+   GameArchive(@Value("${blackjack.store.archive.directory:archive}") Path directory, @Value("${blackjack.store.archive.after:1h}") Duration archiveAfter,
+               @Value("${blackjack.store.archive.segment-size:64MB}") DataSize segmentSize) {
+      this(directory, archiveAfter, segmentSize.toBytes());
+   }
+
+   GameArchive(Path directory, Duration archiveAfter, long segmentSize) {
+      if (archiveAfter.isNegative()) {
+         throw new IllegalArgumentException("archive after must not be negative but was " + archiveAfter);
+      }
+      if (segmentSize < RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+         throw new IllegalArgumentException("segment size must be between " + RECORD_SIZE + " and " + Integer.MAX_VALUE + " bytes but was " + segmentSize);
+      }
+      this.directory = requireNonNull(directory);
+      this.archiveAfter = archiveAfter;
+      this.recordsPerSegment = (int) (segmentSize / RECORD_SIZE);
+   }
+
+   /** Returns how long after a completed game was last accessed it should be moved to the archive. */
+   Duration getArchiveAfter() {
+      return archiveAfter;
+   }
+
+   /**
+    * Creates the directory, if it does not exist, and deletes any segments left in it by a previous run.
+    *
+    * @throws UncheckedIOException
+    *            if the directory could not be created, or a segment could not be deleted
+    * @throws IllegalStateException
+    *            if the archive has already been opened
+    */
+   void open() {
+      long stamp = lock.writeLock();
+      try {
+         if (state != State.NEW) {
+            throw new IllegalStateException("archive has already been opened");
+         }
+         Files.createDirectories(directory);
+         try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+               Files.delete(file);
+            }
+         }
+         state = State.OPEN;
+      } catch (IOException e) {
+         throw new UncheckedIOException("could not open archive " + directory, e);
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   /** Deletes every segment. Any further attempt to use the archive fails with an {@code IllegalStateException}. */
+   @PreDestroy
+   void close() {
+      long stamp = lock.writeLock();
+      try {
+         for (Segment segment : segments) {
+            if (segment != null) {
+               delete(segment);
+            }
+         }
+         active = null;
+         state = State.CLOSED;
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   /**
+    * Adds a completed game to the archive.
+    *
+    * @param sequence
+    *           the sequence number of the game in the {@link UserGameIndex} of its user
+    * @param lastAccessed
+    *           the time the game was last accessed, in milliseconds, used to decide when it expires
+    * @throws IllegalArgumentException
+    *            if the ID of the game was not generated by a {@link GameIdGenerator}, or a game with the same ID has already been archived
+    * @throws UncheckedIOException
+    *            if a new segment was needed, but could not be created
+    */
+   void add(String username, int sequence, FrozenGame game, long lastAccessed) {
+      long id = GameIdGenerator.decode(game.getId());
+      long stamp = lock.writeLock();
+      try {
+         assertOpen();
+         if (index.get(id) != NONE) {
+            throw new IllegalArgumentException("game already archived with game id " + game.getId());
+         }
+         UserGames user = users.get(username);
+         if (isNull(user)) {
+            user = addUser(username);
+         }
+         long position = allocate();
+         Segment segment = segment(position);
+         ByteBuffer buffer = segment.buffer;
+         int offset = offset(position);
+         buffer.putLong(offset + ID_OFFSET, id);
+         buffer.putLong(offset + LAST_ACCESSED_OFFSET, lastAccessed);
+         buffer.putLong(offset + DEALER_CARDS_OFFSET, game.getDealerCards());
+         buffer.putLong(offset + PLAYER_CARDS_OFFSET, game.getPlayerCards());
+         buffer.putInt(offset + USER_OFFSET, user.number);
+         buffer.putInt(offset + SEQUENCE_OFFSET, sequence);
+         buffer.putInt(offset + VERSION_OFFSET, game.getVersion());
+         buffer.put(offset + STATUS_OFFSET, (byte) game.getStatus().ordinal());
+         segment.live++;
+         segment.minLastAccessed = Math.min(segment.minLastAccessed, lastAccessed);
+         index.put(id, position);
+         user.add(sequence, position);
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   /** Returns the archived game with the given ID, or {@code null} if there is no such game or it belongs to another user. */
+   FrozenGame find(String username, String gameId) {
+      long id = decode(gameId);
+      long stamp = lock.readLock();
+      try {
+         assertOpen();
+         long position = id == NONE ? NONE : index.get(id);
+         if (position == NONE || !user(position).username.equals(username)) {
+            return null;
+         }
+         foundCounter.increment();
+         return read(gameId, position);
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   /** Returns {@code true} if the game with the given ID is in the archive, else {@code false}. */
+   boolean contains(String gameId) {
+      long id = decode(gameId);
+      long stamp = lock.readLock();
+      try {
+         assertOpen();
+         return id != NONE && index.get(id) != NONE;
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   /**
+    * Removes the game with the given ID from the archive.
+    *
+    * @return {@code true} if the game was removed, or {@code false} if it was not in the archive
+    */
+   boolean remove(String gameId) {
+      long id = decode(gameId);
+      long stamp = lock.writeLock();
+      try {
+         assertOpen();
+         long position = id == NONE ? NONE : index.get(id);
+         if (position == NONE) {
+            return false;
+         }
+         remove(position);
+         return true;
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   /**
+    * Removes every game last accessed before the given time.
+    * <p>
+    * Only the segments that contain such a game are read, as the earliest time a game of each segment was last accessed is kept in memory.
+    *
+    * @param removed
+    *           passed the ID of each game removed - called while holding the lock of the archive, so must not call back into it
+    * @return the number of games removed
+    */
+   long removeExpired(long expiryThreshold, Consumer<String> removed) {
+      long count = 0;
+      long stamp = lock.writeLock();
+      try {
+         assertOpen();
+         for (Segment segment : segments.clone()) {
+            if (isNull(segment) || segment.minLastAccessed >= expiryThreshold) {
+               continue;
+            }
+            long minLastAccessed = Long.MAX_VALUE;
+            for (int record = 0; record < segment.used && segment.live > 0; record++) {
+               long position = position(segment, record);
+               int offset = offset(position);
+               if (index.get(segment.buffer.getLong(offset + ID_OFFSET)) != position) {
+                  continue;
+               }
+               long lastAccessed = segment.buffer.getLong(offset + LAST_ACCESSED_OFFSET);
+               if (lastAccessed < expiryThreshold) {
+                  long id = segment.buffer.getLong(offset + ID_OFFSET);
+                  remove(position);
+                  removed.accept(GameIdGenerator.encode(id));
+                  count++;
+               } else {
+                  minLastAccessed = Math.min(minLastAccessed, lastAccessed);
+               }
+            }
+            segment.minLastAccessed = minLastAccessed;
+         }
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+      return count;
+   }
+
+   /**
+    * Removes up to the given number of games, oldest segment first - as games are archived in roughly the order they were last accessed, these are
+    * roughly the least recently accessed games.
+    *
+    * @param removed
+    *           passed the ID of each game removed - called while holding the lock of the archive, so must not call back into it
+    * @return the number of games removed
+    */
+   long removeOldest(long limit, Consumer<String> removed) {
+      long count = 0;
+      long stamp = lock.writeLock();
+      try {
+         assertOpen();
+         List<Segment> oldestFirst = new ArrayList<>(segmentCount);
+         for (Segment segment : segments) {
+            if (segment != null) {
+               oldestFirst.add(segment);
+            }
+         }
+         oldestFirst.sort(Comparator.comparingLong(s -> s.fileNumber));
+         for (Segment segment : oldestFirst) {
+            for (int record = 0; record < segment.used && segment.live > 0 && count < limit; record++) {
+               long position = position(segment, record);
+               long id = segment.buffer.getLong(offset(position) + ID_OFFSET);
+               if (index.get(id) == position) {
+                  remove(position);
+                  removed.accept(GameIdGenerator.encode(id));
+                  count++;
+               }
+            }
+         }
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+      return count;
+   }
+
+   /**
+    * Removes up to the given number of the games of a user, in the order they were created.
+    *
+    * @param removed
+    *           passed the ID of each game removed - called while holding the lock of the archive, so must not call back into it
+    * @return the number of games removed
+    */
+   int removeOldest(String username, int limit, Consumer<String> removed) {
+      int count = 0;
+      long stamp = lock.writeLock();
+      try {
+         assertOpen();
+         UserGames user = users.get(username);
+         while (count < limit && user != null && user.size > 0) {
+            long position = user.first();
+            long id = segment(position).buffer.getLong(offset(position) + ID_OFFSET);
+            remove(position);
+            removed.accept(GameIdGenerator.encode(id));
+            count++;
+         }
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+      return count;
+   }
+
+   /** Must be called while holding the write lock. */
+   private void remove(long position) {
+      Segment segment = segment(position);
+      int offset = offset(position);
+      UserGames user = usersByNumber[segment.buffer.getInt(offset + USER_OFFSET)];
+      index.remove(segment.buffer.getLong(offset + ID_OFFSET));
+      user.remove(segment.buffer.getInt(offset + SEQUENCE_OFFSET));
+      if (user.size == 0) {
+         removeUser(user);
+      }
+      segment.live--;
+      if (segment.live == 0 && segment != active) {
+         delete(segment);
+      }
+   }
+
+   /**
+    * Copies the games of every segment in which fewer than half of the records remain to the newest segment, and deletes the segment they were copied from.
+    * <p>
+    * The lock is released between segments, so games can continue to be found while a large archive is compacted.
+    *
+    * @throws UncheckedIOException
+    *            if a new segment was needed, but could not be created
+    */
+   @ManagedOperation(description = "Moves the games of each segment in which fewer than half the records remain to the newest segment, then deletes it.")
+   public void compact() {
+      Segment[] candidates;
+      long stamp = lock.readLock();
+      try {
+         assertOpen();
+         candidates = segments.clone();
+      } finally {
+         lock.unlockRead(stamp);
+      }
+
+      for (Segment segment : candidates) {
+         stamp = lock.writeLock();
+         try {
+            // checks the segment is still in use, as it may have been deleted since the candidates were found
+            if (state == State.OPEN && segment != null && segments[segment.number] == segment && segment != active && segment.live < recordsPerSegment / 2) {
+               compact(segment);
+            }
+         } finally {
+            lock.unlockWrite(stamp);
+         }
+      }
+   }
+
+   private void compact(Segment segment) {
+      for (int record = 0; record < segment.used; record++) {
+         long position = position(segment, record);
+         int offset = offset(position);
+         long id = segment.buffer.getLong(offset + ID_OFFSET);
+         if (index.get(id) != position) {
+            continue;
+         }
+         long newPosition = allocate();
+         Segment target = segment(newPosition);
+         target.buffer.put(offset(newPosition), segment.buffer, offset, RECORD_SIZE);
+         target.live++;
+         target.minLastAccessed = Math.min(target.minLastAccessed, segment.buffer.getLong(offset + LAST_ACCESSED_OFFSET));
+         index.put(id, newPosition);
+         usersByNumber[segment.buffer.getInt(offset + USER_OFFSET)].move(segment.buffer.getInt(offset + SEQUENCE_OFFSET), newPosition);
+      }
+      delete(segment);
+      compactedCounter.increment();
+   }
+
+   /**
+    * Adds games to {@code results}, in the order they were created, starting after the given sequence number - in the same way as
+    * {@link UserGameIndex#list(int, int, int, java.util.function.Predicate, List)}.
+    *
+    * @param status
+    *           only games with this status are added to {@code results}, or {@code null} for every game
+    * @return the value to pass as {@code after} to continue from where this call stopped, or {@link #START} if there are no more games to examine
+    */
+   int list(String username, int after, int limit, int maxExamined, Status status, List<ArchivedGame> results) {
+      long stamp = lock.readLock();
+      try {
+         assertOpen();
+         UserGames user = users.get(username);
+         if (isNull(user)) {
+            return START;
+         }
+         int i = Arrays.binarySearch(user.sequences, 0, user.end, after);
+         i = i < 0 ? -i - 1 : i + 1;
+         int added = 0;
+         int examined = 0;
+         while (i < user.end && added < limit && examined < maxExamined) {
+            long position = user.positions[i];
+            if (position != NONE && (isNull(status) || status(position) == status)) {
+               results.add(new ArchivedGame(user.sequences[i], read(position)));
+               added++;
+            }
+            examined++;
+            i++;
+         }
+         while (i < user.end && user.positions[i] == NONE) {
+            i++;
+         }
+         return i < user.end ? user.sequences[i - 1] : START;
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   /**
+    * Returns every archived game of the given user, in the order they were created, and marks the user so {@link #forEachUnmarked(int, BiConsumer)} skips
+    * them.
+    */
+   List<ArchivedGame> snapshot(String username, int mark) {
+      long stamp = lock.writeLock();
+      try {
+         assertOpen();
+         UserGames user = users.get(username);
+         if (isNull(user)) {
+            return List.of();
+         }
+         user.mark = mark;
+         return snapshot(user);
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   /**
+    * Passes the username, and every archived game, of each user not marked with the given value by {@link #snapshot(String, int)}.
+    * <p>
+    * The lock is only held while the games of each user are copied - not while they are passed to {@code action} - so games can continue to be found,
+    * added and removed.
+    */
+   void forEachUnmarked(int mark, BiConsumer<String, List<ArchivedGame>> action) {
+      for (int number = 0;; number++) {
+         String username;
+         List<ArchivedGame> games;
+         long stamp = lock.readLock();
+         try {
+            assertOpen();
+            if (number >= nextUserNumber) {
+               return;
+            }
+            UserGames user = usersByNumber[number];
+            if (isNull(user) || user.mark == mark) {
+               continue;
+            }
+            username = user.username;
+            games = snapshot(user);
+         } finally {
+            lock.unlockRead(stamp);
+         }
+         action.accept(username, games);
+      }
+   }
+
+   private List<ArchivedGame> snapshot(UserGames user) {
+      List<ArchivedGame> games = new ArrayList<>(user.size);
+      for (int i = 0; i < user.end; i++) {
+         if (user.positions[i] != NONE) {
+            games.add(new ArchivedGame(user.sequences[i], read(user.positions[i])));
+         }
+      }
+      return games;
+   }
+
+   /** Returns the number of archived games of the given user. */
+   int count(String username) {
+      long stamp = lock.readLock();
+      try {
+         assertOpen();
+         UserGames user = users.get(username);
+         return isNull(user) ? 0 : user.size;
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   /** Returns the users with at least one archived game. */
+   List<String> getUsernames() {
+      long stamp = lock.readLock();
+      try {
+         assertOpen();
+         return new ArrayList<>(users.keySet());
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   /** Returns a sequence number greater than that of any archived game of the given user, so it can be used for a game created after all of them. */
+   int nextSequence(String username) {
+      long stamp = lock.readLock();
+      try {
+         assertOpen();
+         UserGames user = users.get(username);
+         return isNull(user) ? 0 : user.sequences[user.end - 1] + 1;
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   private UserGames addUser(String username) {
+      int number;
+      if (freeUserNumberCount > 0) {
+         number = freeUserNumbers[--freeUserNumberCount];
+      } else {
+         number = nextUserNumber++;
+         if (number == usersByNumber.length) {
+            usersByNumber = Arrays.copyOf(usersByNumber, number * 2);
+         }
+      }
+      UserGames user = new UserGames(username, number);
+      usersByNumber[number] = user;
+      users.put(username, user);
+      return user;
+   }
+
+   private void removeUser(UserGames user) {
+      users.remove(user.username);
+      usersByNumber[user.number] = null;
+      if (freeUserNumberCount == freeUserNumbers.length) {
+         freeUserNumbers = Arrays.copyOf(freeUserNumbers, freeUserNumberCount * 2);
+      }
+      freeUserNumbers[freeUserNumberCount++] = user.number;
+   }
+
+   /** Returns the position of the next record of {@link #active}, first creating a new segment if it is full. */
+   private long allocate() {
+      if (isNull(active) || active.used == recordsPerSegment) {
+         Segment full = active;
+         active = createSegment();
+         if (full != null && full.live == 0) {
+            delete(full);
+         }
+      }
+      return position(active, active.used++);
+   }
+
+   private Segment createSegment() {
+      int number = 0;
+      while (number < segments.length && segments[number] != null) {
+         number++;
+      }
+      if (number == segments.length) {
+         segments = Arrays.copyOf(segments, number * 2);
+      }
+      Path file = directory.resolve(String.format("%s%019d", SEGMENT_PREFIX, nextFileNumber));
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+         // the mapping remains valid once the channel is closed
+         MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+         Segment segment = new Segment(number, nextFileNumber++, file, buffer);
+         segments[number] = segment;
+         segmentCount++;
+         return segment;
+      } catch (IOException e) {
+         throw new UncheckedIOException("could not create " + file, e);
+      }
+   }
+
+   /**
+    * Deletes the file of a segment that no longer contains any game.
+    * <p>
+    * A mapping is only released once its buffer is garbage collected, which may not be for a long time - so the file is truncated first, to release its
+    * space on disk straight away. Nothing reads the buffer again, as no position in the segment remains in {@link #index}.
+    */
+   private void delete(Segment segment) {
+      segments[segment.number] = null;
+      segmentCount--;
+      try {
+         try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+         }
+         Files.delete(segment.file);
+      } catch (IOException e) {
+         LOG.warn("Could not delete " + segment.file, e);
+      }
+   }
+
+   private FrozenGame read(long position) {
+      return read(GameIdGenerator.encode(segment(position).buffer.getLong(offset(position) + ID_OFFSET)), position);
+   }
+
+   private FrozenGame read(String gameId, long position) {
+      ByteBuffer buffer = segment(position).buffer;
+      int offset = offset(position);
+      return new FrozenGame(gameId, STATUSES[buffer.get(offset + STATUS_OFFSET)], buffer.getInt(offset + VERSION_OFFSET),
+                  buffer.getLong(offset + DEALER_CARDS_OFFSET), buffer.getLong(offset + PLAYER_CARDS_OFFSET));
+   }
+
+   private Status status(long position) {
+      return STATUSES[segment(position).buffer.get(offset(position) + STATUS_OFFSET)];
+   }
+
+   private UserGames user(long position) {
+      return usersByNumber[segment(position).buffer.getInt(offset(position) + USER_OFFSET)];
+   }
+
+   /** Returns the position of a record, combining the number of its segment with its index within the segment. */
+   private static long position(Segment segment, int record) {
+      return (long) segment.number << Integer.SIZE | record;
+   }
+
+   private Segment segment(long position) {
+      return segments[(int) (position >>> Integer.SIZE)];
+   }
+
+   private static int offset(long position) {
+      return (int) position * RECORD_SIZE;
+   }
+
+   /** Returns the {@code long} represented by the given game ID, or {@link #NONE} if it was not generated by a {@link GameIdGenerator}. */
+   private static long decode(String gameId) {
+      try {
+         return GameIdGenerator.decode(gameId);
+      } catch (IllegalArgumentException e) {
+         return NONE;
+      }
+   }
+
+   /** Must be called while holding the lock. */
+   private void assertOpen() {
+      if (state != State.OPEN) {
+         throw new IllegalStateException("archive is " + state.name().toLowerCase());
+      }
+   }
+
+   @ManagedAttribute(description = "Number of games in the archive.")
+   public long getGameCount() {
+      long stamp = lock.readLock();
+      try {
+         return index.size;
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   @ManagedAttribute(description = "Number of segment files.")
+   public int getSegmentCount() {
+      long stamp = lock.readLock();
+      try {
+         return segmentCount;
+      } finally {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   @ManagedAttribute(description = "Total size, in bytes, of the segment files.")
+   public long getSegmentBytes() {
+      return (long) getSegmentCount() * recordsPerSegment * RECORD_SIZE;
+   }
+
+   @ManagedAttribute(description = "Number of games found in the archive, as they were no longer in memory.")
+   public long getFoundCount() {
+      return foundCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of segments deleted once their remaining games had been moved to the newest segment.")
+   public long getCompactedCount() {
+      return compactedCounter.sum();
+   }
+
+   /** A game in the archive, along with its sequence number in the {@link UserGameIndex} of its user. */
+   static final class ArchivedGame {
+      private final int sequence;
+      private final FrozenGame game;
+
+      ArchivedGame(int sequence, FrozenGame game) {
+         this.sequence = sequence;
+         this.game = game;
+      }
+
+      int getSequence() {
+         return sequence;
+      }
+
+      FrozenGame getGame() {
+         return game;
+      }
+   }
+
+   /** A memory-mapped segment file. */
+   private static final class Segment {
+      /** Included in the position of each record, so a game can be found from its position. Reused once the segment has been deleted. */
+      private final int number;
+      /** Included in the file name. Never reused, so also gives the order the segments were created in. */
+      private final long fileNumber;
+      private final Path file;
+      private final MappedByteBuffer buffer;
+      /** The number of records written. */
+      private int used;
+      /** The number of records of games that have not been removed. */
+      private int live;
+      /** The earliest time any game of this segment was last accessed - so segments without expired games need not be read. */
+      private long minLastAccessed = Long.MAX_VALUE;
+
+      Segment(int number, long fileNumber, Path file, MappedByteBuffer buffer) {
+         this.number = number;
+         this.fileNumber = fileNumber;
+         this.file = file;
+         this.buffer = buffer;
+      }
+   }
+
+   /**
+    * The archived games of a user, as the positions of their records in ascending order of sequence number.
+    * <p>
+    * Laid out in the same way as {@link UserGameIndex} - parallel arrays of sequence numbers and positions, with removed games leaving a gap until the gaps
+    * outnumber the games. Games are usually archived in roughly the order they were created, so adding a game rarely has to move others.
+    */
+   private static final class UserGames {
+      private static final int INITIAL_CAPACITY = 2;
+
+      private final String username;
+      /** Referred to by each record of the user's games. */
+      private final int number;
+      private int[] sequences = new int[INITIAL_CAPACITY];
+      /** {@link #NONE} where a game has been removed. */
+      private long[] positions = new long[INITIAL_CAPACITY];
+      private int end;
+      private int size;
+      /** Set by {@link GameArchive#snapshot(String, int)}. */
+      private int mark = -1;
+
+      UserGames(String username, int number) {
+         this.username = username;
+         this.number = number;
+      }
+
+      void add(int sequence, long position) {
+         if (end == sequences.length) {
+            if (size <= end / 2) {
+               compact();
+            } else {
+               sequences = Arrays.copyOf(sequences, end * 2);
+               positions = Arrays.copyOf(positions, end * 2);
+            }
+         }
+         int i = end;
+         while (i > 0 && sequences[i - 1] > sequence) {
+            i--;
+         }
+         System.arraycopy(sequences, i, sequences, i + 1, end - i);
+         System.arraycopy(positions, i, positions, i + 1, end - i);
+         sequences[i] = sequence;
+         positions[i] = position;
+         end++;
+         size++;
+      }
+
+      void remove(int sequence) {
+         positions[Arrays.binarySearch(sequences, 0, end, sequence)] = NONE;
+         size--;
+         if (size < end / 2) {
+            compact();
+         }
+      }
+
+      void move(int sequence, long position) {
+         positions[Arrays.binarySearch(sequences, 0, end, sequence)] = position;
+      }
+
+      /** Returns the position of the game with the lowest sequence number. Must only be called if the user has at least one game. */
+      long first() {
+         int i = 0;
+         while (positions[i] == NONE) {
+            i++;
+         }
+         return positions[i];
+      }
+
+      private void compact() {
+         int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+         int[] compactedSequences = new int[capacity];
+         long[] compactedPositions = new long[capacity];
+         int j = 0;
+         for (int i = 0; i < end; i++) {
+            if (positions[i] != NONE) {
+               compactedSequences[j] = sequences[i];
+               compactedPositions[j] = positions[i];
+               j++;
+            }
+         }
+         sequences = compactedSequences;
+         positions = compactedPositions;
+         end = size;
+      }
+   }
+
+   /**
+    * Maps the ID of each archived game to the position of its record.
+    * <p>
+    * An open-addressing hash table with linear probing - the IDs and positions are held in parallel arrays, so no object is allocated for each game. A slot is
+    * empty if its position is {@link #NONE}. On removal, the games that follow in the same run of slots are shifted back to fill the gap, rather than
+    * leaving a marker - so lookups never have to skip over removed games.
+    */
+   private static final class GameIndex {
+      private static final int INITIAL_CAPACITY = 1 << 10;
+      /** Multiplied by each ID so that its higher bits, which are used to choose its slot, depend on every bit of the ID. */
+      private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+      private long[] ids;
+      private long[] positions;
+      private int shift;
+      private int mask;
+      private int size;
+
+      GameIndex() {
+         allocate(INITIAL_CAPACITY);
+      }
+
+      long get(long id) {
+         for (int slot = slot(id);; slot = (slot + 1) & mask) {
+            long position = positions[slot];
+            if (position == NONE || ids[slot] == id) {
+               return position;
+            }
+         }
+      }
+
+      void put(long id, long position) {
+         int slot = slot(id);
+         while (positions[slot] != NONE && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+         }
+         if (positions[slot] == NONE) {
+            size++;
+         }
+         ids[slot] = id;
+         positions[slot] = position;
+         // resized once three quarters full, to keep runs of occupied slots short
+         if (size > positions.length - (positions.length >> 2)) {
+            resize();
+         }
+      }
+
+      void remove(long id) {
+         int hole = slot(id);
+         while (ids[hole] != id || positions[hole] == NONE) {
+            if (positions[hole] == NONE) {
+               return;
+            }
+            hole = (hole + 1) & mask;
+         }
+         for (int slot = (hole + 1) & mask; positions[slot] != NONE; slot = (slot + 1) & mask) {
+            // a game can fill the hole if the hole is between its own slot and where it is now
+            int home = slot(ids[slot]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+               ids[hole] = ids[slot];
+               positions[hole] = positions[slot];
+               hole = slot;
+            }
+         }
+         positions[hole] = NONE;
+         size--;
+      }
+
+      private int slot(long id) {
+         return (int) ((id * HASH_MULTIPLIER) >>> shift);
+      }
+
+      private void resize() {
+         long[] oldIds = ids;
+         long[] oldPositions = positions;
+         allocate(oldPositions.length * 2);
+         for (int i = 0; i < oldPositions.length; i++) {
+            if (oldPositions[i] != NONE) {
+               int slot = slot(oldIds[i]);
+               while (positions[slot] != NONE) {
+                  slot = (slot + 1) & mask;
+               }
+               ids[slot] = oldIds[i];
+               positions[slot] = oldPositions[i];
+            }
+         }
+      }
+
+      private void allocate(int capacity) {
+         ids = new long[capacity];
+         positions = new long[capacity];
+         Arrays.fill(positions, NONE);
+         shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+         mask = capacity - 1;
+      }
+   }
+
+   private enum State {
+      NEW, OPEN, CLOSED
+   }
+}
@@ -0,0 +1,103 @@
+package com.example.blackjack.model;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The limits that decide when {@link MemoryGameStore} removes completed games.
+ * <p>
+ * Only games that are complete are ever removed - a game that is still in progress is kept however old it is, or however many games there are. A completed
+ * game is removed once any of the following limits is exceeded:
+ * <ul>
+ * <li>{@code blackjack.store.completed-game-ttl} - how long a completed game is kept after it was last accessed.</li>
+ * <li>{@code blackjack.store.max-completed-games-per-user} - how many completed games are kept for each user, checked as soon as a game of the user
+ * completes. The least recently accessed of a sample of the user's oldest completed games are removed first.</li>
+ * <li>{@code blackjack.store.max-games} - how many completed games are kept in total, including those archived. Games in progress are not counted. The
+ * least recently accessed of a sample of completed games are removed first.</li>
+ * </ul>
+ * A value of zero disables the corresponding limit. {@code blackjack.store.eviction-interval} is how often the store is checked for games that have exceeded
+ * the TTL. The total limit is also checked as soon as a game completes that exceeds it.
+ */
+@Component
+final class GameEvictionPolicy {
+   /** A policy which never removes any games. */
+   static final GameEvictionPolicy NONE = new GameEvictionPolicy(Duration.ZERO, 0, 0, Duration.ofMinutes(1));
+
+   private final Duration completedGameTtl;
+   private final int maxCompletedGamesPerUser;
+   private final int maxGames;
+   private final Duration evictionInterval;
+
+   /**
+    * @param completedGameTtl
+    *           how long a completed game is kept after it was last accessed, or zero to keep completed games indefinitely
+    * @param maxCompletedGamesPerUser
+    *           the maximum number of completed games kept for each user, or zero for no limit
+    * @param maxGames
+    *           the maximum number of completed games kept in total, or zero for no limit
+    * @param evictionInterval
+    *           the time between checks for games that have exceeded {@code completedGameTtl} or {@code maxGames}
+    * @throws IllegalArgumentException
+    *            if any of the limits is negative or {@code evictionInterval} is not positive
+    */
+   @Autowired
+   GameEvictionPolicy(@Value("${blackjack.store.completed-game-ttl:0s}") Duration completedGameTtl,
+               @Value("${blackjack.store.max-completed-games-per-user:0}") int maxCompletedGamesPerUser,
+               @Value("${blackjack.store.max-games:0}") int maxGames, @Value("${blackjack.store.eviction-interval:1m}") Duration evictionInterval) {
+      if (completedGameTtl.isNegative()) {
+         throw new IllegalArgumentException("completed game TTL must not be negative but was " + completedGameTtl);
+      }
+      if (maxCompletedGamesPerUser < 0) {
+         throw new IllegalArgumentException("max completed games per user must not be negative but was " + maxCompletedGamesPerUser);
+      }
+      if (maxGames < 0) {
+         throw new IllegalArgumentException("max games must not be negative but was " + maxGames);
+      }
+      if (evictionInterval.isNegative() || evictionInterval.isZero()) {
+         throw new IllegalArgumentException("eviction interval must be positive but was " + evictionInterval);
+      }
+      this.completedGameTtl = completedGameTtl;
+      this.maxCompletedGamesPerUser = maxCompletedGamesPerUser;
+      this.maxGames = maxGames;
+      this.evictionInterval = evictionInterval;
+   }
+
+   /** Returns {@code true} if completed games expire once they have not been accessed for {@link #getCompletedGameTtl()}. */
+   boolean isCompletedGameTtlEnabled() {
+      return !completedGameTtl.isZero();
+   }
+
+   Duration getCompletedGameTtl() {
+      return completedGameTtl;
+   }
+
+   /** Returns {@code true} if the number of completed games kept for each user is limited to {@link #getMaxCompletedGamesPerUser()}. */
+   boolean isMaxCompletedGamesPerUserEnabled() {
+      return maxCompletedGamesPerUser != 0;
+   }
+
+   int getMaxCompletedGamesPerUser() {
+      return maxCompletedGamesPerUser;
+   }
+
+   /** Returns {@code true} if the total number of completed games kept is limited to {@link #getMaxGames()}. */
+   boolean isMaxGamesEnabled() {
+      return maxGames != 0;
+   }
+
+   int getMaxGames() {
+      return maxGames;
+   }
+
+   Duration getEvictionInterval() {
+      return evictionInterval;
+   }
+
+   /** Returns {@code true} if the store needs to be periodically checked for games that have exceeded the TTL or total limit. */
+   boolean isSweepRequired() {
+      return isCompletedGameTtlEnabled() || isMaxGamesEnabled();
+   }
+}
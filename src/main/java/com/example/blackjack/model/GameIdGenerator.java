@@ -1,18 +1,154 @@
 package com.example.blackjack.model;
 
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-/** Generates identifiers for games. */
+/**
+ * Generates identifiers for games.
+ * <p>
+ * Each identifier is a 64-bit number, made up of (from the most significant bit):
+ * <ul>
+ * <li>1 unused bit, so the number is never negative.</li>
+ * <li>{@value #TIMESTAMP_BITS} bits for the number of milliseconds since {@link #EPOCH_MILLIS 2024-01-01T00:00:00Z} - enough for 69 years.</li>
+ * <li>{@value #NODE_BITS} bits for the {@code blackjack.node-id} property, so that each instance of the service generates different identifiers. Each
+ * instance sharing the same games must be configured with a different node ID.</li>
+ * <li>{@value #SEQUENCE_BITS} bits for a sequence, so up to {@value #SEQUENCE_LIMIT} identifiers can be generated in the same millisecond.</li>
+ * </ul>
+ * The timestamp and sequence are held together in a single {@code AtomicLong}, so generating an identifier is a single compare-and-set - there is no lock
+ * and, unlike {@code UUID.randomUUID()}, no shared {@code SecureRandom}. Each identifier is the greater of one more than the previous identifier and the
+ * first identifier of the current millisecond. So identifiers are always increasing - if the sequence of a millisecond is used up, or the clock goes back,
+ * identifiers borrow from the following milliseconds rather than waiting for the clock to catch up.
+ * <p>
+ * Identifiers are rendered as {@value #ENCODED_LENGTH} base62 digits (e.g. {@code 00AbcdEFgh1}), left padded with zeros and using digits in ASCII order -
+ * so comparing the strings gives the same order as comparing the numbers, i.e. the order in which the games were created.
+ */
 @Component
 class GameIdGenerator {
+   /** The time, in milliseconds since the Unix epoch, that timestamps are measured from. 2024-01-01T00:00:00Z */
+   static final long EPOCH_MILLIS = 1_704_067_200_000L;
+   static final int NODE_BITS = 10;
+   static final int SEQUENCE_BITS = 12;
+   static final int TIMESTAMP_BITS = Long.SIZE - 1 - NODE_BITS - SEQUENCE_BITS;
+   /** The number of node IDs - node IDs range from 0 to one less than this value. */
+   static final int NODE_LIMIT = 1 << NODE_BITS;
+   /** The number of identifiers that can be generated in the same millisecond. */
+   static final int SEQUENCE_LIMIT = 1 << SEQUENCE_BITS;
+   static final int ENCODED_LENGTH = 11;
+   private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+   private static final int BASE = DIGITS.length;
+
+   private final long node;
+   private final LongSupplier clock;
+   /** The timestamp and sequence of the most recently generated identifier. */
+   private final AtomicLong last = new AtomicLong();
+
+   /**
+    * @param nodeId
+    *           identifies this instance of the service, so identifiers generated by different instances are unique
+    * @throws IllegalArgumentException
+    *            if {@code nodeId} is not in the range 0 to {@value #NODE_LIMIT} (exclusive)
+    */
+   @Autowired
+   GameIdGenerator(@Value("${blackjack.node-id:0}") int nodeId) {
+      this(nodeId, System::currentTimeMillis);
+   }
+
+   /**
+    * @param nodeId
+    *           identifies this instance of the service, so identifiers generated by different instances are unique
+    * @param clock
+    *           returns the current time, in milliseconds since the Unix epoch
+    * @throws IllegalArgumentException
+    *            if {@code nodeId} is not in the range 0 to {@value #NODE_LIMIT} (exclusive)
+    */
+   GameIdGenerator(int nodeId, LongSupplier clock) {
+      if (nodeId < 0 || nodeId >= NODE_LIMIT) {
+         throw new IllegalArgumentException("node id must be between 0 and " + (NODE_LIMIT - 1) + " but was " + nodeId);
+      }
+      this.node = (long) nodeId << SEQUENCE_BITS;
+      this.clock = clock;
+   }
+
    /**
     * Returns a new identifier.
     *
-    * @return a {@code String} representation of a type 4 (pseudo randomly generated) UUID. e.g. {@code d8558043-3cbd-4edb-9f86-75ec5a32047f}
+    * @return a {@code String} of {@value #ENCODED_LENGTH} base62 digits. e.g. {@code 00AbcdEFgh1}
     */
    String generate() {
-      return UUID.randomUUID().toString();
+      return encode(next());
+   }
+
+   /** Returns a new identifier, as a number. */
+   long next() {
+      long first = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+      long timestampAndSequence = last.accumulateAndGet(first, (previous, x) -> Math.max(previous + 1, x));
+      long timestamp = timestampAndSequence >>> SEQUENCE_BITS;
+      long sequence = timestampAndSequence & (SEQUENCE_LIMIT - 1);
+      return timestamp << (NODE_BITS + SEQUENCE_BITS) | node | sequence;
+   }
+
+   /** Returns the time, in milliseconds since the Unix epoch, that the given identifier was generated. */
+   static long getTimestamp(long id) {
+      return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+   }
+
+   /** Returns the node ID of the instance that generated the given identifier. */
+   static int getNodeId(long id) {
+      return (int) (id >>> SEQUENCE_BITS) & (NODE_LIMIT - 1);
+   }
+
+   /**
+    * Returns the {@code String} representation of the given identifier.
+    *
+    * @throws IllegalArgumentException
+    *            if {@code id} is negative
+    */
+   static String encode(long id) {
+      if (id < 0) {
+         throw new IllegalArgumentException("id must not be negative but was " + id);
+      }
+      char[] encoded = new char[ENCODED_LENGTH];
+      for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+         encoded[i] = DIGITS[(int) (id % BASE)];
+         id /= BASE;
+      }
+      return new String(encoded);
+   }
+
+   /**
+    * Returns the identifier represented by the given {@code String}.
+    *
+    * @throws IllegalArgumentException
+    *            if {@code encoded} was not returned by {@link #encode(long)}
+    */
+   static long decode(String encoded) {
+      if (encoded.length() != ENCODED_LENGTH) {
+         throw new IllegalArgumentException("invalid id: " + encoded);
+      }
+      long id = 0;
+      for (int i = 0; i < ENCODED_LENGTH; i++) {
+         int digit = digit(encoded.charAt(i));
+         if (digit < 0 || id > (Long.MAX_VALUE - digit) / BASE) {
+            throw new IllegalArgumentException("invalid id: " + encoded);
+         }
+         id = id * BASE + digit;
+      }
+      return id;
+   }
+
+   private static int digit(char c) {
+      if (c >= '0' && c <= '9') {
+         return c - '0';
+      } else if (c >= 'A' && c <= 'Z') {
+         return c - 'A' + 10;
+      } else if (c >= 'a' && c <= 'z') {
+         return c - 'a' + 36;
+      } else {
+         return -1;
+      }
    }
 }
@@ -0,0 +1,45 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the IDs of the games belonging to a user.
+ *
+ * @see GameStore#findGameIdsByUsername(String, com.example.blackjack.view.Status, String, int)
+ */
+public final class GameIdPage {
+   /** A page with no game IDs, and no further pages. */
+   public static final GameIdPage EMPTY = new GameIdPage(Collections.emptyList(), null);
+
+   private final List<String> gameIds;
+   private final String nextCursor;
+
+   /**
+    * @param gameIds
+    *           the IDs of the games on this page, in the order the games were created
+    * @param nextCursor
+    *           identifies where the next page starts, or {@code null} if this is the last page
+    */
+   public GameIdPage(List<String> gameIds, String nextCursor) {
+      this.gameIds = Collections.unmodifiableList(requireNonNull(gameIds));
+      this.nextCursor = nextCursor;
+   }
+
+   /** Returns the IDs of the games on this page, in the order the games were created. */
+   public List<String> getGameIds() {
+      return gameIds;
+   }
+
+   /** Returns the cursor to request the next page with, or {@code null} if this is the last page. */
+   public String getNextCursor() {
+      return nextCursor;
+   }
+
+   /** Returns {@code true} if there may be further games after this page, else {@code false}. */
+   public boolean hasNext() {
+      return nextCursor != null;
+   }
+}
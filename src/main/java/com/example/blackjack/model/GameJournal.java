@@ -0,0 +1,1088 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * An append-only log of every event that changes the games in a {@link MemoryGameStore}, along with periodic checkpoints of every game in the store, from
+ * which the store is restored on startup.
+ * <p>
+ * There are four types of event - a game being created (along with the order, or seed, of its deck), the player hitting, the player standing and a game
+ * being removed from the store. As the cards dealt by each game are determined by its deck, replaying the events in the order they were appended recreates
+ * every game exactly as it was. Events for the same game are always appended in the order they were applied, as {@link PlayableGame} appends each update while
+ * holding its write lock.
+ * <p>
+ * Appending an event only copies it to an in-memory buffer. A single background thread writes everything buffered since its previous write, then forces it
+ * to disk, as one batch - so however many threads are updating games at the same time, they share one write and one {@code fsync}. This is known as group
+ * commit. While one batch is being forced to disk the next batch accumulates, so the busier the store the larger each batch and the fewer {@code fsync}s per
+ * event. A thread that has appended an event then waits, outside of any lock, until its batch is durable according to the configured {@link Durability}.
+ * {@code blackjack.store.journal.commit-delay} makes the writer wait before taking each batch, trading latency for larger batches.
+ * <p>
+ * Events are appended to numbered segment files in {@code blackjack.store.journal.directory}. A {@link Checkpoint} switches to a new segment, then writes
+ * the state of every game - so once it is complete, every earlier segment (and checkpoint) can be deleted, and startup only has to load the checkpoint and
+ * replay the segments that follow it. As games continue to be created and updated while a checkpoint is being written, a game may be recorded by the
+ * checkpoint in a state that already includes some of the events that follow it. Each update event includes the version of the game it was applied to, so
+ * these events can be recognised, and skipped, when they are replayed.
+ * <p>
+ * Each record, in both segments and checkpoints, is its length, its contents and a CRC-32C checksum of its contents. A record that was only partially
+ * written when the application stopped (or whose checksum does not match) marks the end of the log - it, and anything after it (including any later
+ * segments), is discarded when the journal is replayed. A checkpoint is written to a temporary file, which is only renamed once it is complete.
+ * <p>
+ * If a write fails then every waiting thread, and every subsequent attempt to append, fails with an {@code UncheckedIOException}. As each update is
+ * appended before it is applied, a game is never changed by an update whose event could not be appended - but an update whose event was appended, and
+ * then failed to be written, will have been applied in memory without being durable.
+ * <p>
+ * The journal is only used if the {@code blackjack.store.journal.enabled} property is {@code true}.
+ */
+@Component
+@ConditionalOnProperty(name = "blackjack.store.journal.enabled", havingValue = "true")
+@ManagedResource(objectName = "com.example.blackjack.model:name=GameJournal", description = "Append-only log of game events.")
+public final class GameJournal {
+   private static final Logger LOG = LoggerFactory.getLogger(GameJournal.class);
+   /** Written at the start of each segment, to identify it as part of a journal - "BJJN". */
+   private static final int MAGIC = 0x424A4A4E;
+   /** Written at the start of each checkpoint, to identify it as a checkpoint - "BJCP". */
+   private static final int CHECKPOINT_MAGIC = 0x424A4350;
+   private static final int FORMAT_VERSION = 2;
+   private static final int HEADER_LENGTH = Integer.BYTES * 2;
+   /** The number of bytes of a record other than its contents - the length and the checksum. */
+   private static final int RECORD_OVERHEAD = Integer.BYTES * 2;
+   /** Larger than any valid record, so a corrupt length is not mistaken for a record. */
+   private static final int MAX_RECORD_LENGTH = 1 << 20;
+   /** Once this many bytes are waiting to be written, threads appending events wait for the writer to catch up. */
+   private static final int MAX_PENDING_BYTES = 1 << 22;
+   private static final int INITIAL_BUFFER_CAPACITY = 1 << 16;
+   private static final int CHECKPOINT_BUFFER_CAPACITY = 1 << 20;
+   private static final String SEGMENT_PREFIX = "segment-";
+   private static final String CHECKPOINT_PREFIX = "checkpoint-";
+   private static final String TEMPORARY_SUFFIX = ".tmp";
+
+   // types of event
+   private static final byte CREATED = 1;
+   private static final byte HIT = 2;
+   private static final byte STOOD = 3;
+   private static final byte REMOVED = 4;
+   // types of checkpoint record
+   private static final byte USER = 1;
+   private static final byte GAME = 2;
+   private static final byte FROZEN_GAME = 3;
+   private static final byte END = 4;
+   // types of deck
+   private static final byte SHUFFLED_DECK = 1;
+   private static final byte SEEDED_DECK = 2;
+
+   private final Path directory;
+   private final Durability durability;
+   private final long commitDelayNanos;
+   private final Duration checkpointInterval;
+
+   /** Guards every field below that is not volatile, other than those only accessed by {@link #writer}. */
+   private final ReentrantLock lock = new ReentrantLock();
+   /** Signalled when there are events for the writer to write, a new segment has been requested, or the journal is being closed. */
+   private final Condition pendingCondition = lock.newCondition();
+   /** Signalled after each batch is written, or a write fails. */
+   private final Condition writtenCondition = lock.newCondition();
+   /** Events appended since the writer last took a batch. */
+   private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_CAPACITY);
+   /** The buffer being written by the writer - swapped with {@link #pending} when a batch is taken, so appending never waits for a write. */
+   private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER_CAPACITY);
+   /** The position of the end of the last event appended. Positions count the bytes of every record appended to every segment. */
+   private long appendedPosition;
+   /** The number of the segment most recently requested by a checkpoint, or being appended to if none has been requested since the journal was opened. */
+   private long requestedSegment;
+   /** The position at which the writer is to switch to {@link #requestedSegment}, or {@code -1} if the writer has already taken the request. */
+   private long segmentSwitchPosition = -1;
+   /** The number of the segment being written to by the writer. */
+   private long currentSegment;
+   private boolean checkpointInProgress;
+   private State state = State.NEW;
+   private IOException failure;
+
+   /** The position up to which every event is durable. */
+   private volatile long durablePosition;
+   /** The segment being written to. Only accessed by {@link #writer} once the journal is open. */
+   private FileChannel channel;
+   /** The position of the end of the last event written. Only accessed by {@link #writer} once the journal is open. */
+   private long writtenPosition;
+   private final Thread writer = new Thread(this::write, "game-journal-writer");
+
+   private final LongAdder eventCounter = new LongAdder();
+   private final LongAdder batchCounter = new LongAdder();
+   private final LongAdder checkpointCounter = new LongAdder();
+   private volatile long recoveredEventCount;
+   private volatile long restoredGameCount;
+   private volatile long recoveryMillis;
+   private volatile long checkpointGameCount;
+   private volatile long checkpointMillis;
+
+   /**
+    * @param directory
+    *           the directory containing the segments and checkpoints of the journal, created if it does not exist
+    * @param durability
+    *           the property value of the {@code Durability} to use
+    * @param commitDelay
+    *           how long the writer waits for further events before taking each batch - zero to take each batch as soon as the previous one is written
+    * @param checkpointInterval
+    *           how often the store writes a checkpoint - zero to only write a checkpoint when the store is stopped
+    * @throws IllegalArgumentException
+    *            if {@code durability} is not the property value of a {@code Durability} or either duration is negative
+    */
+   @Autowired
+   GameJournal(@Value("${blackjack.store.journal.directory:journal}") Path directory,
+               @Value("${blackjack.store.journal.durability:fsync}") String durability,
+               @Value("${blackjack.store.journal.commit-delay:0ms}") Duration commitDelay,
+               @Value("${blackjack.store.journal.checkpoint-interval:10m}") Duration checkpointInterval) {
+      this(directory, Durability.fromPropertyValue(durability), commitDelay, checkpointInterval);
+   }
+
+   GameJournal(Path directory, Durability durability, Duration commitDelay) {
+      this(directory, durability, commitDelay, Duration.ZERO);
+   }
+
+   GameJournal(Path directory, Durability durability, Duration commitDelay, Duration checkpointInterval) {
+      if (commitDelay.isNegative()) {
+         throw new IllegalArgumentException("commit delay must not be negative but was " + commitDelay);
+      }
+      if (checkpointInterval.isNegative()) {
+         throw new IllegalArgumentException("checkpoint interval must not be negative but was " + checkpointInterval);
+      }
+      this.directory = requireNonNull(directory);
+      this.durability = requireNonNull(durability);
+      this.commitDelayNanos = commitDelay.toNanos();
+      this.checkpointInterval = checkpointInterval;
+      this.writer.setDaemon(true);
+   }
+
+   /** Returns how often the store should write a checkpoint, or zero if it should only write a checkpoint when it is stopped. */
+   Duration getCheckpointInterval() {
+      return checkpointInterval;
+   }
+
+   /**
+    * Passes every game in the latest checkpoint, and then every event appended since the checkpoint was started, to the given listener - then opens the
+    * journal so further events can be appended.
+    * <p>
+    * Events appended while the journal is being replayed are ignored, as they are the result of replaying events that are already in the journal.
+    *
+    * @throws UncheckedIOException
+    *            if the journal could not be read or opened
+    * @throws IllegalStateException
+    *            if the journal has already been opened, or a file in the directory is not part of a journal
+    */
+   void open(Listener listener) {
+      lock.lock();
+      try {
+         if (state != State.NEW) {
+            throw new IllegalStateException("journal has already been opened");
+         }
+         state = State.REPLAYING;
+      } finally {
+         lock.unlock();
+      }
+
+      try {
+         long start = System.nanoTime();
+         Files.createDirectories(directory);
+         deleteTemporaryFiles();
+         List<Long> checkpoints = list(CHECKPOINT_PREFIX);
+         long checkpoint = checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1);
+         if (checkpoint > 0) {
+            restore(checkpointFile(checkpoint), listener);
+         }
+
+         // replay every segment started since the checkpoint, stopping at the first that does not end with a complete event
+         long segment = 0;
+         long end = 0;
+         long position = 0;
+         List<Long> segments = list(SEGMENT_PREFIX);
+         segments.removeIf(s -> s < checkpoint);
+         for (Iterator<Long> itr = segments.iterator(); itr.hasNext();) {
+            segment = itr.next();
+            Path file = segmentFile(segment);
+            if (Files.size(file) < HEADER_LENGTH) {
+               // created, but not yet written to, when the application stopped
+               Files.delete(file);
+               createSegment(segment).close();
+            }
+            end = replay(file, listener);
+            position += end - HEADER_LENGTH;
+            if (Files.size(file) > end) {
+               LOG.warn("Discarding " + (Files.size(file) - end) + " bytes from the end of " + file + " as they do not contain a complete event");
+               truncate(file, end);
+               itr.forEachRemaining(this::deleteSegment);
+            }
+         }
+         if (segment == 0) {
+            segment = Math.max(checkpoint, 1);
+            createSegment(segment).close();
+            end = HEADER_LENGTH;
+         }
+         // only left behind if the application stopped after completing a checkpoint, but before deleting what it replaced
+         deleteBefore(checkpoint);
+         recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+         LOG.info("Restored " + restoredGameCount + " games from checkpoint " + checkpoint + " and replayed " + recoveredEventCount + " events from "
+               + directory + " in " + recoveryMillis + "ms");
+
+         channel = FileChannel.open(segmentFile(segment), StandardOpenOption.WRITE);
+         channel.position(end);
+         lock.lock();
+         try {
+            appendedPosition = position;
+            durablePosition = position;
+            writtenPosition = position;
+            requestedSegment = segment;
+            currentSegment = segment;
+            state = State.OPEN;
+         } finally {
+            lock.unlock();
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException("could not open journal " + directory, e);
+      }
+      writer.start();
+   }
+
+   private Path segmentFile(long segment) {
+      return directory.resolve(fileName(SEGMENT_PREFIX, segment));
+   }
+
+   private Path checkpointFile(long segment) {
+      return directory.resolve(fileName(CHECKPOINT_PREFIX, segment));
+   }
+
+   /** Names files so that they are listed in the order they were created. */
+   private static String fileName(String prefix, long number) {
+      return String.format("%s%019d", prefix, number);
+   }
+
+   /** Returns the numbers of the files in {@link #directory} with the given prefix, in ascending order. */
+   private List<Long> list(String prefix) throws IOException {
+      List<Long> numbers = new ArrayList<>();
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+         for (Path file : files) {
+            String name = file.getFileName().toString();
+            try {
+               numbers.add(Long.parseLong(name.substring(prefix.length())));
+            } catch (NumberFormatException e) {
+               throw new IllegalStateException(file + " is not part of a journal");
+            }
+         }
+      }
+      Collections.sort(numbers);
+      return numbers;
+   }
+
+   private void deleteTemporaryFiles() throws IOException {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + TEMPORARY_SUFFIX)) {
+         for (Path file : files) {
+            Files.delete(file);
+         }
+      }
+   }
+
+   /** Deletes every segment and checkpoint that has been replaced by the checkpoint that starts at the given segment. */
+   private void deleteBefore(long segment) throws IOException {
+      for (long s : list(SEGMENT_PREFIX)) {
+         if (s < segment) {
+            Files.delete(segmentFile(s));
+         }
+      }
+      for (long c : list(CHECKPOINT_PREFIX)) {
+         if (c < segment) {
+            Files.delete(checkpointFile(c));
+         }
+      }
+   }
+
+   private void deleteSegment(long segment) {
+      try {
+         LOG.warn("Discarding " + segmentFile(segment) + " as it follows an incomplete event");
+         Files.delete(segmentFile(segment));
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private static void truncate(Path file, long size) throws IOException {
+      try (FileChannel c = FileChannel.open(file, StandardOpenOption.WRITE)) {
+         c.truncate(size);
+         c.force(true);
+      }
+   }
+
+   /** Creates a new, empty, segment - returning a channel positioned to append to it. */
+   private FileChannel createSegment(long segment) throws IOException {
+      FileChannel c = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      try {
+         c.write(ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(FORMAT_VERSION).flip());
+         c.force(true);
+      } catch (IOException e) {
+         c.close();
+         throw e;
+      }
+      return c;
+   }
+
+   /** Replays the events of the given segment, returning the position, in the file, of the end of the last complete record. */
+   private long replay(Path file, Listener listener) throws IOException {
+      return readRecords(file, MAGIC, record -> {
+         replayEvent(record, listener);
+         recoveredEventCount++;
+      });
+   }
+
+   /**
+    * Passes each game in the given checkpoint to the given listener.
+    *
+    * @throws IllegalStateException
+    *            if the checkpoint is incomplete
+    */
+   private void restore(Path file, Listener listener) throws IOException {
+      String[] username = new String[1];
+      boolean[] complete = new boolean[1];
+      readRecords(file, CHECKPOINT_MAGIC, record -> {
+         if (complete[0]) {
+            throw new IllegalStateException(file + " continues after its end");
+         }
+         byte type = record.get();
+         if (type == USER) {
+            username[0] = getString(record);
+         } else if (type == GAME) {
+            String gameId = getString(record);
+            Deck deck = getDeck(record);
+            listener.restored(gameId, username[0], deck, record.get(), record.get() != 0);
+            restoredGameCount++;
+         } else if (type == FROZEN_GAME) {
+            String gameId = getString(record);
+            Status status = Status.values()[record.get()];
+            listener.restored(username[0], new FrozenGame(gameId, status, record.getInt(), record.getLong(), record.getLong()));
+            restoredGameCount++;
+         } else if (type == END) {
+            complete[0] = true;
+         } else {
+            throw new IllegalStateException("unknown checkpoint record type " + type + " in " + file);
+         }
+      });
+      if (!complete[0]) {
+         throw new IllegalStateException(file + " is incomplete");
+      }
+   }
+
+   /** Passes the contents of each complete record in the given file to the given consumer, returning the position of the end of the last of them. */
+   private static long readRecords(Path file, int magic, Consumer<ByteBuffer> consumer) throws IOException {
+      try (InputStream in = Files.newInputStream(file); DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16))) {
+         try {
+            if (data.readInt() != magic || data.readInt() != FORMAT_VERSION) {
+               throw new IllegalStateException(file + " is not part of a journal");
+            }
+         } catch (EOFException e) {
+            throw new IllegalStateException(file + " is not part of a journal");
+         }
+
+         long position = HEADER_LENGTH;
+         CRC32C crc = new CRC32C();
+         byte[] record = new byte[256];
+         ByteBuffer buffer = ByteBuffer.wrap(record);
+         while (true) {
+            int length;
+            try {
+               length = data.readInt();
+               if (length < 1 || length > MAX_RECORD_LENGTH) {
+                  return position;
+               }
+               if (length > record.length) {
+                  record = new byte[Math.max(length, record.length * 2)];
+                  buffer = ByteBuffer.wrap(record);
+               }
+               data.readFully(record, 0, length);
+               crc.reset();
+               crc.update(record, 0, length);
+               if (data.readInt() != (int) crc.getValue()) {
+                  return position;
+               }
+            } catch (EOFException e) {
+               return position;
+            }
+
+            buffer.clear().limit(length);
+            consumer.accept(buffer);
+            position += length + RECORD_OVERHEAD;
+         }
+      }
+   }
+
+   private static void replayEvent(ByteBuffer event, Listener listener) {
+      byte type = event.get();
+      String gameId = getString(event);
+      switch (type) {
+         case CREATED:
+            String username = getString(event);
+            listener.created(gameId, username, getDeck(event));
+            break;
+         case HIT:
+            listener.hit(gameId, event.getInt());
+            break;
+         case STOOD:
+            listener.stood(gameId, event.getInt());
+            break;
+         case REMOVED:
+            listener.removed(gameId);
+            break;
+         default:
+            throw new IllegalStateException("unknown event type " + type + " for game id " + gameId);
+      }
+   }
+
+   private static Deck getDeck(ByteBuffer record) {
+      byte type = record.get();
+      if (type == SEEDED_DECK) {
+         return new SeededDeck(record.getLong());
+      } else if (type == SHUFFLED_DECK) {
+         byte[] cards = new byte[record.get()];
+         record.get(cards);
+         return new ShuffledDeck(cards);
+      } else {
+         throw new IllegalStateException("unknown deck type " + type);
+      }
+   }
+
+   private static String getString(ByteBuffer record) {
+      int length = Short.toUnsignedInt(record.getShort());
+      String s = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+      record.position(record.position() + length);
+      return s;
+   }
+
+   /**
+    * Appends the creation of a game.
+    *
+    * @return the position to pass to {@link #awaitDurable(long)}
+    * @throws IllegalArgumentException
+    *            if the order of {@code deck} cannot be recorded - i.e. it is not a {@link ShuffledDeck} or {@link SeededDeck}
+    */
+   long appendCreated(String gameId, String username, Deck deck) {
+      byte[] id = gameId.getBytes(StandardCharsets.UTF_8);
+      byte[] name = username.getBytes(StandardCharsets.UTF_8);
+      int length = 1 + Short.BYTES + checkLength(id.length) + Short.BYTES + checkLength(name.length) + deckLength(gameId, deck);
+
+      lock.lock();
+      try {
+         ByteBuffer buffer = startAppend(length);
+         if (buffer == null) {
+            return 0;
+         }
+         putDeck(buffer.put(CREATED).putShort((short) id.length).put(id).putShort((short) name.length).put(name), deck);
+         return endAppend(buffer, length);
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /** Appends the player of the given game, at the given version, hitting. Returns the position to pass to {@link #awaitDurable(long)}. */
+   long appendHit(String gameId, int version) {
+      return appendUpdate(HIT, gameId, version);
+   }
+
+   /** Appends the player of the given game, at the given version, standing. Returns the position to pass to {@link #awaitDurable(long)}. */
+   long appendStood(String gameId, int version) {
+      return appendUpdate(STOOD, gameId, version);
+   }
+
+   /**
+    * Appends the removal of the given game from the store. Returns the position to pass to {@link #awaitDurable(long)}.
+    * <p>
+    * There is no need to wait for a removal to be durable - if it is lost then the game will be restored on startup, and removed again once it is found to
+    * still exceed the limits of the eviction policy.
+    */
+   long appendRemoved(String gameId) {
+      return appendUpdate(REMOVED, gameId, -1);
+   }
+
+   private long appendUpdate(byte type, String gameId, int version) {
+      byte[] id = gameId.getBytes(StandardCharsets.UTF_8);
+      int length = 1 + Short.BYTES + checkLength(id.length) + (type == REMOVED ? 0 : Integer.BYTES);
+
+      lock.lock();
+      try {
+         ByteBuffer buffer = startAppend(length);
+         if (buffer == null) {
+            return 0;
+         }
+         buffer.put(type).putShort((short) id.length).put(id);
+         if (type != REMOVED) {
+            buffer.putInt(version);
+         }
+         return endAppend(buffer, length);
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Returns the buffer to put the contents of a record of the given length in, after its length - or {@code null} if the journal is being replayed. Must be
+    * called while holding {@link #lock}.
+    */
+   private ByteBuffer startAppend(int length) {
+      if (state == State.REPLAYING) {
+         return null;
+      }
+      while (state == State.OPEN && failure == null && pending.position() >= MAX_PENDING_BYTES) {
+         writtenCondition.awaitUninterruptibly();
+      }
+      assertOpen();
+      return ensureCapacity(length + RECORD_OVERHEAD).putInt(length);
+   }
+
+   /** Adds the checksum to the record just put in the given buffer, and returns the position of its end. Must be called while holding {@link #lock}. */
+   private long endAppend(ByteBuffer buffer, int length) {
+      CRC32C crc = new CRC32C();
+      crc.update(buffer.array(), buffer.position() - length, length);
+      buffer.putInt((int) crc.getValue());
+
+      appendedPosition += length + RECORD_OVERHEAD;
+      eventCounter.increment();
+      pendingCondition.signal();
+      return appendedPosition;
+   }
+
+   /**
+    * Returns the number of bytes needed to record the order of the given deck.
+    *
+    * @throws IllegalArgumentException
+    *            if the order of {@code deck} cannot be recorded - i.e. it is not a {@link ShuffledDeck} or {@link SeededDeck}
+    */
+   private static int deckLength(String gameId, Deck deck) {
+      if (deck instanceof SeededDeck) {
+         return 1 + Long.BYTES;
+      } else if (deck instanceof ShuffledDeck) {
+         return 1 + 1 + ((ShuffledDeck) deck).size();
+      } else {
+         throw new IllegalArgumentException("cannot record the order of " + deck.getClass().getSimpleName() + " for game id " + gameId);
+      }
+   }
+
+   /** Puts the order of the given deck, from its first card, regardless of how many cards have been dealt from it. */
+   private static ByteBuffer putDeck(ByteBuffer buffer, Deck deck) {
+      if (deck instanceof SeededDeck) {
+         return buffer.put(SEEDED_DECK).putLong(((SeededDeck) deck).getSeed());
+      } else {
+         byte[] cards = ((ShuffledDeck) deck).getCards();
+         return buffer.put(SHUFFLED_DECK).put((byte) cards.length).put(cards);
+      }
+   }
+
+   private static int checkLength(int length) {
+      if (length > 0xFFFF) {
+         throw new IllegalArgumentException("value of " + length + " bytes is too long to be recorded");
+      }
+      return length;
+   }
+
+   /** Must be called while holding {@link #lock}. */
+   private ByteBuffer ensureCapacity(int required) {
+      if (pending.remaining() < required) {
+         ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + required));
+         pending.flip();
+         larger.put(pending);
+         pending = larger;
+      }
+      return pending;
+   }
+
+   /** Must be called while holding {@link #lock}. */
+   private void assertOpen() {
+      if (failure != null) {
+         throw new UncheckedIOException("could not write to journal " + directory, failure);
+      }
+      if (state != State.OPEN) {
+         throw new IllegalStateException("journal is " + state.name().toLowerCase());
+      }
+   }
+
+   /**
+    * Waits until every event up to the given position is durable, according to the configured {@link Durability}.
+    *
+    * @param position
+    *           the value returned when appending the last event to wait for
+    * @throws UncheckedIOException
+    *            if the event could not be written
+    */
+   void awaitDurable(long position) {
+      if (durability == Durability.NONE || durablePosition >= position) {
+         return;
+      }
+
+      lock.lock();
+      try {
+         while (durablePosition < position && failure == null) {
+            writtenCondition.awaitUninterruptibly();
+         }
+         if (durablePosition < position) {
+            throw new UncheckedIOException("could not write to journal " + directory, failure);
+         }
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Starts a checkpoint. Every event appended before this method returns will be replaced by the checkpoint, so must already have been applied to the
+    * games that will be written to it.
+    * <p>
+    * Does not wait for any events to be written - the writer switches to a new segment once it has written the events appended before this method was
+    * called.
+    *
+    * @throws IllegalStateException
+    *            if the journal is not open, or another checkpoint is in progress
+    * @throws UncheckedIOException
+    *            if the checkpoint could not be created
+    */
+   Checkpoint startCheckpoint() {
+      long segment;
+      lock.lock();
+      try {
+         assertOpen();
+         if (checkpointInProgress) {
+            throw new IllegalStateException("a checkpoint is already in progress");
+         }
+         checkpointInProgress = true;
+         segment = ++requestedSegment;
+         segmentSwitchPosition = appendedPosition;
+         pendingCondition.signal();
+      } finally {
+         lock.unlock();
+      }
+
+      try {
+         return new Checkpoint(segment);
+      } catch (IOException e) {
+         endCheckpoint();
+         throw new UncheckedIOException("could not create checkpoint " + checkpointFile(segment), e);
+      }
+   }
+
+   private void endCheckpoint() {
+      lock.lock();
+      try {
+         checkpointInProgress = false;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /** Run by {@link #writer} - repeatedly writes everything that has been appended since the previous write, switching segments when requested. */
+   private void write() {
+      while (true) {
+         long end;
+         long switchPosition;
+         long segment;
+         lock.lock();
+         try {
+            while (pending.position() == 0 && segmentSwitchPosition < 0 && state == State.OPEN) {
+               pendingCondition.awaitUninterruptibly();
+            }
+            if (pending.position() == 0 && segmentSwitchPosition < 0) {
+               // closed, and everything appended has been written
+               return;
+            }
+            // give other threads a chance to add their events to this batch
+            for (long remaining = commitDelayNanos; remaining > 0 && state == State.OPEN;) {
+               remaining = pendingCondition.awaitNanos(remaining);
+            }
+            ByteBuffer batch = pending;
+            pending = writing;
+            writing = batch;
+            end = appendedPosition;
+            switchPosition = segmentSwitchPosition;
+            segment = requestedSegment;
+            segmentSwitchPosition = -1;
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            continue;
+         } finally {
+            lock.unlock();
+         }
+
+         IOException writeFailure = null;
+         try {
+            writing.flip();
+            if (switchPosition >= 0) {
+               // the events appended before the switch was requested belong to the current segment, the rest to the new one
+               int limit = writing.limit();
+               writing.limit((int) (switchPosition - writtenPosition));
+               writeFully(writing);
+               // forced regardless of durability, so that the new segment is never more durable than the old one
+               channel.force(true);
+               channel.close();
+               channel = createSegment(segment);
+               writing.limit(limit);
+            }
+            writeFully(writing);
+            if (durability == Durability.FSYNC) {
+               channel.force(false);
+            }
+         } catch (IOException e) {
+            LOG.error("Failed to write to " + directory, e);
+            writeFailure = e;
+         }
+         writing.clear();
+
+         lock.lock();
+         try {
+            if (writeFailure != null) {
+               failure = writeFailure;
+            } else {
+               if (end > writtenPosition) {
+                  batchCounter.increment();
+               }
+               writtenPosition = end;
+               durablePosition = end;
+               if (switchPosition >= 0) {
+                  currentSegment = segment;
+               }
+            }
+            writtenCondition.signalAll();
+            if (failure != null) {
+               return;
+            }
+         } finally {
+            lock.unlock();
+         }
+      }
+   }
+
+   private void writeFully(ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+   }
+
+   /** Writes everything that has been appended, then closes the journal. Any attempt to append further events will fail. */
+   @PreDestroy
+   void close() {
+      lock.lock();
+      try {
+         if (state == State.CLOSED) {
+            return;
+         }
+         boolean started = state == State.OPEN;
+         state = State.CLOSED;
+         pendingCondition.signal();
+         if (!started) {
+            return;
+         }
+      } finally {
+         lock.unlock();
+      }
+
+      try {
+         writer.join();
+         channel.force(true);
+         channel.close();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } catch (IOException e) {
+         LOG.error("Failed to close " + directory, e);
+      }
+   }
+
+   @ManagedAttribute(description = "Number of events appended since the journal was opened.")
+   public long getEventCount() {
+      return eventCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of batches of events written (and, if durability is fsync, forced to disk) since the journal was opened.")
+   public long getBatchCount() {
+      return batchCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Position, in bytes appended to every segment, up to which every event is durable.")
+   public long getDurablePosition() {
+      return durablePosition;
+   }
+
+   @ManagedAttribute(description = "Number of games restored from the latest checkpoint when the journal was opened.")
+   public long getRestoredGameCount() {
+      return restoredGameCount;
+   }
+
+   @ManagedAttribute(description = "Number of events, appended since the latest checkpoint was started, replayed when the journal was opened.")
+   public long getRecoveredEventCount() {
+      return recoveredEventCount;
+   }
+
+   @ManagedAttribute(description = "Time, in milliseconds, taken to restore the latest checkpoint, and replay the events that follow it, on opening.")
+   public long getRecoveryMillis() {
+      return recoveryMillis;
+   }
+
+   @ManagedAttribute(description = "Number of checkpoints completed since the journal was opened.")
+   public long getCheckpointCount() {
+      return checkpointCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of games written to the most recently completed checkpoint.")
+   public long getCheckpointGameCount() {
+      return checkpointGameCount;
+   }
+
+   @ManagedAttribute(description = "Time, in milliseconds, taken to write the most recently completed checkpoint.")
+   public long getCheckpointMillis() {
+      return checkpointMillis;
+   }
+
+   /**
+    * The state of every game as of the start of the checkpoint, or later.
+    * <p>
+    * Games are written to a temporary file - only once {@link #commit()} has made it durable is it renamed so that it will be restored on startup, and
+    * the segments and checkpoint it replaces are deleted. If the checkpoint is closed without being committed then the temporary file is deleted, and the
+    * journal is unaffected - other than having switched to a new segment.
+    */
+   final class Checkpoint implements Closeable {
+      private final long segment;
+      private final Path file;
+      private final FileChannel out;
+      private final ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_BUFFER_CAPACITY);
+      private final CRC32C crc = new CRC32C();
+      private final long startNanos = System.nanoTime();
+      private String username;
+      private long gameCount;
+      private boolean closed;
+
+      private Checkpoint(long segment) throws IOException {
+         this.segment = segment;
+         this.file = directory.resolve(fileName(CHECKPOINT_PREFIX, segment) + TEMPORARY_SUFFIX);
+         this.out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+         buffer.putInt(CHECKPOINT_MAGIC).putInt(FORMAT_VERSION);
+      }
+
+      /**
+       * Writes the given game, belonging to the given user. The games of each user should be written together, in the order they were created, as that is
+       * the order they will be restored in.
+       *
+       * @throws IllegalArgumentException
+       *            if the order of the deck of {@code game} cannot be recorded
+       * @throws UncheckedIOException
+       *            if the game could not be written
+       */
+      void write(String username, Game game) {
+         if (!username.equals(this.username)) {
+            byte[] name = username.getBytes(StandardCharsets.UTF_8);
+            int start = startRecord(1 + Short.BYTES + checkLength(name.length));
+            endRecord(start, buffer.put(USER).putShort((short) name.length).put(name));
+            this.username = username;
+         }
+
+         byte[] id = game.getId().getBytes(StandardCharsets.UTF_8);
+         checkLength(id.length);
+         if (game instanceof FrozenGame) {
+            FrozenGame frozen = (FrozenGame) game;
+            int start = startRecord(1 + Short.BYTES + id.length + 1 + Integer.BYTES + Long.BYTES * 2);
+            buffer.put(FROZEN_GAME).putShort((short) id.length).put(id).put((byte) frozen.getStatus().ordinal()).putInt(frozen.getVersion());
+            endRecord(start, buffer.putLong(frozen.getDealerCards()).putLong(frozen.getPlayerCards()));
+         } else {
+            // a game is recorded as its deck and the updates that have been applied to it - every update other than a stand deals one card to the player
+            GameState state = game.snapshotCurrentState();
+            Deck deck = ((PlayableGame) game).getDeck();
+            int start = startRecord(1 + Short.BYTES + id.length + deckLength(game.getId(), deck) + 2);
+            putDeck(buffer.put(GAME).putShort((short) id.length).put(id), deck);
+            endRecord(start, buffer.put((byte) (state.getPlayer().getCards().size() - 2)).put((byte) (state.getStatus().isComplete() ? 1 : 0)));
+         }
+         gameCount++;
+      }
+
+      /** Returns the position of the contents of a record of the given length, after writing its length. */
+      private int startRecord(int length) {
+         if (buffer.remaining() < length + RECORD_OVERHEAD) {
+            flush();
+         }
+         return buffer.putInt(length).position();
+      }
+
+      private void endRecord(int start, ByteBuffer buffer) {
+         crc.reset();
+         crc.update(buffer.array(), start, buffer.position() - start);
+         buffer.putInt((int) crc.getValue());
+      }
+
+      private void flush() {
+         try {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+               out.write(buffer);
+            }
+            buffer.clear();
+         } catch (IOException e) {
+            throw new UncheckedIOException("could not write to checkpoint " + file, e);
+         }
+      }
+
+      /**
+       * Makes the checkpoint durable, so it will be restored on startup, then deletes the segments and checkpoint it replaces.
+       *
+       * @throws UncheckedIOException
+       *            if the checkpoint could not be written, or the journal failed to switch to a new segment
+       */
+      void commit() {
+         endRecord(startRecord(1), buffer.put(END));
+         flush();
+         Path completed = checkpointFile(segment);
+         try {
+            out.force(true);
+            out.close();
+            awaitSegment();
+            Files.move(file, completed, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+            deleteBefore(segment);
+         } catch (IOException e) {
+            throw new UncheckedIOException("could not complete checkpoint " + completed, e);
+         } finally {
+            close();
+         }
+
+         checkpointGameCount = gameCount;
+         checkpointMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+         checkpointCounter.increment();
+         LOG.info("Wrote " + gameCount + " games to " + completed + " in " + checkpointMillis + "ms");
+      }
+
+      /** Waits until the journal is appending to the segment that follows this checkpoint, so everything before it has been written. */
+      private void awaitSegment() throws IOException {
+         lock.lock();
+         try {
+            while (currentSegment < segment && failure == null) {
+               writtenCondition.awaitUninterruptibly();
+            }
+            if (currentSegment < segment) {
+               throw failure;
+            }
+         } finally {
+            lock.unlock();
+         }
+      }
+
+      /** Forces the rename of the checkpoint to disk - not supported on every platform, in which case it is left to the operating system. */
+      private void forceDirectory() {
+         try (FileChannel d = FileChannel.open(directory, StandardOpenOption.READ)) {
+            d.force(true);
+         } catch (IOException e) {
+            LOG.debug("Could not force " + directory, e);
+         }
+      }
+
+      /** Abandons the checkpoint, unless it has been committed. */
+      @Override
+      public void close() {
+         if (closed) {
+            return;
+         }
+         closed = true;
+         try {
+            out.close();
+            Files.deleteIfExists(file);
+         } catch (IOException e) {
+            LOG.error("Failed to delete " + file, e);
+         } finally {
+            endCheckpoint();
+         }
+      }
+   }
+
+   /** Receives the games restored, and events replayed, by {@link GameJournal#open(Listener)}. */
+   interface Listener {
+      /**
+       * A game was restored from a checkpoint. It was created with the given deck, then the player hit {@code hits} times - then, if the game is
+       * {@code complete} but was not completed by hitting, stood.
+       */
+      void restored(String gameId, String username, Deck deck, int hits, boolean complete);
+
+      /** A completed game was restored from a checkpoint. */
+      void restored(String username, FrozenGame game);
+
+      /** A game was created, with the given deck - from which no cards have yet been dealt. */
+      void created(String gameId, String username, Deck deck);
+
+      /** The player of a game at the given version hit. */
+      void hit(String gameId, int version);
+
+      /** The player of a game at the given version stood. */
+      void stood(String gameId, int version);
+
+      void removed(String gameId);
+   }
+
+   /** When a thread that has appended an event can continue. */
+   enum Durability {
+      /** Once the event has been forced to disk - so it survives a crash of the machine. */
+      FSYNC("fsync"),
+      /** Once the event has been written to the operating system - so it survives a crash of the application, but not of the machine. */
+      WRITE("write"),
+      /** Immediately - the event is written in the background, so may be lost by a crash of the application. */
+      NONE("none");
+
+      private final String propertyValue;
+
+      Durability(String propertyValue) {
+         this.propertyValue = propertyValue;
+      }
+
+      /**
+       * Returns the {@code Durability} selected by the given value of the {@code blackjack.store.journal.durability} property.
+       *
+       * @throws IllegalArgumentException
+       *            if {@code propertyValue} does not identify a {@code Durability}
+       */
+      static Durability fromPropertyValue(String propertyValue) {
+         for (Durability d : values()) {
+            if (d.propertyValue.equals(propertyValue)) {
+               return d;
+            }
+         }
+         throw new IllegalArgumentException("unknown journal durability: " + propertyValue);
+      }
+   }
+
+   private enum State {
+      NEW, REPLAYING, OPEN, CLOSED
+   }
+}
@@ -5,8 +5,13 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 /** Signals that a request has been received for a combination of username and game ID that the system has no record of. */
 @ResponseStatus(HttpStatus.NOT_FOUND)
-public final class GameNotFoundException extends RuntimeException {
+public final class GameNotFoundException extends StacklessException {
    public GameNotFoundException(String username, String gameId) {
       super("could not find game id " + gameId + " for the user: " + username);
    }
+
+   /** Signals that a game has been moved to another store, so can no longer be updated by the request that found it in this one. */
+   GameNotFoundException(String gameId) {
+      super("game id " + gameId + " has been moved");
+   }
 }
@@ -1,6 +1,6 @@
 package com.example.blackjack.model;
 
-import java.util.Set;
+import com.example.blackjack.view.Status;
 
 /** Provides a mechanism for creating new games and finding existing games. */
 public interface GameStore {
@@ -15,6 +15,22 @@ public interface GameStore {
     */
    Game findByUsernameAndGameId(String username, String gameId);
 
-   /** Returns the IDs of all games belonging to the given username. */
-   Set<String> findGameIdsByUsername(String username);
+   /**
+    * Returns a page of the IDs of games belonging to the given username, in the order the games were created.
+    * <p>
+    * A page may contain fewer than {@code limit} IDs even when there are further games to list - the caller should keep requesting pages until
+    * {@link GameIdPage#hasNext()} is {@code false}. Games created while the pages are being requested will be included in a later page.
+    *
+    * @param username
+    *           the user whose games should be listed
+    * @param status
+    *           only games that currently have this status are listed, or {@code null} to list games regardless of their status
+    * @param cursor
+    *           the {@link GameIdPage#getNextCursor() cursor} returned with the previous page, or {@code null} to request the first page
+    * @param limit
+    *           the maximum number of IDs to return, must be positive
+    * @throws InvalidCursorException
+    *            if {@code cursor} was not returned by this store
+    */
+   GameIdPage findGameIdsByUsername(String username, Status status, String cursor, int limit);
 }
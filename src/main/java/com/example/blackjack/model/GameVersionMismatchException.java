@@ -0,0 +1,12 @@
+package com.example.blackjack.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/** Signals that a request has been received to update a game that is no longer at the version the request was based on. */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public final class GameVersionMismatchException extends StacklessException {
+   public GameVersionMismatchException(String gameId, int expectedVersion, int actualVersion) {
+      super("cannot update game with id " + gameId + " as expected version " + expectedVersion + " but was " + actualVersion);
+   }
+}
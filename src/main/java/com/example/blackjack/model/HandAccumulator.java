@@ -0,0 +1,79 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.view.Rank.ACE;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.Rank;
+
+/**
+ * Keeps a running total of the value of a hand as cards are added to it.
+ * <p>
+ * Unlike {@link HandValuer#value(java.util.Collection)}, which iterates over every card in a hand each time it is called, the value is updated in constant
+ * time as each card is added. This means the checks performed after every deal (e.g. is the hand bust?) do not need to re-examine the cards already in the
+ * hand.
+ * <p>
+ * Instances are not thread-safe. It is the responsibility of the owning {@code Game} to ensure cards are not added concurrently.
+ */
+final class HandAccumulator {
+   /** The optimal value of the hand - i.e. Aces are only valued at 1 when valuing them at 11 would cause the hand to be bust. */
+   private int value;
+   /** The number of Aces in the hand that are currently valued at 11. */
+   private int softAces;
+   /** The number of cards in the hand. */
+   private int cardCount;
+
+   /** Adds the given card to the hand. */
+   void add(Card card) {
+      add(card.getRank());
+   }
+
+   /** Adds a card of the given rank to the hand. */
+   void add(Rank rank) {
+      value += rank.getValue();
+      if (rank == ACE) {
+         softAces++;
+      }
+      cardCount++;
+
+      // at most two Aces need to be re-valued - one that has just been added and one that was previously keeping the hand below bust
+      while (softAces > 0 && HandValuer.isBust(value)) {
+         value -= HandValuer.ACE_HIGH_VALUE - HandValuer.ACE_LOW_VALUE;
+         softAces--;
+      }
+   }
+
+   /** Returns the optimal value of the cards added to the hand so far. */
+   int value() {
+      return value;
+   }
+
+   /** Returns the number of Aces in the hand that are currently valued at 11. */
+   int softAces() {
+      return softAces;
+   }
+
+   /** Returns the number of cards added to the hand so far. */
+   int cardCount() {
+      return cardCount;
+   }
+
+   /** Returns {@code true} if the value of the hand is greater than 21, else {@code false}. */
+   boolean isBust() {
+      return HandValuer.isBust(value);
+   }
+
+   /** Returns {@code true} if the value of the hand equals 21, else {@code false}. */
+   boolean isTarget() {
+      return HandValuer.isTarget(value);
+   }
+
+   /** Returns {@code true} if the value of the hand is below 17, else {@code false}. */
+   boolean isBelowDealersMinimum() {
+      return HandValuer.isBelowDealersMinimum(value);
+   }
+
+   /** Returns {@code true} if the hand contains two cards with a combined value of 21, else {@code false}. */
+   boolean isBlackjack() {
+      return HandValuer.isBlackjack(cardCount, value);
+   }
+}
@@ -0,0 +1,176 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.view.Rank.ACE;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.Rank;
+import com.example.blackjack.view.Suit;
+
+/**
+ * Provides a table-driven alternative to {@link HandValuer} for determining the value of a hand.
+ * <p>
+ * The state of a hand is represented by a small {@code int} which encodes its "hard" total (where every Ace is valued at 1), whether it contains an Ace
+ * (meaning one Ace could instead be valued at 11) and how many cards it contains (0, 1, 2 or more). Adding a card to a hand moves it to a new state, which is
+ * found using a transition table that is indexed by the current state and the ordinal of the {@code Rank} of the added card. All the properties of a state
+ * (e.g. its value or whether it is bust) are calculated in advance, so each check is a single array lookup.
+ * <p>
+ * As the only input is an {@code int}, and no objects are created, this class is suitable for use in simulations where hands are valued a very large number
+ * of times. Example usage:
+ *
+ * <pre>
+ * int state = HandStateTable.EMPTY;
+ * state = HandStateTable.next(state, Rank.ACE);
+ * state = HandStateTable.next(state, Rank.SIX);
+ * HandStateTable.value(state); // 17
+ * HandStateTable.isSoft(state); // true
+ * </pre>
+ * <p>
+ * States are numbered in order of their hard total, so the states of hands that are not bust - which are the ones that have cards added to them during play -
+ * all have low numbers and are stored together at the start of each table.
+ * <p>
+ * <b>NOTE:</b> The tables cover every hand that can be made from a single pack of cards. Adding a card to a hand that already contains every card in the pack
+ * is not supported - the resulting state will be invalid, causing any method it is subsequently passed to to throw an {@code IndexOutOfBoundsException}.
+ */
+public final class HandStateTable {
+   /** The state of a hand that does not contain any cards. */
+   public static final int EMPTY = 0;
+
+   /** The transition used for adding a card to a hand that already contains every card in the pack. Any subsequent lookup will fail. */
+   private static final int UNSUPPORTED = -1;
+
+   /** The number of bits of a state used to store whether the hand contains an Ace. */
+   private static final int ACE_BITS = 1;
+   /** The number of bits of a state used to store the number of cards in the hand. */
+   private static final int CARD_COUNT_BITS = 2;
+   /** The number of bits of a state below the hard total. */
+   private static final int HARD_TOTAL_SHIFT = ACE_BITS + CARD_COUNT_BITS;
+   /** The number of cards at which the card count stored in a state stops increasing. */
+   private static final int MAX_CARD_COUNT = (1 << CARD_COUNT_BITS) - 1;
+
+   private static final int BUST = 1;
+   private static final int TARGET = 1 << 1;
+   private static final int BLACKJACK = 1 << 2;
+   private static final int BELOW_DEALERS_MINIMUM = 1 << 3;
+   private static final int SOFT = 1 << 4;
+
+   private static final Rank[] RANKS = Rank.values();
+   /** The highest hard total that can be reached using a single pack of cards. */
+   private static final int MAX_HARD_TOTAL = maxHardTotal();
+   private static final int NUMBER_OF_STATES = (MAX_HARD_TOTAL + 1) << HARD_TOTAL_SHIFT;
+
+   /** The state a hand moves to when a card is added. Indexed by {@code state * RANKS.length + rank.ordinal()}. */
+   private static final short[] TRANSITIONS = new short[NUMBER_OF_STATES * RANKS.length];
+   /** The value of the hand represented by each state. */
+   private static final short[] VALUES = new short[NUMBER_OF_STATES];
+   /** A bit set of {@link #BUST}, {@link #TARGET}, {@link #BLACKJACK}, {@link #BELOW_DEALERS_MINIMUM} and {@link #SOFT} for each state. */
+   private static final byte[] FLAGS = new byte[NUMBER_OF_STATES];
+
+   static {
+      Arrays.fill(TRANSITIONS, (short) UNSUPPORTED);
+      for (int state = 0; state < NUMBER_OF_STATES; state++) {
+         initialiseState(state);
+      }
+   }
+
+   /** Private constructor as all methods are static. */
+   private HandStateTable() {
+      // do nothing
+   }
+
+   /** Returns the state of a hand containing the given cards. */
+   public static int of(Collection<Card> cards) {
+      int state = EMPTY;
+      for (Card c : cards) {
+         state = next(state, c.getRank());
+      }
+      return state;
+   }
+
+   /** Returns the state of a hand after a card of the given rank has been added to a hand with the given state. */
+   public static int next(int state, Rank rank) {
+      return TRANSITIONS[state * RANKS.length + rank.ordinal()];
+   }
+
+   /** Returns the value of a hand with the given state, using the most appropriate value for any Aces it contains. */
+   public static int value(int state) {
+      return VALUES[state];
+   }
+
+   /** Returns {@code true} if a hand with the given state has a value greater than 21, else {@code false}. */
+   public static boolean isBust(int state) {
+      return (FLAGS[state] & BUST) != 0;
+   }
+
+   /** Returns {@code true} if a hand with the given state has a value of 21, else {@code false}. */
+   public static boolean isTarget(int state) {
+      return (FLAGS[state] & TARGET) != 0;
+   }
+
+   /** Returns {@code true} if a hand with the given state contains two cards with a combined value of 21, else {@code false}. */
+   public static boolean isBlackjack(int state) {
+      return (FLAGS[state] & BLACKJACK) != 0;
+   }
+
+   /** Returns {@code true} if a hand with the given state has a value below 17, else {@code false}. */
+   public static boolean isBelowDealersMinimum(int state) {
+      return (FLAGS[state] & BELOW_DEALERS_MINIMUM) != 0;
+   }
+
+   /** Returns {@code true} if the value of a hand with the given state includes an Ace valued at 11, else {@code false}. */
+   public static boolean isSoft(int state) {
+      return (FLAGS[state] & SOFT) != 0;
+   }
+
+   private static void initialiseState(int state) {
+      int hardTotal = hardTotal(state);
+      int cardCount = cardCount(state);
+      boolean containsAce = containsAce(state);
+
+      boolean soft = containsAce && !HandValuer.isBust(hardTotal + HandValuer.ACE_HIGH_VALUE - HandValuer.ACE_LOW_VALUE);
+      int value = soft ? hardTotal + HandValuer.ACE_HIGH_VALUE - HandValuer.ACE_LOW_VALUE : hardTotal;
+      VALUES[state] = (short) value;
+      FLAGS[state] = (byte) ((HandValuer.isBust(value) ? BUST : 0) | (HandValuer.isTarget(value) ? TARGET : 0)
+            | (HandValuer.isBlackjack(cardCount, value) ? BLACKJACK : 0) | (HandValuer.isBelowDealersMinimum(value) ? BELOW_DEALERS_MINIMUM : 0)
+            | (soft ? SOFT : 0));
+
+      for (Rank rank : RANKS) {
+         int nextHardTotal = hardTotal + hardValue(rank);
+         // transitions beyond the highest hard total are never used as they would require more than a single pack of cards
+         if (nextHardTotal <= MAX_HARD_TOTAL) {
+            int nextState = toState(nextHardTotal, Math.min(cardCount + 1, MAX_CARD_COUNT), containsAce || rank == ACE);
+            TRANSITIONS[state * RANKS.length + rank.ordinal()] = (short) nextState;
+         }
+      }
+   }
+
+   private static int toState(int hardTotal, int cardCount, boolean containsAce) {
+      return (hardTotal << HARD_TOTAL_SHIFT) | (cardCount << ACE_BITS) | (containsAce ? 1 : 0);
+   }
+
+   private static int hardTotal(int state) {
+      return state >>> HARD_TOTAL_SHIFT;
+   }
+
+   private static int cardCount(int state) {
+      return (state >>> ACE_BITS) & MAX_CARD_COUNT;
+   }
+
+   private static boolean containsAce(int state) {
+      return (state & 1) != 0;
+   }
+
+   private static int hardValue(Rank rank) {
+      return rank == ACE ? HandValuer.ACE_LOW_VALUE : rank.getValue();
+   }
+
+   private static int maxHardTotal() {
+      int total = 0;
+      for (Rank rank : RANKS) {
+         total += hardValue(rank);
+      }
+      return total * Suit.values().length;
+   }
+}
@@ -21,9 +21,9 @@ public final class HandValuer {
     */
    private static final int FIRST_CARD_BLACKJACK_MINIMUM = 10;
    /** The high value that can be assigned to an Ace as an alternative to {@code #ACE_LOW_VALUE}. */
-   private static final int ACE_HIGH_VALUE = ACE.getValue();
+   static final int ACE_HIGH_VALUE = ACE.getValue();
    /** The low value that can be assigned to an Ace as an alternative to {@code #ACE_HIGH_VALUE}. */
-   private static final int ACE_LOW_VALUE = 1;
+   static final int ACE_LOW_VALUE = 1;
 
    /** Private constructor as all methods are static. */
    private HandValuer() {
@@ -54,14 +54,24 @@ public final class HandValuer {
       return isBust(value(cards));
    }
 
+   /** Returns {@code true} if the given value equals 21, else {@code false}. */
+   public static boolean isTarget(int value) {
+      return value == TARGET;
+   }
+
    /** Returns {@code true} if the value of the combined value of the given cards equals 21, else {@code false}. */
    public static boolean isTarget(Collection<Card> cards) {
-      return value(cards) == TARGET;
+      return isTarget(value(cards));
+   }
+
+   /** Returns {@code true} if the given value is below 17, else {@code false}. */
+   public static boolean isBelowDealersMinimum(int value) {
+      return value < DEALERS_MINIMUM;
    }
 
    /** Returns {@code true} if the combined value of the given cards is below 17, else {@code false}. */
    public static boolean isBelowDealersMinimum(Collection<Card> dealersCards) {
-      return value(dealersCards) < DEALERS_MINIMUM;
+      return isBelowDealersMinimum(value(dealersCards));
    }
 
    /**
@@ -73,6 +83,15 @@ public final class HandValuer {
       return cards.size() == 2 && isTarget(cards);
    }
 
+   /**
+    * Returns {@code true} if a hand containing the given number of cards, with the given combined value, represents a blackjack, else {@code false}.
+    *
+    * @see #isBlackjack(Collection)
+    */
+   public static boolean isBlackjack(int numberOfCards, int value) {
+      return numberOfCards == 2 && isTarget(value);
+   }
+
    /**
     * Returns {@code true} if it is possible to have a blackjack hand that contains the given card, else {@code false}.
     * <p>
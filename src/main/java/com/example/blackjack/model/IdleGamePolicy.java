@@ -0,0 +1,104 @@
+package com.example.blackjack.model;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides what {@link MemoryGameStore} does with games that the player has stopped playing part way through.
+ * <p>
+ * A game in progress becomes idle once it has not been accessed for {@code blackjack.store.idle-game-timeout}. What happens to an idle game is set by
+ * {@code blackjack.store.idle-game-action} - see {@link Action}. Idle games are detected by a background thread that runs every
+ * {@code blackjack.store.idle-game-tick}, so a game may be idle for up to one tick longer than the timeout before it is acted on. A timeout of zero disables
+ * the detection of idle games.
+ */
+@Component
+final class IdleGamePolicy {
+   /** A policy which never treats a game as idle. */
+   static final IdleGamePolicy NONE = new IdleGamePolicy(Duration.ZERO, Action.STAND, Duration.ofSeconds(1));
+
+   private final Duration timeout;
+   private final Action action;
+   private final Duration tick;
+
+   @Autowired
+   IdleGamePolicy(@Value("${blackjack.store.idle-game-timeout:0s}") Duration timeout, @Value("${blackjack.store.idle-game-action:stand}") String action,
+               @Value("${blackjack.store.idle-game-tick:1s}") Duration tick) {
+      this(timeout, Action.fromPropertyValue(action), tick);
+   }
+
+   /**
+    * @param timeout
+    *           how long a game in progress must go without being accessed before it is idle, or zero to never treat a game as idle
+    * @param action
+    *           what to do with a game once it is idle
+    * @param tick
+    *           the time between checks for idle games
+    * @throws IllegalArgumentException
+    *            if {@code timeout} is negative or {@code tick} is less than 1 millisecond
+    */
+   IdleGamePolicy(Duration timeout, Action action, Duration tick) {
+      if (timeout.isNegative()) {
+         throw new IllegalArgumentException("idle game timeout must not be negative but was " + timeout);
+      }
+      if (tick.toMillis() < 1) {
+         throw new IllegalArgumentException("idle game tick must be at least 1 millisecond but was " + tick);
+      }
+      this.timeout = timeout;
+      this.action = action;
+      this.tick = tick;
+   }
+
+   /** Returns {@code true} if games in progress are acted on once they have not been accessed for {@link #getTimeout()}. */
+   boolean isEnabled() {
+      return !timeout.isZero();
+   }
+
+   Duration getTimeout() {
+      return timeout;
+   }
+
+   Action getAction() {
+      return action;
+   }
+
+   Duration getTick() {
+      return tick;
+   }
+
+   /** What is done with a game once it is idle. */
+   enum Action {
+      /** The player stands, so the dealer completes their turn and the outcome of the game is decided. The player can still view the completed game. */
+      STAND("stand"),
+      /** The game is removed from the store, so any later request for it results in a {@link GameNotFoundException} (404). */
+      EXPIRE("expire");
+
+      private final String propertyValue;
+
+      Action(String propertyValue) {
+         this.propertyValue = propertyValue;
+      }
+
+      /** Returns the value of the {@code blackjack.store.idle-game-action} property used to select this action. */
+      String getPropertyValue() {
+         return propertyValue;
+      }
+
+      /**
+       * Returns the {@code Action} selected by the given value of the {@code blackjack.store.idle-game-action} property.
+       *
+       * @throws IllegalArgumentException
+       *            if {@code propertyValue} does not identify an {@code Action}
+       */
+      static Action fromPropertyValue(String propertyValue) {
+         for (Action a : values()) {
+            if (a.propertyValue.equals(propertyValue)) {
+               return a;
+            }
+         }
+         throw new IllegalArgumentException("unknown idle game action: " + propertyValue);
+      }
+   }
+}
@@ -0,0 +1,12 @@
+package com.example.blackjack.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/** Signals that a request to list games specified a cursor that was not returned by a previous request to list games. */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public final class InvalidCursorException extends StacklessException {
+   public InvalidCursorException(String cursor) {
+      super("invalid cursor: " + cursor);
+   }
+}
@@ -0,0 +1,750 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Hand;
+import com.example.blackjack.view.Status;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Provides a store of games in a relational database - by default an embedded H2 database in file mode, configured using the {@code spring.datasource.*}
+ * properties.
+ * <p>
+ * Games are stored in the {@code game} and {@code game_card} tables created by the migrations in {@value #MIGRATIONS} (see {@link SchemaMigrator}). Rather
+ * than the cards in each hand, a game in progress is stored as a single row - the order (or seed) of its deck along with how many times the player hit and
+ * whether they stood. Finding a game in progress recreates it by dealing from the stored deck and repeating each update, so every card is derived exactly as
+ * it was originally dealt. Once a game is complete its final hands are added to {@code game_card}, a row per card, and the cards of a shuffled deck are
+ * discarded - finding a completed game returns a {@link FrozenGame} created from its hands. The undealt cards of a deck are never queried, so are stored as
+ * a single value rather than a row per card - which would make finding a game in progress an order of magnitude slower.
+ * <p>
+ * Nothing is cached - each request that finds a game loads its own copy of it, and an update is only returned once it has been written to the database. Each
+ * update is only written if the game is still at the version the copy was loaded at, so updates made through different copies (e.g. by different instances of
+ * the service sharing the same database) can never both be applied. An update that loses the race fails with a {@link GameVersionMismatchException}, unless
+ * it was made regardless of the version - in which case it is applied to the game as updated by the winner. {@link CachingGameStore} can be enabled in front
+ * of this store, so that updates do not wait for the database - it starts writing the updates of a whole batch of games before waiting for any of them
+ * (see {@link DeferredWriteGame}), so they are written together.
+ * <p>
+ * A single background thread writes to the database. Each time it finishes a batch it takes every write that has been requested since, up to
+ * {@code blackjack.store.jdbc.max-batch-size}, and executes them as JDBC batches in a single transaction - using statements prepared once and reused for
+ * every batch. So however many threads are creating and updating games at the same time, they share one round trip per statement and one commit.
+ * <p>
+ * Completed games are never removed - neither the {@link GameEvictionPolicy} nor the {@link IdleGamePolicy} apply to this store.
+ * <p>
+ * The store is only used if the {@code blackjack.store.jdbc.enabled} property is {@code true} - in which case it is used instead of {@link MemoryGameStore}.
+ */
+@Component
+@ConditionalOnProperty(name = "blackjack.store.jdbc.enabled", havingValue = "true")
+@ManagedResource(objectName = "com.example.blackjack.model:name=JdbcGameStore", description = "Store of games in a relational database.")
+public final class JdbcGameStore implements GameStore {
+   private static final Logger LOG = LoggerFactory.getLogger(JdbcGameStore.class);
+   /** The classpath directory containing the migrations of the schema used by this store. */
+   static final String MIGRATIONS = "db/game-store";
+   /** Once this many writes are waiting to be written, threads creating and updating games wait for the writer to catch up. */
+   private static final int MAX_PENDING_WRITES = 1 << 16;
+   /** Added to {@link #pending} by {@link #stop()} to tell the writer to stop once everything before it has been written. */
+   private static final Write STOP = new Write(0);
+
+   /** The value of {@code game_card.hand} for the cards of the dealer. */
+   private static final String DEALER = "D";
+   /** The value of {@code game_card.hand} for the cards of the player. */
+   private static final String PLAYER = "P";
+
+   private static final String INSERT_GAME = "INSERT INTO game (game_id, username, status, version, hits, deck_seed, deck_cards) VALUES (?, ?, ?, ?, ?, ?, ?)";
+   private static final String INSERT_CARD = "INSERT INTO game_card (game_id, hand, card_position, card_code) VALUES (?, ?, ?, ?)";
+   private static final String UPDATE_GAME = "UPDATE game SET status = ?, version = ?, hits = hits + ? WHERE game_id = ? AND version = ?";
+   private static final String DISCARD_DECK = "UPDATE game SET deck_cards = NULL WHERE game_id = ?";
+   private static final String SELECT_GAME = "SELECT g.status, g.version, g.hits, g.deck_seed, g.deck_cards, c.hand, c.card_code FROM game g "
+         + "LEFT JOIN game_card c ON c.game_id = g.game_id WHERE g.username = ? AND g.game_id = ? ORDER BY c.hand, c.card_position";
+   private static final String SELECT_GAME_IDS = "SELECT game_id FROM game WHERE username = ? AND game_id > ? ORDER BY game_id LIMIT ?";
+   private static final String SELECT_GAME_IDS_WITH_STATUS = "SELECT game_id FROM game WHERE username = ? AND game_id > ? AND status = ? "
+         + "ORDER BY game_id LIMIT ?";
+
+   private final DataSource dataSource;
+   private final JdbcTemplate jdbcTemplate;
+   private final GameIdGenerator gameIdGenerator;
+   private final DeckFactory deckFactory;
+   private final int maxBatchSize;
+   /** Writes waiting to be taken by {@link #writer}. */
+   private final LinkedBlockingQueue<Write> pending = new LinkedBlockingQueue<>(MAX_PENDING_WRITES);
+   private final Thread writer = new Thread(this::writeBatches, "game-store-writer");
+   /** Held, for reading, while a write is added to {@link #pending} - and, for writing, while the store is stopped. So nothing is added after {@link #STOP}. */
+   private final StampedLock stateLock = new StampedLock();
+   private final LongAdder writeCounter = new LongAdder();
+   private final LongAdder batchCounter = new LongAdder();
+   private final LongAdder conflictCounter = new LongAdder();
+   private boolean running;
+   /** Optional source of pre-shuffled decks. If {@code null}, or empty, then decks are created using {@link #deckFactory}. */
+   private DeckPool deckPool;
+
+   /**
+    * @param dataSource
+    *           the database to store games in, which is migrated to the latest version of the schema when the store is started
+    * @param maxBatchSize
+    *           the maximum number of games written by each transaction
+    * @throws IllegalArgumentException
+    *            if {@code maxBatchSize} is not positive
+    * @throws IllegalStateException
+    *            if the decks created by {@code deckFactory} are {@link DeckFactory.Mode#LAZY_SHUFFLE lazily shuffled} - the order of such a deck is not
+    *            decided until its cards are dealt, so cannot be stored when a game is created
+    */
+   @Autowired
+   JdbcGameStore(DataSource dataSource, GameIdGenerator gameIdGenerator, DeckFactory deckFactory,
+               @Value("${blackjack.store.jdbc.max-batch-size:256}") int maxBatchSize) {
+      if (deckFactory.getMode() == DeckFactory.Mode.LAZY_SHUFFLE) {
+         throw new IllegalStateException("the JDBC game store requires a deck mode of " + DeckFactory.Mode.SHUFFLED.getPropertyValue() + " or "
+               + DeckFactory.Mode.SEEDED.getPropertyValue() + " but was " + DeckFactory.Mode.LAZY_SHUFFLE.getPropertyValue());
+      }
+      if (maxBatchSize < 1) {
+         throw new IllegalArgumentException("max batch size must be positive but was " + maxBatchSize);
+      }
+      this.dataSource = requireNonNull(dataSource);
+      this.jdbcTemplate = new JdbcTemplate(dataSource);
+      this.gameIdGenerator = requireNonNull(gameIdGenerator);
+      this.deckFactory = deckFactory;
+      this.maxBatchSize = maxBatchSize;
+      this.writer.setDaemon(true);
+   }
+
+   /** Migrates the database to the latest version of the schema, then starts the thread that writes to it. */
+   @PostConstruct
+   void start() {
+      new SchemaMigrator(dataSource, MIGRATIONS).migrate();
+      running = true;
+      writer.start();
+   }
+
+   /** Waits until every write already requested has been written, then stops the thread that writes to the database. */
+   @PreDestroy
+   void stop() {
+      long stamp = stateLock.writeLock();
+      try {
+         if (!running) {
+            return;
+         }
+         running = false;
+         enqueue(STOP);
+      } finally {
+         stateLock.unlockWrite(stamp);
+      }
+
+      try {
+         writer.join();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   @Override
+   public Game createGame(String username) {
+      String gameId = gameIdGenerator.generate();
+      StoredGame game = new StoredGame(gameId, GameIdGenerator.decode(gameId), username, createDeck());
+      write(new Insert(game));
+      return game;
+   }
+
+   /** Returns a deck from {@link #deckPool}, if available, else a newly created deck. */
+   private Deck createDeck() {
+      if (nonNull(deckPool)) {
+         Deck pooled = deckPool.poll();
+         if (nonNull(pooled)) {
+            return pooled;
+         }
+      }
+      return deckFactory.createDeck();
+   }
+
+   @Override
+   public Game findByUsernameAndGameId(String username, String gameId) {
+      long key;
+      try {
+         key = GameIdGenerator.decode(gameId);
+      } catch (IllegalArgumentException e) {
+         // could never have been created by this store
+         throw new GameNotFoundException(username, gameId);
+      }
+
+      Game game = jdbcTemplate.query(SELECT_GAME, load(gameId, key, username), username, key);
+      if (isNull(game)) {
+         throw new GameNotFoundException(username, gameId);
+      }
+      return game;
+   }
+
+   /**
+    * Returns how to recreate a game from the rows returned by {@link #SELECT_GAME} - a row for each card of a completed game, or a single row with a
+    * {@code null} card for a game in progress.
+    */
+   private ResultSetExtractor<Game> load(String gameId, long key, String username) {
+      return rs -> {
+         if (!rs.next()) {
+            return null;
+         }
+         Status status = Status.valueOf(rs.getString(1));
+         int version = rs.getInt(2);
+         int hits = rs.getInt(3);
+         long seed = rs.getLong(4);
+         boolean seeded = !rs.wasNull();
+         byte[] cards = rs.getBytes(5);
+         List<Card> dealer = new ArrayList<>();
+         List<Card> player = new ArrayList<>();
+         do {
+            String hand = rs.getString(6);
+            if (nonNull(hand)) {
+               (DEALER.equals(hand) ? dealer : player).add(CardCodes.decode(rs.getInt(7)));
+            }
+         } while (rs.next());
+
+         if (status.isComplete() && !dealer.isEmpty()) {
+            GameState completed = new GameState(gameId, version, status, new Hand(dealer), new Hand(player));
+            if (FrozenGame.canFreeze(completed)) {
+               return new FrozenGame(completed);
+            }
+         }
+         if (!seeded && isNull(cards)) {
+            throw new IllegalStateException("game with id " + gameId + " is stored without its deck or its hands");
+         }
+
+         StoredGame game = new StoredGame(gameId, key, username, seeded ? new SeededDeck(seed) : new ShuffledDeck(cards));
+         game.replay(hits, version - hits);
+         GameState state = game.snapshotCurrentState();
+         if (state.getStatus() != status || state.getVersion() != version) {
+            throw new IllegalStateException("game with id " + gameId + " is stored as " + status + " at version " + version + " but was recreated as "
+                  + state.getStatus() + " at version " + state.getVersion());
+         }
+         return game;
+      };
+   }
+
+   /**
+    * Returns a page of the IDs of games belonging to the given username, in the order the games were created.
+    * <p>
+    * The cursor is the ID of the last game on the previous page, so each page is read from the {@code (username, game_id)} index starting immediately after
+    * it - the cost of each page depends on {@code limit}, not on how many games the user has. Pages are never short - a page only has fewer than
+    * {@code limit} IDs if it is the last page.
+    */
+   @Override
+   public GameIdPage findGameIdsByUsername(String username, Status status, String cursor, int limit) {
+      if (limit < 1) {
+         throw new IllegalArgumentException("limit must be positive but was " + limit);
+      }
+      long after = isNull(cursor) ? -1 : parseCursor(cursor);
+      // one more than the limit, to find out whether there is a next page
+      long rows = limit + 1L;
+      List<Long> keys = isNull(status) ? jdbcTemplate.queryForList(SELECT_GAME_IDS, Long.class, username, after, rows)
+            : jdbcTemplate.queryForList(SELECT_GAME_IDS_WITH_STATUS, Long.class, username, after, status.name(), rows);
+
+      int size = Math.min(limit, keys.size());
+      List<String> gameIds = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+         gameIds.add(GameIdGenerator.encode(keys.get(i)));
+      }
+      return new GameIdPage(gameIds, keys.size() > limit ? gameIds.get(size - 1) : null);
+   }
+
+   private static long parseCursor(String cursor) {
+      try {
+         return GameIdGenerator.decode(cursor);
+      } catch (IllegalArgumentException e) {
+         throw new InvalidCursorException(cursor);
+      }
+   }
+
+   @Autowired(required = false)
+   void setDeckPool(DeckPool deckPool) {
+      this.deckPool = deckPool;
+   }
+
+   /**
+    * Waits for the given write to be written to the database.
+    *
+    * @return {@code true} if the write was applied, or {@code false} if it was an update of a game that was no longer at the version it was loaded at
+    * @throws IllegalStateException
+    *            if the store is not running
+    * @throws org.springframework.dao.DataAccessException
+    *            if the batch containing the write could not be written
+    */
+   private boolean write(Write write) {
+      submit(write);
+      return await(write);
+   }
+
+   /**
+    * Requests the given write, without waiting for it to be written.
+    *
+    * @throws IllegalStateException
+    *            if the store is not running
+    */
+   private void submit(Write write) {
+      long stamp = stateLock.readLock();
+      try {
+         if (!running) {
+            throw new IllegalStateException("store is not running");
+         }
+         enqueue(write);
+      } finally {
+         stateLock.unlockRead(stamp);
+      }
+   }
+
+   /**
+    * Waits for a write requested by {@link #submit(Write)} to be written.
+    *
+    * @return {@code true} if the write was applied, or {@code false} if it was an update of a game that was no longer at the version it was loaded at
+    * @throws org.springframework.dao.DataAccessException
+    *            if the batch containing the write could not be written
+    */
+   private static boolean await(Write write) {
+      try {
+         return write.result.join();
+      } catch (CompletionException e) {
+         throw (RuntimeException) e.getCause();
+      }
+   }
+
+   /** Adds a write to {@link #pending}, waiting for the writer to catch up if it is full. */
+   private void enqueue(Write write) {
+      boolean interrupted = false;
+      while (true) {
+         try {
+            pending.put(write);
+            break;
+         } catch (InterruptedException e) {
+            // the write must not be lost, as the caller will wait for it to be written
+            interrupted = true;
+         }
+      }
+      if (interrupted) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /** Run by {@link #writer} - repeatedly takes every write requested since the previous batch, and writes them in a single transaction. */
+   private void writeBatches() {
+      List<Write> batch = new ArrayList<>(maxBatchSize);
+      Statements statements = null;
+      boolean stopping = false;
+      while (!stopping) {
+         batch.add(take());
+         pending.drainTo(batch, maxBatchSize - 1);
+         // nothing is added after STOP, so if it was taken it is the last of the batch
+         if (batch.get(batch.size() - 1) == STOP) {
+            batch.remove(batch.size() - 1);
+            stopping = true;
+         }
+         if (!batch.isEmpty()) {
+            statements = writeBatch(statements, batch);
+         }
+         batch.clear();
+      }
+      if (nonNull(statements)) {
+         statements.close();
+      }
+   }
+
+   private Write take() {
+      while (true) {
+         try {
+            return pending.take();
+         } catch (InterruptedException e) {
+            // only stopped by STOP, so every write requested before the store was stopped is written
+         }
+      }
+   }
+
+   /**
+    * Writes the given batch, then completes each of its writes with its result.
+    * <p>
+    * If the batch fails then each of its writes is written again in a transaction of its own - so a write that can never succeed (e.g. a duplicate game ID)
+    * only fails itself, not the unrelated writes that happened to be in the same batch. Only if a connection cannot be obtained do the remaining writes fail
+    * without being tried, as they would all fail the same way.
+    *
+    * @param statements
+    *           the statements prepared for a previous batch, or {@code null} if they need to be prepared
+    * @return the statements to use for the next batch, or {@code null} if they need to be prepared again - as this batch failed
+    */
+   private Statements writeBatch(Statements statements, List<Write> batch) {
+      if (isNull(statements)) {
+         statements = connect(batch);
+         if (isNull(statements)) {
+            return null;
+         }
+      }
+
+      boolean[] applied;
+      try {
+         applied = statements.execute(batch);
+      } catch (SQLException | RuntimeException e) {
+         statements.rollbackAndClose();
+         if (batch.size() == 1) {
+            LOG.error("Failed to write game " + GameIdGenerator.encode(batch.get(0).key), e);
+            fail(batch, e);
+            return null;
+         }
+         LOG.warn("Failed to write " + batch.size() + " games - writing each of them separately", e);
+         statements = null;
+         for (int i = 0; i < batch.size(); i++) {
+            if (isNull(statements)) {
+               statements = connect(batch.subList(i, batch.size()));
+               if (isNull(statements)) {
+                  return null;
+               }
+            }
+            statements = writeBatch(statements, batch.subList(i, i + 1));
+         }
+         return statements;
+      }
+
+      writeCounter.add(batch.size());
+      batchCounter.increment();
+      for (int i = 0; i < batch.size(); i++) {
+         if (!applied[i]) {
+            conflictCounter.increment();
+         }
+         batch.get(i).result.complete(applied[i]);
+      }
+      return statements;
+   }
+
+   /** Returns a connection with the statements prepared - or {@code null}, having failed each of the given writes, if it could not be obtained. */
+   private Statements connect(List<Write> writes) {
+      try {
+         return new Statements(dataSource.getConnection());
+      } catch (SQLException | RuntimeException e) {
+         LOG.error("Failed to connect to write " + writes.size() + " games", e);
+         fail(writes, e);
+         return null;
+      }
+   }
+
+   /** Completes each of the given writes with the failure that prevented them being written. */
+   private void fail(List<Write> writes, Exception e) {
+      RuntimeException failure = e instanceof SQLException ? translate((SQLException) e) : (RuntimeException) e;
+      for (Write write : writes) {
+         write.result.completeExceptionally(failure);
+      }
+   }
+
+   private DataAccessException translate(SQLException e) {
+      DataAccessException translated = jdbcTemplate.getExceptionTranslator().translate("write games", null, e);
+      return nonNull(translated) ? translated : new UncategorizedSQLException("write games", null, e);
+   }
+
+   @ManagedAttribute(description = "Number of games created or updated, and written to the database.")
+   public long getWriteCount() {
+      return writeCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of transactions used to write to the database.")
+   public long getBatchCount() {
+      return batchCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of updates rejected as the game had already been updated by another request.")
+   public long getConflictCount() {
+      return conflictCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of writes waiting to be written to the database.")
+   public int getPendingWriteCount() {
+      return pending.size();
+   }
+
+   /**
+    * A game in progress, loaded from the database or newly created - each update is written to the database before it is returned, unless started by
+    * {@link #startHit(int)} or {@link #startStand(int)}.
+    * <p>
+    * Each copy of a game is only used by the request that loaded it, so once an update has failed to be written the copy is not used again.
+    */
+   private final class StoredGame extends PlayableGame implements DeferredWriteGame {
+      private final long key;
+      private final String username;
+
+      StoredGame(String id, long key, String username, Deck deck) {
+         super(id, deck);
+         this.key = key;
+         this.username = username;
+      }
+
+      /** Repeats the updates already made to this game, as recorded in the database - so without writing them. */
+      void replay(int hits, int stands) {
+         for (int i = 0; i < hits; i++) {
+            super.hit(ANY_VERSION);
+         }
+         for (int i = 0; i < stands; i++) {
+            super.stand(ANY_VERSION);
+         }
+      }
+
+      @Override
+      public GameState hit(int expectedVersion) {
+         return startHit(expectedVersion).get();
+      }
+
+      @Override
+      public GameState stand(int expectedVersion) {
+         return startStand(expectedVersion).get();
+      }
+
+      @Override
+      public Supplier<GameState> startHit(int expectedVersion) {
+         return save(super.hit(expectedVersion), 1, expectedVersion, Game::hit);
+      }
+
+      @Override
+      public Supplier<GameState> startStand(int expectedVersion) {
+         return save(super.stand(expectedVersion), 0, expectedVersion, Game::stand);
+      }
+
+      /**
+       * Starts writing an update that has been applied to this copy of the game - returning what waits for it to be written.
+       * <p>
+       * If the game has already been updated by another request then the update is made again to the game as it is now - if it was made regardless of
+       * the version. That is done by the thread waiting for the write, as it reads from, and writes to, the database.
+       */
+      private Supplier<GameState> save(GameState updated, int hits, int expectedVersion, Function<Game, GameState> update) {
+         Update write = new Update(this, updated, hits);
+         submit(write);
+         return () -> {
+            if (await(write)) {
+               return updated;
+            }
+            Game current = findByUsernameAndGameId(username, getId());
+            if (expectedVersion == ANY_VERSION) {
+               return update.apply(current);
+            }
+            throw new GameVersionMismatchException(getId(), expectedVersion, current.getVersion());
+         };
+      }
+   }
+
+   /** A request to write to the database, completed by {@link JdbcGameStore#writer} once written. */
+   private static class Write {
+      final long key;
+      /** {@code true} if the write was applied, or {@code false} if it was an update of a game that had already been updated. */
+      final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+      Write(long key) {
+         this.key = key;
+      }
+   }
+
+   /** Adds a newly created game. */
+   private static final class Insert extends Write {
+      private final String username;
+      private final GameState state;
+      /** The seed of the deck, or {@code null} if the deck is shuffled. */
+      private final Long seed;
+      /** The codes of the cards of the deck, or {@code null} if the deck is seeded or the game is already complete (so its hands are stored instead). */
+      private final byte[] cards;
+
+      Insert(StoredGame game) {
+         super(game.key);
+         this.username = game.username;
+         this.state = game.snapshotCurrentState();
+         Deck deck = game.getDeck();
+         if (deck instanceof SeededDeck) {
+            this.seed = ((SeededDeck) deck).getSeed();
+            this.cards = null;
+         } else {
+            this.seed = null;
+            this.cards = isDeckDiscarded(state) ? null : ((ShuffledDeck) deck).getCards();
+         }
+      }
+   }
+
+   /** Applies an update to a game, if the game is still at the version before the update. */
+   private static final class Update extends Write {
+      private final GameState state;
+      private final int hits;
+      /** {@code true} if the update completes a game with a shuffled deck, whose cards are then no longer needed. */
+      private final boolean discardDeck;
+
+      Update(StoredGame game, GameState state, int hits) {
+         super(game.key);
+         this.state = state;
+         this.hits = hits;
+         this.discardDeck = game.getDeck() instanceof ShuffledDeck && isDeckDiscarded(state);
+      }
+   }
+
+   /**
+    * Returns {@code true} if the given game is complete, and can be recreated as a {@link FrozenGame} from its hands, so no longer needs its deck - else
+    * {@code false}.
+    */
+   private static boolean isDeckDiscarded(GameState state) {
+      return FrozenGame.canFreeze(state);
+   }
+
+   /** A connection used by {@link JdbcGameStore#writer}, along with the statements prepared for it - reused for every batch until a batch fails. */
+   private static final class Statements {
+      private final Connection connection;
+      private final PreparedStatement insertGame;
+      private final PreparedStatement insertCard;
+      private final PreparedStatement updateGame;
+      private final PreparedStatement discardDeck;
+
+      Statements(Connection connection) throws SQLException {
+         this.connection = connection;
+         try {
+            connection.setAutoCommit(false);
+            this.insertGame = connection.prepareStatement(INSERT_GAME);
+            this.insertCard = connection.prepareStatement(INSERT_CARD);
+            this.updateGame = connection.prepareStatement(UPDATE_GAME);
+            this.discardDeck = connection.prepareStatement(DISCARD_DECK);
+         } catch (SQLException e) {
+            // closing the connection closes any statements already prepared
+            connection.close();
+            throw e;
+         }
+      }
+
+      /**
+       * Executes the given writes in a single transaction - inserts first, then updates, then adds the hands (and discards the decks) of the games completed
+       * by the updates that were applied.
+       *
+       * @return whether each write was applied, in the same order as {@code batch}
+       */
+      boolean[] execute(List<Write> batch) throws SQLException {
+         boolean[] applied = new boolean[batch.size()];
+         int inserts = 0;
+         int cards = 0;
+         List<Update> updates = new ArrayList<>();
+         for (int i = 0; i < batch.size(); i++) {
+            Write write = batch.get(i);
+            if (write instanceof Insert) {
+               Insert insert = (Insert) write;
+               addInsert(insert);
+               cards += addHands(insert.key, insert.state);
+               inserts++;
+               applied[i] = true;
+            } else {
+               Update update = (Update) write;
+               updateGame.setString(1, update.state.getStatus().name());
+               updateGame.setInt(2, update.state.getVersion());
+               updateGame.setInt(3, update.hits);
+               updateGame.setLong(4, update.key);
+               updateGame.setInt(5, update.state.getVersion() - 1);
+               updateGame.addBatch();
+               updates.add(update);
+            }
+         }
+         if (inserts > 0) {
+            insertGame.executeBatch();
+         }
+
+         int discards = 0;
+         if (!updates.isEmpty()) {
+            int[] counts = updateGame.executeBatch();
+            for (int i = 0, u = 0; i < batch.size(); i++) {
+               if (batch.get(i) instanceof Update) {
+                  Update update = updates.get(u);
+                  // zero if the game is no longer at the version the update was applied to
+                  applied[i] = counts[u++] != 0;
+                  if (applied[i]) {
+                     cards += addHands(update.key, update.state);
+                  }
+                  if (applied[i] && update.discardDeck) {
+                     discardDeck.setLong(1, update.key);
+                     discardDeck.addBatch();
+                     discards++;
+                  }
+               }
+            }
+         }
+         if (cards > 0) {
+            insertCard.executeBatch();
+         }
+         if (discards > 0) {
+            discardDeck.executeBatch();
+         }
+         connection.commit();
+         return applied;
+      }
+
+      private void addInsert(Insert insert) throws SQLException {
+         insertGame.setLong(1, insert.key);
+         insertGame.setString(2, insert.username);
+         insertGame.setString(3, insert.state.getStatus().name());
+         insertGame.setInt(4, insert.state.getVersion());
+         insertGame.setInt(5, 0);
+         if (isNull(insert.seed)) {
+            insertGame.setNull(6, Types.BIGINT);
+         } else {
+            insertGame.setLong(6, insert.seed);
+         }
+         insertGame.setBytes(7, insert.cards);
+         insertGame.addBatch();
+      }
+
+      /** Adds the cards of each hand of the given game to the batch of cards to insert, if it is complete. Returns the number of cards added. */
+      private int addHands(long key, GameState state) throws SQLException {
+         if (!state.getStatus().isComplete()) {
+            return 0;
+         }
+         return addHand(key, DEALER, state.getDealer().getCards()) + addHand(key, PLAYER, state.getPlayer().getCards());
+      }
+
+      private int addHand(long key, String hand, List<Card> cards) throws SQLException {
+         for (int i = 0; i < cards.size(); i++) {
+            insertCard.setLong(1, key);
+            insertCard.setString(2, hand);
+            insertCard.setInt(3, i);
+            insertCard.setInt(4, CardCodes.encode(cards.get(i)));
+            insertCard.addBatch();
+         }
+         return cards.size();
+      }
+
+      void rollbackAndClose() {
+         try {
+            connection.rollback();
+         } catch (SQLException e) {
+            LOG.warn("Failed to roll back", e);
+         }
+         close();
+      }
+
+      void close() {
+         try {
+            connection.close();
+         } catch (SQLException e) {
+            LOG.warn("Failed to close connection", e);
+         }
+      }
+   }
+}
@@ -0,0 +1,75 @@
+package com.example.blackjack.model;
+
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * A {@code Deck} which decides which card to deal at the moment it is dealt.
+ * <p>
+ * Each call to {@link #deal()} performs a single step of the Fisher-Yates algorithm - a card is selected at random from those remaining and swapped with the
+ * last remaining card, which reduces the number of remaining cards by one. As a result the order of the cards is never decided in advance, so even someone
+ * with access to the contents of the deck could not know which card will be dealt next. It also means the cost of shuffling is only paid for the cards that
+ * are actually dealt - which, for a typical game, is only a handful of the 52.
+ * <p>
+ * The deck is created without copying or shuffling anything. The codes (see {@link CardCodes}) of the remaining cards are stored in an array which is
+ * initially all zeros. An element that is zero means its slot still contains the card it started with (i.e. the card whose code is the same as the index of
+ * the slot). Otherwise the element contains the code, plus one, of the card that has since been swapped into that slot.
+ *
+ * @see DeckFactory.Mode#LAZY_SHUFFLE
+ */
+final class LazyShuffleDeck implements Deck {
+   /** Identifies the slots of {@link #cards} whose contents are unchanged since the deck was created. */
+   private static final byte UNCHANGED = 0;
+
+   /** Provides the source of randomness to use for the current thread. */
+   private final Supplier<RandomGenerator> random;
+   /** The remaining cards are those in the first {@link #remaining} slots. See class comment for how the slots are encoded. */
+   private final byte[] cards;
+   /** The number of cards that have not yet been dealt. */
+   private int remaining;
+
+   /**
+    * Creates a deck containing a card for every possible combination of {@code Rank} and {@code Suit}.
+    *
+    * @param random
+    *           provides the source of randomness to use to select each card as it is dealt
+    */
+   LazyShuffleDeck(Supplier<RandomGenerator> random) {
+      this(DeckFactory.CARDS.size(), random);
+   }
+
+   /**
+    * Creates a deck containing the first {@code numberOfCards} of {@link DeckFactory#CARDS}.
+    *
+    * @param numberOfCards
+    *           the number of cards contained in the deck
+    * @param random
+    *           provides the source of randomness to use to select each card as it is dealt
+    */
+   LazyShuffleDeck(int numberOfCards, Supplier<RandomGenerator> random) {
+      this.random = random;
+      this.cards = new byte[numberOfCards];
+      this.remaining = numberOfCards;
+   }
+
+   @Override
+   public Card deal() {
+      if (remaining == 0) {
+         throw new IllegalStateException("deck is empty");
+      }
+
+      int selected = random.get().nextInt(remaining);
+      int last = --remaining;
+      int code = codeAt(selected);
+      // move the last remaining card into the slot of the selected card - the last slot is not used again so does not need updating
+      cards[selected] = (byte) (codeAt(last) + 1);
+      return CardCodes.decode(code);
+   }
+
+   private int codeAt(int slot) {
+      byte value = cards[slot];
+      return value == UNCHANGED ? slot : value - 1;
+   }
+}
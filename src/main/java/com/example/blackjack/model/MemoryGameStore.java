@@ -4,94 +4,1102 @@ import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 /**
  * Provides an in-memory store of games.
  * <p>
+ * Completed games are removed according to the {@link GameEvictionPolicy}. Games still in progress are never removed. Once a game has been removed any
+ * attempt to find it will result in a {@link GameNotFoundException} (404), exactly as if it had never existed. The completed games of each user, and in
+ * total, are counted as they complete - so the per-user limit, enforced as soon as a game of the user completes, only examines the user's games once
+ * they are over the limit. The TTL and total limit are enforced by a background thread, so that request threads never have to scan the store - the TTL
+ * every {@code blackjack.store.eviction-interval}, and the total limit also as soon as a game completes that exceeds it. Rather than sorting every
+ * completed game to find the least recently accessed, each game removed to enforce either limit is the least recently accessed of a small sample - for the
+ * total limit taken by cycling through the store, so every game is sampled in turn, and for the per-user limit from the user's oldest completed games.
+ * <p>
+ * Games in progress that have not been accessed for a while are stood or expired according to the {@link IdleGamePolicy}. Rather than scheduling a task per
+ * game, or updating a timer each time a game is accessed, each game has a single timer in a {@link TimingWheel} that is only ever rescheduled when it
+ * expires: if the game has been accessed since the timer was scheduled then the timer is moved to the time the game will next become idle. So accessing a game
+ * only costs recording the time, however many games are being tracked.
+ * <p>
+ * Unless {@code blackjack.store.freeze-completed-games} is {@code false}, each game is replaced by a compact {@link FrozenGame} as soon as it completes - so
+ * its deck, and the other state only needed while it was being played, can be reclaimed. A request that already holds the game being replaced is unaffected,
+ * as both represent the same completed game.
+ * <p>
+ * If a {@link GameJournal} is enabled then each game created, updated or removed is recorded in it, and on startup the store is restored from it. Every
+ * {@code blackjack.store.journal.checkpoint-interval}, and when the store is stopped, every game is written to a checkpoint - so startup only has to replay
+ * the events since the latest checkpoint, rather than every event since the journal was created. Writing a checkpoint does not block games from being
+ * found or updated, and only blocks the creation of games while the journal switches to a new segment.
+ * <p>
+ * If a {@link GameArchive} is enabled then completed games that have not been accessed for {@code blackjack.store.archive.after} are moved into it, off the
+ * heap, by the same background thread that enforces the TTL and total limit. Archived games are found, listed, limited and written to checkpoints exactly
+ * as if they were still in memory. On startup, completed games restored from a checkpoint are added straight to the archive - so the heap never has to
+ * hold them all at once.
+ * <p>
  * <b>NOTE:</b> This approach is <i>not</i> suitable for use in a production system. Weaknesses include:
  * <ul>
- * <li>Memory usage. The in-memory data structure is added to each time a new game is created but no games are ever removed, even once they have completed. This
- * means that eventually, as new games continue to get created, the memory requirements will rise until they become impractical.</li>
+ * <li>Memory usage. Unless an eviction policy is configured, no games are ever removed, even once they have completed. Unless an idle game policy is also
+ * configured, games still in progress are never removed - so if enough users abandon their games part way through the memory requirements will rise until they
+ * become impractical.</li>
  * <li>Not scalable. If an attempt was made to scale the service by adding new servers then that would introduce the problem that each instance would have its
  * own independent store. Requests to a server to update a game that was created by another server would result in a {@link GameNotFoundException} (404)
- * exception.</li>
- * <li>Not persistent. Details of games are not persisted between server restarts - meaning the service would not recover well from machine failure.</li>
+ * exception - unless {@code blackjack.cluster.enabled} is {@code true}, in which case each user's games are held by one server and requests are forwarded
+ * to it (see {@link ShardedGameStore}).</li>
+ * <li>Not persistent, unless {@code blackjack.store.journal.enabled} is {@code true}. Otherwise details of games are not persisted between server
+ * restarts - meaning the service would not recover well from machine failure. The journal (see {@link GameJournal}) is a local file, so does not address
+ * the previous point.</li>
  * </ul>
- * TODO: Provide an implementation of {@code GameStore} that uses a persistent shared store.
+ * See {@link JdbcGameStore} for a store that addresses these, which is used instead if {@code blackjack.store.jdbc.enabled} is {@code true}.
  */
 @Component
-final class MemoryGameStore implements GameStore {
+@ConditionalOnProperty(name = "blackjack.store.jdbc.enabled", havingValue = "false", matchIfMissing = true)
+@ManagedResource(objectName = "com.example.blackjack.model:name=MemoryGameStore", description = "In-memory store of games.")
+public final class MemoryGameStore implements GameStore {
+   private static final Logger LOG = LoggerFactory.getLogger(MemoryGameStore.class);
+   /** When listing games filtered by status, the maximum number of games examined for each game requested. */
+   private static final int MAX_EXAMINED_PER_GAME = 8;
+   /** The number of completed games sampled for each game removed to enforce the per-user or total limit. */
+   private static final int EVICTION_SAMPLE_SIZE = 8;
+
    /**
-    * A collection of games grouped by username.
+    * Every game in the store.
     * <p>
-    * The key is the username, the value is a map of games belonging to that user where the key is the game ID and the value is the corresponding {@code Game}.
-    * Referring to concrete {@code ConcurrentHashMap} implementation, rather than {@code Map} interface, as want to make it explicit that a ConcurrentHashMap is
-    * being used - as it is required to avoid {@code ConcurrentModificationException}s.
+    * The key is the game ID, the value is the corresponding game along with the index of the user it belongs to. A single map is used for all users, rather
+    * than a map per user, as most users only have a handful of games - and even an empty {@code ConcurrentHashMap} is far larger than the index of a user
+    * with a handful of games. Referring to concrete {@code ConcurrentHashMap} implementation, rather than {@code Map} interface, as want to make it explicit
+    * that a ConcurrentHashMap is being used - as it is required to avoid {@code ConcurrentModificationException}s.
     * </p>
     */
-   private ConcurrentHashMap<String, ConcurrentHashMap<String, Game>> store = new ConcurrentHashMap<String, ConcurrentHashMap<String, Game>>();
+   private final ConcurrentHashMap<String, Entry> games = new ConcurrentHashMap<String, Entry>();
+   /**
+    * The games of each user, keyed by username.
+    * <p>
+    * Only used to list, and limit, the games of a user - finding a game only requires {@link #games}. An index is removed once it is empty.
+    * </p>
+    */
+   private final ConcurrentHashMap<String, UserGameIndex<Entry>> gamesByUser = new ConcurrentHashMap<String, UserGameIndex<Entry>>();
 
    private final GameIdGenerator gameIdGenerator;
    private final DeckFactory deckFactory;
+   private final GameEvictionPolicy evictionPolicy;
+   private final IdleGamePolicy idleGamePolicy;
+   /** Returns the current time, in milliseconds, used to record when a game was last accessed. */
+   private final LongSupplier clock;
+   private final LongAdder gameCounter = new LongAdder();
+   /** The number of completed games, including those in the archive - those counted towards the total limit. */
+   private final LongAdder completedGameCounter = new LongAdder();
+   private final LongAdder expiredCounter = new LongAdder();
+   private final LongAdder evictedCounter = new LongAdder();
+   private final LongAdder idleStoodCounter = new LongAdder();
+   private final LongAdder idleExpiredCounter = new LongAdder();
+   private final LongAdder archivedCounter = new LongAdder();
+   private final LongAdder movedCounter = new LongAdder();
+   private final Thread sweeper = new Thread(this::sweep, "game-store-sweeper");
+   /** Set when {@link #sweeper} is unparked as the total limit has been exceeded, and cleared as it starts its next pass - so it is only unparked once. */
+   private final AtomicBoolean evictionRequested = new AtomicBoolean();
+   /**
+    * Where the sampling of games to remove to enforce the total limit continues from, restarting from the beginning once every game has been sampled. Only
+    * accessed by {@link #sweeper} (or by tests calling {@link #evict()} directly).
+    */
+   private Iterator<Entry> evictionHand = Collections.emptyIterator();
+   /** Timers for newly created games, waiting to be added to {@link #idleTimers} by {@link #reaper}. */
+   private final ConcurrentLinkedQueue<IdleTimer> newIdleTimers = new ConcurrentLinkedQueue<>();
+   /** Only accessed by {@link #reaper} (or by tests calling {@link #reapIdleGames()} directly). */
+   private final TimingWheel<IdleTimer> idleTimers;
+   private final Thread reaper = new Thread(this::reap, "game-store-reaper");
+   private final Thread checkpointer = new Thread(this::checkpointPeriodically, "game-store-checkpointer");
+   /**
+    * Held, for reading, while a game is appended to the journal and added to the store - and, for writing, while a checkpoint is started. So every game
+    * whose creation was appended before the checkpoint was started has been added to the store by the time games are written to the checkpoint.
+    */
+   private final StampedLock creationLock = new StampedLock();
+   private volatile boolean running;
+   /** Optional source of pre-shuffled decks. If {@code null}, or empty, then decks are created using {@link #deckFactory}. */
+   private DeckPool deckPool;
+   /** Optional record of every change to the store, replayed on startup. If {@code null} then games are lost when the application stops. */
+   private GameJournal journal;
+   /** The number of events that had been appended to {@link #journal} when the latest checkpoint was started. */
+   private volatile long checkpointedEventCount;
+   /** Incremented by each checkpoint, to mark the users whose archived games it has written. Only accessed by {@link #checkpoint()}. */
+   private int checkpointNumber;
+   /** Optional cold tier for completed games that have not been accessed for a while. If {@code null} then every game is kept on the heap. */
+   private GameArchive archive;
+   /** If {@code true} then each game is replaced by a {@link FrozenGame} as soon as it is complete. */
+   private boolean freezeCompletedGames = true;
 
-   @Autowired
    public MemoryGameStore(GameIdGenerator gameIdGenerator, DeckFactory deckFactory) {
+      this(gameIdGenerator, deckFactory, GameEvictionPolicy.NONE, IdleGamePolicy.NONE);
+   }
+
+   @Autowired
+   MemoryGameStore(GameIdGenerator gameIdGenerator, DeckFactory deckFactory, GameEvictionPolicy evictionPolicy, IdleGamePolicy idleGamePolicy) {
+      this(gameIdGenerator, deckFactory, evictionPolicy, idleGamePolicy, System::currentTimeMillis);
+   }
+
+   MemoryGameStore(GameIdGenerator gameIdGenerator, DeckFactory deckFactory, GameEvictionPolicy evictionPolicy, IdleGamePolicy idleGamePolicy,
+               LongSupplier clock) {
       this.gameIdGenerator = requireNonNull(gameIdGenerator);
       this.deckFactory = requireNonNull(deckFactory);
+      this.evictionPolicy = requireNonNull(evictionPolicy);
+      this.idleGamePolicy = requireNonNull(idleGamePolicy);
+      this.clock = requireNonNull(clock);
+      this.idleTimers = new TimingWheel<>(idleGamePolicy.getTick().toMillis(), clock.getAsLong());
+      this.sweeper.setDaemon(true);
+      this.reaper.setDaemon(true);
+      this.checkpointer.setDaemon(true);
+   }
+
+   /**
+    * Opens the archive, and restores the games recorded by the journal, if enabled - then starts the background threads which remove (or archive) games
+    * that have exceeded the TTL or total limit, act on idle games and write checkpoints of the journal, if enabled.
+    */
+   @PostConstruct
+   void start() {
+      if (nonNull(archive)) {
+         archive.open();
+      }
+      if (nonNull(journal)) {
+         journal.open(new JournalListener());
+      }
+      running = true;
+      if (evictionPolicy.isSweepRequired() || nonNull(archive)) {
+         sweeper.start();
+      }
+      if (idleGamePolicy.isEnabled()) {
+         reaper.start();
+      }
+      if (nonNull(journal) && !journal.getCheckpointInterval().isZero()) {
+         checkpointer.start();
+      }
+   }
+
+   /**
+    * Stops the background threads which remove games that have exceeded the TTL or total limit, act on idle games and write checkpoints of the journal.
+    * <p>
+    * If the journal is enabled, and has been appended to since the latest checkpoint, then a final checkpoint is written - so the next time the store is
+    * started it does not have to replay any events.
+    */
+   @PreDestroy
+   void stop() {
+      boolean started = running;
+      running = false;
+      sweeper.interrupt();
+      reaper.interrupt();
+      // unparked rather than interrupted, as interrupting a thread writing to a file channel closes the channel
+      LockSupport.unpark(checkpointer);
+      if (started && nonNull(journal) && journal.getEventCount() > checkpointedEventCount) {
+         try {
+            checkpoint();
+         } catch (RuntimeException e) {
+            LOG.error("Failed to write checkpoint", e);
+         }
+      }
    }
 
    @Override
    public Game createGame(String username) {
-      Game newGame = createGame();
-      addToStore(username, newGame);
+      String gameId = gameIdGenerator.generate();
+      Deck deck = createDeck();
+      if (isNull(journal)) {
+         return addGame(gameId, username, deck);
+      }
+
+      Game newGame;
+      long journalPosition;
+      long stamp = creationLock.readLock();
+      try {
+         // appended before the game is added, so it is appended before any update to the game
+         journalPosition = journal.appendCreated(gameId, username, deck);
+         newGame = addGame(gameId, username, deck);
+      } finally {
+         creationLock.unlockRead(stamp);
+      }
+      journal.awaitDurable(journalPosition);
       return newGame;
    }
 
-   private Game createGame() {
-      return new Game(gameIdGenerator.generate(), deckFactory.createDeck());
+   private Game addGame(String gameId, String username, Deck deck) {
+      Entry newEntry = new Entry(clock.getAsLong());
+      Game newGame = new PlayableGame(gameId, deck, completed -> completed(newEntry, completed), journal);
+      newEntry.game = newGame;
+      addToStore(username, newEntry);
+      if (newGame.isComplete()) {
+         // dealt blackjack, so completed without an update to notify the entry
+         completed(newEntry, newGame);
+      }
+      return newGame;
    }
 
-   private void addToStore(String username, Game newGame) {
-      Map<String, Game> gamesByUser = getExistingGamesForUser(username);
-      Game existingGame = gamesByUser.putIfAbsent(newGame.getId(), newGame);
+   /** Returns a deck from {@link #deckPool}, if available, else a newly created deck. */
+   private Deck createDeck() {
+      if (nonNull(deckPool)) {
+         Deck pooled = deckPool.poll();
+         if (nonNull(pooled)) {
+            return pooled;
+         }
+      }
+      return deckFactory.createDeck();
+   }
 
-      if (nonNull(existingGame)) {
+   private void addToStore(String username, Entry newEntry) {
+      Game newGame = newEntry.game;
+      // add to the index of the user first, so that the game is never in the store without belonging to a user
+      newEntry.owner = addToUserGameIndex(username, newEntry);
+      Entry existingEntry = games.putIfAbsent(newGame.getId(), newEntry);
+
+      if (nonNull(existingEntry)) {
          // should never get here as the game id of the newly created game should always be unique - but sanity check anyway
+         removeFromUserGameIndex(newEntry);
          throw new IllegalArgumentException("game already exists with game id " + newGame.getId());
       }
+
+      gameCounter.increment();
+      if (idleGamePolicy.isEnabled() && !newGame.isComplete()) {
+         newIdleTimers.offer(new IdleTimer(newEntry));
+      }
    }
 
-   private ConcurrentHashMap<String, Game> getExistingGamesForUser(String username) {
-      return store.computeIfAbsent(username, s -> new ConcurrentHashMap<String, Game>());
+   /**
+    * Counts the game of the given entry as complete, unless it has already been removed, and replaces it with its frozen equivalent if enabled. Called once
+    * the game has completed - whether by the player, by the idle game policy or while being restored.
+    * <p>
+    * If the user now has more completed games than the per-user limit then the excess are removed straight away, as only the user's games need to be
+    * examined. Exceeding the total limit is left to the background thread.
+    */
+   private void completed(Entry entry, Game completed) {
+      if (freezeCompletedGames && !(completed instanceof FrozenGame)) {
+         entry.freeze(completed);
+      }
+      synchronized (entry) {
+         if (entry.removed || entry.completed) {
+            return;
+         }
+         entry.completed = true;
+         entry.owner.addCompletedCount(1);
+         completedGameCounter.increment();
+      }
+      if (evictionPolicy.isMaxCompletedGamesPerUserEnabled()) {
+         evictExcessCompletedGames(entry);
+      }
+      if (evictionPolicy.isMaxGamesEnabled() && completedGameCounter.sum() > evictionPolicy.getMaxGames() && evictionRequested.compareAndSet(false, true)) {
+         // leave it to the background thread to decide which games to remove
+         LockSupport.unpark(sweeper);
+      }
    }
 
-   @Override
-   public Game findByUsernameAndGameId(String username, String gameId) {
-      Map<String, Game> gamesByUser = store.get(username);
-      requireNonNullGame(gamesByUser, username, gameId);
+   /** Stops the game of the given entry, which has just been removed from {@link #games}, being counted as complete - other than by the archive. */
+   private void removed(Entry entry, boolean archived) {
+      synchronized (entry) {
+         entry.removed = true;
+         if (entry.completed) {
+            entry.owner.addCompletedCount(-1);
+            if (!archived) {
+               completedGameCounter.decrement();
+            }
+         }
+      }
+   }
 
-      Game game = gamesByUser.get(gameId);
-      requireNonNullGame(game, username, gameId);
+   private UserGameIndex<Entry> addToUserGameIndex(String username, Entry newEntry) {
+      while (true) {
+         UserGameIndex<Entry> index = gamesByUser.computeIfAbsent(username, this::newUserGameIndex);
+         if (index.add(newEntry)) {
+            return index;
+         }
+         // index has just been emptied and is being removed from the store - make sure it has been removed before trying again
+         gamesByUser.remove(username, index);
+      }
+   }
+
+   /** Returns a new index for the given user, whose games follow any archived games of the user. */
+   private UserGameIndex<Entry> newUserGameIndex(String username) {
+      return new UserGameIndex<>(username, isNull(archive) ? 0 : archive.nextSequence(username));
+   }
 
-      return game;
+   private void removeFromUserGameIndex(Entry entry) {
+      UserGameIndex<Entry> index = entry.owner;
+      index.remove(entry);
+      if (index.markRemovedIfEmpty()) {
+         gamesByUser.remove(index.getUsername(), index);
+      }
    }
 
-   private void requireNonNullGame(Object o, String username, String gameId) {
-      if (isNull(o)) {
+   @Override
+   public Game findByUsernameAndGameId(String username, String gameId) {
+      Entry entry = games.get(gameId);
+      if (isNull(entry)) {
+         // a game is added to the archive before it is removed from the store, so is never missing from both
+         Game archived = isNull(archive) ? null : archive.find(username, gameId);
+         if (isNull(archived)) {
+            throw new GameNotFoundException(username, gameId);
+         }
+         return archived;
+      }
+      // a game belonging to another user is treated the same as a game that does not exist
+      if (!entry.owner.getUsername().equals(username)) {
          throw new GameNotFoundException(username, gameId);
       }
+
+      entry.touch(clock.getAsLong());
+      return entry.game;
    }
 
+   /**
+    * Returns a page of the IDs of games belonging to the given username, in the order the games were created.
+    * <p>
+    * The cursor is the sequence number, within the user's {@link UserGameIndex}, of the last game examined - so the cost of each page depends on
+    * {@code limit}, not on how many games the user has. When filtering by status, at most {@value #MAX_EXAMINED_PER_GAME} games are examined for each game
+    * requested - so a page may be short, or even empty, when few of the user's games have the requested status.
+    * <p>
+    * Archived games keep their sequence number, so are listed in the same order as if they were still in memory.
+    */
    @Override
-   public Set<String> findGameIdsByUsername(String username) {
-      // OK to call keySet as using ConcurrentHashMap so will not get ConcurrentModificationException
-      return new HashSet<>(getExistingGamesForUser(username).keySet());
+   public GameIdPage findGameIdsByUsername(String username, Status status, String cursor, int limit) {
+      if (limit < 1) {
+         throw new IllegalArgumentException("limit must be positive but was " + limit);
+      }
+      int after = isNull(cursor) ? UserGameIndex.START : parseCursor(cursor);
+      UserGameIndex<Entry> index = gamesByUser.get(username);
+      if (isNull(index) && isNull(archive)) {
+         return GameIdPage.EMPTY;
+      }
+
+      List<Entry> entries = new ArrayList<>(isNull(index) ? 0 : Math.min(limit, index.size()));
+      Predicate<Entry> filter = isNull(status) ? e -> true : e -> e.game.getStatus() == status;
+      int maxExamined = (int) Math.min(Integer.MAX_VALUE, (long) limit * MAX_EXAMINED_PER_GAME);
+      int next = isNull(index) ? UserGameIndex.START : index.list(after, limit, maxExamined, filter, entries);
+      if (nonNull(archive)) {
+         List<GameArchive.ArchivedGame> archived = new ArrayList<>();
+         int archivedNext = archive.list(username, after, limit, maxExamined, status, archived);
+         return merge(entries, next, archived, archivedNext, limit);
+      }
+
+      List<String> gameIds = new ArrayList<>(entries.size());
+      for (Entry entry : entries) {
+         gameIds.add(entry.game.getId());
+      }
+      return new GameIdPage(gameIds, next == UserGameIndex.START ? null : Integer.toString(next));
+   }
+
+   /**
+    * Returns a page of the games listed by both the user's index and the archive, in order of sequence number.
+    * <p>
+    * Each has examined every game up to the cursor it returned, so games are only taken up to the lower of the two - any others are listed again by the
+    * next page. A game in both lists, as it was archived while they were being listed, is only taken once.
+    */
+   private static GameIdPage merge(List<Entry> entries, int next, List<GameArchive.ArchivedGame> archived, int archivedNext, int limit) {
+      int examined = Math.min(next == UserGameIndex.START ? Integer.MAX_VALUE : next, archivedNext == GameArchive.START ? Integer.MAX_VALUE : archivedNext);
+      List<String> gameIds = new ArrayList<>(Math.min(limit, entries.size() + archived.size()));
+      int last = UserGameIndex.START;
+      int i = 0;
+      int j = 0;
+      while (gameIds.size() < limit) {
+         int inMemory = i < entries.size() ? entries.get(i).getSequence() : Integer.MAX_VALUE;
+         int inArchive = j < archived.size() ? archived.get(j).getSequence() : Integer.MAX_VALUE;
+         last = Math.min(inMemory, inArchive);
+         if (last == Integer.MAX_VALUE || last > examined) {
+            break;
+         }
+         if (inArchive <= inMemory) {
+            gameIds.add(archived.get(j++).getGame().getId());
+            if (inArchive == inMemory) {
+               i++;
+            }
+         } else {
+            gameIds.add(entries.get(i++).game.getId());
+         }
+      }
+
+      int cursor = gameIds.size() == limit && (i < entries.size() || j < archived.size()) ? last : examined;
+      return new GameIdPage(gameIds, cursor == Integer.MAX_VALUE ? null : Integer.toString(cursor));
+   }
+
+   private static int parseCursor(String cursor) {
+      try {
+         int after = Integer.parseInt(cursor);
+         if (after >= 0) {
+            return after;
+         }
+      } catch (NumberFormatException e) {
+         // fall through to throw InvalidCursorException
+      }
+      throw new InvalidCursorException(cursor);
+   }
+
+   @Autowired(required = false)
+   void setDeckPool(DeckPool deckPool) {
+      this.deckPool = deckPool;
+   }
+
+   /**
+    * @throws IllegalStateException
+    *            if the decks created by {@link #deckFactory} are {@link DeckFactory.Mode#LAZY_SHUFFLE lazily shuffled} - the order of such a deck is not
+    *            decided until its cards are dealt, so cannot be recorded by the journal when a game is created
+    */
+   @Autowired(required = false)
+   void setJournal(GameJournal journal) {
+      if (deckFactory.getMode() == DeckFactory.Mode.LAZY_SHUFFLE) {
+         throw new IllegalStateException("the journal requires a deck mode of " + DeckFactory.Mode.SHUFFLED.getPropertyValue() + " or "
+               + DeckFactory.Mode.SEEDED.getPropertyValue() + " but was " + DeckFactory.Mode.LAZY_SHUFFLE.getPropertyValue());
+      }
+      this.journal = journal;
+   }
+
+   @Autowired(required = false)
+   void setArchive(GameArchive archive) {
+      this.archive = archive;
+   }
+
+   @Autowired
+   void setFreezeCompletedGames(@Value("${blackjack.store.freeze-completed-games:true}") boolean freezeCompletedGames) {
+      this.freezeCompletedGames = freezeCompletedGames;
+   }
+
+   private void sweep() {
+      long intervalNanos = evictionPolicy.getEvictionInterval().toNanos();
+      long nextSweep = System.nanoTime();
+      while (running) {
+         // cleared before the pass starts, so a game that completes during the pass and exceeds the total limit requests another pass
+         evictionRequested.set(false);
+         try {
+            if (System.nanoTime() - nextSweep >= 0) {
+               nextSweep = System.nanoTime() + intervalNanos;
+               evict();
+            } else {
+               evictExcessGames();
+            }
+         } catch (RuntimeException e) {
+            LOG.error("Failed to evict games", e);
+         }
+         // wait until the next interval, or until completed() signals that the total limit has been exceeded
+         LockSupport.parkNanos(this, nextSweep - System.nanoTime());
+      }
+   }
+
+   private void reap() {
+      long tickNanos = idleGamePolicy.getTick().toNanos();
+      while (running) {
+         try {
+            reapIdleGames();
+         } catch (RuntimeException e) {
+            LOG.error("Failed to reap idle games", e);
+         }
+         LockSupport.parkNanos(this, tickNanos);
+      }
+   }
+
+   private void checkpointPeriodically() {
+      long intervalNanos = journal.getCheckpointInterval().toNanos();
+      LockSupport.parkNanos(this, intervalNanos);
+      while (running) {
+         try {
+            if (journal.getEventCount() > checkpointedEventCount) {
+               checkpoint();
+            }
+         } catch (RuntimeException e) {
+            LOG.error("Failed to write checkpoint", e);
+         }
+         LockSupport.parkNanos(this, intervalNanos);
+      }
+   }
+
+   /**
+    * Writes every game to a new checkpoint of the journal, so that only the events appended after it was started need to be replayed when the store is
+    * restored.
+    * <p>
+    * Games continue to be found, updated and removed while the checkpoint is written, so each game is written in whatever state it is in when it is reached.
+    * As each game is only written if it is still in the store, a game removed before the checkpoint was started is never written.
+    * <p>
+    * The archived games of each user are copied after the games still in memory, so a game archived in between is copied at least once. A game copied
+    * twice is only written once, unless it was archived after the games of its user had been written - so restoring skips games it has already restored.
+    *
+    * @throws IllegalStateException
+    *            if the journal is not enabled, or not open
+    * @throws java.io.UncheckedIOException
+    *            if the checkpoint could not be written
+    */
+   @ManagedOperation(description = "Writes every game to a checkpoint, so only the events appended since need to be replayed on startup.")
+   public synchronized void checkpoint() {
+      if (isNull(journal)) {
+         throw new IllegalStateException("journal is not enabled");
+      }
+
+      GameJournal.Checkpoint checkpoint;
+      long stamp = creationLock.writeLock();
+      try {
+         checkpointedEventCount = journal.getEventCount();
+         checkpoint = journal.startCheckpoint();
+      } finally {
+         creationLock.unlockWrite(stamp);
+      }
+
+      try (checkpoint) {
+         int mark = ++checkpointNumber;
+         for (UserGameIndex<Entry> index : gamesByUser.values()) {
+            List<Entry> entries = index.snapshot();
+            List<GameArchive.ArchivedGame> archived = isNull(archive) ? List.of() : archive.snapshot(index.getUsername(), mark);
+            write(checkpoint, index.getUsername(), entries, archived);
+         }
+         if (nonNull(archive)) {
+            // users whose games are all archived
+            archive.forEachUnmarked(mark, (username, archived) -> write(checkpoint, username, List.of(), archived));
+         }
+         checkpoint.commit();
+      }
+   }
+
+   /** Writes the games of a user to a checkpoint, in order of sequence number - so the games are restored in the same order. */
+   private void write(GameJournal.Checkpoint checkpoint, String username, List<Entry> entries, List<GameArchive.ArchivedGame> archived) {
+      int i = 0;
+      int j = 0;
+      while (i < entries.size() || j < archived.size()) {
+         int inMemory = i < entries.size() ? entries.get(i).getSequence() : Integer.MAX_VALUE;
+         int inArchive = j < archived.size() ? archived.get(j).getSequence() : Integer.MAX_VALUE;
+         if (inArchive <= inMemory) {
+            checkpoint.write(username, archived.get(j++).getGame());
+            if (inArchive == inMemory) {
+               i++;
+            }
+         } else {
+            Entry entry = entries.get(i++);
+            Game game = entry.game;
+            if (games.get(game.getId()) == entry) {
+               checkpoint.write(username, game);
+            }
+         }
+      }
+   }
+
+   /**
+    * Stands, or removes, every game in progress that has not been accessed within the timeout of the idle game policy.
+    * <p>
+    * Must only be called by one thread at a time.
+    */
+   void reapIdleGames() {
+      long timeoutMillis = idleGamePolicy.getTimeout().toMillis();
+      for (IdleTimer timer; (timer = newIdleTimers.poll()) != null;) {
+         idleTimers.schedule(timer, timer.entry.lastAccessed + timeoutMillis);
+      }
+
+      long now = clock.getAsLong();
+      idleTimers.advance(now, timer -> {
+         Entry entry = timer.entry;
+         if (games.get(entry.game.getId()) != entry || entry.game.isComplete()) {
+            // game has been removed or completed, so no longer needs to be tracked
+            return;
+         }
+
+         long idleAt = entry.lastAccessed + timeoutMillis;
+         if (idleAt > now) {
+            // game has been accessed since the timer was scheduled
+            idleTimers.schedule(timer, idleAt);
+         } else if (idleGamePolicy.getAction() == IdleGamePolicy.Action.EXPIRE) {
+            remove(entry, idleExpiredCounter);
+         } else {
+            standIdleGame(entry, now);
+         }
+      });
+   }
+
+   private void standIdleGame(Entry entry, long now) {
+      try {
+         entry.game.stand();
+         idleStoodCounter.increment();
+         // so the completed game is kept for the full TTL, giving the player a chance to see the outcome
+         entry.touch(now);
+      } catch (GameAlreadyCompleteException e) {
+         // the player completed the game after it was checked
+      } catch (GameNotFoundException e) {
+         // the game is being moved to another store, which will stand it once idle
+      }
+   }
+
+   /**
+    * Removes all completed games that have exceeded the limits of the eviction policy, and moves those that have not been accessed for a while to the
+    * archive, if enabled.
+    * <p>
+    * Iterating over a {@code ConcurrentHashMap} never blocks, or is blocked by, other threads - so games can continue to be created, found and updated while
+    * this method is running. Each game is only removed if it is still mapped to the entry that was examined, so a game is never removed based on stale data.
+    * <p>
+    * The archive is then compacted, to reclaim the space of the games removed from it.
+    */
+   void evict() {
+      long now = clock.getAsLong();
+      long expiryThreshold = evictionPolicy.isCompletedGameTtlEnabled() ? now - evictionPolicy.getCompletedGameTtl().toMillis() : Long.MIN_VALUE;
+      long archiveThreshold = nonNull(archive) ? now - archive.getArchiveAfter().toMillis() : Long.MIN_VALUE;
+      // the total limit does not require examining every game
+      if (evictionPolicy.isCompletedGameTtlEnabled() || nonNull(archive)) {
+         for (Entry entry : games.values()) {
+            long lastAccessed = entry.lastAccessed;
+            if (!entry.completed) {
+               // games in progress are never removed
+            } else if (lastAccessed < expiryThreshold) {
+               remove(entry, expiredCounter);
+            } else if (lastAccessed < archiveThreshold) {
+               archive(entry, lastAccessed);
+            }
+         }
+      }
+
+      if (nonNull(archive) && evictionPolicy.isCompletedGameTtlEnabled()) {
+         archive.removeExpired(expiryThreshold, removedFromArchive(expiredCounter));
+      }
+      evictExcessGames();
+      if (nonNull(archive)) {
+         archive.compact();
+      }
+   }
+
+   /**
+    * Removes completed games in excess of the total limit - each the least recently accessed of a sample of {@value #EVICTION_SAMPLE_SIZE} completed
+    * games. Archived games were all accessed less recently than those still in memory, so are removed first.
+    */
+   private void evictExcessGames() {
+      if (!evictionPolicy.isMaxGamesEnabled()) {
+         return;
+      }
+      long excess = completedGameCounter.sum() - evictionPolicy.getMaxGames();
+      if (excess > 0 && nonNull(archive)) {
+         excess -= archive.removeOldest(excess, removedFromArchive(evictedCounter));
+      }
+      while (excess > 0) {
+         Entry oldest = sampleLeastRecentlyAccessed();
+         if (isNull(oldest)) {
+            return;
+         }
+         if (remove(oldest, evictedCounter)) {
+            excess--;
+         }
+      }
+   }
+
+   /**
+    * Returns the least recently accessed of the next {@value #EVICTION_SAMPLE_SIZE} completed games of {@link #evictionHand} - or {@code null} if there are
+    * no completed games.
+    */
+   private Entry sampleLeastRecentlyAccessed() {
+      Entry oldest = null;
+      long oldestAccessed = Long.MAX_VALUE;
+      int sampled = 0;
+      boolean restarted = false;
+      while (sampled < EVICTION_SAMPLE_SIZE) {
+         if (!evictionHand.hasNext()) {
+            if (restarted) {
+               // every game has been examined since restarting
+               break;
+            }
+            evictionHand = games.values().iterator();
+            restarted = true;
+            continue;
+         }
+         Entry entry = evictionHand.next();
+         long lastAccessed = entry.lastAccessed;
+         if (entry.completed) {
+            sampled++;
+            if (lastAccessed < oldestAccessed) {
+               oldest = entry;
+               oldestAccessed = lastAccessed;
+            }
+         }
+      }
+      return oldest;
+   }
+
+   /**
+    * Moves a completed game to the archive. The game is added to the archive before it is removed from the store, so it can always be found in one or the
+    * other.
+    *
+    * @return {@code true} if the game was moved, or {@code false} if it has too many cards to be frozen or was removed by another thread
+    */
+   private boolean archive(Entry entry, long lastAccessed) {
+      Game game = entry.game;
+      FrozenGame frozen;
+      if (game instanceof FrozenGame) {
+         frozen = (FrozenGame) game;
+      } else {
+         // freezing completed games has been disabled
+         GameState finalState = game.snapshotCurrentState();
+         if (!FrozenGame.canFreeze(finalState)) {
+            return false;
+         }
+         frozen = new FrozenGame(finalState);
+      }
+
+      archive.add(entry.owner.getUsername(), entry.getSequence(), frozen, lastAccessed);
+      if (games.remove(game.getId(), entry)) {
+         removed(entry, true);
+         removeFromUserGameIndex(entry);
+         archivedCounter.increment();
+         return true;
+      } else {
+         archive.remove(game.getId());
+         return false;
+      }
+   }
+
+   /** Returns what to do with each game removed from the archive - the equivalent of {@link #remove(Entry, LongAdder)} for a game in memory. */
+   private Consumer<String> removedFromArchive(LongAdder counter) {
+      return gameId -> {
+         if (nonNull(journal)) {
+            journal.appendRemoved(gameId);
+         }
+         gameCounter.decrement();
+         completedGameCounter.decrement();
+         counter.increment();
+      };
+   }
+
+   /**
+    * Removes the completed games of a user in excess of the per-user limit, following the completion of the game of the given entry - starting with the
+    * games of the user in the archive, if enabled, in the order they were created. Does nothing unless the user has more completed games than the limit.
+    * <p>
+    * Each game removed from memory is the least recently accessed of a sample of the user's {@value #EVICTION_SAMPLE_SIZE} oldest completed games, as the
+    * oldest are the most likely not to have been accessed for a while - so only a few games are examined however many the user has. The game that has just
+    * completed is never removed, as the player has not yet seen the outcome.
+    */
+   private void evictExcessCompletedGames(Entry completed) {
+      UserGameIndex<Entry> owner = completed.owner;
+      int archived = isNull(archive) ? 0 : archive.count(owner.getUsername());
+      long excess = owner.getCompletedCount() + archived - evictionPolicy.getMaxCompletedGamesPerUser();
+      if (excess > 0 && archived > 0) {
+         excess -= archive.removeOldest(owner.getUsername(), (int) Math.min(excess, archived), removedFromArchive(evictedCounter));
+      }
+
+      Predicate<Entry> candidate = e -> e.completed && e != completed;
+      List<Entry> sample = new ArrayList<>(EVICTION_SAMPLE_SIZE);
+      while (excess > 0) {
+         sample.clear();
+         owner.list(UserGameIndex.START, EVICTION_SAMPLE_SIZE, EVICTION_SAMPLE_SIZE * MAX_EXAMINED_PER_GAME, candidate, sample);
+         Entry oldest = null;
+         for (Entry entry : sample) {
+            if (isNull(oldest) || entry.lastAccessed < oldest.lastAccessed) {
+               oldest = entry;
+            }
+         }
+         if (isNull(oldest)) {
+            // the user's oldest games are in progress, or have been removed by another thread
+            return;
+         }
+         if (remove(oldest, evictedCounter)) {
+            excess--;
+         }
+      }
+   }
+
+   private boolean remove(Entry entry, LongAdder counter) {
+      if (games.remove(entry.game.getId(), entry)) {
+         if (nonNull(journal)) {
+            journal.appendRemoved(entry.game.getId());
+         }
+         removed(entry, false);
+         removeFromUserGameIndex(entry);
+         gameCounter.decrement();
+         counter.increment();
+         return true;
+      } else {
+         return false;
+      }
+   }
+
+   /** Returns {@code true} if the games of this store are recorded by a {@link GameJournal}, else {@code false}. */
+   boolean isJournalEnabled() {
+      return nonNull(journal);
+   }
+
+   /** Returns the users with at least one game in this store, including games in the archive. */
+   Set<String> getUsernames() {
+      Set<String> usernames = new HashSet<>(gamesByUser.keySet());
+      if (nonNull(archive)) {
+         usernames.addAll(archive.getUsernames());
+      }
+      return usernames;
+   }
+
+   /**
+    * Adds a game moved from another store, in the state reached by dealing {@code hits} cards to the player from the start of {@code deck} and then, if
+    * {@code complete} and the game has not already completed, standing - see {@link ShardedGameStore}.
+    * <p>
+    * If a game with the same ID is already in this store it is only replaced if it is at a lower version than {@code version} - so moving the same games
+    * again has no effect, but a copy left by an earlier move is brought up to date.
+    */
+   void addMovedGame(String gameId, String username, Deck deck, int hits, boolean complete, int version) {
+      if (removeOutdatedCopy(gameId, version)) {
+         restore(gameId, username, deck, hits, complete);
+      }
+   }
+
+   /**
+    * Adds a completed game moved from another store. Unlike a completed game restored from a checkpoint, it is added to memory rather than straight to the
+    * archive - it will be archived once it has not been accessed for a while, the same as any other game.
+    * <p>
+    * If a game with the same ID is already in this store it is only replaced if it is at a lower version - so moving the same games again has no effect,
+    * but a copy left by an earlier move is brought up to date.
+    */
+   void addMovedGame(String username, FrozenGame game) {
+      if (removeOutdatedCopy(game.getId(), game.getVersion())) {
+         addToStore(username, game);
+      }
+   }
+
+   /**
+    * Removes the game with the given ID if it is in memory at a lower version than {@code version}.
+    *
+    * @return {@code true} if there is no longer a game with the given ID in this store, else {@code false} - including if it is archived, as an archived
+    *         game is complete so cannot be behind a copy of it
+    */
+   private boolean removeOutdatedCopy(String gameId, int version) {
+      Entry entry = games.get(gameId);
+      if (nonNull(entry)) {
+         return entry.game.getVersion() < version && remove(entry, movedCounter);
+      }
+      return isNull(archive) || !archive.contains(gameId);
+   }
+
+   /**
+    * Removes a game that has been moved to another store - unless it has been updated since it was copied, in which case it must be copied again.
+    *
+    * @param version
+    *           the version the game was at when it was copied
+    * @return {@code true} if the game was removed, or {@code false} if it was not in this store or is no longer at {@code version}
+    */
+   boolean removeMovedGame(String gameId, int version) {
+      Entry entry = games.get(gameId);
+      if (nonNull(entry)) {
+         return entry.game.getVersion() == version && remove(entry, movedCounter);
+      } else if (nonNull(archive) && archive.remove(gameId)) {
+         removedFromArchive(movedCounter).accept(gameId);
+         return true;
+      } else {
+         return false;
+      }
+   }
+
+   private boolean exists(String gameId) {
+      return games.containsKey(gameId) || (nonNull(archive) && archive.contains(gameId));
+   }
+
+   private void restore(String gameId, String username, Deck deck, int hits, boolean complete) {
+      Game game = addGame(gameId, username, deck);
+      for (int i = 0; i < hits; i++) {
+         game.hit();
+      }
+      if (complete && !game.isComplete()) {
+         game.stand();
+      }
+   }
+
+   private void addToStore(String username, FrozenGame game) {
+      Entry newEntry = new Entry(clock.getAsLong());
+      newEntry.game = game;
+      addToStore(username, newEntry);
+      completed(newEntry, game);
+   }
+
+   @ManagedAttribute(description = "Number of games currently in the store.")
+   public long getGameCount() {
+      return gameCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of completed games currently in the store, including the archive - those counted towards the total limit.")
+   public long getCompletedGameCount() {
+      return completedGameCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of completed games removed as they had not been accessed within the TTL.")
+   public long getExpiredCount() {
+      return expiredCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of completed games removed as the per-user or total limit on the number of games had been exceeded.")
+   public long getEvictedCount() {
+      return evictedCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of completed games moved to the archive as they had not been accessed for a while.")
+   public long getArchivedCount() {
+      return archivedCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of games removed as they had been moved to the store of another node, or replaced by a newer copy moved from one.")
+   public long getMovedCount() {
+      return movedCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of games in progress that were stood on behalf of the player as they had not been accessed within the idle timeout.")
+   public long getIdleStoodCount() {
+      return idleStoodCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of games in progress that were removed as they had not been accessed within the idle timeout.")
+   public long getIdleExpiredCount() {
+      return idleExpiredCounter.sum();
+   }
+
+   /**
+    * A game together with the user it belongs to and the time it was last accessed.
+    * <p>
+    * Extends {@link UserGameIndex.Member} so the entry can be found in the index of its user without a search of every game of the user. The sequence
+    * number inherited from {@code Member} fits in what would otherwise be padding, so does not increase the size of an entry.
+    */
+   private static final class Entry extends UserGameIndex.Member {
+      /** Set before the entry is added to the store. Replaced by a {@link FrozenGame} once the game is complete, if enabled. */
+      private volatile Game game;
+      /** The index of the user the game belongs to. Set before the entry is added to {@link MemoryGameStore#games}. */
+      private UserGameIndex<Entry> owner;
+      private volatile long lastAccessed;
+      /** Set, while holding the monitor of this entry, once the game has completed and been counted - see {@link MemoryGameStore#completed(Entry, Game)}. */
+      private volatile boolean completed;
+      /** Set, while holding the monitor of this entry, once removed from the store - after which the game is no longer counted. */
+      private boolean removed;
+
+      Entry(long lastAccessed) {
+         this.lastAccessed = lastAccessed;
+      }
+
+      /** Replaces the given completed game, if it is still the game of this entry, with its frozen equivalent. */
+      void freeze(Game completed) {
+         GameState finalState = completed.snapshotCurrentState();
+         // only one update can complete a game, so no other thread can be replacing the game at the same time
+         if (game == completed && FrozenGame.canFreeze(finalState)) {
+            game = new FrozenGame(finalState);
+         }
+      }
+
+      void touch(long now) {
+         // only write if the time has moved on, to avoid contended writes when the same game is repeatedly accessed by many threads
+         if (now > lastAccessed) {
+            lastAccessed = now;
+         }
+      }
+   }
+
+   /**
+    * Restores the games recorded by the journal - first adding the games of the latest checkpoint, then repeating each change made since, in the order it
+    * was originally made.
+    * <p>
+    * As the journal ignores events appended while it is being replayed, changes are repeated using the same methods as when they were originally made. Each
+    * restored game is treated as having last been accessed when it was restored.
+    * <p>
+    * The checkpoint may already include changes that were made after it was started, and changes may have been made to a game after it was removed from the
+    * store by another thread - so a change is skipped if the game no longer exists, or has already moved past the version the change was made to.
+    * <p>
+    * If the archive is enabled then each completed game in the checkpoint is added straight to it, as if it had been archived before the store stopped.
+    */
+   private final class JournalListener implements GameJournal.Listener {
+      /** Whether a game was originally removed as it had expired or been evicted is not recorded, so replayed removals are counted separately. */
+      private final LongAdder removedCounter = new LongAdder();
+
+      @Override
+      public void restored(String gameId, String username, Deck deck, int hits, boolean complete) {
+         restore(gameId, username, deck, hits, complete);
+      }
+
+      @Override
+      public void restored(String username, FrozenGame game) {
+         // a game archived while the checkpoint was written may have been written twice
+         if (exists(game.getId())) {
+            return;
+         }
+         if (nonNull(archive)) {
+            archive.add(username, reserveSequence(username), game, clock.getAsLong());
+            gameCounter.increment();
+            completedGameCounter.increment();
+         } else {
+            addToStore(username, game);
+         }
+      }
+
+      @Override
+      public void created(String gameId, String username, Deck deck) {
+         // already restored if the game was created after the checkpoint was started but before it was written
+         if (!exists(gameId)) {
+            addGame(gameId, username, deck);
+         }
+      }
+
+      @Override
+      public void hit(String gameId, int version) {
+         Game game = find(gameId, version);
+         if (nonNull(game)) {
+            game.hit(version);
+         }
+      }
+
+      @Override
+      public void stood(String gameId, int version) {
+         Game game = find(gameId, version);
+         if (nonNull(game)) {
+            game.stand(version);
+         }
+      }
+
+      @Override
+      public void removed(String gameId) {
+         Entry entry = games.get(gameId);
+         // may have already been removed while replaying, if the store has a per-user limit
+         if (nonNull(entry)) {
+            remove(entry, removedCounter);
+         } else if (nonNull(archive) && archive.remove(gameId)) {
+            gameCounter.decrement();
+            completedGameCounter.decrement();
+            removedCounter.increment();
+         }
+      }
+
+      /** Returns the sequence number for an archived game, which follows the games of the user already restored. */
+      private int reserveSequence(String username) {
+         UserGameIndex<Entry> index = gamesByUser.get(username);
+         int sequence = isNull(index) ? UserGameIndex.START : index.reserveSequence();
+         return sequence == UserGameIndex.START ? archive.nextSequence(username) : sequence;
+      }
+
+      /** Returns the game with the given ID, or {@code null} if it does not exist or has already been updated from the given version. */
+      private Game find(String gameId, int version) {
+         Entry entry = games.get(gameId);
+         if (isNull(entry)) {
+            return null;
+         }
+         Game game = entry.game;
+         return game.getVersion() > version ? null : game;
+      }
+   }
+
+   /** Tracks when a game in progress will become idle. */
+   private static final class IdleTimer extends TimingWheel.Timer {
+      private final Entry entry;
+
+      IdleTimer(Entry entry) {
+         this.entry = entry;
+      }
    }
 }
@@ -0,0 +1,448 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Hand;
+import com.example.blackjack.view.Status;
+
+/**
+ * A mutable representation of a blackjack game, that can still be played.
+ * <p>
+ * Only two actions are currently supported during the playing of a game - "hit" and "stand". TODO Add support for "insurance", "double down", "split" and
+ * "surrender".
+ * </p>
+ * <p>
+ * Every game has a version number which is incremented after every update and returned in the {@code GameState}. The calling code can provide this value as
+ * an argument in subsequent calls to update the {@code Game}. If the value provided by the caller does not match the current value stored by the
+ * {@code Game} then a {@link GameVersionMismatchException} is thrown to indicate that the caller is not properly aligned with the current state. This is
+ * handled at the web service level using {@code ETag}s to specify the value and the {@code 412} (Precondition Failed) error status to indicate an
+ * inconsistency.
+ * </p>
+ * <p>
+ * Once a game is complete it can no longer change, so there is no need to keep the deck or anything used to coordinate updates. A store can replace a
+ * completed game with a {@link FrozenGame}, which only retains what is needed to recreate its final state - so the two only share the {@link Game}
+ * interface.
+ * </p>
+ */
+public class PlayableGame implements Game {
+   private static final Logger LOG = LoggerFactory.getLogger(PlayableGame.class);
+
+   /**
+    * Used to coordinate the updating and retrieval of mutable state.
+    * <p>
+    * Updates are made while holding the write lock. Reads of {@link #snapshot} are optimistic - they do not block, and are not blocked by, each other, and
+    * only fall back to acquiring the read lock if an update was made while the read was taking place.
+    */
+   private final StampedLock lock;
+
+   private final String id;
+   private final Deck deck;
+   /** The cards currently held by the dealer, in the order they were dealt. */
+   private final List<Card> dealer;
+   /** The running value of the cards in {@link #dealer}. */
+   private final HandAccumulator dealerValue;
+   /** The cards currently held by the player, in the order they were dealt. */
+   private final List<Card> player;
+   /** The running value of the cards in {@link #player}. */
+   private final HandAccumulator playerValue;
+   /** Notified when an update completes this game. May be {@code null}. */
+   private final Consumer<Game> completionListener;
+   /** Records each update, before it is applied. May be {@code null}. */
+   private final GameJournal journal;
+   private Status status = Status.PLAYERS_TURN;
+   /** Incremented after every update. */
+   private int version = INITIAL_VERSION;
+   /** {@code true} while this game is being moved to another store, so must not be updated - see {@link #markMoved()}. */
+   private boolean moved;
+   /**
+    * The state of this game as of the end of the most recent update.
+    * <p>
+    * Only replaced while holding the write lock of {@link #lock}, after the initial cards are dealt and after each update. As the snapshot is immutable it
+    * can be read using an optimistic read of {@link #lock}.
+    */
+   private GameState snapshot;
+
+   /**
+    * @param id
+    *           the identifier for this game
+    * @param deck
+    *           the {@code Deck} to use to obtain {@code Card}s for this game.
+    * @throws NullPointerException
+    *            if either {@code id} or {@code deck} are {@code null}
+    */
+   public PlayableGame(String id, Deck deck) {
+      this(id, deck, null);
+   }
+
+   /**
+    * @param id
+    *           the identifier for this game
+    * @param deck
+    *           the {@code Deck} to use to obtain {@code Card}s for this game.
+    * @param completionListener
+    *           notified, after the update has been applied, when an update completes this game - or {@code null}. Not notified if the game is complete as
+    *           soon as the initial cards are dealt.
+    * @throws NullPointerException
+    *            if either {@code id} or {@code deck} are {@code null}
+    */
+   PlayableGame(String id, Deck deck, Consumer<Game> completionListener) {
+      this(id, deck, completionListener, null);
+   }
+
+   /**
+    * @param id
+    *           the identifier for this game
+    * @param deck
+    *           the {@code Deck} to use to obtain {@code Card}s for this game.
+    * @param completionListener
+    *           notified, after the update has been applied, when an update completes this game - or {@code null}
+    * @param journal
+    *           each update is appended to the journal before it is applied, and does not return until the journal has made it durable - or {@code null}
+    * @throws NullPointerException
+    *            if either {@code id} or {@code deck} are {@code null}
+    */
+   PlayableGame(String id, Deck deck, Consumer<Game> completionListener, GameJournal journal) {
+      this.id = requireNonNull(id);
+      this.deck = requireNonNull(deck);
+      this.lock = new StampedLock();
+      this.dealer = new ArrayList<>();
+      this.dealerValue = new HandAccumulator();
+      this.player = new ArrayList<>();
+      this.playerValue = new HandAccumulator();
+      this.completionListener = completionListener;
+      this.journal = journal;
+      dealInitialCards();
+   }
+
+   /** At the start of a game the dealer is dealt one card and the player is dealt two cards. */
+   private void dealInitialCards() {
+      deal(dealer, dealerValue);
+
+      deal(player, playerValue);
+      deal(player, playerValue);
+
+      // call postUpdate so that if the player has been dealt blackjack then the game will be immediately updated to a completed state
+      postUpdate();
+      snapshot = createSnapshot();
+   }
+
+   @Override
+   public String getId() {
+      return id;
+   }
+
+   /** Returns the deck this game deals from - so its order can be recorded. Cards must only be dealt from it by this game. */
+   Deck getDeck() {
+      return deck;
+   }
+
+   /**
+    * Returns an immutable snapshot of the current state of this game.
+    * <p>
+    * The same instance is returned until this game is next updated.
+    */
+   @Override
+   public GameState snapshotCurrentState() {
+      long stamp = lock.tryOptimisticRead();
+      GameState result = snapshot;
+      if (!lock.validate(stamp)) {
+         // an update was in progress - wait for it to complete
+         stamp = lock.readLock();
+         try {
+            result = snapshot;
+         } finally {
+            lock.unlockRead(stamp);
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public int getVersion() {
+      return snapshotCurrentState().getVersion();
+   }
+
+   @Override
+   public Status getStatus() {
+      return snapshotCurrentState().getStatus();
+   }
+
+   /**
+    * Deals another card to the player, if this game is at the given version.
+    *
+    * @param expectedVersion
+    *           the version this game must be at for the update to be applied
+    * @return the updated state of the game as a result of this action
+    * @throws GameVersionMismatchException
+    *            if this game is not at {@code expectedVersion}
+    * @throws GameAlreadyCompleteException
+    *            if this game is not in an appropriate state to be updated
+    */
+   @Override
+   public GameState hit(int expectedVersion) {
+      return update(expectedVersion, GameJournal::appendHit, () -> deal(player, playerValue));
+   }
+
+   /**
+    * Updates the status of this game to indicate that the player has completed their turn, if this game is at the given version.
+    *
+    * @param expectedVersion
+    *           the version this game must be at for the update to be applied
+    * @return the updated state of the game as a result of this action
+    * @throws GameVersionMismatchException
+    *            if this game is not at {@code expectedVersion}
+    * @throws GameAlreadyCompleteException
+    *            if this game is not in an appropriate state to be updated
+    */
+   @Override
+   public GameState stand(int expectedVersion) {
+      return update(expectedVersion, GameJournal::appendStood, this::setPlayerComplete);
+   }
+
+   /**
+    * Attempts to update the state of this game using the given logic.
+    * <p>
+    * This method ensures updates are performed in a consistent way by wrapping the given logic in the following:
+    * <ol>
+    * <li>Ensures updates are processed sequentially rather than in parallel.</li>
+    * <li>Disallows updates to games that are being moved to another store.</li>
+    * <li>Disallows updates to games that are not at the expected version.</li>
+    * <li>Disallows updates to games that are not in an appropriate state.</li>
+    * <li>Appends the update to the journal, if there is one - so updates to the same game are appended in the order they are applied.</li>
+    * <li>Performs any actions required due to the result of the update.</li>
+    * <li>Increments the version.</li>
+    * <li>Replaces the snapshot returned by {@link #snapshotCurrentState()}.</li>
+    * <li>Waits, without holding the lock, for the journal to make the update durable.</li>
+    * <li>Notifies the completion listener, if the update completed the game.</li>
+    * <li>Returns the new state of the game resulting from the update.</li>
+    * </ol>
+    *
+    * @param expectedVersion
+    *           the version this game must be at for the update to be applied, or {@link #ANY_VERSION}
+    * @param journalEvent
+    *           appends the update to the journal
+    * @param updateLogic
+    *           contains the logic to apply to this game
+    * @return the updated state of the game as a result of applying {@code updateLogic} to it
+    */
+   private GameState update(int expectedVersion, JournalEvent journalEvent, Runnable updateLogic) {
+      GameState newSnapshot;
+      long journalPosition = 0;
+      long stamp = lock.writeLock();
+      try {
+         assertNotMoved();
+         assertVersion(expectedVersion);
+         assertUpdatable();
+         if (journal != null) {
+            journalPosition = journalEvent.append(journal, id, version);
+         }
+         updateLogic.run();
+         postUpdate();
+         version++;
+         newSnapshot = createSnapshot();
+         snapshot = newSnapshot;
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+
+      if (journal != null) {
+         journal.awaitDurable(journalPosition);
+      }
+      // notify outside of the lock, so the listener can call back into this game
+      if (completionListener != null && newSnapshot.getStatus().isComplete()) {
+         completionListener.accept(this);
+      }
+      return newSnapshot;
+   }
+
+   /** Returns a new immutable representation of the current state of this game. Must only be called by the constructor or while holding the write lock. */
+   private GameState createSnapshot() {
+      return new GameState(id, version, status, new Hand(dealer, dealerValue.value()), new Hand(player, playerValue.value()));
+   }
+
+   /**
+    * Stops this game from being updated, as it is about to be copied to another store - so the copy cannot miss an update made to this game after it was
+    * taken. Used by {@link ShardedGameStore}.
+    *
+    * @return the version of this game, which can no longer change until {@link #unmarkMoved()} is called
+    */
+   int markMoved() {
+      long stamp = lock.writeLock();
+      try {
+         moved = true;
+         return version;
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   /** Allows this game to be updated again, as it is no longer being moved to another store. */
+   void unmarkMoved() {
+      long stamp = lock.writeLock();
+      try {
+         moved = false;
+      } finally {
+         lock.unlockWrite(stamp);
+      }
+   }
+
+   /**
+    * @throws GameNotFoundException
+    *            if this game is being moved to another store.
+    */
+   private void assertNotMoved() {
+      if (moved) {
+         throw new GameNotFoundException(id);
+      }
+   }
+
+   /**
+    * @throws GameVersionMismatchException
+    *            if this game is not at the expected version.
+    */
+   private void assertVersion(int expectedVersion) {
+      if (expectedVersion != ANY_VERSION && expectedVersion != version) {
+         throw new GameVersionMismatchException(id, expectedVersion, version);
+      }
+   }
+
+   /**
+    * @throws GameAlreadyCompleteException
+    *            if this game is not in an appropriate state to be updated.
+    */
+   private void assertUpdatable() {
+      if (status != Status.PLAYERS_TURN) {
+         throw new GameAlreadyCompleteException(id);
+      }
+   }
+
+   /** Performs any actions required as a result of an update. */
+   private void postUpdate() {
+      if (playerValue.isBlackjack()) {
+         handlePlayerBlackjack();
+      } else if (playerValue.isBust()) {
+         // if the player is bust then there is no need to deal any further cards for the dealer - the player has lost
+         setStatus(Status.DEALER_WON);
+      } else if (isDealersTurn()) {
+         playDealer();
+         setGameOutcome();
+      }
+   }
+
+   /**
+    * Called to determine the outcome of the game when it is has already been determined that the player has blackjack.
+    * <p>
+    * If the player has blackjack (i.e. a hand of two cards with a combined total of 21) then the player will win unless the dealer also has blackjack (in which
+    * case the game outcome will be a draw). Therefore, it is only worth the dealer attempting to add extra cards to their hand if it is possible for them to
+    * get blackjack (based on the value of the single card they were already dealt at the start of the game).
+    */
+   private void handlePlayerBlackjack() {
+      if (HandValuer.isPossibleBlackjack(dealer.get(0))) {
+         deal(dealer, dealerValue);
+         setGameOutcome();
+      } else {
+         setStatus(Status.PLAYER_WON);
+      }
+   }
+
+   /** Returns {@code true} if the players turn is over. */
+   private boolean isDealersTurn() {
+      return status == Status.DEALERS_TURN || playerValue.isTarget();
+   }
+
+   /**
+    * Deal cards for the dealer.
+    * <p>
+    * The dealer continues to hit until the value of their hand is equal to or greater than the dealer's minimum.
+    */
+   private void playDealer() {
+      while (dealerValue.isBelowDealersMinimum()) {
+         deal(dealer, dealerValue);
+      }
+   }
+
+   private void setGameOutcome() {
+      Status gameOutcome = determineOutcome(dealerValue, playerValue);
+      setStatus(gameOutcome);
+   }
+
+   /** Adds a new card to the given hand and updates the running value of that hand. */
+   private void deal(List<Card> hand, HandAccumulator handValue) {
+      Card next = requireNonNull(deck.deal());
+      LOG.info(id + " dealt " + next);
+      hand.add(next);
+      handValue.add(next);
+   }
+
+   /** Updates the status of this game to indicate that the players turn is complete. */
+   private void setPlayerComplete() {
+      setStatus(Status.DEALERS_TURN);
+   }
+
+   private void setStatus(Status newStatus) {
+      LOG.info(id + " changed from " + status + " to " + newStatus);
+      status = newStatus;
+   }
+
+   /**
+    * Returns the outcome of this completed game.
+    * <p>
+    * Players win by not busting and having a total higher than the dealer's. The dealer loses by busting or having a lesser hand than the player who has not
+    * busted. If the player and dealer have the same total then the game is a draw - unless exactly one of the hands is a blackjack, in which case the owner of
+    * that hand wins.
+    */
+   private static Status determineOutcome(HandAccumulator dealer, HandAccumulator player) {
+      if (player.isBust()) {
+         // sanity check - should never get here as if player is bust then postUpdate should of immediately set the status to DEALER_WON,
+         // rather than call this method
+         throw new IllegalStateException();
+      }
+
+      if (dealer.isBust()) {
+         return Status.PLAYER_WON;
+      }
+
+      if (player.value() > dealer.value()) {
+         return Status.PLAYER_WON;
+      } else if (dealer.value() > player.value()) {
+         return Status.DEALER_WON;
+      } else {
+         return determineOutcomeWhenHandsHaveSameValue(dealer, player);
+      }
+   }
+
+   /**
+    * Returns the outcome of this completed game where it has already been determined that both the dealer and player have hands of the same value.
+    * <p>
+    * A blackjack beats any hand that is not a blackjack, even one with a value of 21.
+    */
+   private static Status determineOutcomeWhenHandsHaveSameValue(HandAccumulator dealer, HandAccumulator player) {
+      boolean dealerHasBlackjack = dealer.isBlackjack();
+      boolean playerHasBlackjack = player.isBlackjack();
+      if (dealerHasBlackjack == playerHasBlackjack) {
+         return Status.DRAW;
+      } else if (dealerHasBlackjack) {
+         return Status.DEALER_WON;
+      } else {
+         // sanity check - if player has blackjack then it should not be possible for the dealer to reach 21 with more than 2 cards,
+         // as dealer will stop dealing themselves card once they know they cannot win, so the branch of the code should never be executed
+         throw new IllegalStateException();
+      }
+   }
+
+   /** Appends an update, of the game with the given ID at the given version, to a journal - returning the position to wait for. */
+   @FunctionalInterface
+   private interface JournalEvent {
+      long append(GameJournal journal, String gameId, int version);
+   }
+}
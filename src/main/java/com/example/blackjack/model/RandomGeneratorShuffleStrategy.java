@@ -0,0 +1,24 @@
+package com.example.blackjack.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A {@code ShuffleStrategy} which uses the Fisher-Yates algorithm to shuffle elements, with random numbers obtained from a {@code RandomGenerator}.
+ * <p>
+ * Subclasses determine which {@code RandomGenerator} is used. As shuffles can be requested by many threads at the same time, subclasses should avoid
+ * returning a generator that is shared between threads.
+ */
+abstract class RandomGeneratorShuffleStrategy<T> implements ShuffleStrategy<T> {
+   @Override
+   public List<T> shuffle(List<T> input) {
+      List<T> copy = new ArrayList<>(input);
+      RandomGenerator random = random();
+      for (int i = copy.size() - 1; i > 0; i--) {
+         Collections.swap(copy, i, random.nextInt(i + 1));
+      }
+      return copy;
+   }
+}
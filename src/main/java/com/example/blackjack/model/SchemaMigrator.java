@@ -0,0 +1,149 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/**
+ * Brings the schema of a database up to date, by applying each migration script that has not already been applied to it.
+ * <p>
+ * A migration is an SQL script, on the classpath in the given location, named {@code V<version>__<description>.sql} - e.g.
+ * {@code V1__create_games.sql}. Each migration applied is recorded in the {@code schema_version} table, so is never applied again. Migrations are applied in
+ * order of version, each in its own transaction. Once a migration has been released it must never be changed - the schema is changed by adding a migration
+ * with a higher version.
+ * <p>
+ * Migrations are only applied by one instance at a time if the database supports transactional DDL - otherwise, when adding a migration to a service with
+ * several instances sharing a database, start one instance before the others.
+ */
+final class SchemaMigrator {
+   private static final Logger LOG = LoggerFactory.getLogger(SchemaMigrator.class);
+   private static final Pattern NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+   private final DataSource dataSource;
+   private final String location;
+
+   /**
+    * @param dataSource
+    *           the database to migrate
+    * @param location
+    *           the classpath directory containing the migrations, e.g. {@code db/game-store}
+    */
+   SchemaMigrator(DataSource dataSource, String location) {
+      this.dataSource = requireNonNull(dataSource);
+      this.location = requireNonNull(location);
+   }
+
+   /**
+    * Applies every migration with a higher version than the latest recorded in {@code schema_version}.
+    *
+    * @return the number of migrations applied
+    * @throws IllegalStateException
+    *            if the database has already been migrated to a higher version than the latest migration, or two migrations have the same version
+    * @throws org.springframework.dao.DataAccessException
+    *            if a migration fails - any migrations before it remain applied
+    */
+   int migrate() {
+      List<Migration> migrations = findMigrations();
+      int latest = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version;
+
+      JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+      jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL PRIMARY KEY, description VARCHAR(255) NOT NULL, "
+            + "applied_at TIMESTAMP NOT NULL)");
+      int current = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(version), 0) FROM schema_version", Integer.class);
+      if (current > latest) {
+         throw new IllegalStateException("database schema is at version " + current + " but the latest migration in " + location + " is version " + latest);
+      }
+
+      int applied = 0;
+      for (Migration migration : migrations) {
+         if (migration.version > current) {
+            jdbcTemplate.execute((Connection connection) -> {
+               apply(connection, migration);
+               return null;
+            });
+            applied++;
+         }
+      }
+      return applied;
+   }
+
+   private void apply(Connection connection, Migration migration) throws SQLException {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+         ScriptUtils.executeSqlScript(connection, new EncodedResource(migration.script, StandardCharsets.UTF_8));
+         try (PreparedStatement insert = connection.prepareStatement("INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+            insert.setInt(1, migration.version);
+            insert.setString(2, migration.description);
+            insert.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            insert.executeUpdate();
+         }
+         connection.commit();
+         LOG.info("Migrated database schema to version " + migration.version + " - " + migration.description);
+      } catch (SQLException | RuntimeException e) {
+         connection.rollback();
+         throw e;
+      } finally {
+         connection.setAutoCommit(autoCommit);
+      }
+   }
+
+   /** Returns every migration in {@link #location}, in order of version. */
+   private List<Migration> findMigrations() {
+      Resource[] scripts;
+      try {
+         scripts = new PathMatchingResourcePatternResolver(getClass().getClassLoader()).getResources("classpath*:" + location + "/*.sql");
+      } catch (IOException e) {
+         throw new UncheckedIOException("Could not list migrations in " + location, e);
+      }
+
+      List<Migration> migrations = new ArrayList<>(scripts.length);
+      for (Resource script : scripts) {
+         Matcher matcher = NAME.matcher(script.getFilename());
+         if (!matcher.matches()) {
+            throw new IllegalStateException("migration " + script.getFilename() + " in " + location + " is not named V<version>__<description>.sql");
+         }
+         migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), script));
+      }
+      migrations.sort(Comparator.comparingInt(m -> m.version));
+      for (int i = 1; i < migrations.size(); i++) {
+         if (migrations.get(i).version == migrations.get(i - 1).version) {
+            throw new IllegalStateException("more than one migration in " + location + " has version " + migrations.get(i).version);
+         }
+      }
+      return migrations;
+   }
+
+   private static final class Migration {
+      private final int version;
+      private final String description;
+      private final Resource script;
+
+      Migration(int version, String description, Resource script) {
+         this.version = version;
+         this.description = description;
+         this.script = script;
+      }
+   }
+}
@@ -0,0 +1,24 @@
+package com.example.blackjack.model;
+
+import java.security.SecureRandom;
+import java.util.random.RandomGenerator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * A {@code ShuffleStrategy} which uses a {@code SecureRandom} per thread.
+ * <p>
+ * This is the slowest of the available strategies but the only one that is cryptographically secure. Each thread is given its own generator, created the
+ * first time that thread performs a shuffle, so threads do not contend with each other for a single shared {@code SecureRandom}.
+ */
+@Component
+@ConditionalOnProperty(name = "blackjack.shuffle-strategy", havingValue = "secure-random")
+class SecureRandomShuffleStrategy<T> extends RandomGeneratorShuffleStrategy<T> {
+   private final ThreadLocal<SecureRandom> generators = ThreadLocal.withInitial(SecureRandom::new);
+
+   @Override
+   public RandomGenerator random() {
+      return generators.get();
+   }
+}
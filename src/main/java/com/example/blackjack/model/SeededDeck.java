@@ -0,0 +1,81 @@
+package com.example.blackjack.model;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * A {@code Deck} whose order is derived from a 64-bit seed.
+ * <p>
+ * The only state held by the deck is its seed and the number of cards that have been dealt from it. The card to deal next is calculated, when it is needed,
+ * by replaying the steps of a Fisher-Yates shuffle - the same algorithm used by {@link LazyShuffleDeck} - with each random number taken from a
+ * <a href="https://prng.di.unimi.it/splitmix64.c">SplitMix64</a> sequence started from the seed. As the {@code n}th number of a SplitMix64 sequence can be
+ * calculated directly, without calculating the numbers before it, replaying the shuffle requires no memory other than local variables. Dealing the
+ * {@code n}th card takes time proportional to {@code n}, which is insignificant for the number of cards dealt in a typical game.
+ * <p>
+ * Two decks created with the same seed will always deal the same cards in the same order, so the seed of a deck is sufficient to replay any game that used
+ * it - e.g. for auditing a completed game or for reproducing a load test.
+ *
+ * @see DeckFactory.Mode#SEEDED
+ */
+final class SeededDeck implements Deck {
+   /** The difference between consecutive states of a SplitMix64 generator. */
+   private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+   /** The number of cards contained in the deck before any are dealt. */
+   private static final int NUMBER_OF_CARDS = DeckFactory.CARDS.size();
+
+   private final long seed;
+   /** The number of cards that have been dealt from this deck. */
+   private int dealt;
+
+   /**
+    * @param seed
+    *           determines the order of the cards in this deck
+    */
+   SeededDeck(long seed) {
+      this.seed = seed;
+   }
+
+   /** Returns the seed used to determine the order of the cards in this deck. */
+   long getSeed() {
+      return seed;
+   }
+
+   @Override
+   public Card deal() {
+      if (dealt == NUMBER_OF_CARDS) {
+         throw new IllegalStateException("deck is empty");
+      }
+
+      // The slot, of the remaining cards, selected by this step of the shuffle. Work back through the earlier steps to find which card was in this slot at
+      // the start - a slot only changed contents if it was selected by an earlier step, in which case it was given the card from the last remaining slot.
+      int slot = select(dealt);
+      for (int step = dealt - 1; step >= 0; step--) {
+         if (slot == select(step)) {
+            slot = lastRemainingSlot(step);
+         }
+      }
+      dealt++;
+
+      // at the start of the shuffle the card in each slot is the card whose code is the same as the index of the slot
+      return CardCodes.decode(slot);
+   }
+
+   /** Returns the slot, in the range {@code 0} (inclusive) to {@code lastRemainingSlot(step)} (inclusive), selected by the given step of the shuffle. */
+   private int select(int step) {
+      int numberOfRemainingCards = NUMBER_OF_CARDS - step;
+      // map the (non-negative) random number to the required range by taking the high bits of its product with the size of the range
+      return (int) Math.multiplyHigh(random(step) >>> 1, numberOfRemainingCards << 1);
+   }
+
+   private static int lastRemainingSlot(int step) {
+      return NUMBER_OF_CARDS - 1 - step;
+   }
+
+   /** Returns the random number used by the given step of the shuffle - the {@code step + 1}th output of a SplitMix64 generator seeded with {@link #seed}. */
+   private long random(int step) {
+      long z = seed + (step + 1) * GOLDEN_GAMMA;
+      z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+      return z ^ (z >>> 31);
+   }
+}
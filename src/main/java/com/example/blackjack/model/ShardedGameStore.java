@@ -0,0 +1,589 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.example.blackjack.view.Action;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * A {@code GameStore} whose games are spread across the nodes of a cluster, each user's games being held by the {@link MemoryGameStore} of one node.
+ * <p>
+ * Each user is assigned to a node by a {@link ConsistentHashRing} of the nodes in {@code blackjack.cluster.nodes}. A request for a user assigned to this
+ * node ({@code blackjack.cluster.self}) is fulfilled by the local store, any other request is forwarded to the node the user is assigned to using a
+ * {@link ClusterClient}. So a request can be sent to any node - e.g. by a load balancer with no knowledge of users - without the games of a user created by
+ * one node being missing from another.
+ * <p>
+ * The nodes can be changed while running, using the {@link #setNodes(String)} JMX operation - which has to be invoked on every node, with the same
+ * nodes. The games of each user no longer assigned to this node are then moved, in the background, to the node they are now assigned to. While they are
+ * being moved a game that is not found on the node its user is now assigned to is looked for on the node the user was assigned to before the latest
+ * change - so games can still be found until they have been moved. A game is {@link PlayableGame#markMoved() marked} as being moved before it is copied, so it
+ * cannot be updated between being copied and being removed - an update made then would be missing from the copy. Such an update fails as if the game was
+ * not found, rather than being acknowledged and then lost - and once the copy has been added to the node the user is now assigned to, the game can be
+ * updated there. A game is only removed if it is still at the version it was copied at, otherwise it is copied again - and a copy replaces any earlier,
+ * lower versioned, copy of the same game. If the games of a user cannot be moved (e.g. as the node they are now assigned to cannot be reached) they remain
+ * marked, so cannot be updated, until they can be - or until the user is assigned back to this node. A node is added by starting it with the current
+ * nodes, then setting the nodes, including it, on every node. A node is removed by setting the nodes, on every node including it, to a list that does not
+ * include it - once its games have been moved it can be stopped. As games move between nodes, each node must have a different {@code blackjack.node-id}
+ * so game IDs are unique across the cluster.
+ * <p>
+ * Weaknesses include:
+ * <ul>
+ * <li>An update made to a game while it is being moved fails, and has to be made again once it has been moved.</li>
+ * <li>If a user is assigned back to this node after a copy of their games has been added to another node, but before the move was acknowledged, the games
+ * can be updated here while the copy is still held by the other node. The other node then moves the copy back, which replaces the game here if it has
+ * been updated by the other node more times than by this one.</li>
+ * <li>While games are being moved a user's list of games may be incomplete, and games moved to a node are listed after any games of the user already
+ * created by it - and a cursor returned before the move may no longer be valid.</li>
+ * <li>Games are only held in memory by one node - so are lost if that node fails. For this reason, and as a journal would restore games that have since
+ * been moved, the journal cannot be enabled. Nor can the database, as the games of each node must be held by its {@link MemoryGameStore}, or the cache -
+ * which would defer updates to the games of other nodes, without being told when they move.</li>
+ * </ul>
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "blackjack.cluster.enabled", havingValue = "true")
+@ManagedResource(objectName = "com.example.blackjack.model:name=ShardedGameStore", description = "Store of games spread across the nodes of a cluster by user.")
+public final class ShardedGameStore implements GameStore {
+   private static final Logger LOG = LoggerFactory.getLogger(ShardedGameStore.class);
+   /** How long to wait before trying again to move games that could not be moved. */
+   private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+   /** The number of game IDs requested at a time when finding the games of a user to move. */
+   private static final int MOVE_PAGE_SIZE = 1000;
+   // types of moved game
+   private static final byte GAME = 1;
+   private static final byte FROZEN_GAME = 2;
+   // types of deck
+   private static final byte SHUFFLED_DECK = 1;
+   private static final byte SEEDED_DECK = 2;
+
+   private final MemoryGameStore local;
+   private final ClusterClient client;
+   private final String self;
+   private volatile Membership membership;
+   /** Users whose games have been {@link PlayableGame#markMoved() marked} as being moved, but not yet moved. Only accessed by {@link #rebalance()}. */
+   private final Set<String> movingUsers = new HashSet<>();
+   private final AtomicBoolean rebalanceRequested = new AtomicBoolean();
+   private final Thread rebalancer = new Thread(this::rebalancePeriodically, "game-store-rebalancer");
+   private volatile boolean running;
+   private final LongAdder localCounter = new LongAdder();
+   private final LongAdder forwardedCounter = new LongAdder();
+   private final LongAdder previousOwnerCounter = new LongAdder();
+   private final LongAdder movedOutCounter = new LongAdder();
+   private final LongAdder movedInCounter = new LongAdder();
+   private final LongAdder rebalanceCounter = new LongAdder();
+   private final LongAdder moveFailureCounter = new LongAdder();
+
+   /**
+    * @param local
+    *           the in-memory store of this node - absent if {@code blackjack.store.jdbc.enabled} is {@code true}
+    * @param cacheEnabled
+    *           the value of {@code blackjack.store.cache.enabled}
+    * @param jdbcEnabled
+    *           the value of {@code blackjack.store.jdbc.enabled}
+    * @throws IllegalStateException
+    *            if the cache or the database is enabled - or for any of the reasons of
+    *            {@link #ShardedGameStore(MemoryGameStore, DeckFactory, ClusterClient, String, String)}
+    */
+   @Autowired
+   ShardedGameStore(Optional<MemoryGameStore> local, DeckFactory deckFactory, ClusterClient client, @Value("${blackjack.cluster.self:}") String self,
+               @Value("${blackjack.cluster.nodes:}") String nodes, @Value("${blackjack.store.cache.enabled:false}") boolean cacheEnabled,
+               @Value("${blackjack.store.jdbc.enabled:false}") boolean jdbcEnabled) {
+      this(requireLocalStore(local, cacheEnabled, jdbcEnabled), deckFactory, client, self, nodes);
+   }
+
+   /**
+    * @param self
+    *           the base URL of this node, as it appears in {@code nodes}
+    * @param nodes
+    *           the base URLs of the nodes of the cluster, separated by commas - if empty, the cluster consists of only this node
+    * @throws IllegalArgumentException
+    *            if {@code self} is empty
+    * @throws IllegalStateException
+    *            if the journal of {@code local} is enabled, or the decks created by {@code deckFactory} are
+    *            {@link DeckFactory.Mode#LAZY_SHUFFLE lazily shuffled} - the order of such a deck is not decided until its cards are dealt, so a game using
+    *            it cannot be moved
+    */
+   ShardedGameStore(MemoryGameStore local, DeckFactory deckFactory, ClusterClient client, String self, String nodes) {
+      if (local.isJournalEnabled()) {
+         throw new IllegalStateException("the journal cannot be enabled when the store is shared across a cluster");
+      }
+      if (deckFactory.getMode() == DeckFactory.Mode.LAZY_SHUFFLE) {
+         throw new IllegalStateException("sharing the store across a cluster requires a deck mode of " + DeckFactory.Mode.SHUFFLED.getPropertyValue() + " or "
+               + DeckFactory.Mode.SEEDED.getPropertyValue() + " but was " + DeckFactory.Mode.LAZY_SHUFFLE.getPropertyValue());
+      }
+      this.local = requireNonNull(local);
+      this.client = requireNonNull(client);
+      this.self = normalize(self);
+      if (this.self.isEmpty()) {
+         throw new IllegalArgumentException("the URL of this node must be specified");
+      }
+      this.membership = new Membership(new ConsistentHashRing(parseNodes(nodes.isBlank() ? self : nodes)), null);
+      this.rebalancer.setDaemon(true);
+   }
+
+   /**
+    * Returns the in-memory store of this node, if the other stores that cannot be combined with a cluster are disabled. The cache is not created when the
+    * cluster is enabled, and the in-memory store is not created when the database is - so neither fails to start with a less helpful error first.
+    */
+   private static MemoryGameStore requireLocalStore(Optional<MemoryGameStore> local, boolean cacheEnabled, boolean jdbcEnabled) {
+      if (cacheEnabled) {
+         throw new IllegalStateException("the cache cannot be enabled when the store is shared across a cluster");
+      }
+      if (jdbcEnabled || local.isEmpty()) {
+         throw new IllegalStateException("the database cannot be enabled when the store is shared across a cluster");
+      }
+      return local.get();
+   }
+
+   private static List<String> parseNodes(String nodes) {
+      Set<String> parsed = new LinkedHashSet<>();
+      for (String node : nodes.split(",")) {
+         node = normalize(node);
+         if (!node.isEmpty()) {
+            parsed.add(node);
+         }
+      }
+      return new ArrayList<>(parsed);
+   }
+
+   /** Returns the given URL without surrounding whitespace or a trailing slash, so the same node is always identified by the same string. */
+   private static String normalize(String url) {
+      String trimmed = url.trim();
+      return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+   }
+
+   /** Starts the background thread which moves the games of users no longer assigned to this node. */
+   @PostConstruct
+   void start() {
+      running = true;
+      rebalancer.start();
+   }
+
+   @PreDestroy
+   void stop() {
+      running = false;
+      rebalancer.interrupt();
+   }
+
+   @Override
+   public Game createGame(String username) {
+      String owner = membership.current.ownerOf(username);
+      if (owner.equals(self)) {
+         localCounter.increment();
+         return local.createGame(username);
+      }
+      forwardedCounter.increment();
+      return new RemoteGame(owner, username, client.createGame(owner, username));
+   }
+
+   /**
+    * Returns the game from the node its user is assigned to - or, if not found there, from the node the user was assigned to before the latest change of
+    * nodes, as it may not have been moved yet.
+    */
+   @Override
+   public Game findByUsernameAndGameId(String username, String gameId) {
+      Membership m = membership;
+      String owner = m.current.ownerOf(username);
+      try {
+         return find(owner, username, gameId);
+      } catch (GameNotFoundException e) {
+         String previousOwner = isNull(m.previous) ? owner : m.previous.ownerOf(username);
+         if (previousOwner.equals(owner)) {
+            throw e;
+         }
+         previousOwnerCounter.increment();
+         return find(previousOwner, username, gameId);
+      }
+   }
+
+   private Game find(String node, String username, String gameId) {
+      if (node.equals(self)) {
+         localCounter.increment();
+         return local.findByUsernameAndGameId(username, gameId);
+      }
+      forwardedCounter.increment();
+      return new RemoteGame(node, username, client.findGame(node, username, gameId));
+   }
+
+   @Override
+   public GameIdPage findGameIdsByUsername(String username, Status status, String cursor, int limit) {
+      String owner = membership.current.ownerOf(username);
+      if (owner.equals(self)) {
+         localCounter.increment();
+         return local.findGameIdsByUsername(username, status, cursor, limit);
+      }
+      forwardedCounter.increment();
+      return client.findGameIds(owner, username, status, cursor, limit);
+   }
+
+   /** Creates a game in the store of this node, for a request forwarded by another node. */
+   public Game createLocalGame(String username) {
+      return local.createGame(username);
+   }
+
+   /** Returns a game from the store of this node, for a request forwarded by another node. */
+   public Game findLocalGame(String username, String gameId) {
+      return local.findByUsernameAndGameId(username, gameId);
+   }
+
+   /** Returns a page of game IDs from the store of this node, for a request forwarded by another node. */
+   public GameIdPage findLocalGameIds(String username, Status status, String cursor, int limit) {
+      return local.findGameIdsByUsername(username, status, cursor, limit);
+   }
+
+   /**
+    * Adds games moved from another node to the store of this node.
+    * <p>
+    * Games already in the store are skipped, unless at a lower version than the game moved - so if a move fails part way through, the same games can be
+    * moved again.
+    *
+    * @param games
+    *           the games, as encoded by the node they were moved from
+    * @throws IllegalArgumentException
+    *            if {@code games} is not a valid encoding
+    */
+   public void addMovedGames(String username, byte[] games) {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(games));
+      try {
+         while (in.available() > 0) {
+            byte type = in.readByte();
+            String gameId = in.readUTF();
+            if (type == GAME) {
+               Deck deck = readDeck(in);
+               local.addMovedGame(gameId, username, deck, in.readUnsignedByte(), in.readBoolean(), in.readInt());
+            } else if (type == FROZEN_GAME) {
+               Status status = Status.values()[in.readUnsignedByte()];
+               local.addMovedGame(username, new FrozenGame(gameId, status, in.readInt(), in.readLong(), in.readLong()));
+            } else {
+               throw new IllegalArgumentException("unknown game type " + type);
+            }
+            movedInCounter.increment();
+         }
+      } catch (IOException | IndexOutOfBoundsException e) {
+         throw new IllegalArgumentException("invalid moved games", e);
+      }
+   }
+
+   private static Deck readDeck(DataInputStream in) throws IOException {
+      byte type = in.readByte();
+      if (type == SEEDED_DECK) {
+         return new SeededDeck(in.readLong());
+      } else if (type == SHUFFLED_DECK) {
+         byte[] cards = new byte[in.readUnsignedByte()];
+         in.readFully(cards);
+         return new ShuffledDeck(cards);
+      } else {
+         throw new IllegalArgumentException("unknown deck type " + type);
+      }
+   }
+
+   /**
+    * Encodes the given games, so they can be added to the store of another node by {@link #addMovedGames(String, byte[])}.
+    * <p>
+    * A completed game that has been frozen is encoded as its final state. Any other game is encoded as its deck, from the first card, and the updates that
+    * have been applied to it - every update other than a stand deals one card to the player - so it can be replayed to the same state, including the cards
+    * still to be dealt - along with its version.
+    */
+   static byte[] encode(List<Game> games) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      try {
+         for (Game game : games) {
+            if (game instanceof FrozenGame) {
+               FrozenGame frozen = (FrozenGame) game;
+               out.writeByte(FROZEN_GAME);
+               out.writeUTF(frozen.getId());
+               out.writeByte(frozen.getStatus().ordinal());
+               out.writeInt(frozen.getVersion());
+               out.writeLong(frozen.getDealerCards());
+               out.writeLong(frozen.getPlayerCards());
+            } else {
+               GameState state = game.snapshotCurrentState();
+               out.writeByte(GAME);
+               out.writeUTF(game.getId());
+               writeDeck(out, game.getId(), ((PlayableGame) game).getDeck());
+               out.writeByte(state.getPlayer().getCards().size() - 2);
+               out.writeBoolean(state.getStatus().isComplete());
+               out.writeInt(state.getVersion());
+            }
+         }
+      } catch (IOException e) {
+         // not expected, as writing to memory
+         throw new UncheckedIOException(e);
+      }
+      return bytes.toByteArray();
+   }
+
+   private static void writeDeck(DataOutputStream out, String gameId, Deck deck) throws IOException {
+      if (deck instanceof SeededDeck) {
+         out.writeByte(SEEDED_DECK);
+         out.writeLong(((SeededDeck) deck).getSeed());
+      } else if (deck instanceof ShuffledDeck) {
+         byte[] cards = ((ShuffledDeck) deck).getCards();
+         out.writeByte(SHUFFLED_DECK);
+         out.writeByte(cards.length);
+         out.write(cards);
+      } else {
+         throw new IllegalArgumentException("cannot move " + deck.getClass().getSimpleName() + " for game id " + gameId);
+      }
+   }
+
+   /**
+    * Sets the nodes of the cluster, and starts moving the games of users no longer assigned to this node in the background.
+    *
+    * @param nodes
+    *           the base URLs of the nodes, separated by commas
+    * @throws IllegalArgumentException
+    *            if {@code nodes} does not contain a URL
+    */
+   @ManagedOperation(description = "Sets the base URLs, separated by commas, of the nodes of the cluster - moving the games of users no longer assigned to this node.")
+   public void setNodes(String nodes) {
+      ConsistentHashRing ring = new ConsistentHashRing(parseNodes(nodes));
+      synchronized (this) {
+         membership = new Membership(ring, membership.current);
+      }
+      LOG.info("Nodes of the cluster changed to " + ring.getNodes());
+      rebalanceRequested.set(true);
+      LockSupport.unpark(rebalancer);
+   }
+
+   @ManagedAttribute(description = "The base URLs of the nodes of the cluster.")
+   public String getNodes() {
+      return String.join(",", membership.current.getNodes());
+   }
+
+   @ManagedAttribute(description = "The base URL of this node.")
+   public String getSelf() {
+      return self;
+   }
+
+   private void rebalancePeriodically() {
+      while (running) {
+         if (rebalanceRequested.getAndSet(false)) {
+            if (rebalance() > 0) {
+               rebalanceRequested.set(true);
+               LockSupport.parkNanos(this, RETRY_DELAY.toNanos());
+            }
+         } else {
+            LockSupport.park(this);
+         }
+      }
+   }
+
+   /**
+    * Moves the games of every user with games in the local store who is not assigned to this node to the node they are assigned to.
+    * <p>
+    * The games of a user are marked as being moved, copied to the node they are assigned to and then removed from the local store. Games created by requests
+    * that were in progress when the nodes changed are moved by copying again, until the user has no games left in the local store. The games of a user
+    * assigned back to this node before they could be moved can be updated again.
+    * <p>
+    * Must only be called by one thread at a time.
+    *
+    * @return the number of users whose games could not be moved - e.g. as the node they are assigned to could not be reached
+    */
+   int rebalance() {
+      rebalanceCounter.increment();
+      ConsistentHashRing ring = membership.current;
+      int failures = 0;
+      for (String username : local.getUsernames()) {
+         String owner = ring.ownerOf(username);
+         if (owner.equals(self)) {
+            if (movingUsers.remove(username)) {
+               findAllLocalGames(username).forEach(ShardedGameStore::unmarkMoved);
+            }
+         } else {
+            try {
+               move(username, owner);
+            } catch (RuntimeException e) {
+               failures++;
+               moveFailureCounter.increment();
+               LOG.warn("Failed to move the games of " + username + " to " + owner, e);
+            }
+         }
+      }
+      return failures;
+   }
+
+   private void move(String username, String owner) {
+      long start = System.nanoTime();
+      int moved = 0;
+      List<Game> games;
+      movingUsers.add(username);
+      while (!(games = findAllLocalGames(username)).isEmpty()) {
+         int[] versions = new int[games.size()];
+         for (int i = 0; i < versions.length; i++) {
+            versions[i] = markMoved(games.get(i));
+         }
+         client.moveGames(owner, username, encode(games));
+         for (int i = 0; i < versions.length; i++) {
+            if (local.removeMovedGame(games.get(i).getId(), versions[i])) {
+               movedOutCounter.increment();
+               moved++;
+            }
+         }
+      }
+      movingUsers.remove(username);
+      LOG.info("Moved " + moved + " games of " + username + " to " + owner + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+   }
+
+   /** Marks a game as being moved, returning the version it will be copied at. A frozen game can never be updated, so does not need to be marked. */
+   private static int markMoved(Game game) {
+      return game instanceof PlayableGame ? ((PlayableGame) game).markMoved() : game.getVersion();
+   }
+
+   private static void unmarkMoved(Game game) {
+      if (game instanceof PlayableGame) {
+         ((PlayableGame) game).unmarkMoved();
+      }
+   }
+
+   private List<Game> findAllLocalGames(String username) {
+      List<Game> games = new ArrayList<>();
+      String cursor = null;
+      do {
+         GameIdPage page = local.findGameIdsByUsername(username, null, cursor, MOVE_PAGE_SIZE);
+         for (String gameId : page.getGameIds()) {
+            try {
+               games.add(local.findByUsernameAndGameId(username, gameId));
+            } catch (GameNotFoundException e) {
+               // removed since it was listed
+            }
+         }
+         cursor = page.getNextCursor();
+      } while (nonNull(cursor));
+      return games;
+   }
+
+   @ManagedAttribute(description = "Number of requests fulfilled by the store of this node.")
+   public long getLocalCount() {
+      return localCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of requests forwarded to another node.")
+   public long getForwardedCount() {
+      return forwardedCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of games not found on the node their user is assigned to, so looked for on the node the user was previously assigned to.")
+   public long getPreviousOwnerCount() {
+      return previousOwnerCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of games moved from this node to another node.")
+   public long getMovedOutCount() {
+      return movedOutCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of games moved to this node from another node.")
+   public long getMovedInCount() {
+      return movedInCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of times the games of users no longer assigned to this node have been looked for and moved.")
+   public long getRebalanceCount() {
+      return rebalanceCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of times the games of a user could not be moved to the node they are assigned to.")
+   public long getMoveFailureCount() {
+      return moveFailureCounter.sum();
+   }
+
+   /** The nodes of the cluster, and the nodes before they were last changed - replaced as a whole so both are always read together. */
+   private static final class Membership {
+      private final ConsistentHashRing current;
+      /** {@code null} if the nodes have not been changed since this node started. */
+      private final ConsistentHashRing previous;
+
+      Membership(ConsistentHashRing current, ConsistentHashRing previous) {
+         this.current = current;
+         this.previous = previous;
+      }
+   }
+
+   /** A game held by another node. Holds the state of the game returned by the latest request to the node, and forwards each update to it. */
+   private final class RemoteGame implements Game {
+      private final String node;
+      private final String username;
+      private final String id;
+      private volatile GameState state;
+
+      RemoteGame(String node, String username, GameState state) {
+         this.node = node;
+         this.username = username;
+         this.id = state.getId();
+         this.state = state;
+      }
+
+      @Override
+      public String getId() {
+         return id;
+      }
+
+      @Override
+      public int getVersion() {
+         return state.getVersion();
+      }
+
+      @Override
+      public GameState snapshotCurrentState() {
+         return state;
+      }
+
+      @Override
+      public Status getStatus() {
+         return state.getStatus();
+      }
+
+      @Override
+      public GameState hit(int expectedVersion) {
+         return update(Action.HIT, expectedVersion);
+      }
+
+      @Override
+      public GameState stand(int expectedVersion) {
+         return update(Action.STAND, expectedVersion);
+      }
+
+      private GameState update(Action action, int expectedVersion) {
+         GameState updated = client.updateGame(node, username, id, action, expectedVersion);
+         state = updated;
+         return updated;
+      }
+   }
+}
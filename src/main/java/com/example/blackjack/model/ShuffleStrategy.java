@@ -1,19 +1,22 @@
 package com.example.blackjack.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-
-import org.springframework.stereotype.Component;
+import java.util.random.RandomGenerator;
 
 /**
  * Provides a mechanism for randomly shuffling elements of a list.
  * <p>
- * <b>NOTE:</b> In a production system, involving the gambling of real money, the "randomness" provided by {@code Collections.shuffle(List)} may be deemed
- * insufficient and a hardware random number generator preferred instead. TODO Make this an interface so new strategies can be added easily.
+ * The implementation used is selected by the {@code blackjack.shuffle-strategy} property:
+ * <ul>
+ * <li>{@code thread-local-random} (the default) - {@link ThreadLocalRandomShuffleStrategy}</li>
+ * <li>{@code splittable-random} - {@link SplittableRandomShuffleStrategy}</li>
+ * <li>{@code secure-random} - {@link SecureRandomShuffleStrategy}</li>
+ * </ul>
+ * <p>
+ * <b>NOTE:</b> In a production system, involving the gambling of real money, the "randomness" provided by a pseudorandom number generator may be deemed
+ * insufficient and a hardware random number generator preferred instead.
  */
-@Component
-class ShuffleStrategy<T> {
+interface ShuffleStrategy<T> {
    /**
     * Returns a randomly shuffled copy of the given list.
     *
@@ -21,9 +24,14 @@ class ShuffleStrategy<T> {
     *           a list containing the elements to be shuffled
     * @return a randomly shuffled copy of {@code input}
     */
-   List<T> shuffle(List<T> input) {
-      List<T> copy = new ArrayList<>(input);
-      Collections.shuffle(copy);
-      return copy;
-   }
+   List<T> shuffle(List<T> input);
+
+   /**
+    * Returns the source of randomness used by this strategy for the current thread.
+    * <p>
+    * Used by decks that select each card at the moment it is dealt, rather than having their contents shuffled in advance.
+    *
+    * @see LazyShuffleDeck
+    */
+   RandomGenerator random();
 }
@@ -0,0 +1,61 @@
+package com.example.blackjack.model;
+
+import java.util.List;
+
+import com.example.blackjack.view.Card;
+
+/**
+ * A {@code Deck} whose cards are shuffled before it is created.
+ * <p>
+ * Rather than holding a reference to each {@code Card} the deck stores the cards as a compact array of codes (see {@link CardCodes}) together with the
+ * position of the next card to be dealt. Dealing a card does not modify the array - it just moves the position forward.
+ * <p>
+ * As the order of every card is decided in advance, anyone who managed to get access to the contents of the deck would know the order the remaining cards
+ * will be dealt. See {@link LazyShuffleDeck} for an alternative that only decides which card to deal at the moment it is dealt.
+ *
+ * @see DeckFactory#createDeck()
+ */
+final class ShuffledDeck implements Deck {
+   /** The codes of the cards contained in the deck, in the order they are to be dealt. */
+   private final byte[] cards;
+   /** The index, in {@link #cards}, of the next card to be dealt. */
+   private int next;
+
+   /**
+    * @param cards
+    *           the contents of the deck, in the order they are to be dealt
+    */
+   ShuffledDeck(List<Card> cards) {
+      this.cards = new byte[cards.size()];
+      for (int i = 0; i < this.cards.length; i++) {
+         this.cards[i] = CardCodes.encode(cards.get(i));
+      }
+   }
+
+   /**
+    * @param cards
+    *           the {@link CardCodes codes} of the contents of the deck, in the order they are to be dealt
+    */
+   ShuffledDeck(byte[] cards) {
+      this.cards = cards.clone();
+   }
+
+   /** Returns the codes of every card in the deck, including those already dealt, in the order they are to be dealt. */
+   byte[] getCards() {
+      return cards.clone();
+   }
+
+   /** Returns the number of cards in the deck, including those already dealt. */
+   int size() {
+      return cards.length;
+   }
+
+   @Override
+   public Card deal() {
+      if (next < cards.length) {
+         return CardCodes.decode(cards[next++]);
+      } else {
+         throw new IllegalStateException("deck is empty");
+      }
+   }
+}
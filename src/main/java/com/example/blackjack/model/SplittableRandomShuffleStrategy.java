@@ -0,0 +1,32 @@
+package com.example.blackjack.model;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * A {@code ShuffleStrategy} which uses a {@code SplittableRandom} per thread.
+ * <p>
+ * Each thread is given its own generator, split from a single root generator the first time that thread performs a shuffle. It is <i>not</i>
+ * cryptographically secure.
+ */
+@Component
+@ConditionalOnProperty(name = "blackjack.shuffle-strategy", havingValue = "splittable-random")
+class SplittableRandomShuffleStrategy<T> extends RandomGeneratorShuffleStrategy<T> {
+   /** The generator the generators of each thread are split from. Not thread-safe so access is synchronized. */
+   private final SplittableRandom root = new SplittableRandom();
+   private final ThreadLocal<SplittableRandom> generators = ThreadLocal.withInitial(this::split);
+
+   @Override
+   public RandomGenerator random() {
+      return generators.get();
+   }
+
+   private SplittableRandom split() {
+      synchronized (root) {
+         return root.split();
+      }
+   }
+}
@@ -0,0 +1,13 @@
+package com.example.blackjack.model;
+
+/**
+ * The superclass of exceptions signalling that a request cannot be fulfilled due to the state of a game - as opposed to a fault in the application.
+ * <p>
+ * These are an expected, and often frequent, outcome of requests (e.g. a client repeatedly trying to update a game it has already completed) so, to be cheap
+ * to create, they do not record a stack trace or suppressed exceptions. The stack trace would only ever show the same path through the application.
+ */
+abstract class StacklessException extends RuntimeException {
+   StacklessException(String message) {
+      super(message, null, false, false);
+   }
+}
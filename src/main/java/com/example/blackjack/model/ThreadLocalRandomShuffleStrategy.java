@@ -0,0 +1,22 @@
+package com.example.blackjack.model;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * A {@code ShuffleStrategy} which uses {@code ThreadLocalRandom}.
+ * <p>
+ * This is the default strategy. It is the fastest of the available strategies and, as each thread has its own generator, threads do not contend with each
+ * other when shuffling. It is <i>not</i> cryptographically secure.
+ */
+@Component
+@ConditionalOnProperty(name = "blackjack.shuffle-strategy", havingValue = "thread-local-random", matchIfMissing = true)
+class ThreadLocalRandomShuffleStrategy<T> extends RandomGeneratorShuffleStrategy<T> {
+   @Override
+   public RandomGenerator random() {
+      return ThreadLocalRandom.current();
+   }
+}
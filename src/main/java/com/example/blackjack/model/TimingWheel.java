@@ -0,0 +1,150 @@
+package com.example.blackjack.model;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel, which holds any number of timers with a constant cost for scheduling each timer and for each tick of the clock.
+ * <p>
+ * Time is divided into ticks of a fixed duration. The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots, where each slot of level 0 covers one tick,
+ * each slot of level 1 covers {@value #SLOTS} ticks, and so on. A timer is added to the slot of the lowest level that can hold its deadline. Each time a
+ * level's slots complete a full rotation the timers in the next slot of the level above are redistributed to lower levels, until they reach level 0 - where
+ * they expire when the tick they are in is reached. Each timer is only ever moved at most once per level, so the cost of the wheel does not depend on how
+ * many timers it holds.
+ * <p>
+ * Timers are never early, but may be up to a tick late. Deadlines beyond the range of the wheel (i.e. more than {@code SLOTS^LEVELS} ticks away) are held at
+ * the top level until they are in range.
+ * <p>
+ * Timers are intrusive - rather than the wheel wrapping each scheduled item in a node, the item itself extends {@link Timer}. This avoids allocating an extra
+ * object per timer, which matters when the wheel holds millions of them. A timer must only be scheduled in one wheel at a time.
+ * <p>
+ * Not thread-safe. All calls must be made by the same thread, or be externally synchronized.
+ *
+ * @param <T>
+ *           the type of the timers
+ */
+final class TimingWheel<T extends TimingWheel.Timer> {
+   private static final int LEVELS = 4;
+   private static final int SLOT_BITS = 6;
+   private static final int SLOTS = 1 << SLOT_BITS;
+   private static final int SLOT_MASK = SLOTS - 1;
+   /** The maximum number of ticks between the current tick and a timer's position in the wheel. */
+   private static final long MAX_DELAY_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+   private final long tickMillis;
+   private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+   /** The most recent tick that has been processed. */
+   private long currentTick;
+   private int size;
+
+   /**
+    * @param tickMillis
+    *           the duration of each tick, in milliseconds
+    * @param nowMillis
+    *           the current time, in milliseconds
+    * @throws IllegalArgumentException
+    *            if {@code tickMillis} is not positive
+    */
+   TimingWheel(long tickMillis, long nowMillis) {
+      if (tickMillis < 1) {
+         throw new IllegalArgumentException("tick must be positive but was " + tickMillis);
+      }
+      this.tickMillis = tickMillis;
+      this.currentTick = nowMillis / tickMillis;
+   }
+
+   /**
+    * Adds a timer to this wheel.
+    *
+    * @param timer
+    *           the timer to add
+    * @param deadlineMillis
+    *           the time, in milliseconds, the timer should expire - if this is not after the current tick then the timer will expire on the next tick
+    */
+   void schedule(T timer, long deadlineMillis) {
+      Timer t = timer;
+      // round up so timers are never early
+      t.deadlineTick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), currentTick + 1);
+      add(t);
+      size++;
+   }
+
+   private void add(Timer timer) {
+      long delay = Math.min(timer.deadlineTick - currentTick, MAX_DELAY_TICKS);
+      long tick = currentTick + delay;
+      int level = 0;
+      while (delay >= 1L << (SLOT_BITS * (level + 1))) {
+         level++;
+      }
+      int slot = (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+      timer.next = slots[level][slot];
+      slots[level][slot] = timer;
+   }
+
+   /**
+    * Processes every tick up to the given time, passing each timer that has expired to {@code expired}.
+    * <p>
+    * {@code expired} may schedule timers, including the timer it was passed.
+    *
+    * @param nowMillis
+    *           the current time, in milliseconds
+    * @param expired
+    *           receives each timer that has expired, after it has been removed from this wheel
+    */
+   @SuppressWarnings("unchecked")
+   void advance(long nowMillis, Consumer<? super T> expired) {
+      long targetTick = nowMillis / tickMillis;
+      if (size == 0) {
+         // nothing to process, so skip straight to the target
+         currentTick = Math.max(currentTick, targetTick);
+         return;
+      }
+
+      while (currentTick < targetTick) {
+         currentTick++;
+         cascade();
+
+         int slot = (int) currentTick & SLOT_MASK;
+         Timer timer = slots[0][slot];
+         slots[0][slot] = null;
+         while (timer != null) {
+            Timer next = timer.next;
+            timer.next = null;
+            if (timer.deadlineTick > currentTick) {
+               // deadline was beyond the range of the wheel when it was added
+               add(timer);
+            } else {
+               size--;
+               expired.accept((T) timer);
+            }
+            timer = next;
+         }
+      }
+   }
+
+   /** Moves timers down from each level whose slot has been reached, starting from the highest level so timers can move down more than one level. */
+   private void cascade() {
+      for (int level = LEVELS - 1; level > 0; level--) {
+         if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+            int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+            Timer timer = slots[level][slot];
+            slots[level][slot] = null;
+            while (timer != null) {
+               Timer next = timer.next;
+               add(timer);
+               timer = next;
+            }
+         }
+      }
+   }
+
+   /** Returns the number of timers in this wheel. */
+   int size() {
+      return size;
+   }
+
+   /** A timer that can be scheduled in a {@code TimingWheel}. Subclasses hold whatever needs to be acted on when the timer expires. */
+   static class Timer {
+      private long deadlineTick;
+      private Timer next;
+   }
+}
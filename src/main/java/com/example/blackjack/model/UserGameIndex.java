@@ -0,0 +1,251 @@
+package com.example.blackjack.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The games belonging to a single user, in the order they were added.
+ * <p>
+ * Most users only have a handful of games, so rather than a map or set - which would cost at least one node object per game, on top of the table - the games
+ * are held in an array that starts small and doubles as needed. Each game is given a sequence number as it is added, which is recorded both in the game
+ * (see {@link Member}) and in a parallel array. As games are always added in sequence order, the array of sequence numbers is sorted - so the position of a
+ * game can be found by a binary search, rather than searching every game of the user.
+ * <p>
+ * Removing a game leaves a gap in the arrays, so the position of every other game is unchanged. The gaps are removed once they outnumber the games, so
+ * removal has an amortized constant cost and at most half the array is wasted.
+ * <p>
+ * As sequence numbers are never reused, they can be used to list the games a page at a time - each page starts with a binary search for the last sequence
+ * number of the previous page, so the cost of a page depends on the size of the page, not on the number of games, and is unaffected by games being added or
+ * removed between pages. See {@link #list(int, int, int, Predicate, List)}.
+ * <p>
+ * Once {@link #markRemovedIfEmpty()} has succeeded no further games can be added, so an index can be safely removed from the store while other threads may
+ * be trying to add a game to it - {@link #add(Member)} returns {@code false} and the caller should create a new index.
+ * <p>
+ * Thread-safe. All methods synchronize on the index, so only threads accessing the games of the same user contend with each other.
+ *
+ * @param <E>
+ *           the type representing a game in the index
+ */
+final class UserGameIndex<E extends UserGameIndex.Member> {
+   /** Passed to {@link #list(int, int, int, Predicate, List)} to start from the first game, and returned by it once every game has been examined. */
+   static final int START = -1;
+   private static final int INITIAL_CAPACITY = 2;
+
+   private final String username;
+   /** The games, in the order they were added. {@code null} where a game has been removed. */
+   private Member[] members = new Member[INITIAL_CAPACITY];
+   /** The sequence number of the game at the same position in {@link #members}. In ascending order. */
+   private int[] sequences = new int[INITIAL_CAPACITY];
+   /** The number of positions of {@link #members} that have been used, including those whose games have since been removed. */
+   private int end;
+   /** The number of games. */
+   private int size;
+   /** The number of games that are complete. Maintained by the store, as the index is not told when a game completes. */
+   private int completedCount;
+   private int nextSequence;
+   private boolean removed;
+
+   UserGameIndex(String username) {
+      this(username, 0);
+   }
+
+   /**
+    * @param firstSequence
+    *           the sequence number of the first game added - greater than that of any game of the user kept elsewhere, e.g. in a {@link GameArchive}, so
+    *           their games remain in the order they were created
+    */
+   UserGameIndex(String username, int firstSequence) {
+      this.username = requireNonNull(username);
+      this.nextSequence = firstSequence;
+   }
+
+   String getUsername() {
+      return username;
+   }
+
+   /**
+    * Adds a game to this index.
+    * <p>
+    * A game must only be in one index at a time.
+    *
+    * @return {@code true} if the game was added, or {@code false} if this index has been removed from the store and so can no longer be added to
+    */
+   synchronized boolean add(E game) {
+      if (removed) {
+         return false;
+      }
+
+      if (end == members.length) {
+         if (size <= end / 2) {
+            compact();
+         } else {
+            members = Arrays.copyOf(members, end * 2);
+            sequences = Arrays.copyOf(sequences, end * 2);
+         }
+      }
+      if (nextSequence == Integer.MAX_VALUE) {
+         renumber();
+      }
+
+      Member m = game;
+      m.sequence = nextSequence++;
+      members[end] = m;
+      sequences[end] = m.sequence;
+      end++;
+      size++;
+      return true;
+   }
+
+   /**
+    * Returns the sequence number the next game added would have been given, and skips it - for a game that is kept elsewhere, so it can be ordered with
+    * the games of this index.
+    *
+    * @return the sequence number, or {@link #START} if this index has been removed from the store
+    */
+   synchronized int reserveSequence() {
+      if (removed) {
+         return START;
+      }
+      if (nextSequence == Integer.MAX_VALUE) {
+         renumber();
+      }
+      return nextSequence++;
+   }
+
+   /** Removes a game from this index. Has no effect if the game is not in this index. */
+   synchronized void remove(E game) {
+      Member m = game;
+      int position = Arrays.binarySearch(sequences, 0, end, m.sequence);
+      if (position >= 0 && members[position] == m) {
+         members[position] = null;
+         size--;
+         if (size < end / 2) {
+            compact();
+         }
+      }
+   }
+
+   /** Removes the gaps left by removed games, shrinking the arrays if they are now mostly empty. */
+   private void compact() {
+      int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+      Member[] compactedMembers = new Member[capacity];
+      int[] compactedSequences = new int[capacity];
+      int j = 0;
+      for (int i = 0; i < end; i++) {
+         if (members[i] != null) {
+            compactedMembers[j] = members[i];
+            compactedSequences[j] = sequences[i];
+            j++;
+         }
+      }
+      members = compactedMembers;
+      sequences = compactedSequences;
+      end = size;
+   }
+
+   /**
+    * Reassigns sequence numbers from zero, so they do not overflow. Only needed after over two billion games have been added for the same user - at which
+    * point any listing in progress for the user may skip or repeat games.
+    */
+   private void renumber() {
+      compact();
+      for (int i = 0; i < end; i++) {
+         members[i].sequence = i;
+         sequences[i] = i;
+      }
+      nextSequence = end;
+   }
+
+   /**
+    * Prevents any further games being added to this index, if it is empty.
+    *
+    * @return {@code true} if this index is empty and so should now be removed from the store, else {@code false}
+    */
+   synchronized boolean markRemovedIfEmpty() {
+      if (size == 0) {
+         removed = true;
+      }
+      return removed;
+   }
+
+   /** Returns the number of games in this index. */
+   synchronized int size() {
+      return size;
+   }
+
+   /** Adds {@code delta} to the number of games in this index that are complete - as a game completes, or a completed game is removed. */
+   synchronized void addCompletedCount(int delta) {
+      completedCount += delta;
+   }
+
+   /** Returns the number of games in this index that are complete, as counted by {@link #addCompletedCount(int)}. */
+   synchronized int getCompletedCount() {
+      return completedCount;
+   }
+
+   /**
+    * Adds games to {@code results}, in the order they were added to this index, starting after the given sequence number.
+    * <p>
+    * Stops once {@code limit} games have been added to {@code results}, or {@code maxExamined} positions have been examined - so the cost is bounded even
+    * if few games match {@code filter}.
+    *
+    * @param after
+    *           the value returned by the previous call, or {@link #START} to start from the first game
+    * @param limit
+    *           the maximum number of games to add to {@code results}, must be positive
+    * @param maxExamined
+    *           the maximum number of positions to examine, including those of removed games, must be positive
+    * @param filter
+    *           only games that match are added to {@code results}
+    * @param results
+    *           the list to add the games to
+    * @return the value to pass as {@code after} to continue from where this call stopped, or {@link #START} if there are no more games to examine
+    */
+   @SuppressWarnings("unchecked")
+   synchronized int list(int after, int limit, int maxExamined, Predicate<? super E> filter, List<? super E> results) {
+      // as sequence numbers are never negative, START is never found and so results in the first position
+      int position = Arrays.binarySearch(sequences, 0, end, after);
+      position = position < 0 ? -position - 1 : position + 1;
+      int added = 0;
+      int examined = 0;
+      while (position < end && added < limit && examined < maxExamined) {
+         E game = (E) members[position];
+         if (game != null && filter.test(game)) {
+            results.add(game);
+            added++;
+         }
+         examined++;
+         position++;
+      }
+      while (position < end && members[position] == null) {
+         position++;
+      }
+      return position < end ? sequences[position - 1] : START;
+   }
+
+   /** Returns a copy of the games in this index, in the order they were added. */
+   @SuppressWarnings("unchecked")
+   synchronized List<E> snapshot() {
+      List<E> games = new ArrayList<>(size);
+      for (int i = 0; i < end; i++) {
+         if (members[i] != null) {
+            games.add((E) members[i]);
+         }
+      }
+      return games;
+   }
+
+   /** A game that can be added to a {@code UserGameIndex}. Records the sequence number used to find the game in the index. */
+   static class Member {
+      private int sequence;
+
+      /** Returns the sequence number of this game. Must only be read after the game has been added to, or listed by, its index. */
+      final int getSequence() {
+         return sequence;
+      }
+   }
+}
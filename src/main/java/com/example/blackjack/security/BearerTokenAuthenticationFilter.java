@@ -0,0 +1,60 @@
+package com.example.blackjack.security;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Authenticates requests with an {@code Authorization: Bearer <token>} header, where the token was issued by {@link TokenService}.
+ * <p>
+ * The user is represented by a {@code User} (with no password or authorities) so controllers can obtain it using {@code @AuthenticationPrincipal} exactly
+ * as for Basic authentication. The authentication is a {@code PreAuthenticatedAuthenticationToken}, rather than the
+ * {@code UsernamePasswordAuthenticationToken} of Basic authentication, so it can be told apart - see
+ * {@link com.example.blackjack.controller.TokenController}.
+ * <p>
+ * A request with an invalid or expired token is rejected with a {@code 401} (Unauthorized) response, rather than being passed on to be treated as
+ * unauthenticated. Requests without a bearer token are passed on unchanged, e.g. to be authenticated by Basic authentication.
+ */
+final class BearerTokenAuthenticationFilter extends OncePerRequestFilter {
+   private static final String BEARER_PREFIX = "Bearer ";
+
+   private final TokenService tokenService;
+
+   BearerTokenAuthenticationFilter(TokenService tokenService) {
+      this.tokenService = tokenService;
+   }
+
+   @Override
+   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+      String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+      if (header == null || !header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+         filterChain.doFilter(request, response);
+         return;
+      }
+
+      String username = tokenService.verify(header.substring(BEARER_PREFIX.length()).trim());
+      if (username == null) {
+         SecurityContextHolder.clearContext();
+         response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+         response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "invalid or expired bearer token");
+         return;
+      }
+
+      User user = new User(username, "", Collections.emptyList());
+      SecurityContext context = SecurityContextHolder.createEmptyContext();
+      context.setAuthentication(new PreAuthenticatedAuthenticationToken(user, null, Collections.emptyList()));
+      SecurityContextHolder.setContext(context);
+      filterChain.doFilter(request, response);
+   }
+}
@@ -0,0 +1,257 @@
+package com.example.blackjack.security;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * A {@code PasswordEncoder} which remembers the passwords it has recently verified, so that a client sending the same credentials with every request only
+ * pays for a full verification (e.g. BCrypt, which deliberately takes tens of milliseconds) once per TTL.
+ * <p>
+ * Each successful verification is recorded against a keyed digest (HMAC-SHA256) of the encoded password and the raw password - the raw password itself is
+ * never retained. The key is randomly generated each time the application starts, so the digests cannot be precomputed or reused elsewhere. Only successful
+ * verifications are recorded, so a wrong password is always fully verified.
+ * <p>
+ * As the encoded password is part of the digest, changing the password of an account results in a new encoded password (with a new salt) - so verifications
+ * of the old password no longer match, without needing to be removed. Accounts that are removed or disabled are rejected before their password is checked.
+ * {@link #invalidateAll()} forgets every verification, e.g. if an account is suspected of being compromised.
+ * <p>
+ * The cache holds at most {@code maxSize} verifications. The limit is enforced by reserving a place in a counter, with a compare-and-set, before each
+ * verification is added - so concurrent logins cannot take the cache past it. Once full, verifications that have expired are forgotten first: the first
+ * login to find the cache full after the earliest remembered verification has expired removes every expired verification. If none have expired, the
+ * verification that expires soonest out of a small sample is forgotten - which at worst costs a full verification the next time it is needed. A TTL of zero
+ * disables the cache.
+ */
+@ManagedResource(objectName = "com.example.blackjack.security:name=CachingPasswordEncoder", description = "Cache of recently verified passwords.")
+public final class CachingPasswordEncoder implements PasswordEncoder {
+   private static final String HMAC_ALGORITHM = "HmacSHA256";
+   /** The number of verifications compared to choose which to forget, when none have expired. */
+   private static final int EVICTION_SAMPLE_SIZE = 8;
+
+   private final PasswordEncoder delegate;
+   private final long ttlMillis;
+   private final int maxSize;
+   private final LongSupplier clock;
+   private final ThreadLocal<Mac> macs;
+   /** The digest of each verified password, mapped to the time, in milliseconds, that the verification expires. */
+   private final ConcurrentHashMap<Digest, Long> verified = new ConcurrentHashMap<>();
+   /** The number of places in {@link #verified} that are taken - never less than its size, and never more than {@link #maxSize}. */
+   private final AtomicInteger size = new AtomicInteger();
+   /** The time, in milliseconds, before which no remembered verification expires - or {@code Long.MAX_VALUE} while expired verifications are removed. */
+   private final AtomicLong nextExpiry = new AtomicLong(Long.MAX_VALUE);
+   private final LongAdder hitCounter = new LongAdder();
+   private final LongAdder missCounter = new LongAdder();
+
+   /**
+    * @param delegate
+    *           used to encode passwords, and to verify passwords that are not in the cache
+    * @param ttl
+    *           how long a successful verification is remembered for, or zero to disable the cache
+    * @param maxSize
+    *           the maximum number of verifications remembered
+    * @throws IllegalArgumentException
+    *            if {@code ttl} is negative or {@code maxSize} is not positive
+    */
+   public CachingPasswordEncoder(PasswordEncoder delegate, Duration ttl, int maxSize) {
+      this(delegate, ttl, maxSize, System::currentTimeMillis);
+   }
+
+   CachingPasswordEncoder(PasswordEncoder delegate, Duration ttl, int maxSize, LongSupplier clock) {
+      if (ttl.isNegative()) {
+         throw new IllegalArgumentException("ttl must not be negative but was " + ttl);
+      }
+      if (maxSize < 1) {
+         throw new IllegalArgumentException("max size must be positive but was " + maxSize);
+      }
+      this.delegate = requireNonNull(delegate);
+      this.ttlMillis = ttl.toMillis();
+      this.maxSize = maxSize;
+      this.clock = clock;
+      byte[] keyBytes = new byte[32];
+      new SecureRandom().nextBytes(keyBytes);
+      SecretKeySpec key = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+      this.macs = ThreadLocal.withInitial(() -> createMac(key));
+   }
+
+   private static Mac createMac(SecretKeySpec key) {
+      try {
+         Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+         mac.init(key);
+         return mac;
+      } catch (GeneralSecurityException e) {
+         throw new IllegalStateException("could not create " + HMAC_ALGORITHM, e);
+      }
+   }
+
+   @Override
+   public String encode(CharSequence rawPassword) {
+      return delegate.encode(rawPassword);
+   }
+
+   @Override
+   public boolean matches(CharSequence rawPassword, String encodedPassword) {
+      if (ttlMillis == 0 || rawPassword == null || encodedPassword == null) {
+         return delegate.matches(rawPassword, encodedPassword);
+      }
+
+      Digest digest = digest(rawPassword, encodedPassword);
+      long now = clock.getAsLong();
+      Long expiry = verified.get(digest);
+      if (expiry != null) {
+         if (now < expiry) {
+            hitCounter.increment();
+            return true;
+         }
+         remove(digest, expiry);
+      }
+
+      missCounter.increment();
+      boolean matches = delegate.matches(rawPassword, encodedPassword);
+      if (matches) {
+         add(digest, now);
+      }
+      return matches;
+   }
+
+   private void add(Digest digest, long now) {
+      int taken;
+      while ((taken = size.get()) >= maxSize || !size.compareAndSet(taken, taken + 1)) {
+         if (taken >= maxSize && !removeExpired(now)) {
+            evict();
+         }
+      }
+      long expiry = now + ttlMillis;
+      if (verified.put(digest, expiry) != null) {
+         // replaced a verification of the same password by another thread, so the place reserved for this one is not needed
+         size.decrementAndGet();
+      }
+      nextExpiry.accumulateAndGet(expiry, Math::min);
+   }
+
+   /** Removes every expired verification, returning {@code false} if none can have expired or another thread is already removing them. */
+   private boolean removeExpired(long now) {
+      long expected = nextExpiry.get();
+      if (now < expected || !nextExpiry.compareAndSet(expected, Long.MAX_VALUE)) {
+         return false;
+      }
+      long earliest = Long.MAX_VALUE;
+      for (Map.Entry<Digest, Long> entry : verified.entrySet()) {
+         long expiry = entry.getValue();
+         if (expiry <= now) {
+            remove(entry.getKey(), expiry);
+         } else {
+            earliest = Math.min(earliest, expiry);
+         }
+      }
+      nextExpiry.accumulateAndGet(earliest, Math::min);
+      return true;
+   }
+
+   /** Removes the verification that expires soonest out of a sample - as every verification has the same TTL, the one remembered longest. */
+   private void evict() {
+      Digest oldest = null;
+      long oldestExpiry = Long.MAX_VALUE;
+      int sampled = 0;
+      for (Map.Entry<Digest, Long> entry : verified.entrySet()) {
+         if (entry.getValue() < oldestExpiry) {
+            oldest = entry.getKey();
+            oldestExpiry = entry.getValue();
+         }
+         if (++sampled == EVICTION_SAMPLE_SIZE) {
+            break;
+         }
+      }
+      if (oldest != null) {
+         remove(oldest, oldestExpiry);
+      }
+   }
+
+   private void remove(Digest digest, long expiry) {
+      if (verified.remove(digest, expiry)) {
+         size.decrementAndGet();
+      }
+   }
+
+   private Digest digest(CharSequence rawPassword, String encodedPassword) {
+      Mac mac = macs.get();
+      mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+      // separates the encoded password from the raw password, as the encoded password never contains a zero byte
+      mac.update((byte) 0);
+      mac.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(rawPassword)));
+      ByteBuffer result = ByteBuffer.wrap(mac.doFinal());
+      return new Digest(result.getLong(), result.getLong());
+   }
+
+   @Override
+   public boolean upgradeEncoding(String encodedPassword) {
+      return delegate.upgradeEncoding(encodedPassword);
+   }
+
+   @ManagedOperation(description = "Forgets every verified password, so each is fully verified the next time it is used.")
+   public void invalidateAll() {
+      for (Map.Entry<Digest, Long> entry : verified.entrySet()) {
+         remove(entry.getKey(), entry.getValue());
+      }
+   }
+
+   @ManagedAttribute(description = "Number of verified passwords currently remembered.")
+   public int getSize() {
+      return verified.size();
+   }
+
+   @ManagedAttribute(description = "Maximum number of verified passwords remembered.")
+   public int getMaxSize() {
+      return maxSize;
+   }
+
+   @ManagedAttribute(description = "Number of password checks that matched a remembered verification.")
+   public long getHitCount() {
+      return hitCounter.sum();
+   }
+
+   @ManagedAttribute(description = "Number of password checks that required a full verification.")
+   public long getMissCount() {
+      return missCounter.sum();
+   }
+
+   /** The first 128 bits of an HMAC-SHA256 digest. */
+   private static final class Digest {
+      private final long high;
+      private final long low;
+
+      Digest(long high, long low) {
+         this.high = high;
+         this.low = low;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof Digest && ((Digest) o).high == high && ((Digest) o).low == low;
+      }
+
+      @Override
+      public int hashCode() {
+         // the digest is already uniformly distributed
+         return (int) low;
+      }
+   }
+}
@@ -0,0 +1,91 @@
+package com.example.blackjack.security;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Authenticates requests forwarded by another node of a cluster - see {@code ShardedGameStore} - on behalf of the user named by their
+ * {@value #USER_HEADER} header.
+ * <p>
+ * A forwarded request is trusted to act on behalf of any user as its {@value #KEY_HEADER} header contains {@code blackjack.cluster.secret}, which every
+ * node of the cluster is configured with. As with Basic authentication the secret is sent as is, so a production system would need to use HTTPS between
+ * the nodes.
+ * <p>
+ * Only requests to {@value #PATH_PREFIX} are authenticated this way, and only requests authenticated this way are granted the {@value #AUTHORITY}
+ * authority required to access them - so a user cannot use the endpoints that move games between nodes, and a node cannot use the endpoints intended for
+ * users. The user is represented by a {@code User} (with no password or authorities) so controllers can obtain it using {@code @AuthenticationPrincipal}.
+ * <p>
+ * A request with the wrong key, or without a user, is rejected with a {@code 401} (Unauthorized) response. Requests without a key are passed on unchanged.
+ */
+public final class ClusterAuthenticationFilter extends OncePerRequestFilter {
+   /** The header containing the secret shared by the nodes of the cluster. */
+   public static final String KEY_HEADER = "X-Blackjack-Cluster-Key";
+   /** The header containing the URL encoded name of the user the request is made on behalf of. */
+   public static final String USER_HEADER = "X-Blackjack-User";
+   /** The prefix of the paths of the endpoints only nodes of the cluster can access. */
+   public static final String PATH_PREFIX = "/cluster/";
+   /** The authority granted to requests forwarded by another node. */
+   static final String AUTHORITY = "CLUSTER_NODE";
+
+   private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority(AUTHORITY));
+
+   private final byte[] secret;
+
+   /**
+    * @param secret
+    *           the secret shared by the nodes of the cluster
+    * @throws IllegalArgumentException
+    *            if {@code secret} is empty
+    */
+   ClusterAuthenticationFilter(String secret) {
+      if (secret.isEmpty()) {
+         throw new IllegalArgumentException("secret must not be empty");
+      }
+      this.secret = secret.getBytes(StandardCharsets.UTF_8);
+   }
+
+   @Override
+   protected boolean shouldNotFilter(HttpServletRequest request) {
+      return !request.getServletPath().startsWith(PATH_PREFIX);
+   }
+
+   @Override
+   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+      String key = request.getHeader(KEY_HEADER);
+      if (key == null) {
+         filterChain.doFilter(request, response);
+         return;
+      }
+
+      String user = request.getHeader(USER_HEADER);
+      // compared in constant time, so the time taken to reject a key does not reveal how much of it was correct
+      if (!MessageDigest.isEqual(secret, key.getBytes(StandardCharsets.UTF_8)) || user == null || user.isEmpty()) {
+         SecurityContextHolder.clearContext();
+         response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "invalid cluster key or user");
+         return;
+      }
+
+      User principal = new User(URLDecoder.decode(user, StandardCharsets.UTF_8), "", Collections.emptyList());
+      SecurityContext context = SecurityContextHolder.createEmptyContext();
+      context.setAuthentication(new PreAuthenticatedAuthenticationToken(principal, null, AUTHORITIES));
+      SecurityContextHolder.setContext(context);
+      filterChain.doFilter(request, response);
+   }
+}
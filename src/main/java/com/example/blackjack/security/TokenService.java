@@ -0,0 +1,127 @@
+package com.example.blackjack.security;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.function.LongSupplier;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Issues and verifies signed bearer tokens, so a client can log in once with a username and password and then authenticate each request with the token.
+ * <p>
+ * A token is {@code <payload>.<signature>}, both base64url encoded. The payload is the time the token expires (in milliseconds since the Unix epoch, as 8
+ * bytes) followed by the UTF-8 encoded username. The signature is the HMAC-SHA256 of the payload. Verifying a token only requires computing one HMAC - so
+ * is stateless, takes microseconds and does not involve {@code AccountRepository} - but as a consequence a token remains valid until it expires, even if
+ * the password of the account is changed. Tokens are therefore short-lived, as set by {@code blackjack.security.token.ttl}.
+ * <p>
+ * The key is set by {@code blackjack.security.token.secret} (base64 encoded, at least 32 bytes). If not set, a random key is generated each time the
+ * application starts - so tokens are only valid for the instance that issued them, and only until it restarts.
+ */
+@Component
+public final class TokenService {
+   private static final String HMAC_ALGORITHM = "HmacSHA256";
+   private static final int MIN_KEY_LENGTH = 32;
+   private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+   private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+   private final Duration ttl;
+   private final LongSupplier clock;
+   private final ThreadLocal<Mac> macs;
+
+   /**
+    * @param secret
+    *           the base64 encoded key used to sign tokens, or an empty string to use a randomly generated key
+    * @param ttl
+    *           how long each token is valid for
+    * @throws IllegalArgumentException
+    *            if {@code secret} is not valid base64, or is shorter than 32 bytes, or {@code ttl} is not positive
+    */
+   @Autowired
+   TokenService(@Value("${blackjack.security.token.secret:}") String secret, @Value("${blackjack.security.token.ttl:15m}") Duration ttl) {
+      this(secret.isEmpty() ? randomKey() : Base64.getDecoder().decode(secret), ttl, System::currentTimeMillis);
+   }
+
+   TokenService(byte[] key, Duration ttl, LongSupplier clock) {
+      if (key.length < MIN_KEY_LENGTH) {
+         throw new IllegalArgumentException("token secret must be at least " + MIN_KEY_LENGTH + " bytes but was " + key.length);
+      }
+      if (ttl.isNegative() || ttl.isZero()) {
+         throw new IllegalArgumentException("token ttl must be positive but was " + ttl);
+      }
+      this.ttl = ttl;
+      this.clock = requireNonNull(clock);
+      SecretKeySpec keySpec = new SecretKeySpec(key, HMAC_ALGORITHM);
+      this.macs = ThreadLocal.withInitial(() -> createMac(keySpec));
+   }
+
+   private static byte[] randomKey() {
+      byte[] key = new byte[MIN_KEY_LENGTH];
+      new SecureRandom().nextBytes(key);
+      return key;
+   }
+
+   private static Mac createMac(SecretKeySpec key) {
+      try {
+         Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+         mac.init(key);
+         return mac;
+      } catch (GeneralSecurityException e) {
+         throw new IllegalStateException("could not create " + HMAC_ALGORITHM, e);
+      }
+   }
+
+   /** Returns how long each token is valid for. */
+   public Duration getTtl() {
+      return ttl;
+   }
+
+   /** Returns a new token identifying the given user, valid for {@link #getTtl()}. */
+   public String issue(String username) {
+      byte[] name = username.getBytes(StandardCharsets.UTF_8);
+      byte[] payload = ByteBuffer.allocate(Long.BYTES + name.length).putLong(clock.getAsLong() + ttl.toMillis()).put(name).array();
+      return ENCODER.encodeToString(payload) + '.' + ENCODER.encodeToString(macs.get().doFinal(payload));
+   }
+
+   /**
+    * Returns the username identified by the given token.
+    *
+    * @return the username, or {@code null} if the token was not issued by this service (or another using the same key) or has expired
+    */
+   String verify(String token) {
+      int separator = token.indexOf('.');
+      if (separator < 0) {
+         return null;
+      }
+
+      byte[] payload;
+      byte[] signature;
+      try {
+         payload = DECODER.decode(token.substring(0, separator));
+         signature = DECODER.decode(token.substring(separator + 1));
+      } catch (IllegalArgumentException e) {
+         return null;
+      }
+      // compared in constant time, so the time taken does not reveal how much of a forged signature is correct
+      if (payload.length < Long.BYTES || !MessageDigest.isEqual(signature, macs.get().doFinal(payload))) {
+         return null;
+      }
+
+      ByteBuffer buffer = ByteBuffer.wrap(payload);
+      if (clock.getAsLong() >= buffer.getLong()) {
+         return null;
+      }
+      return new String(payload, Long.BYTES, payload.length - Long.BYTES, StandardCharsets.UTF_8);
+   }
+}
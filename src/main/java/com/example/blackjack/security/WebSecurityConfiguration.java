@@ -2,13 +2,18 @@ package com.example.blackjack.security;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.CsrfConfigurer;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 /**
  * Configures authentication controls.
@@ -18,6 +23,11 @@ import org.springframework.security.web.SecurityFilterChain;
  * string is easily decoded. TODO A production system would need to enforce transport-level security using HTTPS. An
  * alternative to Basic authentication is Digest authentication which has the advantages of avoiding sending passwords
  * over the network in an easily compromised form and providing a defence against replay attacks.</li>
+ * <li>Configures the use of bearer tokens, issued by {@code TokenController} to a request authenticated by Basic
+ * authentication, as an alternative to sending the username and password with every request. See
+ * {@link BearerTokenAuthenticationFilter}.</li>
+ * <li>If {@code blackjack.cluster.secret} is set, configures the authentication of requests forwarded by another node of a cluster. Only such requests can
+ * access the endpoints under {@code /cluster/}. See {@link ClusterAuthenticationFilter}.</li>
  * <li>Disables cross-site request forgery (CSRF) protection. Disabling on assumption that requests will be made only by
  * non-browser clients (e.g. a mobile application). TODO If requests are to be processed directly from a browser by
  * normal users (i.e. as part of an Ajax web-app) then we would want to enable CSRF protection.</li>
@@ -29,15 +39,29 @@ import org.springframework.security.web.SecurityFilterChain;
 @Configuration
 class WebSecurityConfiguration {
    @Bean
-   public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
-      http.authorizeHttpRequests(authz -> authz.anyRequest().fullyAuthenticated());
+   public SecurityFilterChain filterChain(HttpSecurity http, TokenService tokenService, @Value("${blackjack.cluster.secret:}") String clusterSecret)
+               throws Exception {
+      // only requests forwarded by another node of the cluster can access its endpoints
+      http.authorizeHttpRequests(authz -> authz.requestMatchers(ClusterAuthenticationFilter.PATH_PREFIX + "**")
+                  .hasAuthority(ClusterAuthenticationFilter.AUTHORITY).anyRequest().fullyAuthenticated());
       http.httpBasic(withDefaults());
+      http.addFilterBefore(new BearerTokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class);
+      if (!clusterSecret.isEmpty()) {
+         http.addFilterBefore(new ClusterAuthenticationFilter(clusterSecret), BasicAuthenticationFilter.class);
+      }
       http.csrf(CsrfConfigurer::disable);
       return http.build();
    }
 
+   /**
+    * Returns the {@code PasswordEncoder} used to verify the password of each request.
+    * <p>
+    * Passwords are stored as BCrypt hashes. As Basic authentication sends the password with every request, successful verifications are remembered for
+    * {@code blackjack.security.verification-cache.ttl} - see {@link CachingPasswordEncoder}.
+    */
    @Bean
-   public static BCryptPasswordEncoder passwordEncoder() {
-      return new BCryptPasswordEncoder();
+   public static PasswordEncoder passwordEncoder(@Value("${blackjack.security.verification-cache.ttl:5m}") Duration ttl,
+               @Value("${blackjack.security.verification-cache.max-size:10000}") int maxSize) {
+      return new CachingPasswordEncoder(new BCryptPasswordEncoder(), ttl, maxSize);
    }
 }
@@ -0,0 +1,50 @@
+package com.example.blackjack.view;
+
+import static io.swagger.v3.oas.annotations.media.Schema.RequiredMode.REQUIRED;
+import static java.util.Objects.requireNonNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/** A bearer token issued to a user, in the form of an OAuth 2.0 access token response (RFC 6749, section 5.1). */
+@JsonPropertyOrder({"access_token", "token_type", "expires_in"})
+public final class AccessToken {
+   private static final String TOKEN_TYPE = "Bearer";
+
+   @Schema(description = "The token to provide in the Authorization header of subsequent requests, prefixed with \"Bearer \".", requiredMode = REQUIRED)
+   private final String accessToken;
+
+   @Schema(description = "The number of seconds until the token expires.", requiredMode = REQUIRED)
+   private final long expiresIn;
+
+   /**
+    * @param accessToken
+    *           the token
+    * @param expiresIn
+    *           the number of seconds until the token expires
+    * @throws NullPointerException
+    *            if {@code accessToken} is {@code null}
+    */
+   public AccessToken(String accessToken, long expiresIn) {
+      this.accessToken = requireNonNull(accessToken);
+      this.expiresIn = expiresIn;
+   }
+
+   @JsonProperty("access_token")
+   public String getAccessToken() {
+      return accessToken;
+   }
+
+   @JsonProperty("token_type")
+   @Schema(description = "Always \"Bearer\".", requiredMode = REQUIRED)
+   public String getTokenType() {
+      return TOKEN_TYPE;
+   }
+
+   @JsonProperty("expires_in")
+   public long getExpiresIn() {
+      return expiresIn;
+   }
+}
@@ -1,5 +1,6 @@
 package com.example.blackjack.view;
 
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 import com.example.blackjack.model.Game;
@@ -11,18 +12,20 @@ public enum Action {
     *
     * @see com.example.blackjack.model.Game#hit()
     */
-   HIT(Game::hit),
+   HIT(Game::hit, Game::hit),
    /**
     * Updates the status of a game to indicate that the player has completed their turn.
     *
     * @see com.example.blackjack.model.Game#stand()
     */
-   STAND(Game::stand);
+   STAND(Game::stand, Game::stand);
 
    private final Function<Game, GameState> logic;
+   private final BiFunction<Game, Integer, GameState> versionedLogic;
 
-   private Action(Function<Game, GameState> logic) {
+   private Action(Function<Game, GameState> logic, BiFunction<Game, Integer, GameState> versionedLogic) {
       this.logic = logic;
+      this.versionedLogic = versionedLogic;
    }
 
    /**
@@ -37,4 +40,21 @@ public enum Action {
    public GameState update(Game game) {
       return logic.apply(game);
    }
+
+   /**
+    * Updates the given game with the logic associated with this action, if the game is at the given version.
+    *
+    * @param game
+    *           the game to update
+    * @param expectedVersion
+    *           the version the game must be at for the update to be applied
+    * @return the updated state of the game as a result of this action
+    * @throws com.example.blackjack.model.GameVersionMismatchException
+    *            if the game is not at {@code expectedVersion}
+    * @throws com.example.blackjack.model.GameAlreadyCompleteException
+    *            if the game is not in an appropriate state to be updated
+    */
+   public GameState update(Game game, int expectedVersion) {
+      return versionedLogic.apply(game, expectedVersion);
+   }
 }
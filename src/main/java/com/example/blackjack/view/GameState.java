@@ -3,6 +3,11 @@ package com.example.blackjack.view;
 import static io.swagger.v3.oas.annotations.media.Schema.RequiredMode.REQUIRED;
 import static java.util.Objects.requireNonNull;
 
+import com.example.blackjack.model.Game;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
@@ -14,6 +19,9 @@ public final class GameState {
    @Schema(description = "The identifier for this game.", requiredMode = REQUIRED)
    private final String id;
 
+   /** Not included in the JSON representation - instead provided as the {@code ETag} of responses. */
+   private final int version;
+
    @Schema(description = "The current state of this game.", requiredMode = REQUIRED)
    private final Status status;
 
@@ -23,7 +31,12 @@ public final class GameState {
    @Schema(description = "The cards currently held by the player.", requiredMode = REQUIRED)
    private final Hand player;
 
+   /** The JSON representation of this state, created by the first call to {@link #toJson(ObjectWriter)}. */
+   private volatile byte[] json;
+
    /**
+    * Creates a {@code GameState} for a game that has not been updated since it was created.
+    *
     * @param id the identifier for the game
     * @param status the current state of the game
     * @param dealer the cards currently held by the dealer
@@ -32,7 +45,21 @@ public final class GameState {
     * {@code null}
     */
    public GameState(String id, Status status, Hand dealer, Hand player) {
+      this(id, Game.INITIAL_VERSION, status, dealer, player);
+   }
+
+   /**
+    * @param id the identifier for the game
+    * @param version the number of times the game has been updated
+    * @param status the current state of the game
+    * @param dealer the cards currently held by the dealer
+    * @param player the cards currently held by the player
+    * @throws NullPointerException if any of {@code id}, {@code status}, {@code dealer} or {@code player} is
+    * {@code null}
+    */
+   public GameState(String id, int version, Status status, Hand dealer, Hand player) {
       this.id = requireNonNull(id);
+      this.version = version;
       this.status = requireNonNull(status);
       this.dealer = requireNonNull(dealer);
       this.player = requireNonNull(player);
@@ -42,6 +69,11 @@ public final class GameState {
       return id;
    }
 
+   @JsonIgnore
+   public int getVersion() {
+      return version;
+   }
+
    public Status getStatus() {
       return status;
    }
@@ -53,4 +85,24 @@ public final class GameState {
    public Hand getPlayer() {
       return player;
    }
+
+   /**
+    * Returns the JSON representation of this state.
+    * <p>
+    * As this object is immutable the JSON only needs to be created once. The first call uses {@code writer} to create it, subsequent calls return the same
+    * bytes without using {@code writer}. It is therefore expected that every call will provide an equivalent {@code ObjectWriter}.
+    *
+    * @param writer used to create the JSON if it has not already been created
+    * @return the UTF-8 encoded JSON - must not be modified
+    * @throws JsonProcessingException if the JSON could not be created
+    */
+   public byte[] toJson(ObjectWriter writer) throws JsonProcessingException {
+      byte[] result = json;
+      if (result == null) {
+         // if called by multiple threads at the same time then each may create the JSON, but they will all create the same bytes
+         result = writer.writeValueAsBytes(this);
+         json = result;
+      }
+      return result;
+   }
 }
@@ -31,6 +31,20 @@ public final class Hand {
       this.value = HandValuer.value(this.cards);
    }
 
+   /**
+    * Creates a {@code Hand} which contains the given cards and has the given value.
+    * <p>
+    * Used when the value of the cards is already known, to avoid having to value them again.
+    *
+    * @param cards the cards that belong to this hand, in the order they were dealt
+    * @param value the value of {@code cards}
+    * @throws NullPointerException if {@code cards} is {@code null}
+    */
+   public Hand(Collection<Card> cards, int value) {
+      this.cards = copyOf(cards);
+      this.value = value;
+   }
+
    private static List<Card> copyOf(Collection<Card> original) {
       ArrayList<Card> copy = new ArrayList<Card>(requireNonNull(original));
       return Collections.unmodifiableList(copy);
@@ -25,5 +25,10 @@ public enum Status {
    /**
     * Indicates that the game is complete and the outcome was a win for the dealer (i.e. the player lost).
     */
-   DEALER_WON
+   DEALER_WON;
+
+   /** Returns {@code true} if this status indicates that the game is complete (i.e. its outcome has been determined), else {@code false}. */
+   public boolean isComplete() {
+      return this != PLAYERS_TURN && this != DEALERS_TURN;
+   }
 }
@@ -0,0 +1,27 @@
+-- Every game, identified by the number its game ID is an encoding of - so ordering by game_id orders games by when they were created.
+-- version is the number of updates made to the game, hits how many of those were the player hitting - the rest being the player standing.
+-- The deck is either seeded, when deck_seed is its seed, or shuffled, when deck_cards is the code of each of its cards (see CardCodes) in the order they are
+-- dealt. The cards of a shuffled deck are no longer needed, so are set to null, once the game is complete and its hands have been added to game_card.
+CREATE TABLE game (
+   game_id BIGINT NOT NULL PRIMARY KEY,
+   username VARCHAR(255) NOT NULL,
+   status VARCHAR(16) NOT NULL,
+   version INT NOT NULL,
+   hits INT NOT NULL,
+   deck_seed BIGINT,
+   deck_cards VARBINARY(52)
+);
+
+-- Lists the games of a user in the order they were created, and finds a game only if it belongs to the given user.
+CREATE UNIQUE INDEX game_username_game_id ON game (username, game_id);
+
+-- The final hands of each completed game. hand is D for the dealer or P for the player, card_position the order the card was dealt to the hand and
+-- card_code the index of the card in DeckFactory.CARDS (see CardCodes). game_id is not declared as a foreign key, as H2 would maintain a second index on
+-- it - the store adds the cards of a game in the same transaction as it updates the game.
+CREATE TABLE game_card (
+   game_id BIGINT NOT NULL,
+   hand CHAR(1) NOT NULL,
+   card_position SMALLINT NOT NULL,
+   card_code SMALLINT NOT NULL,
+   PRIMARY KEY (game_id, hand, card_position)
+);
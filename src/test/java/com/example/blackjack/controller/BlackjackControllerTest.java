@@ -3,8 +3,11 @@ package com.example.blackjack.controller;
 import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -23,10 +26,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.Base64;
-import java.util.Collections;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.function.Supplier;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -48,11 +48,15 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.server.ResponseStatusException;
 
 import com.example.blackjack.model.Game;
 import com.example.blackjack.model.GameAlreadyCompleteException;
+import com.example.blackjack.model.GameIdPage;
 import com.example.blackjack.model.GameNotFoundException;
 import com.example.blackjack.model.GameStore;
+import com.example.blackjack.model.GameVersionMismatchException;
+import com.example.blackjack.model.InvalidCursorException;
 import com.example.blackjack.view.Card;
 import com.example.blackjack.view.GameState;
 import com.example.blackjack.view.Hand;
@@ -73,6 +77,11 @@ public class BlackjackControllerTest {
    private static final String DUMMY_RESPONSE = "{\"id\":\"1fb8aae0-0305-4088-9866-769a7a1a37a8\",\"status\":\"PLAYERS_TURN\","
                                                 + "\"dealer\":{\"cards\":[{\"rank\":\"ACE\",\"suit\":\"SPADES\"}],\"value\":11},"
                                                 + "\"player\":{\"cards\":[{\"rank\":\"EIGHT\",\"suit\":\"DIAMONDS\"},{\"rank\":\"QUEEN\",\"suit\":\"HEARTS\"}],\"value\":18}}";
+   private static final String NOT_FOUND_RESPONSE = "{\"status\":404,\"error\":\"Not Found\",\"message\":null}";
+   private static final String METHOD_NOT_ALLOWED_RESPONSE = "{\"status\":405,\"error\":\"Method Not Allowed\",\"message\":null}";
+
+   /** The ETag of the state returned by {@link #createDummyGameState()}. */
+   private static final String DUMMY_ETAG = "\"0\"";
 
    private RestDocumentationResultHandler document;
    /** This is required so tests use spring security */
@@ -150,7 +159,7 @@ public class BlackjackControllerTest {
       when(mockGame.snapshotCurrentState()).thenReturn(createDummyGameState());
 
       MvcResult result = mockMvc.perform(post(BLACKJACK_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isCreated())
-                  .andExpect(header().string("Location", DUMMY_GAME_ID_LOCATION)).andReturn();
+                  .andExpect(header().string("Location", DUMMY_GAME_ID_LOCATION)).andExpect(header().string("ETag", DUMMY_ETAG)).andReturn();
       assertResponse(result);
       verifySnapshotCurrentStateCalled(mockGame);
    }
@@ -162,11 +171,66 @@ public class BlackjackControllerTest {
       when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
       when(mockGame.snapshotCurrentState()).thenReturn(createDummyGameState());
 
-      MvcResult result = mockMvc.perform(get(DUMMY_GAME_ID_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isOk()).andReturn();
+      MvcResult result = mockMvc.perform(get(DUMMY_GAME_ID_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isOk())
+                  .andExpect(header().string("ETag", DUMMY_ETAG)).andReturn();
       assertResponse(result);
       verifySnapshotCurrentStateCalled(mockGame);
    }
 
+   /** Test that a 304 Not Modified response is returned for view requests that specify the current version of the game - without creating a snapshot. */
+   @Test
+   public void viewGame_NotModified() throws Exception {
+      Game mockGame = createMockGame();
+      when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
+      when(mockGame.getVersion()).thenReturn(Game.INITIAL_VERSION);
+
+      MvcResult result = mockMvc.perform(get(DUMMY_GAME_ID_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE).header("If-None-Match", DUMMY_ETAG))
+                  .andExpect(status().isNotModified()).andExpect(header().string("ETag", DUMMY_ETAG)).andReturn();
+      assertResponse("", result);
+      verifyGameMethodCalls(mockGame, 0, 0, 0);
+   }
+
+   /** Test that the state of the game is returned for view requests that specify an old version of the game. */
+   @Test
+   public void viewGame_Modified() throws Exception {
+      Game mockGame = createMockGame();
+      when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
+      when(mockGame.snapshotCurrentState()).thenReturn(createDummyGameState());
+
+      MvcResult result = mockMvc.perform(get(DUMMY_GAME_ID_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE).header("If-None-Match", "\"7\""))
+                  .andExpect(status().isOk()).andExpect(header().string("ETag", DUMMY_ETAG)).andReturn();
+      assertResponse(result);
+   }
+
+   /** Test that the ETag header matches the state returned for view requests where the game is updated after its version has been checked. */
+   @Test
+   public void viewGame_UpdatedAfterCheck() throws Exception {
+      Game mockGame = createMockGame();
+      GameState dummy = createDummyGameState();
+      GameState updated = new GameState(DUMMY_GAME_ID, 1, dummy.getStatus(), dummy.getDealer(), dummy.getPlayer());
+      when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
+      when(mockGame.getVersion()).thenReturn(Game.INITIAL_VERSION);
+      when(mockGame.snapshotCurrentState()).thenReturn(updated);
+
+      mockMvc.perform(get(DUMMY_GAME_ID_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE).header("If-None-Match", "\"7\"")).andExpect(status().isOk())
+                  .andExpect(header().string("ETag", "\"1\""));
+   }
+
+   /** Test that the response to a request to view a game is written using the JSON cached by its state. */
+   @Test
+   public void viewGame_CachedJson() throws Exception {
+      Game mockGame = createMockGame();
+      GameState gameState = spy(createDummyGameState());
+      when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
+      when(mockGame.snapshotCurrentState()).thenReturn(gameState);
+
+      for (int i = 1; i < 3; i++) {
+         MvcResult result = mockMvc.perform(get(DUMMY_GAME_ID_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isOk()).andReturn();
+         assertResponse(result);
+         verify(gameState, times(i)).toJson(any());
+      }
+   }
+
    /** Test that a 400 Bad Request response is returned for update requests that do not specify an action. */
    @Test
    public void updateGame_NoActionParameter() throws Exception {
@@ -195,6 +259,7 @@ public class BlackjackControllerTest {
 
       MvcResult result = requestHit().andExpect(status().isMethodNotAllowed()).andReturn();
       assertException(gameAlreadyCompleteException, result);
+      assertResponse(METHOD_NOT_ALLOWED_RESPONSE, result);
       verifyHitCalled(mockGame);
    }
 
@@ -211,6 +276,7 @@ public class BlackjackControllerTest {
 
       MvcResult result = requestStand().andExpect(status().isMethodNotAllowed()).andReturn();
       assertException(gameAlreadyCompleteException, result);
+      assertResponse(METHOD_NOT_ALLOWED_RESPONSE, result);
       verifyStandCalled(mockGame);
    }
 
@@ -221,11 +287,68 @@ public class BlackjackControllerTest {
       when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
       when(mockGame.hit()).thenReturn(createDummyGameState());
 
-      MvcResult result = requestHit().andExpect(status().isOk()).andReturn();
+      MvcResult result = requestHit().andExpect(status().isOk()).andExpect(header().string("ETag", DUMMY_ETAG)).andReturn();
       assertResponse(result);
       verifyHitCalled(mockGame);
    }
 
+   /** Test requesting a game is updated with a HIT action, if it is still at the version specified by the If-Match header. */
+   @Test
+   public void updateGame_Hit_IfMatch() throws Exception {
+      Game mockGame = createMockGame();
+      when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
+      when(mockGame.hit(3)).thenReturn(createDummyGameState());
+
+      MvcResult result = requestUpdateWithAction("HIT", "\"3\"").andExpect(status().isOk()).andExpect(header().string("ETag", DUMMY_ETAG)).andReturn();
+      assertResponse(result);
+      verify(mockGame).hit(3);
+   }
+
+   /** Test that an If-Match header containing multiple ETags is matched against the latest of the versions they identify. */
+   @Test
+   public void updateGame_Hit_IfMatchMultiple() throws Exception {
+      Game mockGame = createMockGame();
+      when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
+      when(mockGame.hit(4)).thenReturn(createDummyGameState());
+
+      requestUpdateWithAction("HIT", "\"2\", W/\"9\", \"4\", \"x\"").andExpect(status().isOk());
+      verify(mockGame).hit(4);
+   }
+
+   /** Test that a game is updated regardless of its version if the If-Match header is {@code *}. */
+   @Test
+   public void updateGame_Hit_IfMatchAny() throws Exception {
+      Game mockGame = createMockGame();
+      when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
+      when(mockGame.hit()).thenReturn(createDummyGameState());
+
+      requestUpdateWithAction("HIT", "*").andExpect(status().isOk());
+      verifyHitCalled(mockGame);
+   }
+
+   /** Test that a 412 Precondition Failed response is returned for update requests that specify an old version of the game. */
+   @Test
+   public void updateGame_PreconditionFailed() throws Exception {
+      GameVersionMismatchException gameVersionMismatchException = new GameVersionMismatchException(DUMMY_GAME_ID, 3, 4);
+      Game mockGame = createMockGame();
+      when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
+      when(mockGame.stand(3)).thenThrow(gameVersionMismatchException);
+
+      MvcResult result = requestUpdateWithAction("STAND", "\"3\"").andExpect(status().isPreconditionFailed()).andReturn();
+      assertException(gameVersionMismatchException, result);
+      verify(mockGame).stand(3);
+   }
+
+   /** Test that a 412 Precondition Failed response is returned for update requests whose If-Match header cannot identify a version of the game. */
+   @Test
+   public void updateGame_PreconditionFailed_UnrecognisedETag() throws Exception {
+      Game mockGame = createMockGame();
+      when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenReturn(mockGame);
+
+      requestUpdateWithAction("HIT", "W/\"3\"").andExpect(status().isPreconditionFailed());
+      verifyGameMethodCalls(mockGame, 0, 0, 0);
+   }
+
    /** Test requesting a game is updated with a STAND action. */
    @Test
    public void updateGame_Stand() throws Exception {
@@ -241,22 +364,55 @@ public class BlackjackControllerTest {
    /** Test requests to list games for a user who does not currently have any games. */
    @Test
    public void listGames_Empty() throws Exception {
-      when(gameStore.findGameIdsByUsername(DUMMY_USER_NAME)).thenReturn(Collections.emptySet());
+      when(gameStore.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 100)).thenReturn(GameIdPage.EMPTY);
       MvcResult result = performListGames();
       assertResponse("[]", result);
+      assertNull(result.getResponse().getHeader("Link"));
    }
 
    /** Test requests to list games for a user who has multiple games. */
    @Test
    public void listGames() throws Exception {
-      Set<String> gameIds = new LinkedHashSet<>(asList());
-      gameIds.add("d441c5be-5820-400a-8f69-fe14da65e883");
-      gameIds.add("7bcae0a1-6b50-42cb-bb5c-b62a927aa68a");
-      gameIds.add("b586176b-1f9a-42fd-9fa8-5d015083c125");
-      when(gameStore.findGameIdsByUsername(DUMMY_USER_NAME)).thenReturn(gameIds);
+      List<String> gameIds = asList("d441c5be-5820-400a-8f69-fe14da65e883", "7bcae0a1-6b50-42cb-bb5c-b62a927aa68a", "b586176b-1f9a-42fd-9fa8-5d015083c125");
+      when(gameStore.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 100)).thenReturn(new GameIdPage(gameIds, null));
 
       MvcResult result = performListGames();
       assertResponse("[\"d441c5be-5820-400a-8f69-fe14da65e883\",\"7bcae0a1-6b50-42cb-bb5c-b62a927aa68a\",\"b586176b-1f9a-42fd-9fa8-5d015083c125\"]", result);
+      assertNull(result.getResponse().getHeader("Link"));
+   }
+
+   /** Test requests to list games that specify a status, cursor and limit, where there are further games to list. */
+   @Test
+   public void listGames_NextPage() throws Exception {
+      List<String> gameIds = asList("d441c5be-5820-400a-8f69-fe14da65e883", "7bcae0a1-6b50-42cb-bb5c-b62a927aa68a");
+      when(gameStore.findGameIdsByUsername(DUMMY_USER_NAME, Status.PLAYERS_TURN, "5", 2)).thenReturn(new GameIdPage(gameIds, "9"));
+
+      MvcResult result = mockMvc.perform(get(BLACKJACK_PATH + "?status=PLAYERS_TURN&cursor=5&limit=2")
+                  .header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isOk())
+                  .andExpect(header().string("Link", "<http://localhost:8080/blackjack?status=PLAYERS_TURN&limit=2&cursor=9>; rel=\"next\"")).andReturn();
+      assertResponse("[\"d441c5be-5820-400a-8f69-fe14da65e883\",\"7bcae0a1-6b50-42cb-bb5c-b62a927aa68a\"]", result);
+   }
+
+   @Test
+   public void listGames_InvalidLimit() throws Exception {
+      for (String limit : new String[] { "0", "1001" }) {
+         MvcResult result = mockMvc.perform(get(BLACKJACK_PATH).param("limit", limit).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE))
+                     .andExpect(status().isBadRequest()).andReturn();
+         assertBadRequestException(ResponseStatusException.class, "400 BAD_REQUEST \"limit must be between 1 and 1000 but was " + limit + "\"", result);
+      }
+   }
+
+   @Test
+   public void listGames_InvalidStatus() throws Exception {
+      mockMvc.perform(get(BLACKJACK_PATH).param("status", "WON").header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isBadRequest());
+   }
+
+   @Test
+   public void listGames_InvalidCursor() throws Exception {
+      when(gameStore.findGameIdsByUsername(DUMMY_USER_NAME, null, "x", 100)).thenThrow(new InvalidCursorException("x"));
+      MvcResult result = mockMvc.perform(get(BLACKJACK_PATH).param("cursor", "x").header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE))
+                  .andExpect(status().isBadRequest()).andReturn();
+      assertBadRequestException(InvalidCursorException.class, "invalid cursor: x", result);
    }
 
    private void assertAuthenticateFailure(Supplier<MockHttpServletRequestBuilder> supplier) throws Exception {
@@ -282,6 +438,7 @@ public class BlackjackControllerTest {
       when(gameStore.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID)).thenThrow(gameNotFoundException);
       MvcResult result = mockMvc.perform(get(DUMMY_GAME_ID_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isNotFound()).andReturn();
       assertException(gameNotFoundException, result);
+      assertResponse(NOT_FOUND_RESPONSE, result);
    }
 
    private void assertException(Throwable expected, MvcResult actualResult) {
@@ -320,6 +477,10 @@ public class BlackjackControllerTest {
       return mockMvc.perform(post(DUMMY_GAME_ID_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE).param("action", actionName));
    }
 
+   private ResultActions requestUpdateWithAction(String actionName, String ifMatch) throws Exception {
+      return mockMvc.perform(post(DUMMY_GAME_ID_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE).header("If-Match", ifMatch).param("action", actionName));
+   }
+
    private MvcResult performListGames() throws Exception {
       return mockMvc.perform(get(BLACKJACK_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isOk()).andReturn();
    }
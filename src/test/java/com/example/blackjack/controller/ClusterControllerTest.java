@@ -0,0 +1,223 @@
+package com.example.blackjack.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.blackjack.Application;
+import com.example.blackjack.model.MemoryGameStore;
+import com.example.blackjack.model.ShardedGameStore;
+import com.example.blackjack.security.ClusterAuthenticationFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests a cluster of several instances of the application, each listening on a different localhost port - so requests are forwarded over HTTP by
+ * {@link HttpClusterClient} to {@link ClusterController}.
+ */
+public class ClusterControllerTest {
+   private static final String SECRET = "dummy cluster secret";
+   private static final int NUMBER_OF_NODES = 3;
+   private static final long TIMEOUT_MILLIS = 30_000;
+
+   private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+   private static final List<String> NODES = new ArrayList<>();
+   private static final List<ConfigurableApplicationContext> CONTEXTS = new ArrayList<>();
+
+   @BeforeAll
+   public static void startNodes() throws IOException {
+      int[] ports = new int[NUMBER_OF_NODES];
+      for (int i = 0; i < NUMBER_OF_NODES; i++) {
+         try (ServerSocket socket = new ServerSocket(0)) {
+            ports[i] = socket.getLocalPort();
+         }
+         NODES.add("http://localhost:" + ports[i]);
+      }
+      for (int i = 0; i < NUMBER_OF_NODES; i++) {
+         CONTEXTS.add(new SpringApplicationBuilder(Application.class).run("--server.port=" + ports[i], "--blackjack.node-id=" + i,
+                     "--blackjack.cluster.enabled=true", "--blackjack.cluster.self=" + NODES.get(i), "--blackjack.cluster.nodes=" + String.join(",", NODES),
+                     "--blackjack.cluster.secret=" + SECRET, "--spring.jmx.enabled=false", "--spring.datasource.url=jdbc:h2:mem:cluster" + i));
+      }
+   }
+
+   @AfterAll
+   public static void stopNodes() {
+      CONTEXTS.forEach(ConfigurableApplicationContext::close);
+      CONTEXTS.clear();
+      NODES.clear();
+   }
+
+   /** Test that games can be created, viewed, updated and listed through any node, whichever node holds them. */
+   @Test
+   public void testForwarding() throws Exception {
+      for (int i = 0; i < 10; i++) {
+         String username = "forwarding" + i;
+         JsonNode created = send("POST", node(i), "/blackjack", username, null, 201);
+         String gameId = created.get("id").asText();
+
+         assertEquals(created, send("GET", node(i + 1), "/blackjack/" + gameId, username, null, 200));
+         if (!created.get("status").asText().equals("PLAYERS_TURN")) {
+            continue;
+         }
+         // the version of the game is not 1, so the If-Match header does not match
+         send("POST", node(i + 1), "/blackjack/" + gameId + "?action=STAND", username, "\"1\"", 412);
+         JsonNode stood = send("POST", node(i + 2), "/blackjack/" + gameId + "?action=STAND", username, "\"0\"", 200);
+         assertEquals(stood, send("GET", node(i), "/blackjack/" + gameId, username, null, 200));
+         send("POST", node(i + 1), "/blackjack/" + gameId + "?action=HIT", username, null, 405);
+      }
+
+      String username = "forwarding list";
+      List<String> gameIds = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+         gameIds.add(send("POST", node(i), "/blackjack", username, null, 201).get("id").asText());
+      }
+      for (int i = 0; i < NUMBER_OF_NODES; i++) {
+         assertEquals(OBJECT_MAPPER.valueToTree(gameIds), send("GET", node(i), "/blackjack", username, null, 200));
+         send("GET", node(i), "/blackjack/unknown", username, null, 404);
+         send("GET", node(i), "/blackjack?cursor=invalid", username, null, 400);
+      }
+
+      long forwarded = 0;
+      for (ConfigurableApplicationContext context : CONTEXTS) {
+         forwarded += context.getBean(ShardedGameStore.class).getForwardedCount();
+      }
+      assertTrue(forwarded > 0);
+   }
+
+   /** Test that the endpoints used to forward requests can only be accessed with the secret shared by the nodes. */
+   @Test
+   public void testClusterEndpointsRequireSecret() throws Exception {
+      // authenticated as a user
+      send("POST", node(0), "/cluster/games", "user", null, 403);
+
+      HttpRequest.Builder wrongKey = HttpRequest.newBuilder(URI.create(node(0) + "/cluster/games")).POST(HttpRequest.BodyPublishers.noBody())
+                  .header(ClusterAuthenticationFilter.KEY_HEADER, "wrong").header(ClusterAuthenticationFilter.USER_HEADER, "user");
+      assertEquals(401, HTTP_CLIENT.send(wrongKey.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+      HttpRequest.Builder noUser = HttpRequest.newBuilder(URI.create(node(0) + "/cluster/games")).POST(HttpRequest.BodyPublishers.noBody())
+                  .header(ClusterAuthenticationFilter.KEY_HEADER, SECRET);
+      assertEquals(401, HTTP_CLIENT.send(noUser.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+      HttpRequest.Builder valid = HttpRequest.newBuilder(URI.create(node(0) + "/cluster/games")).POST(HttpRequest.BodyPublishers.noBody())
+                  .header(ClusterAuthenticationFilter.KEY_HEADER, SECRET).header(ClusterAuthenticationFilter.USER_HEADER, "user");
+      assertEquals(201, HTTP_CLIENT.send(valid.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+      // the secret does not authenticate requests to the endpoints for users
+      HttpRequest.Builder user = HttpRequest.newBuilder(URI.create(node(0) + "/blackjack")).GET().header(ClusterAuthenticationFilter.KEY_HEADER, SECRET)
+                  .header(ClusterAuthenticationFilter.USER_HEADER, "user");
+      assertEquals(401, HTTP_CLIENT.send(user.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+   }
+
+   /** Test that games moved from another node that cannot be decoded are rejected as a bad request, rather than as a fault of this node. */
+   @Test
+   public void testAddMovedGames_Invalid() throws Exception {
+      HttpRequest.Builder invalid = HttpRequest.newBuilder(URI.create(node(0) + "/cluster/moved-games"))
+                  .POST(HttpRequest.BodyPublishers.ofByteArray(new byte[] { 99 })).header("Content-Type", "application/octet-stream")
+                  .header(ClusterAuthenticationFilter.KEY_HEADER, SECRET).header(ClusterAuthenticationFilter.USER_HEADER, "user");
+      assertEquals(400, HTTP_CLIENT.send(invalid.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+   }
+
+   /** Test that enabling a store that cannot be combined with the cluster fails to start, explaining why. */
+   @Test
+   public void testUnsupportedStore() {
+      for (String store : new String[] { "cache", "jdbc" }) {
+         SpringApplicationBuilder builder = new SpringApplicationBuilder(Application.class);
+         Throwable failure = assertThrows(Exception.class, () -> builder.run("--server.port=0", "--blackjack.cluster.enabled=true",
+                     "--blackjack.cluster.self=http://localhost", "--blackjack.cluster.secret=" + SECRET, "--blackjack.store." + store + ".enabled=true",
+                     "--spring.jmx.enabled=false", "--spring.datasource.url=jdbc:h2:mem:unsupported-" + store));
+         while (failure.getCause() != null) {
+            failure = failure.getCause();
+         }
+         assertInstanceOf(IllegalStateException.class, failure);
+         assertTrue(failure.getMessage().contains("cannot be enabled when the store is shared across a cluster"), failure.getMessage());
+      }
+   }
+
+   /** Test that when a node is removed its games are moved to the other nodes, and moved back when it is added again. */
+   @Test
+   public void testSetNodes() throws Exception {
+      Map<String, JsonNode> games = new LinkedHashMap<>();
+      for (int i = 0; i < 30; i++) {
+         String username = "moved" + i;
+         games.put(username, send("POST", node(i), "/blackjack", username, null, 201));
+      }
+      MemoryGameStore removedStore = CONTEXTS.get(2).getBean(MemoryGameStore.class);
+      ShardedGameStore removed = CONTEXTS.get(2).getBean(ShardedGameStore.class);
+      long held = removedStore.getGameCount();
+      long movedOutBefore = removed.getMovedOutCount();
+      long movedInBefore = removed.getMovedInCount();
+      assertTrue(held > 0);
+
+      setNodes(NODES.subList(0, 2));
+      awaitTrue(() -> removedStore.getGameCount() == 0);
+      assertEquals(held, removed.getMovedOutCount() - movedOutBefore);
+      assertGamesFound(games);
+
+      // every game moved from the node is moved back to it
+      setNodes(NODES);
+      awaitTrue(() -> removed.getMovedInCount() - movedInBefore >= held);
+      assertTrue(removedStore.getGameCount() >= held);
+      assertGamesFound(games);
+   }
+
+   private static void setNodes(List<String> nodes) {
+      for (ConfigurableApplicationContext context : CONTEXTS) {
+         context.getBean(ShardedGameStore.class).setNodes(String.join(",", nodes));
+      }
+   }
+
+   private static void assertGamesFound(Map<String, JsonNode> games) throws Exception {
+      for (Map.Entry<String, JsonNode> game : games.entrySet()) {
+         for (int i = 0; i < NUMBER_OF_NODES; i++) {
+            assertEquals(game.getValue(), send("GET", node(i), "/blackjack/" + game.getValue().get("id").asText(), game.getKey(), null, 200));
+         }
+      }
+   }
+
+   private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      while (!condition.getAsBoolean()) {
+         assertTrue(System.currentTimeMillis() < deadline, "timed out");
+         Thread.sleep(50);
+      }
+   }
+
+   private static String node(int index) {
+      return NODES.get(index % NUMBER_OF_NODES);
+   }
+
+   /** Sends a request authenticated as the given user, asserting the status of the response and returning its body. */
+   private static JsonNode send(String method, String node, String path, String username, String ifMatch, int expectedStatus) throws Exception {
+      String credentials = Base64.getEncoder().encodeToString((username + ":password").getBytes(StandardCharsets.UTF_8));
+      HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(node + path)).method(method, HttpRequest.BodyPublishers.noBody())
+                  .header("Authorization", "Basic " + credentials);
+      if (ifMatch != null) {
+         request.header("If-Match", ifMatch);
+      }
+      HttpResponse<String> response = HTTP_CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString());
+      assertEquals(expectedStatus, response.statusCode(), () -> method + " " + path + " " + response.body());
+      return response.body().isEmpty() ? null : OBJECT_MAPPER.readTree(response.body());
+   }
+}
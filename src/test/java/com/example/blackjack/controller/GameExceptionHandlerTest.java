@@ -0,0 +1,58 @@
+package com.example.blackjack.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import com.example.blackjack.model.GameAlreadyCompleteException;
+import com.example.blackjack.model.GameNotFoundException;
+import com.example.blackjack.model.GameVersionMismatchException;
+import com.example.blackjack.model.InvalidCursorException;
+import com.example.blackjack.view.ErrorDetails;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+public class GameExceptionHandlerTest {
+   private final GameExceptionHandler testObject = new GameExceptionHandler();
+   private final HttpServletRequest request = mock(HttpServletRequest.class);
+
+   @Test
+   public void testGameNotFound() {
+      assertResponse(404, "Not Found", testObject.handle(new GameNotFoundException("username", "id"), request));
+   }
+
+   @Test
+   public void testGameAlreadyComplete() {
+      assertResponse(405, "Method Not Allowed", testObject.handle(new GameAlreadyCompleteException("id"), request));
+   }
+
+   @Test
+   public void testGameVersionMismatch() {
+      assertResponse(412, "Precondition Failed", testObject.handle(new GameVersionMismatchException("id", 1, 2), request));
+   }
+
+   @Test
+   public void testInvalidCursor() {
+      assertResponse(400, "Bad Request", testObject.handle(new InvalidCursorException("x"), request));
+   }
+
+   @Test
+   public void testHandledCount() {
+      assertEquals(0, testObject.getHandledCount());
+      testObject.handle(new GameNotFoundException("username", "id"), request);
+      testObject.handle(new GameAlreadyCompleteException("id"), request);
+      assertEquals(2, testObject.getHandledCount());
+   }
+
+   private static void assertResponse(int expectedStatus, String expectedError, ResponseEntity<ErrorDetails> actual) {
+      assertEquals(expectedStatus, actual.getStatusCode().value());
+      ErrorDetails body = actual.getBody();
+      assertEquals(expectedStatus, body.getStatus());
+      assertEquals(expectedError, body.getError());
+      // consistent with CustomErrorController, which does not include the message of the exception
+      assertNull(body.getMessage());
+   }
+}
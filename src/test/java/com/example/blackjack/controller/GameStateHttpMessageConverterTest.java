@@ -0,0 +1,50 @@
+package com.example.blackjack.controller;
+
+import static com.example.blackjack.CardReader.toCards;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Hand;
+import com.example.blackjack.view.Status;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GameStateHttpMessageConverterTest {
+   private final ObjectMapper objectMapper = new ObjectMapper();
+   private final GameStateHttpMessageConverter converter = new GameStateHttpMessageConverter(objectMapper);
+
+   @Test
+   public void testCanWrite() {
+      assertTrue(converter.canWrite(GameState.class, MediaType.APPLICATION_JSON));
+      assertTrue(converter.canWrite(GameState.class, null));
+      assertFalse(converter.canWrite(GameState.class, MediaType.APPLICATION_XML));
+      assertFalse(converter.canWrite(Hand.class, MediaType.APPLICATION_JSON));
+   }
+
+   @Test
+   public void testCanRead() {
+      assertFalse(converter.canRead(GameState.class, MediaType.APPLICATION_JSON));
+      assertFalse(converter.canRead(GameState.class, null));
+   }
+
+   /** Test the JSON written is identical to the JSON created by the {@code ObjectMapper}. */
+   @Test
+   public void testWrite() throws Exception {
+      GameState gameState = new GameState("dummy game id", Status.PLAYER_WON, new Hand(toCards("AS 7C TD")), new Hand(toCards("QH JD")));
+      byte[] expected = objectMapper.writeValueAsBytes(gameState);
+
+      // write the same state twice, to check the cached JSON is also correct
+      for (int i = 0; i < 2; i++) {
+         MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+         converter.write(gameState, MediaType.APPLICATION_JSON, outputMessage);
+         assertArrayEquals(expected, outputMessage.getBodyAsBytes());
+         assertEquals(MediaType.APPLICATION_JSON, outputMessage.getHeaders().getContentType());
+      }
+   }
+}
@@ -0,0 +1,120 @@
+package com.example.blackjack.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.documentationConfiguration;
+import static org.springframework.restdocs.operation.preprocess.Preprocessors.preprocessRequest;
+import static org.springframework.restdocs.operation.preprocess.Preprocessors.preprocessResponse;
+import static org.springframework.restdocs.operation.preprocess.Preprocessors.prettyPrint;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.restdocs.RestDocumentationContextProvider;
+import org.springframework.restdocs.RestDocumentationExtension;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.example.blackjack.CardReader;
+import com.example.blackjack.model.Game;
+import com.example.blackjack.model.GameStore;
+import com.example.blackjack.security.TokenService;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Hand;
+import com.example.blackjack.view.Status;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith({RestDocumentationExtension.class, SpringExtension.class})
+@SpringBootTest
+public class TokenControllerTest {
+   private static final String AUTHORIZATION_HEADER = "Authorization";
+   private static final String TOKEN_PATH = "/token";
+   private static final String BLACKJACK_PATH = "/blackjack";
+   private static final String DUMMY_USER_NAME = "username";
+   private static final String BASIC_DIGEST_HEADER_VALUE = "Basic "
+               + Base64.getEncoder().encodeToString((DUMMY_USER_NAME + ":password").getBytes(StandardCharsets.UTF_8));
+
+   @Autowired
+   private FilterChainProxy springSecurityFilterChain;
+   @Autowired
+   private WebApplicationContext webApplicationContext;
+   @Autowired
+   private TokenService tokenService;
+   @MockBean
+   private GameStore gameStore;
+   private MockMvc mockMvc;
+
+   @BeforeEach
+   public void setUp(RestDocumentationContextProvider restDocumentation) {
+      mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).addFilters(springSecurityFilterChain).apply(documentationConfiguration(restDocumentation))
+                  .alwaysDo(document("{method-name}", preprocessRequest(prettyPrint()), preprocessResponse(prettyPrint()))).build();
+   }
+
+   /** Test that a token is issued to a request authenticated with a username and password. */
+   @Test
+   public void createToken() throws Exception {
+      MvcResult result = mockMvc.perform(post(TOKEN_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isOk()).andReturn();
+      JsonNode json = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+      assertEquals("Bearer", json.get("token_type").asText());
+      assertEquals(tokenService.getTtl().toSeconds(), json.get("expires_in").asLong());
+      assertEquals(3, json.size());
+      assertTrue(json.get("access_token").asText().contains("."));
+   }
+
+   /** Test that requests to create a token must include valid authentication details. */
+   @Test
+   public void createToken_AuthenticateFail() throws Exception {
+      String invalidPassword = "Basic " + Base64.getEncoder().encodeToString((DUMMY_USER_NAME + ":invalid password").getBytes(StandardCharsets.UTF_8));
+      mockMvc.perform(post(TOKEN_PATH).header(AUTHORIZATION_HEADER, invalidPassword)).andExpect(status().isUnauthorized());
+      mockMvc.perform(post(TOKEN_PATH)).andExpect(status().isUnauthorized());
+   }
+
+   /** Test that a token cannot be used to obtain a new token, so a token cannot be renewed indefinitely without the password. */
+   @Test
+   public void createToken_Forbidden() throws Exception {
+      mockMvc.perform(post(TOKEN_PATH).header(AUTHORIZATION_HEADER, "Bearer " + tokenService.issue(DUMMY_USER_NAME))).andExpect(status().isForbidden());
+   }
+
+   /** Test that a request authenticated with a token is made on behalf of the user the token was issued to. */
+   @Test
+   public void bearerToken() throws Exception {
+      Game mockGame = mock(Game.class);
+      when(mockGame.getId()).thenReturn("dummy game id");
+      when(mockGame.snapshotCurrentState()).thenReturn(new GameState("dummy game id", Status.PLAYERS_TURN, new Hand(CardReader.toCards("AS")), new Hand(CardReader.toCards("8D QH"))));
+      when(gameStore.createGame(DUMMY_USER_NAME)).thenReturn(mockGame);
+
+      MvcResult result = mockMvc.perform(post(TOKEN_PATH).header(AUTHORIZATION_HEADER, BASIC_DIGEST_HEADER_VALUE)).andExpect(status().isOk()).andReturn();
+      String token = new ObjectMapper().readTree(result.getResponse().getContentAsString()).get("access_token").asText();
+
+      mockMvc.perform(post(BLACKJACK_PATH).header(AUTHORIZATION_HEADER, "Bearer " + token)).andExpect(status().isCreated());
+      verify(gameStore).createGame(DUMMY_USER_NAME);
+   }
+
+   /** Test that a request with an invalid token is rejected, rather than being treated as unauthenticated. */
+   @Test
+   public void bearerToken_Invalid() throws Exception {
+      mockMvc.perform(get(BLACKJACK_PATH).header(AUTHORIZATION_HEADER, "Bearer invalid.token")).andExpect(status().isUnauthorized())
+                  .andExpect(header().string("WWW-Authenticate", "Bearer error=\"invalid_token\""));
+      verify(gameStore, never()).findGameIdsByUsername(DUMMY_USER_NAME, null, null, 100);
+   }
+}
@@ -0,0 +1,513 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.CardReader.toCards;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+public class CachingGameStoreTest {
+   private static final String USERNAME = "qwerty";
+   /** The dealer is dealt 2S and the player 3S 4S - so the game is in progress until the player stands, or is dealt 5S 6S 7S and is then bust. */
+   private static final String DECK = "2S 3S 4S 5S 6S 7S 8S 9S TS JS QS KS AS";
+
+   private TestGameStore underlying;
+   private CachingGameStore testObject;
+
+   @BeforeEach
+   public void setUp() {
+      underlying = new TestGameStore();
+      testObject = start(16);
+   }
+
+   @AfterEach
+   public void tearDown() {
+      underlying.open();
+      testObject.stop();
+   }
+
+   private CachingGameStore start(int maxSize) {
+      // a single flusher, so the order games are flushed in is predictable
+      CachingGameStore store = new CachingGameStore(underlying, maxSize, 4, 1);
+      store.start();
+      return store;
+   }
+
+   @Test
+   public void testCreateGame() {
+      Game game = testObject.createGame(USERNAME);
+
+      assertNotSame(underlying.get(game.getId()), game);
+      assertSameState(underlying.get(game.getId()), game);
+      assertSame(game, testObject.findByUsernameAndGameId(USERNAME, game.getId()));
+      assertEquals(1, testObject.getSize());
+      assertEquals(1, testObject.getHitCount());
+      assertEquals(0, testObject.getMissCount());
+   }
+
+   @Test
+   public void testCreateGame_Complete() {
+      underlying.deck = () -> new ShuffledDeck(toCards("2S AS KS"));
+
+      Game game = testObject.createGame(USERNAME);
+
+      assertEquals(Status.PLAYER_WON, game.getStatus());
+      // nothing to copy, as a complete game can not be updated
+      assertSame(underlying.get(game.getId()), game);
+   }
+
+   @Test
+   public void testCreateGame_SeededDeck() {
+      underlying.deck = () -> new SeededDeck(42);
+
+      Game game = testObject.createGame(USERNAME);
+      int hits = 0;
+      while (!game.isComplete()) {
+         game.hit();
+         hits++;
+      }
+
+      awaitFlushed(hits);
+      assertSameState(game, underlying.get(game.getId()));
+   }
+
+   @Test
+   public void testCreateGame_LazyShuffleDeck() {
+      underlying.deck = () -> new LazyShuffleDeck(ThreadLocalRandom::current);
+
+      Game game = testObject.createGame(USERNAME);
+      while (game.isComplete()) {
+         // dealt blackjack, so try again
+         game = testObject.createGame(USERNAME);
+      }
+
+      // the order of the deck is not decided until each card is dealt, so the game can not be copied
+      assertSame(underlying.get(game.getId()), game);
+      game.stand();
+      assertEquals(0, testObject.getPendingUpdateCount());
+   }
+
+   @Test
+   public void testFindByUsernameAndGameId_NotCached() {
+      String gameId = underlying.createGame(USERNAME).getId();
+      underlying.get(gameId).hit();
+
+      Game found = testObject.findByUsernameAndGameId(USERNAME, gameId);
+
+      assertNotSame(underlying.get(gameId), found);
+      assertSameState(underlying.get(gameId), found);
+      assertSame(found, testObject.findByUsernameAndGameId(USERNAME, gameId));
+      assertEquals(1, testObject.getHitCount());
+      assertEquals(1, testObject.getMissCount());
+      assertEquals(0.5, testObject.getHitRatio());
+   }
+
+   @Test
+   public void testFindByUsernameAndGameId_WrongUsername() {
+      Game game = testObject.createGame(USERNAME);
+
+      assertThrows(GameNotFoundException.class, () -> testObject.findByUsernameAndGameId("azerty", game.getId()));
+   }
+
+   @Test
+   public void testFindByUsernameAndGameId_NotFound() {
+      assertThrows(GameNotFoundException.class, () -> testObject.findByUsernameAndGameId(USERNAME, "unknown"));
+      assertEquals(Double.NaN, new CachingGameStore(underlying, 1, 1, 1).getHitRatio());
+   }
+
+   @Test
+   public void testHit_WriteBehind() {
+      Game game = testObject.createGame(USERNAME);
+      underlying.close();
+
+      GameState hit = game.hit(0);
+      GameState stood = game.stand(1);
+
+      // the updates return before they are applied to the underlying store
+      assertEquals(1, hit.getVersion());
+      assertTrue(stood.getStatus().isComplete());
+      assertEquals(Game.INITIAL_VERSION, underlying.get(game.getId()).snapshotCurrentState().getVersion());
+
+      underlying.open();
+      awaitFlushed(2);
+      assertSameState(game, underlying.get(game.getId()));
+      assertEquals(2, testObject.getFlushedUpdateCount());
+      // once complete and flushed, the copy is replaced by a compact representation
+      assertInstanceOf(FrozenGame.class, testObject.findByUsernameAndGameId(USERNAME, game.getId()));
+      assertSameState(game, testObject.findByUsernameAndGameId(USERNAME, game.getId()));
+   }
+
+   @Test
+   public void testHit_Coalesced() {
+      Game game = testObject.createGame(USERNAME);
+      Game other = testObject.createGame(USERNAME);
+      underlying.close();
+      // a flusher takes the first game and waits, so updates made to the other game while it waits are flushed together
+      game.hit();
+      awaitCondition(() -> underlying.waiting.get() == 1);
+      other.hit();
+      other.hit();
+      other.hit();
+
+      assertEquals(1, testObject.getQueueDepth());
+      assertEquals(3, testObject.getPendingUpdateCount());
+      assertTrue(testObject.getFlushLagMillis() >= 0);
+      underlying.open();
+      awaitFlushed(4);
+      assertEquals(2, testObject.getFlushCount());
+      assertEquals(4, testObject.getFlushedUpdateCount());
+      assertSameState(other, underlying.get(other.getId()));
+   }
+
+   /** Test that every update of a batch is started before waiting for any of them, so an underlying store that defers writing them can write them together. */
+   @Test
+   public void testHit_BatchStartedBeforeWaiting() {
+      underlying.deferred = true;
+      Game first = testObject.createGame(USERNAME);
+      Game second = testObject.createGame(USERNAME);
+      Game third = testObject.createGame(USERNAME);
+      underlying.close();
+      // a flusher takes the first game and waits, so the other two games are taken as a single batch
+      first.hit();
+      awaitCondition(() -> underlying.waiting.get() == 1);
+      second.hit();
+      third.hit();
+      underlying.events.clear();
+
+      underlying.open();
+      awaitFlushed(3);
+      assertEquals(List.of("start " + second.getId(), "start " + third.getId(), "wait " + second.getId(), "wait " + third.getId()), underlying.events);
+      assertSameState(third, underlying.get(third.getId()));
+   }
+
+   @Test
+   public void testHit_VersionMismatch() {
+      Game game = testObject.createGame(USERNAME);
+      game.hit();
+
+      assertThrows(GameVersionMismatchException.class, () -> game.hit(0));
+      awaitFlushed(1);
+      assertEquals(1, underlying.get(game.getId()).snapshotCurrentState().getVersion());
+   }
+
+   @Test
+   public void testHit_FlushRejected() {
+      Game game = testObject.createGame(USERNAME);
+      // the underlying game is updated by something other than the cache, so the update to the copy can not be flushed
+      underlying.get(game.getId()).stand();
+
+      game.hit();
+
+      awaitCondition(() -> testObject.getFlushFailureCount() == 1);
+      assertEquals(0, testObject.getSize());
+      assertEquals(0, testObject.getPendingUpdateCount());
+      Game found = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+      assertEquals(Status.DEALER_WON, found.getStatus());
+      // updates to the removed copy are applied to the game as the underlying store has it
+      assertThrows(GameAlreadyCompleteException.class, () -> game.stand());
+   }
+
+   /** Test that an update the underlying store fails to apply, other than as a conflicting update, is kept and flushed again - rather than discarded. */
+   @Test
+   public void testHit_FlushFailed() {
+      Game game = testObject.createGame(USERNAME);
+      underlying.failures.set(2);
+
+      GameState hit = game.hit();
+
+      awaitFlushed(1);
+      assertEquals(2, testObject.getFlushRetryCount());
+      assertEquals(0, testObject.getFlushFailureCount());
+      assertEquals(0, testObject.getPendingUpdateCount());
+      assertEquals(hit.getVersion(), underlying.get(game.getId()).snapshotCurrentState().getVersion());
+      assertSameState(game, underlying.get(game.getId()));
+      assertSame(game, testObject.findByUsernameAndGameId(USERNAME, game.getId()));
+   }
+
+   /** Test that a game waiting to be retried is not evicted, and that updates made while it waits are flushed after the update that failed. */
+   @Test
+   public void testHit_FlushFailed_NotEvicted() {
+      testObject.stop();
+      testObject = start(1);
+      Game game = testObject.createGame(USERNAME);
+      underlying.failures.set(1);
+
+      game.hit();
+      awaitCondition(() -> testObject.getFlushRetryCount() == 1);
+      game.stand();
+      testObject.createGame(USERNAME);
+
+      assertSame(game, testObject.findByUsernameAndGameId(USERNAME, game.getId()));
+      awaitFlushed(2);
+      assertSameState(game, underlying.get(game.getId()));
+      assertEquals(0, testObject.getFlushFailureCount());
+   }
+
+   @Test
+   public void testRetryDelay() {
+      assertEquals(CachingGameStore.MIN_RETRY_DELAY, CachingGameStore.retryDelay(1));
+      assertEquals(CachingGameStore.MIN_RETRY_DELAY.multipliedBy(2), CachingGameStore.retryDelay(2));
+      assertEquals(CachingGameStore.MIN_RETRY_DELAY.multipliedBy(4), CachingGameStore.retryDelay(3));
+      assertEquals(CachingGameStore.MAX_RETRY_DELAY, CachingGameStore.retryDelay(100));
+      assertEquals(CachingGameStore.MAX_RETRY_DELAY, CachingGameStore.retryDelay(Integer.MAX_VALUE));
+   }
+
+   @Test
+   public void testEviction() {
+      testObject.stop();
+      testObject = start(2);
+      Game first = testObject.createGame(USERNAME);
+      Game second = testObject.createGame(USERNAME);
+      testObject.findByUsernameAndGameId(USERNAME, first.getId());
+
+      testObject.createGame(USERNAME);
+
+      // the second game is evicted, as the first has since been found
+      assertEquals(2, testObject.getSize());
+      assertEquals(1, testObject.getEvictionCount());
+      assertSame(first, testObject.findByUsernameAndGameId(USERNAME, first.getId()));
+      assertNotSame(second, testObject.findByUsernameAndGameId(USERNAME, second.getId()));
+      // the evicted copy applies updates to the game as the underlying store has it
+      second.hit();
+      awaitFlushed(1);
+      assertEquals(1, underlying.get(second.getId()).snapshotCurrentState().getVersion());
+   }
+
+   @Test
+   public void testEviction_NotFlushed() {
+      testObject.stop();
+      testObject = start(1);
+      Game first = testObject.createGame(USERNAME);
+      underlying.close();
+      first.hit();
+
+      Game second = testObject.createGame(USERNAME);
+
+      // the first game is not evicted while its update is being flushed, so the second game is evicted instead
+      assertEquals(1, testObject.getSize());
+      assertEquals(1, testObject.getEvictionCount());
+      assertSame(first, testObject.findByUsernameAndGameId(USERNAME, first.getId()));
+      assertNotSame(second, testObject.findByUsernameAndGameId(USERNAME, second.getId()));
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_Status() {
+      Game game = testObject.createGame(USERNAME);
+      underlying.close();
+      game.stand();
+      new Thread(() -> {
+         awaitCondition(() -> underlying.waiting.get() == 1);
+         underlying.open();
+      }).start();
+
+      // the update is flushed before listing, so the game is listed by its current status
+      assertEquals(List.of(game.getId()), testObject.findGameIdsByUsername(USERNAME, game.getStatus(), null, 10).getGameIds());
+      assertEquals(List.of(game.getId()), testObject.findGameIdsByUsername(USERNAME, null, null, 10).getGameIds());
+   }
+
+   @Test
+   public void testStop_DrainsUpdates() {
+      Game game = testObject.createGame(USERNAME);
+      underlying.close();
+      game.hit();
+      game.stand();
+
+      new Thread(() -> {
+         awaitCondition(() -> underlying.waiting.get() == 1);
+         underlying.open();
+      }).start();
+      testObject.stop();
+
+      assertSameState(game, underlying.get(game.getId()));
+      assertEquals(0, testObject.getPendingUpdateCount());
+   }
+
+   @Test
+   public void testStop_UpdatesFlushedBeforeReturning() {
+      Game game = testObject.createGame(USERNAME);
+      testObject.stop();
+
+      game.hit();
+
+      assertEquals(1, underlying.get(game.getId()).snapshotCurrentState().getVersion());
+      assertEquals(0, testObject.getFlushLagMillis());
+   }
+
+   @Test
+   public void testInvalidArguments() {
+      assertEquals("max size must be positive but was 0",
+            assertThrows(IllegalArgumentException.class, () -> new CachingGameStore(underlying, 0, 1, 1)).getMessage());
+      assertEquals("max batch size must be positive but was 0",
+            assertThrows(IllegalArgumentException.class, () -> new CachingGameStore(underlying, 1, 0, 1)).getMessage());
+      assertEquals("flush threads must be positive but was 0",
+            assertThrows(IllegalArgumentException.class, () -> new CachingGameStore(underlying, 1, 1, 0)).getMessage());
+   }
+
+   private void awaitFlushed(int updates) {
+      awaitCondition(() -> testObject.getFlushedUpdateCount() == updates);
+   }
+
+   private static void awaitCondition(BooleanSupplier condition) {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (!condition.getAsBoolean()) {
+         if (System.nanoTime() > deadline) {
+            throw new AssertionError("timed out");
+         }
+         Thread.onSpinWait();
+      }
+   }
+
+   private static void assertSameState(Game expected, Game actual) {
+      GameState expectedState = expected.snapshotCurrentState();
+      GameState actualState = actual.snapshotCurrentState();
+      assertEquals(expectedState.getId(), actualState.getId());
+      assertEquals(expectedState.getVersion(), actualState.getVersion());
+      assertEquals(expectedState.getStatus(), actualState.getStatus());
+      assertEquals(expectedState.getDealer().getCards().toString(), actualState.getDealer().getCards().toString());
+      assertEquals(expectedState.getPlayer().getCards().toString(), actualState.getPlayer().getCards().toString());
+   }
+
+   /**
+    * Holds games in memory, can be closed so that updates wait until it is opened, and can be made to fail a number of updates. Can also create games that
+    * defer waiting until the update has been applied, recording when each update is started and waited for.
+    */
+   private static final class TestGameStore implements GameStore {
+      private final Map<String, Game> games = new ConcurrentHashMap<>();
+      private final GameIdGenerator gameIdGenerator = new GameIdGenerator(0);
+      /** The number of updates currently waiting for the store to be opened. */
+      private final AtomicInteger waiting = new AtomicInteger();
+      /** The number of updates still to fail, as if the store was unavailable. */
+      private final AtomicInteger failures = new AtomicInteger();
+      private volatile Supplier<Deck> deck = () -> new ShuffledDeck(toCards(DECK));
+      private volatile CountDownLatch gate = new CountDownLatch(0);
+      private volatile boolean deferred;
+      private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+      void close() {
+         gate = new CountDownLatch(1);
+      }
+
+      void open() {
+         gate.countDown();
+      }
+
+      Game get(String gameId) {
+         return games.get(gameId);
+      }
+
+      @Override
+      public Game createGame(String username) {
+         Game game = deferred ? new DeferredGame(gameIdGenerator.generate(), username, deck.get())
+               : new GatedGame(gameIdGenerator.generate(), username, deck.get());
+         games.put(game.getId(), game);
+         return game;
+      }
+
+      @Override
+      public Game findByUsernameAndGameId(String username, String gameId) {
+         Game game = games.get(gameId);
+         if (game == null || !((GatedGame) game).username.equals(username)) {
+            throw new GameNotFoundException(username, gameId);
+         }
+         return game;
+      }
+
+      @Override
+      public GameIdPage findGameIdsByUsername(String username, Status status, String cursor, int limit) {
+         List<String> gameIds = new ArrayList<>();
+         for (Game game : games.values()) {
+            if (((GatedGame) game).username.equals(username) && (status == null || game.getStatus() == status)) {
+               gameIds.add(game.getId());
+            }
+         }
+         return new GameIdPage(gameIds, null);
+      }
+
+      private class GatedGame extends PlayableGame {
+         private final String username;
+
+         GatedGame(String id, String username, Deck deck) {
+            super(id, deck);
+            this.username = username;
+         }
+
+         @Override
+         public GameState hit(int expectedVersion) {
+            await();
+            return super.hit(expectedVersion);
+         }
+
+         @Override
+         public GameState stand(int expectedVersion) {
+            await();
+            return super.stand(expectedVersion);
+         }
+
+         /** Applies an update without waiting for the store to be opened. */
+         GameState apply(boolean hit, int expectedVersion) {
+            return hit ? super.hit(expectedVersion) : super.stand(expectedVersion);
+         }
+
+         void await() {
+            if (failures.getAndUpdate(f -> Math.max(f - 1, 0)) > 0) {
+               throw new IllegalStateException("store unavailable");
+            }
+            waiting.incrementAndGet();
+            try {
+               gate.await();
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            } finally {
+               waiting.decrementAndGet();
+            }
+         }
+      }
+
+      private final class DeferredGame extends GatedGame implements DeferredWriteGame {
+         DeferredGame(String id, String username, Deck deck) {
+            super(id, username, deck);
+         }
+
+         @Override
+         public Supplier<GameState> startHit(int expectedVersion) {
+            return start(true, expectedVersion);
+         }
+
+         @Override
+         public Supplier<GameState> startStand(int expectedVersion) {
+            return start(false, expectedVersion);
+         }
+
+         private Supplier<GameState> start(boolean hit, int expectedVersion) {
+            GameState updated = apply(hit, expectedVersion);
+            events.add("start " + getId());
+            return () -> {
+               events.add("wait " + getId());
+               await();
+               return updated;
+            };
+         }
+      }
+   }
+}
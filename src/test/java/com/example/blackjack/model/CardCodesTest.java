@@ -0,0 +1,39 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.Rank;
+import com.example.blackjack.view.Suit;
+
+public class CardCodesTest {
+   @Test
+   public void testEncodeDecode() {
+      Set<Byte> codes = new HashSet<>();
+      for (Rank rank : Rank.values()) {
+         for (Suit suit : Suit.values()) {
+            byte code = CardCodes.encode(new Card(rank, suit));
+            Card decoded = CardCodes.decode(code);
+            assertSame(rank, decoded.getRank());
+            assertSame(suit, decoded.getSuit());
+            codes.add(code);
+         }
+      }
+      assertEquals(52, codes.size());
+   }
+
+   @Test
+   public void testDecodeReturnsSharedCards() {
+      for (int code = 0; code < DeckFactory.CARDS.size(); code++) {
+         Card card = DeckFactory.CARDS.get(code);
+         assertSame(card, CardCodes.decode(code));
+         assertEquals(code, CardCodes.encode(card));
+      }
+   }
+}
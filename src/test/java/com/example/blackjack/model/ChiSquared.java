@@ -0,0 +1,52 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.Supplier;
+
+/**
+ * Chi-squared tests of whether the cards dealt by decks are uniformly distributed.
+ * <p>
+ * Only added to share between the unit tests of each {@code Deck} implementation (hence why it is in {@code src/test/java} rather than
+ * {@code src/main/java}).
+ */
+final class ChiSquared {
+   /** The value of the chi-squared distribution, with 51 degrees of freedom, that has a 0.1% probability of being exceeded. */
+   static final double CRITICAL_VALUE_51_DEGREES_OF_FREEDOM = 87.97;
+   /** The value of the chi-squared distribution, with 23 degrees of freedom, that has a 0.1% probability of being exceeded. */
+   static final double CRITICAL_VALUE_23_DEGREES_OF_FREEDOM = 49.73;
+
+   private ChiSquared() {
+   }
+
+   /** Asserts that, for each of the first few cards dealt from the decks returned by {@code decks}, every card is equally likely to be dealt. */
+   static void assertUniformDistributionOfEachPosition(Supplier<Deck> decks) {
+      final int numberOfPositions = 6;
+      final int numberOfCards = DeckFactory.CARDS.size();
+      final int numberOfDecks = numberOfCards * 1000;
+
+      int[][] counts = new int[numberOfPositions][numberOfCards];
+      for (int i = 0; i < numberOfDecks; i++) {
+         Deck d = decks.get();
+         for (int position = 0; position < numberOfPositions; position++) {
+            counts[position][DeckFactory.CARDS.indexOf(d.deal())]++;
+         }
+      }
+
+      for (int position = 0; position < numberOfPositions; position++) {
+         double chiSquared = chiSquared(counts[position], numberOfDecks);
+         assertTrue(chiSquared < CRITICAL_VALUE_51_DEGREES_OF_FREEDOM, "position " + position + " chi-squared " + chiSquared);
+      }
+   }
+
+   /** Returns the chi-squared statistic of the given counts, compared to {@code total} spread evenly between them. */
+   static double chiSquared(int[] observed, int total) {
+      double expected = (double) total / observed.length;
+      double result = 0;
+      for (int o : observed) {
+         double difference = o - expected;
+         result += difference * difference / expected;
+      }
+      return result;
+   }
+}
@@ -0,0 +1,104 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class ConsistentHashRingTest {
+   private static final String NODE_A = "http://localhost:8081";
+   private static final String NODE_B = "http://localhost:8082";
+   private static final String NODE_C = "http://localhost:8083";
+   private static final String NODE_D = "http://localhost:8084";
+   private static final int NUMBER_OF_USERS = 30000;
+
+   @Test
+   public void testNoNodes() {
+      assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(Collections.emptyList()));
+   }
+
+   @Test
+   public void testSingleNode() {
+      ConsistentHashRing ring = new ConsistentHashRing(List.of(NODE_A));
+      for (int i = 0; i < 1000; i++) {
+         assertEquals(NODE_A, ring.ownerOf("user" + i));
+      }
+   }
+
+   /** Test that the nodes are ordered, and duplicates ignored, so every node given the same nodes has the same ring. */
+   @Test
+   public void testGetNodes() {
+      ConsistentHashRing ring = new ConsistentHashRing(List.of(NODE_C, NODE_A, NODE_B, NODE_A));
+      assertEquals(List.of(NODE_A, NODE_B, NODE_C), ring.getNodes());
+      assertTrue(ring.contains(NODE_B));
+      assertFalse(ring.contains(NODE_D));
+   }
+
+   @Test
+   public void testOrderOfNodesIgnored() {
+      ConsistentHashRing ring1 = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C));
+      ConsistentHashRing ring2 = new ConsistentHashRing(List.of(NODE_C, NODE_B, NODE_A));
+      for (int i = 0; i < NUMBER_OF_USERS; i++) {
+         assertEquals(ring1.ownerOf("user" + i), ring2.ownerOf("user" + i));
+      }
+   }
+
+   /** Test that each node is assigned roughly the same number of users. */
+   @Test
+   public void testDistribution() {
+      ConsistentHashRing ring = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C));
+      Map<String, Integer> counts = new HashMap<>();
+      for (int i = 0; i < NUMBER_OF_USERS; i++) {
+         counts.merge(ring.ownerOf("user" + i), 1, Integer::sum);
+      }
+      assertEquals(3, counts.size());
+      for (int count : counts.values()) {
+         // within 20% of an even share
+         assertTrue(Math.abs(count - NUMBER_OF_USERS / 3) < NUMBER_OF_USERS / 15, counts::toString);
+      }
+   }
+
+   /** Test that adding a node only moves users to the new node, and moves roughly its share of the users. */
+   @Test
+   public void testAddNode() {
+      ConsistentHashRing before = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C));
+      ConsistentHashRing after = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C, NODE_D));
+      int moved = 0;
+      for (int i = 0; i < NUMBER_OF_USERS; i++) {
+         String owner = after.ownerOf("user" + i);
+         if (!owner.equals(before.ownerOf("user" + i))) {
+            assertEquals(NODE_D, owner);
+            moved++;
+         }
+      }
+      assertTrue(Math.abs(moved - NUMBER_OF_USERS / 4) < NUMBER_OF_USERS / 20, "moved " + moved);
+   }
+
+   /** Test that removing a node only moves the users of that node. */
+   @Test
+   public void testRemoveNode() {
+      ConsistentHashRing before = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C));
+      ConsistentHashRing after = new ConsistentHashRing(List.of(NODE_A, NODE_C));
+      for (int i = 0; i < NUMBER_OF_USERS; i++) {
+         String owner = before.ownerOf("user" + i);
+         if (owner.equals(NODE_B)) {
+            assertFalse(after.ownerOf("user" + i).equals(NODE_B));
+         } else {
+            assertEquals(owner, after.ownerOf("user" + i));
+         }
+      }
+   }
+
+   @Test
+   public void testHash() {
+      assertEquals(ConsistentHashRing.hash("user"), ConsistentHashRing.hash("user"));
+      assertTrue(ConsistentHashRing.hash("user1") != ConsistentHashRing.hash("user2"));
+   }
+}
@@ -15,6 +15,8 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 import com.example.blackjack.view.Card;
 import com.example.blackjack.view.Rank;
@@ -38,14 +40,34 @@ public class DeckFactoryTest {
       // create object to test
       DeckFactory deckFactory = new DeckFactory(mockShuffleStrategy);
 
-      assertSame(dummyCard1, deckFactory.createDeck().deal());
-      assertSame(dummyCard2, deckFactory.createDeck().deal());
-      assertSame(dummyCard3, deckFactory.createDeck().deal());
+      assertEquals(dummyCard1.toString(), deckFactory.createDeck().deal().toString());
+      assertEquals(dummyCard2.toString(), deckFactory.createDeck().deal().toString());
+      assertEquals(dummyCard3.toString(), deckFactory.createDeck().deal().toString());
    }
 
    @Test
-   public void testDeckContents() {
-      DeckFactory deckFactory = new DeckFactory(new ShuffleStrategy<Card>());
+   public void testMode() {
+      ShuffleStrategy<Card> shuffleStrategy = new ThreadLocalRandomShuffleStrategy<>();
+      assertSame(ShuffledDeck.class, new DeckFactory(shuffleStrategy).createDeck().getClass());
+      assertSame(ShuffledDeck.class, new DeckFactory(shuffleStrategy, "shuffled").createDeck().getClass());
+      assertSame(LazyShuffleDeck.class, new DeckFactory(shuffleStrategy, "lazy-shuffle").createDeck().getClass());
+      assertSame(SeededDeck.class, new DeckFactory(shuffleStrategy, "seeded").createDeck().getClass());
+   }
+
+   @Test
+   public void testUnknownMode() {
+      try {
+         new DeckFactory(new ThreadLocalRandomShuffleStrategy<>(), "random");
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("unknown deck mode: random", e.getMessage());
+      }
+   }
+
+   @ParameterizedTest
+   @EnumSource(DeckFactory.Mode.class)
+   public void testDeckContents(DeckFactory.Mode mode) {
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), mode);
       Deck d = deckFactory.createDeck();
 
       // deal cards from deck and store in a list
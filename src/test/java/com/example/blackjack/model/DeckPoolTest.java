@@ -0,0 +1,89 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.CardReader.toCards;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.function.IntSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DeckPoolTest {
+   private DeckFactory mockDeckFactory;
+   private Deck deck1;
+   private Deck deck2;
+   private Deck deck3;
+
+   @BeforeEach
+   public void setUp() {
+      mockDeckFactory = mock(DeckFactory.class);
+      deck1 = new ShuffledDeck(toCards("2S"));
+      deck2 = new ShuffledDeck(toCards("3S"));
+      deck3 = new ShuffledDeck(toCards("4S"));
+      when(mockDeckFactory.createDeck()).thenReturn(deck1, deck2, deck3);
+   }
+
+   @Test
+   public void testInvalidArguments() {
+      assertThrows(IllegalArgumentException.class, () -> new DeckPool(mockDeckFactory, 0, 0));
+      assertThrows(IllegalArgumentException.class, () -> new DeckPool(mockDeckFactory, 2, -1));
+      assertThrows(IllegalArgumentException.class, () -> new DeckPool(mockDeckFactory, 2, 2));
+   }
+
+   @Test
+   public void testPoll() {
+      DeckPool pool = new DeckPool(mockDeckFactory, 2, 1);
+      assertEquals(2, pool.getCapacity());
+      assertEquals(1, pool.getRefillWatermark());
+      assertEquals(0, pool.getSize());
+
+      pool.refill();
+      assertEquals(2, pool.getSize());
+
+      assertSame(deck1, pool.poll());
+      assertSame(deck2, pool.poll());
+      assertNull(pool.poll());
+      assertNull(pool.poll());
+      assertEquals(2, pool.getHitCount());
+      assertEquals(2, pool.getMissCount());
+
+      pool.refill();
+      assertEquals(2, pool.getSize());
+      assertSame(deck3, pool.poll());
+      assertEquals(3, pool.getHitCount());
+   }
+
+   @Test
+   public void testBackgroundRefill() throws InterruptedException {
+      when(mockDeckFactory.createDeck()).thenAnswer(i -> new ShuffledDeck(toCards("2S")));
+      DeckPool pool = new DeckPool(mockDeckFactory, 4, 2);
+      pool.start();
+      try {
+         awaitSize(pool::getSize, 4);
+
+         // polling while above the watermark does not trigger a refill
+         pool.poll();
+         assertEquals(3, pool.getSize());
+
+         // polling down to the watermark triggers a refill
+         pool.poll();
+         awaitSize(pool::getSize, 4);
+      } finally {
+         pool.stop();
+      }
+   }
+
+   private static void awaitSize(IntSupplier size, int expected) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (size.getAsInt() != expected && System.currentTimeMillis() < deadline) {
+         Thread.sleep(10);
+      }
+      assertTrue(size.getAsInt() == expected, () -> "expected " + expected + " but was " + size.getAsInt());
+   }
+}
@@ -0,0 +1,115 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.CardReader.toCards;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Hand;
+import com.example.blackjack.view.Status;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class FrozenGameTest {
+   private static final String DUMMY_GAME_ID = "dummy game id";
+
+   private final ObjectMapper objectMapper = new ObjectMapper();
+
+   @Test
+   public void testFreeze() throws Exception {
+      Game game = new PlayableGame(DUMMY_GAME_ID, new ShuffledDeck(toCards("7D TH 8H TD")));
+      GameState expected = game.stand();
+
+      FrozenGame frozen = new FrozenGame(expected);
+
+      assertEquals(DUMMY_GAME_ID, frozen.getId());
+      assertTrue(frozen.isComplete());
+      assertEquals(expected.getStatus(), frozen.getStatus());
+      assertEquals(expected.getVersion(), frozen.getVersion());
+      assertSameState(expected, frozen.snapshotCurrentState());
+      // the recreated state is cached, so the JSON it caches is reused by each view of the game
+      assertSame(frozen.snapshotCurrentState(), frozen.snapshotCurrentState());
+      assertSame(frozen.snapshotCurrentState(), new FrozenGame(expected).snapshotCurrentState());
+   }
+
+   /** Test that the cached state of a frozen game is not returned by another game with the same ID. */
+   @Test
+   public void testSnapshotCurrentState_SameId() throws Exception {
+      GameState first = new PlayableGame(DUMMY_GAME_ID, new ShuffledDeck(toCards("7D TH 8H TD"))).stand();
+      GameState second = new PlayableGame(DUMMY_GAME_ID, new ShuffledDeck(toCards("7D TH 9H TD"))).stand();
+      FrozenGame frozenFirst = new FrozenGame(first);
+      FrozenGame frozenSecond = new FrozenGame(second);
+
+      for (int i = 0; i < 2; i++) {
+         assertSameState(first, frozenFirst.snapshotCurrentState());
+         assertSameState(second, frozenSecond.snapshotCurrentState());
+      }
+      assertNotSame(frozenFirst.snapshotCurrentState(), frozenSecond.snapshotCurrentState());
+   }
+
+   /** Test that every card can be packed and unpacked, including the maximum number of cards in a hand. */
+   @Test
+   public void testFreezeAllCards() throws Exception {
+      for (int i = 0; i < DeckFactory.CARDS.size(); i += FrozenGame.MAX_CARDS_PER_HAND) {
+         Hand dealer = new Hand(DeckFactory.CARDS.subList(i, Math.min(i + FrozenGame.MAX_CARDS_PER_HAND, DeckFactory.CARDS.size())));
+         Hand player = new Hand(DeckFactory.CARDS.subList(DeckFactory.CARDS.size() - FrozenGame.MAX_CARDS_PER_HAND, DeckFactory.CARDS.size()));
+         GameState expected = new GameState(DUMMY_GAME_ID, 7, Status.DEALER_WON, dealer, player);
+
+         assertSameState(expected, new FrozenGame(expected).snapshotCurrentState());
+      }
+   }
+
+   @Test
+   public void testCanFreeze() {
+      Hand hand = new Hand(toCards("2S 3S"));
+      Hand maxCards = new Hand(toCards("AS AH AD AC 2S 2H 2D 2C 3S 3H"));
+      Hand tooManyCards = new Hand(toCards("AS AH AD AC 2S 2H 2D 2C 3S 3H 3D"));
+
+      assertTrue(FrozenGame.canFreeze(new GameState(DUMMY_GAME_ID, Status.DRAW, hand, hand)));
+      assertTrue(FrozenGame.canFreeze(new GameState(DUMMY_GAME_ID, Status.PLAYER_WON, hand, hand)));
+      assertTrue(FrozenGame.canFreeze(new GameState(DUMMY_GAME_ID, Status.DEALER_WON, hand, hand)));
+      assertTrue(FrozenGame.canFreeze(new GameState(DUMMY_GAME_ID, Status.DEALER_WON, maxCards, maxCards)));
+
+      assertFalse(FrozenGame.canFreeze(new GameState(DUMMY_GAME_ID, Status.PLAYERS_TURN, hand, hand)));
+      assertFalse(FrozenGame.canFreeze(new GameState(DUMMY_GAME_ID, Status.DEALERS_TURN, hand, hand)));
+      assertFalse(FrozenGame.canFreeze(new GameState(DUMMY_GAME_ID, Status.DRAW, tooManyCards, hand)));
+      assertFalse(FrozenGame.canFreeze(new GameState(DUMMY_GAME_ID, Status.DRAW, hand, tooManyCards)));
+   }
+
+   @Test
+   public void testCannotFreeze() {
+      Hand hand = new Hand(toCards("2S 3S"));
+      GameState inProgress = new GameState(DUMMY_GAME_ID, Status.PLAYERS_TURN, hand, hand);
+
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new FrozenGame(inProgress));
+      assertEquals("cannot freeze game with id dummy game id as PLAYERS_TURN", e.getMessage());
+   }
+
+   /** Test updates are rejected with the same exceptions as a completed {@code Game}. */
+   @Test
+   public void testUpdate() {
+      Game game = new PlayableGame(DUMMY_GAME_ID, new ShuffledDeck(toCards("7D TH 8H TD")));
+      FrozenGame frozen = new FrozenGame(game.stand());
+
+      for (Game g : new Game[] { game, frozen }) {
+         assertThrows(GameAlreadyCompleteException.class, g::hit);
+         assertThrows(GameAlreadyCompleteException.class, g::stand);
+         assertThrows(GameAlreadyCompleteException.class, () -> g.hit(1));
+         assertThrows(GameAlreadyCompleteException.class, () -> g.stand(1));
+
+         GameVersionMismatchException e = assertThrows(GameVersionMismatchException.class, () -> g.hit(0));
+         assertEquals("cannot update game with id dummy game id as expected version 0 but was 1", e.getMessage());
+         assertThrows(GameVersionMismatchException.class, () -> g.stand(2));
+      }
+   }
+
+   private void assertSameState(GameState expected, GameState actual) throws Exception {
+      assertEquals(expected.getVersion(), actual.getVersion());
+      assertEquals(objectMapper.writeValueAsString(expected), objectMapper.writeValueAsString(actual));
+   }
+}
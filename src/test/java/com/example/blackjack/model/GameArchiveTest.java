@@ -0,0 +1,374 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.CardReader.toCards;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+public class GameArchiveTest {
+   private static final String DUMMY_USER_NAME = "dummy user name";
+   private static final String OTHER_USER_NAME = "other user name";
+   /** Room for four games in each segment. */
+   private static final int SEGMENT_SIZE = GameArchive.RECORD_SIZE * 4;
+
+   @TempDir
+   private Path directory;
+   private GameArchive testObject;
+
+   @BeforeEach
+   public void setUp() {
+      testObject = new GameArchive(directory, Duration.ofMinutes(1), SEGMENT_SIZE);
+      testObject.open();
+   }
+
+   @AfterEach
+   public void tearDown() {
+      testObject.close();
+   }
+
+   @Test
+   public void testAddAndFind() {
+      FrozenGame game = createGame(1, "7D TH 8H TD");
+      FrozenGame otherGame = createGame(2, "TD 7H 8S TS");
+      testObject.add(DUMMY_USER_NAME, 0, game, 0);
+      testObject.add(OTHER_USER_NAME, 0, otherGame, 0);
+
+      assertSameState(game, testObject.find(DUMMY_USER_NAME, game.getId()));
+      assertSameState(otherGame, testObject.find(OTHER_USER_NAME, otherGame.getId()));
+      assertTrue(testObject.contains(game.getId()));
+      assertEquals(2, testObject.getGameCount());
+      assertEquals(2, testObject.getFoundCount());
+   }
+
+   @Test
+   public void testFind_NotFound() {
+      FrozenGame game = createGame(1, "7D TH 8H TD");
+      testObject.add(DUMMY_USER_NAME, 0, game, 0);
+
+      // a game belonging to another user is treated the same as a game that does not exist
+      assertNull(testObject.find(OTHER_USER_NAME, game.getId()));
+      assertNull(testObject.find(DUMMY_USER_NAME, GameIdGenerator.encode(2)));
+      assertNull(testObject.find(DUMMY_USER_NAME, "not a game id"));
+      assertFalse(testObject.contains(GameIdGenerator.encode(2)));
+      assertFalse(testObject.contains("not a game id"));
+      assertEquals(0, testObject.getFoundCount());
+   }
+
+   @Test
+   public void testAdd_AlreadyArchived() {
+      FrozenGame game = createGame(1, "7D TH 8H TD");
+      testObject.add(DUMMY_USER_NAME, 0, game, 0);
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> testObject.add(OTHER_USER_NAME, 0, game, 0));
+      assertEquals("game already archived with game id " + game.getId(), e.getMessage());
+   }
+
+   @Test
+   public void testAdd_InvalidGameId() {
+      FrozenGame game = new FrozenGame(new PlayableGame("not a game id", new ShuffledDeck(toCards("7D TH 8H TD"))).stand());
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> testObject.add(DUMMY_USER_NAME, 0, game, 0));
+      assertEquals("invalid id: not a game id", e.getMessage());
+   }
+
+   @Test
+   public void testRemove() {
+      FrozenGame game = createGame(1, "7D TH 8H TD");
+      testObject.add(DUMMY_USER_NAME, 0, game, 0);
+
+      assertTrue(testObject.remove(game.getId()));
+      assertFalse(testObject.remove(game.getId()));
+      assertFalse(testObject.remove("not a game id"));
+      assertNull(testObject.find(DUMMY_USER_NAME, game.getId()));
+      assertEquals(0, testObject.count(DUMMY_USER_NAME));
+      assertEquals(0, testObject.getGameCount());
+   }
+
+   @Test
+   public void testGetUsernames() {
+      assertTrue(testObject.getUsernames().isEmpty());
+      FrozenGame game = createGame(1, "7D TH 8H TD");
+      testObject.add(DUMMY_USER_NAME, 0, game, 0);
+      testObject.add(DUMMY_USER_NAME, 1, createGame(2, "TD 7H 8S TS"), 0);
+      testObject.add(OTHER_USER_NAME, 0, createGame(3, "TD 7H 8S TS"), 0);
+      assertEquals(Set.of(DUMMY_USER_NAME, OTHER_USER_NAME), Set.copyOf(testObject.getUsernames()));
+
+      testObject.remove(game.getId());
+      assertEquals(2, testObject.getUsernames().size());
+      testObject.remove(id(3));
+      assertEquals(List.of(DUMMY_USER_NAME), testObject.getUsernames());
+   }
+
+   /** Test that games are listed in order of sequence number, whatever order they were added in. */
+   @Test
+   public void testList() {
+      List<FrozenGame> games = new ArrayList<>();
+      for (int i = 0; i < 7; i++) {
+         games.add(createGame(i, "7D TH 8H TD"));
+      }
+      for (int i : new int[] { 2, 0, 1, 5, 6, 3, 4 }) {
+         testObject.add(DUMMY_USER_NAME, i * 10, games.get(i), 0);
+      }
+      testObject.add(OTHER_USER_NAME, 0, createGame(7, "7D TH 8H TD"), 0);
+
+      List<GameArchive.ArchivedGame> results = new ArrayList<>();
+      int next = testObject.list(DUMMY_USER_NAME, GameArchive.START, 3, 3, null, results);
+      assertEquals(20, next);
+      next = testObject.list(DUMMY_USER_NAME, next, 3, 3, null, results);
+      assertEquals(50, next);
+      next = testObject.list(DUMMY_USER_NAME, next, 3, 3, null, results);
+      assertEquals(GameArchive.START, next);
+
+      assertEquals(7, results.size());
+      for (int i = 0; i < results.size(); i++) {
+         assertEquals(i * 10, results.get(i).getSequence());
+         assertSameState(games.get(i), results.get(i).getGame());
+      }
+   }
+
+   @Test
+   public void testList_Status() {
+      FrozenGame won = createGame(1, "7D TH 8H TD");
+      FrozenGame lost = createGame(2, "TD 7H 8S TS");
+      testObject.add(DUMMY_USER_NAME, 0, won, 0);
+      testObject.add(DUMMY_USER_NAME, 1, lost, 0);
+
+      List<GameArchive.ArchivedGame> results = new ArrayList<>();
+      assertEquals(GameArchive.START, testObject.list(DUMMY_USER_NAME, GameArchive.START, 10, 10, Status.DEALER_WON, results));
+      assertEquals(1, results.size());
+      assertEquals(lost.getId(), results.get(0).getGame().getId());
+   }
+
+   @Test
+   public void testList_UnknownUser() {
+      List<GameArchive.ArchivedGame> results = new ArrayList<>();
+      assertEquals(GameArchive.START, testObject.list(DUMMY_USER_NAME, GameArchive.START, 10, 10, null, results));
+      assertTrue(results.isEmpty());
+   }
+
+   @Test
+   public void testNextSequence() {
+      assertEquals(0, testObject.nextSequence(DUMMY_USER_NAME));
+      testObject.add(DUMMY_USER_NAME, 7, createGame(1, "7D TH 8H TD"), 0);
+      testObject.add(DUMMY_USER_NAME, 3, createGame(2, "7D TH 8H TD"), 0);
+      assertEquals(8, testObject.nextSequence(DUMMY_USER_NAME));
+      assertEquals(0, testObject.nextSequence(OTHER_USER_NAME));
+   }
+
+   @Test
+   public void testRemoveExpired() {
+      List<String> removed = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+         testObject.add(DUMMY_USER_NAME, i, createGame(i, "7D TH 8H TD"), i % 2 == 0 ? 100 : 200);
+      }
+
+      assertEquals(5, testObject.removeExpired(150, removed::add));
+      assertEquals(asList(id(0), id(2), id(4), id(6), id(8)), removed);
+      assertEquals(5, testObject.count(DUMMY_USER_NAME));
+      assertNull(testObject.find(DUMMY_USER_NAME, id(0)));
+      assertSameState(createGame(1, "7D TH 8H TD"), testObject.find(DUMMY_USER_NAME, id(1)));
+
+      assertEquals(0, testObject.removeExpired(150, removed::add));
+      assertEquals(5, testObject.removeExpired(201, removed::add));
+      assertEquals(0, testObject.getGameCount());
+   }
+
+   @Test
+   public void testRemoveOldest() {
+      List<String> removed = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+         testObject.add(i % 2 == 0 ? DUMMY_USER_NAME : OTHER_USER_NAME, i, createGame(i, "7D TH 8H TD"), 0);
+      }
+
+      assertEquals(3, testObject.removeOldest(3, removed::add));
+      assertEquals(asList(id(0), id(1), id(2)), removed);
+
+      removed.clear();
+      assertEquals(2, testObject.removeOldest(OTHER_USER_NAME, 2, removed::add));
+      assertEquals(asList(id(3), id(5)), removed);
+      assertEquals(5, testObject.getGameCount());
+
+      removed.clear();
+      assertEquals(3, testObject.removeOldest(DUMMY_USER_NAME, 5, removed::add));
+      assertEquals(asList(id(4), id(6), id(8)), removed);
+      assertEquals(0, testObject.removeOldest("unknown user", 1, removed::add));
+      assertEquals(2, testObject.getGameCount());
+   }
+
+   /** Test that segments whose games have all been removed are deleted, and those with few remaining games are compacted. */
+   @Test
+   public void testCompact() throws IOException {
+      for (int i = 0; i < 12; i++) {
+         testObject.add(DUMMY_USER_NAME, i, createGame(i, "7D TH 8H TD"), 0);
+      }
+      assertEquals(3, testObject.getSegmentCount());
+      assertEquals(3, countFiles());
+      assertEquals(3L * SEGMENT_SIZE, testObject.getSegmentBytes());
+
+      // first segment emptied, so deleted straight away - the others are each left with one game
+      for (int i : new int[] { 0, 1, 2, 3, 4, 5, 6, 8, 9, 10 }) {
+         testObject.remove(id(i));
+      }
+      assertEquals(2, testObject.getSegmentCount());
+      assertEquals(2, countFiles());
+
+      // the second segment is moved to a new segment, which the third segment is then moved to as it is no longer being written to
+      testObject.compact();
+      assertEquals(1, testObject.getSegmentCount());
+      assertEquals(1, countFiles());
+      assertEquals(2, testObject.getCompactedCount());
+
+      List<GameArchive.ArchivedGame> results = new ArrayList<>();
+      testObject.list(DUMMY_USER_NAME, GameArchive.START, 10, 10, null, results);
+      assertEquals(2, results.size());
+      assertEquals(id(7), results.get(0).getGame().getId());
+      assertEquals(id(11), results.get(1).getGame().getId());
+      assertSameState(createGame(7, "7D TH 8H TD"), testObject.find(DUMMY_USER_NAME, id(7)));
+
+      // the moved game can still be removed
+      testObject.remove(id(7));
+      testObject.remove(id(11));
+      assertEquals(0, testObject.getGameCount());
+   }
+
+   /** Test that games continue to be found, and listed, as they are added and removed in a random order. */
+   @Test
+   public void testAddAndRemoveRandomised() {
+      Random random = new Random(42);
+      Map<String, Integer> expected = new HashMap<>();
+      List<String> ids = new ArrayList<>();
+      for (int i = 0; i < 20000; i++) {
+         if (!ids.isEmpty() && random.nextInt(3) == 0) {
+            String gameId = ids.remove(random.nextInt(ids.size()));
+            assertTrue(testObject.remove(gameId));
+            expected.remove(gameId);
+         } else {
+            // IDs that differ only in their lowest bits, as generated by a single node
+            FrozenGame game = createGame(i, "7D TH 8H TD");
+            testObject.add(DUMMY_USER_NAME, i, game, 0);
+            ids.add(game.getId());
+            expected.put(game.getId(), i);
+         }
+         if (i % 1000 == 0) {
+            testObject.compact();
+         }
+      }
+
+      assertEquals(expected.size(), testObject.getGameCount());
+      for (String gameId : expected.keySet()) {
+         assertTrue(testObject.contains(gameId));
+      }
+      List<GameArchive.ArchivedGame> results = new ArrayList<>();
+      testObject.list(DUMMY_USER_NAME, GameArchive.START, Integer.MAX_VALUE, Integer.MAX_VALUE, null, results);
+      assertEquals(expected.size(), results.size());
+      for (GameArchive.ArchivedGame result : results) {
+         assertEquals(expected.get(result.getGame().getId()), result.getSequence());
+      }
+   }
+
+   /** Test that a user is skipped by {@code forEachUnmarked} once their games have been copied by {@code snapshot} with the same mark. */
+   @Test
+   public void testSnapshot() {
+      testObject.add(DUMMY_USER_NAME, 1, createGame(1, "7D TH 8H TD"), 0);
+      testObject.add(DUMMY_USER_NAME, 0, createGame(2, "7D TH 8H TD"), 0);
+      testObject.add(OTHER_USER_NAME, 0, createGame(3, "7D TH 8H TD"), 0);
+
+      List<GameArchive.ArchivedGame> snapshot = testObject.snapshot(DUMMY_USER_NAME, 1);
+      assertEquals(2, snapshot.size());
+      assertEquals(id(2), snapshot.get(0).getGame().getId());
+      assertEquals(id(1), snapshot.get(1).getGame().getId());
+      assertTrue(testObject.snapshot("unknown user", 1).isEmpty());
+
+      Map<String, Integer> unmarked = new HashMap<>();
+      testObject.forEachUnmarked(1, (username, games) -> unmarked.put(username, games.size()));
+      assertEquals(Map.of(OTHER_USER_NAME, 1), unmarked);
+
+      unmarked.clear();
+      testObject.forEachUnmarked(2, (username, games) -> unmarked.put(username, games.size()));
+      assertEquals(Map.of(DUMMY_USER_NAME, 2, OTHER_USER_NAME, 1), unmarked);
+   }
+
+   /** Test that the archive starts empty, as it is not persistent, and that its segments are deleted once closed. */
+   @Test
+   public void testOpenAndClose() throws IOException {
+      Files.createFile(directory.resolve("segment-left-by-previous-run"));
+      GameArchive reopened = new GameArchive(directory, Duration.ofMinutes(1), SEGMENT_SIZE);
+      reopened.open();
+      assertEquals(0, countFiles());
+      assertFalse(reopened.contains(GameIdGenerator.encode(1)));
+
+      reopened.add(DUMMY_USER_NAME, 0, createGame(1, "7D TH 8H TD"), 0);
+      assertEquals(1, countFiles());
+      reopened.close();
+      assertEquals(0, countFiles());
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> reopened.contains(GameIdGenerator.encode(1)));
+      assertEquals("archive is closed", e.getMessage());
+      e = assertThrows(IllegalStateException.class, reopened::open);
+      assertEquals("archive has already been opened", e.getMessage());
+   }
+
+   @Test
+   public void testNotOpen() {
+      GameArchive archive = new GameArchive(directory, Duration.ofMinutes(1), SEGMENT_SIZE);
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> archive.find(DUMMY_USER_NAME, GameIdGenerator.encode(1)));
+      assertEquals("archive is new", e.getMessage());
+   }
+
+   @Test
+   public void testInvalidArguments() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new GameArchive(directory, Duration.ofMillis(-1), SEGMENT_SIZE));
+      assertEquals("archive after must not be negative but was PT-0.001S", e.getMessage());
+
+      e = assertThrows(IllegalArgumentException.class, () -> new GameArchive(directory, Duration.ZERO, GameArchive.RECORD_SIZE - 1));
+      assertEquals("segment size must be between 48 and 2147483647 bytes but was 47", e.getMessage());
+
+      e = assertThrows(IllegalArgumentException.class, () -> new GameArchive(directory, Duration.ZERO, 1L << 31));
+      assertEquals("segment size must be between 48 and 2147483647 bytes but was 2147483648", e.getMessage());
+   }
+
+   private long countFiles() throws IOException {
+      try (Stream<Path> files = Files.list(directory)) {
+         return files.count();
+      }
+   }
+
+   private static String id(int id) {
+      return GameIdGenerator.encode(id);
+   }
+
+   /** Returns a completed game, where the player stands straight after the given cards are dealt. */
+   private static FrozenGame createGame(int id, String cards) {
+      return new FrozenGame(new PlayableGame(id(id), new ShuffledDeck(toCards(cards))).stand());
+   }
+
+   private static void assertSameState(Game expected, Game actual) {
+      GameState expectedState = expected.snapshotCurrentState();
+      GameState actualState = actual.snapshotCurrentState();
+      assertEquals(expectedState.getId(), actualState.getId());
+      assertEquals(expectedState.getStatus(), actualState.getStatus());
+      assertEquals(expectedState.getVersion(), actualState.getVersion());
+      assertEquals(expectedState.getDealer().getCards().toString(), actualState.getDealer().getCards().toString());
+      assertEquals(expectedState.getPlayer().getCards().toString(), actualState.getPlayer().getCards().toString());
+   }
+}
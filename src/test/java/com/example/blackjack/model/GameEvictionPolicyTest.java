@@ -0,0 +1,62 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+public class GameEvictionPolicyTest {
+   @Test
+   public void testInvalidArguments() {
+      assertThrows(IllegalArgumentException.class, () -> new GameEvictionPolicy(Duration.ofSeconds(-1), 0, 0, Duration.ofMinutes(1)));
+      assertThrows(IllegalArgumentException.class, () -> new GameEvictionPolicy(Duration.ZERO, -1, 0, Duration.ofMinutes(1)));
+      assertThrows(IllegalArgumentException.class, () -> new GameEvictionPolicy(Duration.ZERO, 0, -1, Duration.ofMinutes(1)));
+      assertThrows(IllegalArgumentException.class, () -> new GameEvictionPolicy(Duration.ZERO, 0, 0, Duration.ZERO));
+      assertThrows(IllegalArgumentException.class, () -> new GameEvictionPolicy(Duration.ZERO, 0, 0, Duration.ofMinutes(-1)));
+   }
+
+   @Test
+   public void testNone() {
+      GameEvictionPolicy policy = GameEvictionPolicy.NONE;
+      assertFalse(policy.isCompletedGameTtlEnabled());
+      assertFalse(policy.isMaxCompletedGamesPerUserEnabled());
+      assertFalse(policy.isMaxGamesEnabled());
+      assertFalse(policy.isSweepRequired());
+   }
+
+   @Test
+   public void testCompletedGameTtl() {
+      GameEvictionPolicy policy = new GameEvictionPolicy(Duration.ofMinutes(30), 0, 0, Duration.ofSeconds(10));
+      assertTrue(policy.isCompletedGameTtlEnabled());
+      assertEquals(Duration.ofMinutes(30), policy.getCompletedGameTtl());
+      assertFalse(policy.isMaxCompletedGamesPerUserEnabled());
+      assertFalse(policy.isMaxGamesEnabled());
+      assertTrue(policy.isSweepRequired());
+      assertEquals(Duration.ofSeconds(10), policy.getEvictionInterval());
+   }
+
+   @Test
+   public void testMaxCompletedGamesPerUser() {
+      GameEvictionPolicy policy = new GameEvictionPolicy(Duration.ZERO, 7, 0, Duration.ofSeconds(10));
+      assertFalse(policy.isCompletedGameTtlEnabled());
+      assertTrue(policy.isMaxCompletedGamesPerUserEnabled());
+      assertEquals(7, policy.getMaxCompletedGamesPerUser());
+      assertFalse(policy.isMaxGamesEnabled());
+      // the per-user limit is enforced when games are created, so does not require the store to be periodically checked
+      assertFalse(policy.isSweepRequired());
+   }
+
+   @Test
+   public void testMaxGames() {
+      GameEvictionPolicy policy = new GameEvictionPolicy(Duration.ZERO, 0, 1000, Duration.ofSeconds(10));
+      assertFalse(policy.isCompletedGameTtlEnabled());
+      assertFalse(policy.isMaxCompletedGamesPerUserEnabled());
+      assertTrue(policy.isMaxGamesEnabled());
+      assertEquals(1000, policy.getMaxGames());
+      assertTrue(policy.isSweepRequired());
+   }
+}
@@ -1,31 +1,135 @@
 package com.example.blackjack.model;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.junit.jupiter.api.Test;
 
 public class GameIdGeneratorTest {
+   private static final long DUMMY_TIME = 1_717_171_717_171L;
+
    @Test
    public void testFormat() {
-      GameIdGenerator g = new GameIdGenerator();
+      GameIdGenerator g = new GameIdGenerator(0);
       String id = g.generate();
-      Pattern p = Pattern.compile("[a-fA-F0-9]{8}-[a-fA-F0-9]{4}-[a-fA-F0-9]{4}-[a-fA-F0-9]{4}-[a-fA-F0-9]{12}");
+      Pattern p = Pattern.compile("[0-9A-Za-z]{11}");
       Matcher m = p.matcher(id);
       assertTrue(m.matches(), () -> id);
    }
 
    @Test
-   public void testUnique() {
-      GameIdGenerator g = new GameIdGenerator();
-      Set<String> ids = new HashSet<>();
+   public void testUnique() throws InterruptedException {
+      GameIdGenerator g = new GameIdGenerator(0);
+      Set<String> ids = ConcurrentHashMap.newKeySet();
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+         threads.add(new Thread(() -> {
+            for (int i = 0; i < 10000; i++) {
+               assertTrue(ids.add(g.generate()));
+            }
+         }));
+      }
+      threads.forEach(Thread::start);
+      for (Thread t : threads) {
+         t.join();
+      }
+      assertEquals(40000, ids.size());
+   }
+
+   /** Test that identifiers generated by different nodes at the same time are different. */
+   @Test
+   public void testNodeId() {
+      GameIdGenerator g1 = new GameIdGenerator(1, () -> DUMMY_TIME);
+      GameIdGenerator g2 = new GameIdGenerator(GameIdGenerator.NODE_LIMIT - 1, () -> DUMMY_TIME);
+      long id1 = g1.next();
+      long id2 = g2.next();
+      assertTrue(id1 != id2);
+      assertEquals(1, GameIdGenerator.getNodeId(id1));
+      assertEquals(GameIdGenerator.NODE_LIMIT - 1, GameIdGenerator.getNodeId(id2));
+      assertEquals(DUMMY_TIME, GameIdGenerator.getTimestamp(id1));
+      assertEquals(DUMMY_TIME, GameIdGenerator.getTimestamp(id2));
+   }
+
+   @Test
+   public void testInvalidNodeId() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new GameIdGenerator(-1));
+      assertEquals("node id must be between 0 and 1023 but was -1", e.getMessage());
+      e = assertThrows(IllegalArgumentException.class, () -> new GameIdGenerator(GameIdGenerator.NODE_LIMIT));
+      assertEquals("node id must be between 0 and 1023 but was 1024", e.getMessage());
+   }
+
+   /** Test that the string representations of identifiers sort in the order they were generated. */
+   @Test
+   public void testOrderedByTime() {
+      AtomicLong clock = new AtomicLong(DUMMY_TIME);
+      GameIdGenerator g = new GameIdGenerator(7, clock::get);
+      String previous = g.generate();
       for (int i = 0; i < 10000; i++) {
+         if (i % 100 == 0) {
+            clock.addAndGet(i);
+         }
          String id = g.generate();
-         assertTrue(ids.add(id));
+         assertTrue(id.compareTo(previous) > 0, id + " " + previous);
+         assertTrue(GameIdGenerator.decode(id) > GameIdGenerator.decode(previous));
+         previous = id;
+      }
+   }
+
+   /** Test that once the sequence of a millisecond is used up, identifiers are taken from the next millisecond. */
+   @Test
+   public void testSequenceExhausted() {
+      GameIdGenerator g = new GameIdGenerator(3, () -> DUMMY_TIME);
+      long previous = -1;
+      for (int i = 0; i < GameIdGenerator.SEQUENCE_LIMIT; i++) {
+         long id = g.next();
+         assertTrue(id > previous);
+         assertEquals(DUMMY_TIME, GameIdGenerator.getTimestamp(id));
+         previous = id;
+      }
+      long id = g.next();
+      assertTrue(id > previous);
+      assertEquals(DUMMY_TIME + 1, GameIdGenerator.getTimestamp(id));
+      assertEquals(3, GameIdGenerator.getNodeId(id));
+   }
+
+   /** Test that identifiers still increase if the clock goes back. */
+   @Test
+   public void testClockGoesBack() {
+      AtomicLong clock = new AtomicLong(DUMMY_TIME);
+      GameIdGenerator g = new GameIdGenerator(0, clock::get);
+      long id1 = g.next();
+      clock.set(DUMMY_TIME - 1000);
+      long id2 = g.next();
+      assertTrue(id2 > id1);
+      assertEquals(DUMMY_TIME, GameIdGenerator.getTimestamp(id2));
+   }
+
+   @Test
+   public void testEncodeDecode() {
+      assertEquals("00000000000", GameIdGenerator.encode(0));
+      assertEquals("0000000000z", GameIdGenerator.encode(61));
+      assertEquals("00000000010", GameIdGenerator.encode(62));
+      assertEquals("AzL8n0Y58m7", GameIdGenerator.encode(Long.MAX_VALUE));
+      for (long id : new long[] { 0, 1, 61, 62, 123456789, DUMMY_TIME << 22, Long.MAX_VALUE }) {
+         assertEquals(id, GameIdGenerator.decode(GameIdGenerator.encode(id)));
+      }
+      assertThrows(IllegalArgumentException.class, () -> GameIdGenerator.encode(-1));
+   }
+
+   @Test
+   public void testDecodeInvalid() {
+      for (String invalid : new String[] { "", "0000000000", "000000000000", "0000000000-", "d8558043-3cbd-4edb-9f86-75ec5a32047f", "AzL8n0Y58m8", "zzzzzzzzzzz" }) {
+         IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> GameIdGenerator.decode(invalid));
+         assertEquals("invalid id: " + invalid, e.getMessage());
       }
    }
 }
@@ -0,0 +1,39 @@
+package com.example.blackjack.model;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class GameIdPageTest {
+   @Test
+   public void testNextPage() {
+      List<String> gameIds = asList("a", "b");
+      String cursor = "cursor";
+      GameIdPage page = new GameIdPage(gameIds, cursor);
+      assertEquals(gameIds, page.getGameIds());
+      assertSame(cursor, page.getNextCursor());
+      assertTrue(page.hasNext());
+      assertThrows(UnsupportedOperationException.class, () -> page.getGameIds().add("c"));
+   }
+
+   @Test
+   public void testLastPage() {
+      GameIdPage page = new GameIdPage(asList("a"), null);
+      assertNull(page.getNextCursor());
+      assertFalse(page.hasNext());
+   }
+
+   @Test
+   public void testEmpty() {
+      assertTrue(GameIdPage.EMPTY.getGameIds().isEmpty());
+      assertFalse(GameIdPage.EMPTY.hasNext());
+   }
+}
@@ -0,0 +1,477 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.CardReader.toCards;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+
+public class GameJournalTest {
+   private static final String FIRST_SEGMENT = "segment-0000000000000000001";
+   private static final String SECOND_SEGMENT = "segment-0000000000000000002";
+   private static final String SECOND_CHECKPOINT = "checkpoint-0000000000000000002";
+
+   @TempDir
+   Path directory;
+
+   private final List<GameJournal> opened = new ArrayList<>();
+
+   @AfterEach
+   public void tearDown() {
+      opened.forEach(GameJournal::close);
+   }
+
+   @Test
+   public void testNewJournal() {
+      Path journalDirectory = directory.resolve("a/b");
+      assertEquals(Collections.emptyList(), open(journalDirectory));
+      assertEquals(asList(FIRST_SEGMENT), list(journalDirectory));
+   }
+
+   @Test
+   public void testReplay() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.appendCreated("g1", "user 1", new ShuffledDeck(toCards("AS 2H 3C")));
+      journal.appendCreated("g2", "\u00e9l\u00e8ve", new SeededDeck(42));
+      journal.appendHit("g1", 0);
+      journal.appendStood("g2", 3);
+      journal.awaitDurable(journal.appendRemoved("g1"));
+      journal.close();
+
+      assertEquals(asList("created g1 user 1 [[ACE SPADES], [TWO HEARTS], [THREE CLUBS]]", "created g2 \u00e9l\u00e8ve " + deal(new SeededDeck(42), 3),
+                  "hit g1 0", "stood g2 3", "removed g1"), open(directory));
+   }
+
+   /** Test that the whole of a deck is recorded, even if cards have already been dealt from it. */
+   @Test
+   public void testReplay_DealtDeck() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      ShuffledDeck deck = new ShuffledDeck(toCards("AS 2H 3C"));
+      deck.deal();
+      journal.awaitDurable(journal.appendCreated("g1", "user", deck));
+      journal.close();
+
+      assertEquals(asList("created g1 user [[ACE SPADES], [TWO HEARTS], [THREE CLUBS]]"), open(directory));
+   }
+
+   /** Test that events can be appended to a journal that has been replayed. */
+   @Test
+   public void testReopen() {
+      GameJournal journal = open(GameJournal.Durability.WRITE);
+      journal.awaitDurable(journal.appendHit("g1", 0));
+      journal.close();
+
+      journal = open(GameJournal.Durability.FSYNC);
+      journal.awaitDurable(journal.appendStood("g2", 1));
+      journal.close();
+
+      assertEquals(asList("hit g1 0", "stood g2 1"), open(directory));
+      assertEquals(asList(FIRST_SEGMENT), list(directory));
+   }
+
+   /** Test that events appended while replaying, as a result of replaying earlier events, are ignored. */
+   @Test
+   public void testAppendWhileReplaying() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.awaitDurable(journal.appendHit("g1", 0));
+      journal.close();
+
+      GameJournal reopened = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      opened.add(reopened);
+      reopened.open(new RecordingListener() {
+         @Override
+         public void hit(String gameId, int version) {
+            assertEquals(0, reopened.appendHit(gameId, version));
+         }
+      });
+      reopened.close();
+
+      assertEquals(asList("hit g1 0"), open(directory));
+   }
+
+   /** Test that an event that was only partially written, and anything after it, is discarded. */
+   @Test
+   public void testIncompleteEvent() throws IOException {
+      Path segment = directory.resolve(FIRST_SEGMENT);
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.appendHit("g1", 0);
+      journal.awaitDurable(journal.appendStood("g2", 0));
+      journal.close();
+      long size = Files.size(segment);
+
+      for (long truncated = size - 1; truncated > size - 8; truncated--) {
+         truncate(segment, truncated);
+         assertEquals(asList("hit g1 0"), open(directory));
+         // the incomplete event has been removed, so the next event is appended after the last complete event
+         journal = open(GameJournal.Durability.FSYNC);
+         journal.awaitDurable(journal.appendStood("g2", 0));
+         journal.close();
+         assertEquals(size, Files.size(segment));
+      }
+   }
+
+   /** Test that an event whose checksum does not match, and anything after it, is discarded. */
+   @Test
+   public void testCorruptEvent() throws IOException {
+      Path segment = directory.resolve(FIRST_SEGMENT);
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.appendHit("g1", 0);
+      journal.appendStood("g2", 0);
+      journal.awaitDurable(journal.appendHit("g3", 0));
+      journal.close();
+
+      byte[] contents = Files.readAllBytes(segment);
+      String s = new String(contents, StandardCharsets.ISO_8859_1);
+      contents[s.indexOf("g2") + 1] = '9';
+      Files.write(segment, contents);
+
+      assertEquals(asList("hit g1 0"), open(directory));
+   }
+
+   /** Test that the segments following a segment that ends with an incomplete event are discarded, as they follow the incomplete event. */
+   @Test
+   public void testIncompleteEventInEarlierSegment() throws IOException {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.appendHit("g1", 0);
+      journal.awaitDurable(journal.appendHit("g2", 0));
+      // abandoned, so the journal has moved to a new segment without a checkpoint to replace the earlier segment
+      journal.startCheckpoint().close();
+      journal.awaitDurable(journal.appendHit("g3", 0));
+      journal.close();
+      assertEquals(asList(FIRST_SEGMENT, SECOND_SEGMENT), list(directory));
+      assertEquals(asList("hit g1 0", "hit g2 0", "hit g3 0"), open(directory));
+
+      Path segment = directory.resolve(FIRST_SEGMENT);
+      truncate(segment, Files.size(segment) - 1);
+      assertEquals(asList("hit g1 0"), open(directory));
+      assertEquals(asList(FIRST_SEGMENT), list(directory));
+   }
+
+   /** Test that a segment that was created, but not written to, is replaced. */
+   @Test
+   public void testEmptySegment() throws IOException {
+      Files.createFile(directory.resolve(FIRST_SEGMENT));
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.awaitDurable(journal.appendHit("g1", 0));
+      journal.close();
+      assertEquals(asList("hit g1 0"), open(directory));
+   }
+
+   @Test
+   public void testNotAJournal() throws IOException {
+      Path segment = directory.resolve(FIRST_SEGMENT);
+      Files.writeString(segment, "not a journal");
+      GameJournal journal = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> journal.open(new RecordingListener()));
+      assertEquals(segment + " is not part of a journal", e.getMessage());
+   }
+
+   @Test
+   public void testUnknownFile() throws IOException {
+      Path file = directory.resolve("segment-x");
+      Files.createFile(file);
+      GameJournal journal = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> journal.open(new RecordingListener()));
+      assertEquals(file + " is not part of a journal", e.getMessage());
+   }
+
+   @Test
+   public void testOpenTwice() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> journal.open(new RecordingListener()));
+      assertEquals("journal has already been opened", e.getMessage());
+   }
+
+   @Test
+   public void testAppendBeforeOpen() {
+      GameJournal journal = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> journal.appendHit("g1", 0));
+      assertEquals("journal is new", e.getMessage());
+   }
+
+   @Test
+   public void testAppendAfterClose() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.close();
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> journal.appendHit("g1", 0));
+      assertEquals("journal is closed", e.getMessage());
+   }
+
+   @Test
+   public void testUnsupportedDeck() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      Deck deck = new LazyShuffleDeck(Random::new);
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> journal.appendCreated("g1", "user", deck));
+      assertEquals("cannot record the order of LazyShuffleDeck for game id g1", e.getMessage());
+   }
+
+   /**
+    * Test that a checkpoint replaces every earlier segment - so only the games written to the checkpoint, and the events appended after it was started,
+    * are replayed.
+    */
+   @Test
+   public void testCheckpoint() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.appendCreated("g1", "user 1", new SeededDeck(7));
+      journal.awaitDurable(journal.appendHit("g1", 0));
+
+      GameJournal.Checkpoint checkpoint = journal.startCheckpoint();
+      // appended after the checkpoint was started, so replayed after the games in the checkpoint
+      journal.appendHit("g2", 1);
+      Game inProgress = new PlayableGame("g2", new ShuffledDeck(toCards("2S 3S 4S 5S 6S TS TD")));
+      inProgress.hit();
+      Game stood = new PlayableGame("g3", new ShuffledDeck(toCards("2S 3S 4S TS TD")));
+      stood.stand();
+      checkpoint.write("user 1", inProgress);
+      checkpoint.write("user 2", stood);
+      checkpoint.write("user 2", new FrozenGame(stood.snapshotCurrentState()));
+      checkpoint.commit();
+      assertEquals(1, journal.getCheckpointCount());
+      assertEquals(3, journal.getCheckpointGameCount());
+      journal.awaitDurable(journal.appendStood("g2", 2));
+      journal.close();
+
+      assertEquals(asList(SECOND_CHECKPOINT, SECOND_SEGMENT), list(directory));
+      assertEquals(asList("restored g2 user 1 [[TWO SPADES], [THREE SPADES], [FOUR SPADES]] 1 false", "restored g3 user 2 [[TWO SPADES], [THREE SPADES], [FOUR SPADES]] 0 true", "restored user 2 " + describe(stood.snapshotCurrentState()), "hit g2 1", "stood g2 2"), open(directory));
+   }
+
+   /** Test that the checkpoint that is restored is the latest, and that the journal continues to append to the segment that follows it. */
+   @Test
+   public void testCheckpoint_Reopen() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      try (GameJournal.Checkpoint checkpoint = journal.startCheckpoint()) {
+         checkpoint.commit();
+      }
+      try (GameJournal.Checkpoint checkpoint = journal.startCheckpoint()) {
+         checkpoint.write("user", new PlayableGame("g1", new ShuffledDeck(toCards("2S 3S 4S"))));
+         checkpoint.commit();
+      }
+      journal.close();
+
+      journal = open(GameJournal.Durability.FSYNC);
+      assertEquals(1, journal.getRestoredGameCount());
+      journal.awaitDurable(journal.appendHit("g1", 0));
+      journal.close();
+
+      assertEquals(asList("checkpoint-0000000000000000003", "segment-0000000000000000003"), list(directory));
+      assertEquals(asList("restored g1 user [[TWO SPADES], [THREE SPADES], [FOUR SPADES]] 0 false", "hit g1 0"), open(directory));
+   }
+
+   /** Test that a checkpoint that is closed without being committed has no effect, other than moving to a new segment. */
+   @Test
+   public void testCheckpoint_Abandoned() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.appendHit("g1", 0);
+      try (GameJournal.Checkpoint checkpoint = journal.startCheckpoint()) {
+         checkpoint.write("user", new PlayableGame("g2", new SeededDeck(1)));
+         journal.appendHit("g1", 1);
+      }
+      journal.close();
+
+      assertEquals(asList(FIRST_SEGMENT, SECOND_SEGMENT), list(directory));
+      assertEquals(asList("hit g1 0", "hit g1 1"), open(directory));
+   }
+
+   /** Test that a checkpoint left incomplete when the application stopped is ignored, and deleted. */
+   @Test
+   public void testCheckpoint_Incomplete() throws IOException {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      journal.awaitDurable(journal.appendHit("g1", 0));
+      journal.close();
+      Files.writeString(directory.resolve(SECOND_CHECKPOINT + ".tmp"), "incomplete");
+
+      assertEquals(asList("hit g1 0"), open(directory));
+      assertEquals(asList(FIRST_SEGMENT), list(directory));
+   }
+
+   @Test
+   public void testCheckpoint_InProgress() {
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      GameJournal.Checkpoint checkpoint = journal.startCheckpoint();
+      try {
+         IllegalStateException e = assertThrows(IllegalStateException.class, journal::startCheckpoint);
+         assertEquals("a checkpoint is already in progress", e.getMessage());
+      } finally {
+         checkpoint.close();
+      }
+      // once closed, another checkpoint can be started
+      journal.startCheckpoint().close();
+   }
+
+   @Test
+   public void testCheckpoint_NotOpen() {
+      GameJournal journal = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      IllegalStateException e = assertThrows(IllegalStateException.class, journal::startCheckpoint);
+      assertEquals("journal is new", e.getMessage());
+   }
+
+   /** Test that events appended by many threads at the same time are written in batches, and none are lost. */
+   @Test
+   public void testGroupCommit() throws InterruptedException, IOException {
+      GameJournal journal = open(GameJournal.Durability.FSYNC, Duration.ofMillis(1));
+      int numberOfThreads = 8;
+      int eventsPerThread = 250;
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < numberOfThreads; t++) {
+         String gameId = "g" + t;
+         threads.add(new Thread(() -> {
+            for (int i = 0; i < eventsPerThread; i++) {
+               journal.awaitDurable(journal.appendHit(gameId, i));
+            }
+         }));
+      }
+      threads.forEach(Thread::start);
+      for (Thread t : threads) {
+         t.join();
+      }
+
+      assertEquals(numberOfThreads * eventsPerThread, journal.getEventCount());
+      assertTrue(journal.getBatchCount() < journal.getEventCount(), () -> journal.getBatchCount() + " batches");
+      // the position excludes the header of the segment
+      assertEquals(journal.getDurablePosition() + 8, Files.size(directory.resolve(FIRST_SEGMENT)));
+      journal.close();
+
+      List<String> events = open(directory);
+      assertEquals(numberOfThreads * eventsPerThread, events.size());
+      for (int t = 0; t < numberOfThreads; t++) {
+         for (int i = 0; i < eventsPerThread; i++) {
+            assertTrue(events.contains("hit g" + t + " " + i));
+         }
+      }
+   }
+
+   /** Test that, with a durability of none, appending does not wait for the event to be written - but the event is written when the journal is closed. */
+   @Test
+   public void testDurabilityNone() {
+      GameJournal journal = open(GameJournal.Durability.NONE, Duration.ofHours(1));
+      journal.awaitDurable(journal.appendHit("g1", 0));
+      assertEquals(0, journal.getDurablePosition());
+      journal.close();
+      assertEquals(asList("hit g1 0"), open(directory));
+   }
+
+   @Test
+   public void testInvalidArguments() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                  () -> new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ofMillis(-1)));
+      assertEquals("commit delay must not be negative but was PT-0.001S", e.getMessage());
+      e = assertThrows(IllegalArgumentException.class, () -> new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO, Duration.ofMinutes(-1)));
+      assertEquals("checkpoint interval must not be negative but was PT-1M", e.getMessage());
+      e = assertThrows(IllegalArgumentException.class, () -> new GameJournal(directory, "always", Duration.ZERO, Duration.ZERO));
+      assertEquals("unknown journal durability: always", e.getMessage());
+      GameJournal journal = open(GameJournal.Durability.FSYNC);
+      e = assertThrows(IllegalArgumentException.class, () -> journal.appendCreated("g1", "x".repeat(65536), new SeededDeck(1)));
+      assertEquals("value of 65536 bytes is too long to be recorded", e.getMessage());
+   }
+
+   @Test
+   public void testDurabilityFromPropertyValue() {
+      assertEquals(GameJournal.Durability.FSYNC, GameJournal.Durability.fromPropertyValue("fsync"));
+      assertEquals(GameJournal.Durability.WRITE, GameJournal.Durability.fromPropertyValue("write"));
+      assertEquals(GameJournal.Durability.NONE, GameJournal.Durability.fromPropertyValue("none"));
+   }
+
+   private static void truncate(Path file, long size) throws IOException {
+      try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.WRITE)) {
+         channel.truncate(size);
+      }
+   }
+
+   /** Returns the names of the files in the given directory, in alphabetical order. */
+   private static List<String> list(Path directory) {
+      try (Stream<Path> files = Files.list(directory)) {
+         return files.map(f -> f.getFileName().toString()).sorted().collect(Collectors.toList());
+      } catch (IOException e) {
+         throw new RuntimeException(e);
+      }
+   }
+
+   private static List<Card> deal(Deck deck, int numberOfCards) {
+      List<Card> cards = new ArrayList<>();
+      for (int i = 0; i < numberOfCards; i++) {
+         cards.add(deck.deal());
+      }
+      return cards;
+   }
+
+   private static String describe(GameState state) {
+      return state.getId() + " " + state.getStatus() + " " + state.getVersion() + " " + state.getDealer().getCards() + " " + state.getPlayer().getCards();
+   }
+
+   private GameJournal open(GameJournal.Durability durability) {
+      return open(durability, Duration.ZERO);
+   }
+
+   private GameJournal open(GameJournal.Durability durability, Duration commitDelay) {
+      GameJournal journal = new GameJournal(directory, durability, commitDelay);
+      opened.add(journal);
+      journal.open(new RecordingListener());
+      return journal;
+   }
+
+   /** Replays the journal in the given directory, returning a description of each game restored and event replayed. */
+   private List<String> open(Path journalDirectory) {
+      GameJournal journal = new GameJournal(journalDirectory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      opened.add(journal);
+      RecordingListener listener = new RecordingListener();
+      journal.open(listener);
+      journal.close();
+      return listener.events;
+   }
+
+   private static class RecordingListener implements GameJournal.Listener {
+      private final List<String> events = new ArrayList<>();
+
+      @Override
+      public void restored(String gameId, String username, Deck deck, int hits, boolean complete) {
+         events.add("restored " + gameId + " " + username + " " + deal(deck, 3) + " " + hits + " " + complete);
+      }
+
+      @Override
+      public void restored(String username, FrozenGame game) {
+         events.add("restored " + username + " " + describe(game.snapshotCurrentState()));
+      }
+
+      @Override
+      public void created(String gameId, String username, Deck deck) {
+         // deal three cards, as a game would, to identify the deck
+         events.add("created " + gameId + " " + username + " " + deal(deck, 3));
+      }
+
+      @Override
+      public void hit(String gameId, int version) {
+         events.add("hit " + gameId + " " + version);
+      }
+
+      @Override
+      public void stood(String gameId, int version) {
+         events.add("stood " + gameId + " " + version);
+      }
+
+      @Override
+      public void removed(String gameId) {
+         events.add("removed " + gameId);
+      }
+   }
+}
@@ -0,0 +1,93 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.CardReader.toCards;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.view.Card;
+
+public class HandAccumulatorTest {
+   @Test
+   public void testEmpty() {
+      HandAccumulator a = new HandAccumulator();
+      assertEquals(0, a.value());
+      assertEquals(0, a.softAces());
+      assertEquals(0, a.cardCount());
+      assertFalse(a.isBust());
+      assertFalse(a.isBlackjack());
+      assertTrue(a.isBelowDealersMinimum());
+   }
+
+   @Test
+   public void testSoftAce() {
+      HandAccumulator a = accumulate("AS 6C");
+      assertEquals(17, a.value());
+      assertEquals(1, a.softAces());
+      assertEquals(2, a.cardCount());
+
+      // adding a ten means the ace has to be valued as 1 to avoid going bust
+      a.add(toCards("TH").get(0));
+      assertEquals(17, a.value());
+      assertEquals(0, a.softAces());
+      assertEquals(3, a.cardCount());
+   }
+
+   @Test
+   public void testTwoAcesRevaluedByOneCard() {
+      HandAccumulator a = accumulate("AS TC");
+      assertEquals(21, a.value());
+      assertEquals(1, a.softAces());
+      assertTrue(a.isBlackjack());
+
+      // adding a second ace means both aces have to be valued as 1
+      a.add(toCards("AD").get(0));
+      assertEquals(12, a.value());
+      assertEquals(0, a.softAces());
+      assertFalse(a.isBlackjack());
+   }
+
+   @Test
+   public void testBlackjack() {
+      assertTrue(accumulate("AH KD").isBlackjack());
+      assertTrue(accumulate("JC AS").isBlackjack());
+      assertFalse(accumulate("TH 5C 6D").isBlackjack());
+      assertFalse(accumulate("QC 9S").isBlackjack());
+   }
+
+   /** Test the accumulated value agrees with {@link HandValuer} after every card dealt from a number of shuffled decks. */
+   @Test
+   public void testConsistentWithHandValuer() {
+      Random random = new Random(42);
+      for (int i = 0; i < 1000; i++) {
+         List<Card> deck = new ArrayList<>(DeckFactory.CARDS);
+         Collections.shuffle(deck, random);
+
+         HandAccumulator a = new HandAccumulator();
+         List<Card> hand = new ArrayList<>();
+         for (Card c : deck) {
+            a.add(c);
+            hand.add(c);
+            assertEquals(HandValuer.value(hand), a.value(), hand::toString);
+            assertEquals(hand.size(), a.cardCount());
+            assertEquals(HandValuer.isBust(hand), a.isBust());
+            assertEquals(HandValuer.isTarget(hand), a.isTarget());
+            assertEquals(HandValuer.isBlackjack(hand), a.isBlackjack());
+            assertEquals(HandValuer.isBelowDealersMinimum(hand), a.isBelowDealersMinimum());
+         }
+      }
+   }
+
+   private static HandAccumulator accumulate(String cards) {
+      HandAccumulator a = new HandAccumulator();
+      toCards(cards).forEach(a::add);
+      return a;
+   }
+}
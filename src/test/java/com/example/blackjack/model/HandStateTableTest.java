@@ -0,0 +1,82 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.CardReader.toCards;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.Rank;
+
+/**
+ * Tests {@link HandStateTable}.
+ * <p>
+ * See {@link HandValuerTest} for the tests that are common to both {@code HandStateTable} and {@code HandValuer}.
+ */
+public class HandStateTableTest {
+   @Test
+   public void testEmpty() {
+      assertEquals(HandStateTable.EMPTY, HandStateTable.of(Collections.emptyList()));
+      assertEquals(0, HandStateTable.value(HandStateTable.EMPTY));
+      assertFalse(HandStateTable.isSoft(HandStateTable.EMPTY));
+   }
+
+   @Test
+   public void testIsSoft() {
+      assertSoft(true, "AS 6C"); // 17 with the ace valued at 11
+      assertSoft(false, "AS 6C TH"); // 17 with the ace valued at 1
+      assertSoft(true, "AS AC"); // 12 with one ace valued at 11
+      assertSoft(true, "AS TC"); // blackjack
+      assertSoft(false, "TS 7C"); // no ace
+   }
+
+   @Test
+   public void testNext() {
+      int state = HandStateTable.next(HandStateTable.EMPTY, Rank.ACE);
+      state = HandStateTable.next(state, Rank.SIX);
+      assertEquals(17, HandStateTable.value(state));
+      assertTrue(HandStateTable.isSoft(state));
+   }
+
+   /** Test the table agrees with {@link HandValuer} after every card dealt from a number of shuffled decks. */
+   @Test
+   public void testConsistentWithHandValuer() {
+      Random random = new Random(42);
+      for (int i = 0; i < 1000; i++) {
+         List<Card> deck = new ArrayList<>(DeckFactory.CARDS);
+         Collections.shuffle(deck, random);
+
+         int state = HandStateTable.EMPTY;
+         List<Card> hand = new ArrayList<>();
+         for (Card c : deck) {
+            state = HandStateTable.next(state, c.getRank());
+            hand.add(c);
+            assertEquals(HandValuer.value(hand), HandStateTable.value(state), hand::toString);
+            assertEquals(HandValuer.isBust(hand), HandStateTable.isBust(state));
+            assertEquals(HandValuer.isTarget(hand), HandStateTable.isTarget(state));
+            assertEquals(HandValuer.isBlackjack(hand), HandStateTable.isBlackjack(state));
+            assertEquals(HandValuer.isBelowDealersMinimum(hand), HandStateTable.isBelowDealersMinimum(state));
+         }
+      }
+   }
+
+   /** Test that adding a card to a hand which already contains every card in the pack is rejected. */
+   @Test
+   public void testMoreThanOnePack() {
+      int state = HandStateTable.of(DeckFactory.CARDS);
+      int invalid = HandStateTable.next(state, Rank.TWO);
+      assertThrows(IndexOutOfBoundsException.class, () -> HandStateTable.value(invalid));
+   }
+
+   private static void assertSoft(boolean expected, String cards) {
+      assertEquals(expected, HandStateTable.isSoft(HandStateTable.of(toCards(cards))), cards);
+   }
+}
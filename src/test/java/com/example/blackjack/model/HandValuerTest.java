@@ -21,13 +21,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 
 import com.example.blackjack.CardReader;
 import com.example.blackjack.view.Card;
 import com.example.blackjack.view.Rank;
 
+/**
+ * Tests {@link HandValuer}.
+ * <p>
+ * Tests that apply to collections of cards are also run against {@link HandStateTable}, as both are expected to value hands in the same way.
+ */
 public class HandValuerTest {
    /**
     * Example hands and their expected values.
@@ -67,74 +77,96 @@ public class HandValuerTest {
       HANDS_BY_VALUE.put(30, asList("KS QH JC"));
    }
 
-   @Test
-   public void testHandsByValue() {
-      assertHandsByValue((expectedValue, cards) -> assertValue(expectedValue, cards));
+   /** The implementations to test - {@link HandValuer} and {@link HandStateTable}. */
+   private static Stream<Valuer> valuers() {
+      return Stream.of(new Valuer("HandValuer", HandValuer::value, HandValuer::isBust, HandValuer::isTarget, HandValuer::isBelowDealersMinimum,
+                  HandValuer::isBlackjack),
+            new Valuer("HandStateTable", c -> HandStateTable.value(HandStateTable.of(c)), c -> HandStateTable.isBust(HandStateTable.of(c)),
+                  c -> HandStateTable.isTarget(HandStateTable.of(c)), c -> HandStateTable.isBelowDealersMinimum(HandStateTable.of(c)),
+                  c -> HandStateTable.isBlackjack(HandStateTable.of(c))));
    }
 
-   @Test
-   public void testEmpty() {
-      assertValue(0);
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testHandsByValue(Valuer valuer) {
+      assertHandsByValue((expectedValue, cards) -> assertValue(valuer, expectedValue, cards));
+   }
+
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testEmpty(Valuer valuer) {
+      assertValue(valuer, 0);
    }
 
    /** Test the values of hands consisting of one card, for each possible rank. */
-   @Test
-   public void testEachRankIndividually() {
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testEachRankIndividually(Valuer valuer) {
       for (Rank rank : Rank.values()) {
-         assertValue(rank.getValue(), rank);
+         assertValue(valuer, rank.getValue(), rank);
       }
    }
 
    /** Test the value of a single hand containing one card for each possible rank. */
-   @Test
-   public void testEachRankCollectively() {
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testEachRankCollectively(Valuer valuer) {
       // 2+3+4+5+6+7+8+9+10+10+10+10+1 (as ace low) = 85
-      assertValue(85, Rank.values());
+      assertValue(valuer, 85, Rank.values());
    }
 
-   @Test
-   public void testBlackjack() {
-      assertValue(21, ACE, TEN);
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testBlackjack(Valuer valuer) {
+      assertValue(valuer, 21, ACE, TEN);
    }
 
-   @Test
-   public void testBust() {
-      assertValue(22, SEVEN, NINE, SIX);
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testBust(Valuer valuer) {
+      assertValue(valuer, 22, SEVEN, NINE, SIX);
    }
 
-   @Test
-   public void testAceHigh() {
-      assertValue(21, EIGHT, TWO, ACE);
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testAceHigh(Valuer valuer) {
+      assertValue(valuer, 21, EIGHT, TWO, ACE);
    }
 
-   @Test
-   public void testAceLow() {
-      assertValue(12, EIGHT, THREE, ACE);
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testAceLow(Valuer valuer) {
+      assertValue(valuer, 12, EIGHT, THREE, ACE);
    }
 
-   @Test
-   public void testMultipleAcesOneHigh() {
-      assertValue(14, ACE, ACE, ACE, ACE);
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testMultipleAcesOneHigh(Valuer valuer) {
+      assertValue(valuer, 14, ACE, ACE, ACE, ACE);
    }
 
-   @Test
-   public void testMultipleAcesAllLow() {
-      assertValue(12, ACE, ACE, ACE, ACE, EIGHT);
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testMultipleAcesAllLow(Valuer valuer) {
+      assertValue(valuer, 12, ACE, ACE, ACE, ACE, EIGHT);
    }
 
-   @Test
-   public void testIsBelowDealersMinimum() {
-      assertHandsByValue((expectedValue, cards) -> assertEquals(expectedValue < 17, HandValuer.isBelowDealersMinimum(cards)));
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testIsBelowDealersMinimum(Valuer valuer) {
+      assertHandsByValue((expectedValue, cards) -> assertEquals(expectedValue < 17, valuer.isBelowDealersMinimum.test(cards)));
    }
 
-   @Test
-   public void testIsTarget() {
-      assertHandsByValue((expectedValue, cards) -> assertEquals(expectedValue == 21, HandValuer.isTarget(cards)));
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testIsTarget(Valuer valuer) {
+      assertHandsByValue((expectedValue, cards) -> assertEquals(expectedValue == 21, valuer.isTarget.test(cards)));
    }
 
-   @Test
-   public void testIsBust() {
-      assertHandsByValue((expectedValue, cards) -> assertEquals(expectedValue > 21, HandValuer.isBust(cards)));
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testIsBust(Valuer valuer) {
+      assertHandsByValue((expectedValue, cards) -> assertEquals(expectedValue > 21, valuer.isBust.test(cards)));
    }
 
    @Test
@@ -155,41 +187,43 @@ public class HandValuerTest {
       }
    }
 
-   @Test
-   public void testIsBlackjackTrue() {
-      assertBlackjack("AH TH");
-      assertBlackjack("AS KD");
-      assertBlackjack("AD JC");
-      assertBlackjack("AC QS");
-      assertBlackjack("TH AH");
-      assertBlackjack("JS AD");
-      assertBlackjack("KD AC");
-      assertBlackjack("QC AS");
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testIsBlackjackTrue(Valuer valuer) {
+      assertBlackjack(valuer, "AH TH");
+      assertBlackjack(valuer, "AS KD");
+      assertBlackjack(valuer, "AD JC");
+      assertBlackjack(valuer, "AC QS");
+      assertBlackjack(valuer, "TH AH");
+      assertBlackjack(valuer, "JS AD");
+      assertBlackjack(valuer, "KD AC");
+      assertBlackjack(valuer, "QC AS");
    }
 
-   @Test
-   public void testIsBlackjackFalse() {
-      assertNotBlackjack("AC AS"); // right number of cards, too low value
-      assertNotBlackjack("AC 9S"); // right number of cards, too low value
-      assertNotBlackjack("QC KS"); // right number of cards, too low value
-      assertNotBlackjack("JD JC"); // right number of cards, too low value
-      assertNotBlackjack("QC 9S"); // right number of cards, too low value
-      assertNotBlackjack("TH 5C 6D"); // right value, too many cards
-      assertNotBlackjack("TH 3C 6D 2S"); // right value, too many cards
-      assertNotBlackjack("7S 3C 8S"); // too many cards, too low value
-      assertNotBlackjack("7S 7C 8S"); // too many cards, too high value
+   @ParameterizedTest
+   @MethodSource("valuers")
+   public void testIsBlackjackFalse(Valuer valuer) {
+      assertNotBlackjack(valuer, "AC AS"); // right number of cards, too low value
+      assertNotBlackjack(valuer, "AC 9S"); // right number of cards, too low value
+      assertNotBlackjack(valuer, "QC KS"); // right number of cards, too low value
+      assertNotBlackjack(valuer, "JD JC"); // right number of cards, too low value
+      assertNotBlackjack(valuer, "QC 9S"); // right number of cards, too low value
+      assertNotBlackjack(valuer, "TH 5C 6D"); // right value, too many cards
+      assertNotBlackjack(valuer, "TH 3C 6D 2S"); // right value, too many cards
+      assertNotBlackjack(valuer, "7S 3C 8S"); // too many cards, too low value
+      assertNotBlackjack(valuer, "7S 7C 8S"); // too many cards, too high value
    }
 
-   private void assertBlackjack(String cards) {
-      assertIsBlackjack(true, cards);
+   private void assertBlackjack(Valuer valuer, String cards) {
+      assertIsBlackjack(valuer, true, cards);
    }
 
-   private void assertNotBlackjack(String cards) {
-      assertIsBlackjack(false, cards);
+   private void assertNotBlackjack(Valuer valuer, String cards) {
+      assertIsBlackjack(valuer, false, cards);
    }
 
-   private void assertIsBlackjack(boolean expected, String cards) {
-      assertEquals(expected, HandValuer.isBlackjack(CardReader.toCards(cards)));
+   private void assertIsBlackjack(Valuer valuer, boolean expected, String cards) {
+      assertEquals(expected, valuer.isBlackjack.test(CardReader.toCards(cards)));
    }
 
    private void assertHandsByValue(BiConsumer<Integer, Collection<Card>> test) {
@@ -200,12 +234,37 @@ public class HandValuerTest {
       }
    }
 
-   private void assertValue(int expectedHandValue, Rank... ranks) {
+   private void assertValue(Valuer valuer, int expectedHandValue, Rank... ranks) {
       Collection<Card> cards = Arrays.stream(ranks).map(r -> new Card(r, SPADES)).collect(toList());
-      assertValue(expectedHandValue, cards);
+      assertValue(valuer, expectedHandValue, cards);
    }
 
-   private void assertValue(int expectedHandValue, Collection<Card> cards) {
-      assertEquals(expectedHandValue, HandValuer.value(cards), () -> cards.toString());
+   private void assertValue(Valuer valuer, int expectedHandValue, Collection<Card> cards) {
+      assertEquals(expectedHandValue, valuer.value.applyAsInt(cards), () -> cards.toString());
+   }
+
+   /** The operations, common to both {@link HandValuer} and {@link HandStateTable}, that are used to value a collection of cards. */
+   private static final class Valuer {
+      private final String name;
+      private final ToIntFunction<Collection<Card>> value;
+      private final Predicate<Collection<Card>> isBust;
+      private final Predicate<Collection<Card>> isTarget;
+      private final Predicate<Collection<Card>> isBelowDealersMinimum;
+      private final Predicate<Collection<Card>> isBlackjack;
+
+      Valuer(String name, ToIntFunction<Collection<Card>> value, Predicate<Collection<Card>> isBust, Predicate<Collection<Card>> isTarget,
+                  Predicate<Collection<Card>> isBelowDealersMinimum, Predicate<Collection<Card>> isBlackjack) {
+         this.name = name;
+         this.value = value;
+         this.isBust = isBust;
+         this.isTarget = isTarget;
+         this.isBelowDealersMinimum = isBelowDealersMinimum;
+         this.isBlackjack = isBlackjack;
+      }
+
+      @Override
+      public String toString() {
+         return name;
+      }
    }
 }
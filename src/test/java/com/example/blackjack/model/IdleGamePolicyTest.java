@@ -0,0 +1,52 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.model.IdleGamePolicy.Action;
+
+public class IdleGamePolicyTest {
+   @Test
+   public void testInvalidArguments() {
+      assertThrows(IllegalArgumentException.class, () -> new IdleGamePolicy(Duration.ofSeconds(-1), Action.STAND, Duration.ofSeconds(1)));
+      assertThrows(IllegalArgumentException.class, () -> new IdleGamePolicy(Duration.ZERO, Action.STAND, Duration.ZERO));
+      assertThrows(IllegalArgumentException.class, () -> new IdleGamePolicy(Duration.ZERO, Action.STAND, Duration.ofNanos(999999)));
+      assertThrows(IllegalArgumentException.class, () -> new IdleGamePolicy(Duration.ZERO, Action.STAND, Duration.ofSeconds(-1)));
+   }
+
+   @Test
+   public void testNone() {
+      assertFalse(IdleGamePolicy.NONE.isEnabled());
+   }
+
+   @Test
+   public void testPropertyValues() {
+      IdleGamePolicy policy = new IdleGamePolicy(Duration.ofMinutes(5), "expire", Duration.ofMillis(250));
+      assertTrue(policy.isEnabled());
+      assertEquals(Duration.ofMinutes(5), policy.getTimeout());
+      assertSame(Action.EXPIRE, policy.getAction());
+      assertEquals(Duration.ofMillis(250), policy.getTick());
+   }
+
+   @Test
+   public void testAction() {
+      for (Action a : Action.values()) {
+         assertSame(a, Action.fromPropertyValue(a.getPropertyValue()));
+      }
+      assertEquals("stand", Action.STAND.getPropertyValue());
+      assertEquals("expire", Action.EXPIRE.getPropertyValue());
+   }
+
+   @Test
+   public void testUnknownAction() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Action.fromPropertyValue("hit"));
+      assertEquals("unknown idle game action: hit", e.getMessage());
+   }
+}
@@ -0,0 +1,479 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.CardReader.toCards;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+public class JdbcGameStoreTest {
+   private static final String USERNAME = "qwerty";
+   /** The dealer is dealt 2S and the player 3S 4S - so the game is in progress until the player stands, or is dealt 5S 6S 7S and is then bust. */
+   private static final String DECK = "2S 3S 4S 5S 6S 7S 8S 9S TS JS QS KS AS";
+
+   private DriverManagerDataSource dataSource;
+   private JdbcTemplate jdbcTemplate;
+   private DeckFactory mockDeckFactory;
+   private JdbcGameStore testObject;
+
+   @BeforeEach
+   public void setUp() {
+      dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+      jdbcTemplate = new JdbcTemplate(dataSource);
+      mockDeckFactory = mock(DeckFactory.class);
+      when(mockDeckFactory.getMode()).thenReturn(DeckFactory.Mode.SHUFFLED);
+      when(mockDeckFactory.createDeck()).thenAnswer(i -> new ShuffledDeck(toCards(DECK)));
+      testObject = start(mockDeckFactory);
+   }
+
+   @AfterEach
+   public void tearDown() {
+      testObject.stop();
+      jdbcTemplate.execute("SHUTDOWN");
+   }
+
+   private JdbcGameStore start(DeckFactory deckFactory) {
+      JdbcGameStore store = new JdbcGameStore(dataSource, new GameIdGenerator(0), deckFactory, 16);
+      store.start();
+      return store;
+   }
+
+   @Test
+   public void testCreateGame() {
+      Game game = testObject.createGame(USERNAME);
+
+      GameState state = game.snapshotCurrentState();
+      assertEquals(Status.PLAYERS_TURN, state.getStatus());
+      assertEquals("[[TWO SPADES]]", state.getDealer().getCards().toString());
+      assertEquals("[[THREE SPADES], [FOUR SPADES]]", state.getPlayer().getCards().toString());
+      // a game in progress is stored as its deck, rather than its hands
+      assertEquals(13, jdbcTemplate.queryForObject("SELECT LENGTH(deck_cards) FROM game", Integer.class));
+      assertEquals(0, countCards(game));
+      assertEquals(1, testObject.getWriteCount());
+   }
+
+   @Test
+   public void testCreateGame_Blackjack() {
+      when(mockDeckFactory.createDeck()).thenAnswer(i -> new ShuffledDeck(toCards("2S AS KS QS JS")));
+
+      Game game = testObject.createGame(USERNAME);
+
+      assertEquals(Status.PLAYER_WON, game.getStatus());
+      // a completed game is stored as its hands, rather than its deck
+      assertEquals(3, countCards(game));
+      assertDeckDiscarded(game);
+      Game found = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+      assertInstanceOf(FrozenGame.class, found);
+      assertSameState(game, found);
+   }
+
+   @Test
+   public void testCreateGame_DeckPool() {
+      DeckPool mockDeckPool = mock(DeckPool.class);
+      when(mockDeckPool.poll()).thenReturn(new ShuffledDeck(toCards("AS KS QS JS")));
+      testObject.setDeckPool(mockDeckPool);
+
+      Game game = testObject.createGame(USERNAME);
+
+      assertEquals("[[ACE SPADES]]", game.snapshotCurrentState().getDealer().getCards().toString());
+      assertSameState(game, testObject.findByUsernameAndGameId(USERNAME, game.getId()));
+   }
+
+   @Test
+   public void testCreateGame_SeededDeck() {
+      stop();
+      testObject = start(new DeckFactory(new ThreadLocalRandomShuffleStrategy<Card>(), DeckFactory.Mode.SEEDED));
+
+      Game game = testObject.createGame(USERNAME);
+      // a seeded deck is stored as its seed
+      assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM game WHERE deck_seed IS NOT NULL AND deck_cards IS NULL", Integer.class));
+      GameState hit = null;
+      while (!game.isComplete()) {
+         assertSameState(game, testObject.findByUsernameAndGameId(USERNAME, game.getId()));
+         hit = game.hit();
+      }
+
+      Game found = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+      assertSameState(game, found);
+      assertEquals(hit == null ? 0 : hit.getVersion(), found.snapshotCurrentState().getVersion());
+      GameState state = game.snapshotCurrentState();
+      assertEquals(state.getDealer().getCards().size() + state.getPlayer().getCards().size(), countCards(game));
+   }
+
+   @Test
+   public void testFindByUsernameAndGameId() {
+      Game game = testObject.createGame(USERNAME);
+
+      Game found = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+
+      // each find loads a new copy of the game
+      assertNotSame(game, found);
+      assertSameState(game, found);
+   }
+
+   @Test
+   public void testFindByUsernameAndGameId_DoesNotExist() {
+      String gameId = new GameIdGenerator(0).generate();
+      assertGameNotFound(USERNAME, gameId);
+   }
+
+   @Test
+   public void testFindByUsernameAndGameId_InvalidGameId() {
+      assertGameNotFound(USERNAME, "not-a-game-id");
+   }
+
+   @Test
+   public void testFindByUsernameAndGameId_OtherUser() {
+      Game game = testObject.createGame(USERNAME);
+      assertGameNotFound("asdf", game.getId());
+   }
+
+   @Test
+   public void testHit() {
+      Game game = testObject.createGame(USERNAME);
+
+      GameState updated = game.hit(0);
+
+      assertEquals(1, updated.getVersion());
+      assertEquals(Status.PLAYERS_TURN, updated.getStatus());
+      Game found = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+      assertSameState(game, found);
+      assertEquals("[[THREE SPADES], [FOUR SPADES], [FIVE SPADES]]", found.snapshotCurrentState().getPlayer().getCards().toString());
+   }
+
+   @Test
+   public void testHit_Bust() {
+      Game game = testObject.createGame(USERNAME);
+
+      game.hit();
+      game.hit();
+      GameState updated = game.hit();
+
+      // 3 + 4 + 5 + 6 + 7 = 25
+      assertEquals(Status.DEALER_WON, updated.getStatus());
+      assertEquals(6, countCards(game));
+      assertDeckDiscarded(game);
+      Game found = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+      assertInstanceOf(FrozenGame.class, found);
+      assertSameState(game, found);
+   }
+
+   @Test
+   public void testStand() {
+      Game game = testObject.createGame(USERNAME);
+
+      GameState updated = game.stand(0);
+
+      // dealer has 2 5 6 (13) then 7 (20), player has 3 4 (7)
+      assertEquals(Status.DEALER_WON, updated.getStatus());
+      assertEquals("[[TWO SPADES], [FIVE SPADES], [SIX SPADES], [SEVEN SPADES]]", updated.getDealer().getCards().toString());
+      assertEquals(4, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM game_card WHERE hand = 'D'", Integer.class));
+      assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM game_card WHERE hand = 'P'", Integer.class));
+      assertDeckDiscarded(game);
+      Game found = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+      assertInstanceOf(FrozenGame.class, found);
+      assertSameState(game, found);
+      assertThrows(GameAlreadyCompleteException.class, () -> found.hit(1));
+   }
+
+   @Test
+   public void testUpdate_VersionMismatch() {
+      Game game = testObject.createGame(USERNAME);
+      Game first = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+      Game second = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+
+      first.hit(0);
+      GameVersionMismatchException e = assertThrows(GameVersionMismatchException.class, () -> second.stand(0));
+
+      assertEquals("cannot update game with id " + game.getId() + " as expected version 0 but was 1", e.getMessage());
+      assertEquals(1, testObject.getConflictCount());
+      assertSameState(first, testObject.findByUsernameAndGameId(USERNAME, game.getId()));
+      // the hands of the rejected update, which would have completed the game, are not stored
+      assertEquals(0, countCards(game));
+   }
+
+   @Test
+   public void testUpdate_AnyVersion() {
+      Game game = testObject.createGame(USERNAME);
+      Game first = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+      Game second = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+
+      first.hit();
+      // applied to the game as updated by the first hit
+      GameState updated = second.hit();
+
+      assertEquals(2, updated.getVersion());
+      assertEquals("[[THREE SPADES], [FOUR SPADES], [FIVE SPADES], [SIX SPADES]]", updated.getPlayer().getCards().toString());
+      assertEquals(1, testObject.getConflictCount());
+      assertSameState(testObject.findByUsernameAndGameId(USERNAME, game.getId()), updated);
+   }
+
+   @Test
+   public void testUpdate_AnyVersion_Completed() {
+      Game game = testObject.createGame(USERNAME);
+      Game first = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+      Game second = testObject.findByUsernameAndGameId(USERNAME, game.getId());
+
+      first.stand();
+
+      assertThrows(GameAlreadyCompleteException.class, () -> second.hit());
+   }
+
+   @Test
+   public void testFindGameIdsByUsername() {
+      List<String> expected = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+         expected.add(testObject.createGame(USERNAME).getId());
+         testObject.createGame("asdf");
+      }
+
+      GameIdPage page1 = testObject.findGameIdsByUsername(USERNAME, null, null, 2);
+      GameIdPage page2 = testObject.findGameIdsByUsername(USERNAME, null, page1.getNextCursor(), 2);
+      GameIdPage page3 = testObject.findGameIdsByUsername(USERNAME, null, page2.getNextCursor(), 2);
+
+      assertEquals(expected.subList(0, 2), page1.getGameIds());
+      assertEquals(expected.subList(2, 4), page2.getGameIds());
+      assertEquals(expected.subList(4, 5), page3.getGameIds());
+      assertFalse(page3.hasNext());
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_ExactlyOnePage() {
+      List<String> expected = asList(testObject.createGame(USERNAME).getId(), testObject.createGame(USERNAME).getId());
+
+      GameIdPage page = testObject.findGameIdsByUsername(USERNAME, null, null, 2);
+
+      assertEquals(expected, page.getGameIds());
+      assertNull(page.getNextCursor());
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_Status() {
+      List<String> completed = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+         Game game = testObject.createGame(USERNAME);
+         if (i % 2 == 0) {
+            game.stand();
+            completed.add(game.getId());
+         }
+      }
+
+      GameIdPage page1 = testObject.findGameIdsByUsername(USERNAME, Status.DEALER_WON, null, 2);
+      GameIdPage page2 = testObject.findGameIdsByUsername(USERNAME, Status.DEALER_WON, page1.getNextCursor(), 2);
+
+      assertEquals(completed.subList(0, 2), page1.getGameIds());
+      assertEquals(completed.subList(2, 3), page2.getGameIds());
+      assertFalse(page2.hasNext());
+      assertEquals(3, testObject.findGameIdsByUsername(USERNAME, Status.PLAYERS_TURN, null, 10).getGameIds().size());
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_NoGames() {
+      GameIdPage page = testObject.findGameIdsByUsername(USERNAME, null, null, 10);
+      assertEquals(Collections.emptyList(), page.getGameIds());
+      assertFalse(page.hasNext());
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_InvalidCursor() {
+      InvalidCursorException e = assertThrows(InvalidCursorException.class, () -> testObject.findGameIdsByUsername(USERNAME, null, "!", 10));
+      assertEquals("invalid cursor: !", e.getMessage());
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_InvalidLimit() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> testObject.findGameIdsByUsername(USERNAME, null, null, 0));
+      assertEquals("limit must be positive but was 0", e.getMessage());
+   }
+
+   @Test
+   public void testRestart() {
+      Game inProgress = testObject.createGame(USERNAME);
+      inProgress.hit();
+      Game completed = testObject.createGame(USERNAME);
+      completed.stand();
+      stop();
+
+      testObject = start(mockDeckFactory);
+
+      assertSameState(inProgress, testObject.findByUsernameAndGameId(USERNAME, inProgress.getId()));
+      assertSameState(completed, testObject.findByUsernameAndGameId(USERNAME, completed.getId()));
+      assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM schema_version", Integer.class));
+   }
+
+   @Test
+   public void testStopped() {
+      Game game = testObject.createGame(USERNAME);
+      stop();
+
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> testObject.createGame(USERNAME));
+      assertEquals("store is not running", e.getMessage());
+      assertThrows(IllegalStateException.class, () -> game.hit());
+   }
+
+   @Test
+   public void testConcurrentUpdates() throws Exception {
+      int numberOfThreads = 8;
+      int gamesPerThread = 50;
+      ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+      try {
+         List<Future<List<Game>>> futures = new ArrayList<>();
+         for (int t = 0; t < numberOfThreads; t++) {
+            String username = "user" + t;
+            futures.add(executor.submit(() -> {
+               List<Game> games = new ArrayList<>();
+               for (int i = 0; i < gamesPerThread; i++) {
+                  Game game = testObject.createGame(username);
+                  game.hit();
+                  games.add(game);
+               }
+               return games;
+            }));
+         }
+
+         for (int t = 0; t < numberOfThreads; t++) {
+            for (Game game : futures.get(t).get()) {
+               assertSameState(game, testObject.findByUsernameAndGameId("user" + t, game.getId()));
+            }
+         }
+      } finally {
+         executor.shutdown();
+      }
+      assertEquals(numberOfThreads * gamesPerThread * 2, testObject.getWriteCount());
+      assertTrue(testObject.getBatchCount() <= testObject.getWriteCount());
+      assertEquals(0, testObject.getPendingWriteCount());
+   }
+
+   @Test
+   public void testWriteFailure() {
+      Game game = testObject.createGame(USERNAME);
+
+      // longer than the username column
+      assertThrows(DataAccessException.class, () -> testObject.createGame("x".repeat(256)));
+      // a failed batch does not stop later batches
+      assertEquals(1, game.hit().getVersion());
+   }
+
+   /** Test that a write that fails the batch it is in only fails itself - the other writes of the batch are written separately. */
+   @Test
+   public void testWriteFailure_Batch() throws Exception {
+      DriverManagerDataSource lockingDataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000");
+      JdbcGameStore store = new JdbcGameStore(lockingDataSource, new GameIdGenerator(0), mockDeckFactory, 16);
+      store.start();
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try (Connection lock = lockingDataSource.getConnection()) {
+         Game blocked = store.createGame(USERNAME);
+         Game first = store.createGame(USERNAME);
+         Game second = store.createGame(USERNAME);
+         // lock the row of a game, so the writer waits to update it while the other writes are queued behind it - to be written as a single batch
+         lock.setAutoCommit(false);
+         lock.createStatement().executeUpdate("UPDATE game SET hits = hits WHERE game_id = " + GameIdGenerator.decode(blocked.getId()));
+         Supplier<GameState> blockedHit = ((DeferredWriteGame) blocked).startHit(0);
+         awaitCondition(() -> store.getPendingWriteCount() == 0);
+         Supplier<GameState> hit = ((DeferredWriteGame) first).startHit(0);
+         // longer than the username column
+         Future<Game> invalid = executor.submit(() -> store.createGame("x".repeat(256)));
+         awaitCondition(() -> store.getPendingWriteCount() == 2);
+         Supplier<GameState> stood = ((DeferredWriteGame) second).startStand(0);
+         long batches = store.getBatchCount();
+         lock.commit();
+
+         assertEquals(1, blockedHit.get().getVersion());
+         assertEquals(1, hit.get().getVersion());
+         assertInstanceOf(DataAccessException.class, assertThrows(ExecutionException.class, invalid::get).getCause());
+         assertTrue(stood.get().getStatus().isComplete());
+         // the blocked batch, then the two writes that succeeded separately
+         assertEquals(batches + 3, store.getBatchCount());
+         assertSameState(first, store.findByUsernameAndGameId(USERNAME, first.getId()));
+         assertSameState(second, store.findByUsernameAndGameId(USERNAME, second.getId()));
+      } finally {
+         executor.shutdown();
+         store.stop();
+         new JdbcTemplate(lockingDataSource).execute("SHUTDOWN");
+      }
+   }
+
+   private static void awaitCondition(BooleanSupplier condition) {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (!condition.getAsBoolean()) {
+         if (System.nanoTime() > deadline) {
+            throw new AssertionError("timed out");
+         }
+         Thread.onSpinWait();
+      }
+   }
+
+   @Test
+   public void testLazyShuffle() {
+      when(mockDeckFactory.getMode()).thenReturn(DeckFactory.Mode.LAZY_SHUFFLE);
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> new JdbcGameStore(dataSource, new GameIdGenerator(0), mockDeckFactory, 1));
+      assertEquals("the JDBC game store requires a deck mode of shuffled or seeded but was lazy-shuffle", e.getMessage());
+   }
+
+   @Test
+   public void testInvalidMaxBatchSize() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                  () -> new JdbcGameStore(dataSource, new GameIdGenerator(0), mockDeckFactory, 0));
+      assertEquals("max batch size must be positive but was 0", e.getMessage());
+   }
+
+   private void stop() {
+      testObject.stop();
+   }
+
+   private int countCards(Game game) {
+      return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM game_card WHERE game_id = ?", Integer.class, GameIdGenerator.decode(game.getId()));
+   }
+
+   private void assertDeckDiscarded(Game game) {
+      assertNull(jdbcTemplate.queryForObject("SELECT deck_cards FROM game WHERE game_id = ?", byte[].class, GameIdGenerator.decode(game.getId())));
+   }
+
+   private void assertGameNotFound(String username, String gameId) {
+      GameNotFoundException e = assertThrows(GameNotFoundException.class, () -> testObject.findByUsernameAndGameId(username, gameId));
+      assertEquals("could not find game id " + gameId + " for the user: " + username, e.getMessage());
+   }
+
+   private static void assertSameState(Game expected, Game actual) {
+      assertSameState(expected, actual.snapshotCurrentState());
+   }
+
+   private static void assertSameState(Game expected, GameState actualState) {
+      GameState expectedState = expected.snapshotCurrentState();
+      assertEquals(expectedState.getId(), actualState.getId());
+      assertEquals(expectedState.getStatus(), actualState.getStatus());
+      assertEquals(expectedState.getVersion(), actualState.getVersion());
+      assertEquals(expectedState.getDealer().getCards().toString(), actualState.getDealer().getCards().toString());
+      assertEquals(expectedState.getPlayer().getCards().toString(), actualState.getPlayer().getCards().toString());
+   }
+}
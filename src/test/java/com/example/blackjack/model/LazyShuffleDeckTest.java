@@ -0,0 +1,109 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.view.Card;
+
+public class LazyShuffleDeckTest {
+   @Test
+   public void testDealsEveryCard() {
+      Deck d = new LazyShuffleDeck(ThreadLocalRandom::current);
+
+      Set<Card> dealt = new HashSet<>();
+      for (int i = 0; i < DeckFactory.CARDS.size(); i++) {
+         dealt.add(d.deal());
+      }
+      assertEquals(new HashSet<>(DeckFactory.CARDS), dealt);
+
+      // check there are not more than the expected number of cards in the deck
+      try {
+         d.deal();
+         fail();
+      } catch (IllegalStateException e) {
+         assertEquals("deck is empty", e.getMessage());
+      }
+   }
+
+   /** Test each card is selected from the remaining cards, with the last remaining card taking the place of the selected card. */
+   @Test
+   public void testSelectsFromRemainingCards() {
+      RandomGenerator random = mock(RandomGenerator.class);
+      when(random.nextInt(4)).thenReturn(1);
+      when(random.nextInt(3)).thenReturn(1);
+      when(random.nextInt(2)).thenReturn(0);
+      when(random.nextInt(1)).thenReturn(0);
+      Deck d = new LazyShuffleDeck(4, () -> random);
+
+      // remaining: 0 1 2 3 - select index 1
+      assertSame(DeckFactory.CARDS.get(1), d.deal());
+      // remaining: 0 3 2 - select index 1
+      assertSame(DeckFactory.CARDS.get(3), d.deal());
+      // remaining: 0 2 - select index 0
+      assertSame(DeckFactory.CARDS.get(0), d.deal());
+      // remaining: 2 - select index 0
+      assertSame(DeckFactory.CARDS.get(2), d.deal());
+   }
+
+   /** Test the source of randomness is obtained for every deal, so that it is always the one for the thread dealing the card. */
+   @Test
+   public void testObtainsRandomForEveryDeal() {
+      AtomicInteger count = new AtomicInteger();
+      SplittableRandom random = new SplittableRandom();
+      Deck d = new LazyShuffleDeck(() -> {
+         count.incrementAndGet();
+         return random;
+      });
+
+      assertEquals(0, count.get());
+      d.deal();
+      assertEquals(1, count.get());
+      d.deal();
+      assertEquals(2, count.get());
+   }
+
+   /** Test that, for each of the first few cards dealt from a deck, every card is equally likely to be dealt. */
+   @Test
+   public void testUniformDistributionOfEachPosition() {
+      SplittableRandom random = new SplittableRandom(42);
+      ChiSquared.assertUniformDistributionOfEachPosition(() -> new LazyShuffleDeck(() -> random));
+   }
+
+   /** Test that every possible ordering of the cards in a deck is equally likely. */
+   @Test
+   public void testUniformDistributionOfPermutations() {
+      final int numberOfCards = 4;
+      final int numberOfPermutations = 24;
+      final int numberOfDecks = numberOfPermutations * 1000;
+      SplittableRandom random = new SplittableRandom(42);
+
+      Map<String, Integer> counts = new HashMap<>();
+      for (int i = 0; i < numberOfDecks; i++) {
+         Deck d = new LazyShuffleDeck(numberOfCards, () -> random);
+         StringBuilder permutation = new StringBuilder();
+         for (int j = 0; j < numberOfCards; j++) {
+            permutation.append(d.deal()).append(' ');
+         }
+         counts.merge(permutation.toString(), 1, Integer::sum);
+      }
+
+      assertEquals(numberOfPermutations, counts.size());
+      double chiSquared = ChiSquared.chiSquared(counts.values().stream().mapToInt(Integer::intValue).toArray(), numberOfDecks);
+      assertTrue(chiSquared < ChiSquared.CRITICAL_VALUE_23_DEGREES_OF_FREEDOM, "chi-squared " + chiSquared);
+   }
+}
@@ -3,16 +3,38 @@ package com.example.blackjack.model;
 import static com.example.blackjack.CardReader.toCards;
 import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
 
 public class MemoryGameStoreTest {
    private static final String DUMMY_USER_NAME = "dummy user name";
@@ -29,7 +51,7 @@ public class MemoryGameStoreTest {
 
       // Deck will need to contain cards so newly created games can deal 3 cards - 1 to the dealer and 2 to the player.
       // Provide 12 cards (the ranks and suits are not important) as the most games created by a single test is 4 (and 3x4=12).
-      Deck dummyDeck = new Deck(toCards("2S 3S 4S 2H 3H 4H 2D 3D 4D 2C 3C 4C"));
+      Deck dummyDeck = new ShuffledDeck(toCards("2S 3S 4S 2H 3H 4H 2D 3D 4D 2C 3C 4C"));
       when(mockDeckFactory.createDeck()).thenReturn(dummyDeck);
 
       testObject = new MemoryGameStore(mockIdGenerator, mockDeckFactory);
@@ -42,6 +64,31 @@ public class MemoryGameStoreTest {
       assertEquals(DUMMY_GAME_ID, game.getId());
    }
 
+   @Test
+   public void testCreateGame_DeckPool() {
+      when(mockIdGenerator.generate()).thenReturn(DUMMY_GAME_ID);
+      DeckPool mockDeckPool = mock(DeckPool.class);
+      when(mockDeckPool.poll()).thenReturn(new ShuffledDeck(toCards("AS KS QS")));
+      ((MemoryGameStore) testObject).setDeckPool(mockDeckPool);
+
+      Game game = testObject.createGame(DUMMY_USER_NAME);
+
+      assertEquals("[[ACE SPADES]]", game.snapshotCurrentState().getDealer().getCards().toString());
+      verify(mockDeckFactory, never()).createDeck();
+   }
+
+   @Test
+   public void testCreateGame_DeckPoolEmpty() {
+      when(mockIdGenerator.generate()).thenReturn(DUMMY_GAME_ID);
+      DeckPool mockDeckPool = mock(DeckPool.class);
+      ((MemoryGameStore) testObject).setDeckPool(mockDeckPool);
+
+      Game game = testObject.createGame(DUMMY_USER_NAME);
+
+      assertEquals("[[TWO SPADES]]", game.snapshotCurrentState().getDealer().getCards().toString());
+      verify(mockDeckPool).poll();
+   }
+
    @Test
    public void testCreateGame_DuplicateGameId() {
       when(mockIdGenerator.generate()).thenReturn(DUMMY_GAME_ID);
@@ -118,19 +165,979 @@ public class MemoryGameStoreTest {
 
       when(mockIdGenerator.generate()).thenReturn(gameId1, gameId2, gameId3, gameId4);
 
-      assertTrue(testObject.findGameIdsByUsername(username1).isEmpty());
+      assertTrue(findGameIdsByUsername(testObject, username1).isEmpty());
 
       testObject.createGame(username1);
 
-      assertSet(testObject.findGameIdsByUsername(username1), gameId1);
-      assertTrue(testObject.findGameIdsByUsername(username2).isEmpty());
+      assertSet(findGameIdsByUsername(testObject, username1), gameId1);
+      assertTrue(findGameIdsByUsername(testObject, username2).isEmpty());
 
       testObject.createGame(username2);
       testObject.createGame(username1);
       testObject.createGame(username1);
 
-      assertSet(testObject.findGameIdsByUsername(username1), gameId1, gameId3, gameId4);
-      assertSet(testObject.findGameIdsByUsername(username2), gameId2);
+      assertSet(findGameIdsByUsername(testObject, username1), gameId1, gameId3, gameId4);
+      assertSet(findGameIdsByUsername(testObject, username2), gameId2);
+   }
+
+   @Test
+   public void testEvict_CompletedGameTtl() {
+      AtomicLong clock = new AtomicLong();
+      MemoryGameStore store = createStoreWithEvictionPolicy(new GameEvictionPolicy(Duration.ofSeconds(10), 0, 0, Duration.ofMinutes(1)), clock::get);
+      Game completedGame = store.createGame(DUMMY_USER_NAME);
+      Game accessedCompletedGame = store.createGame(DUMMY_USER_NAME);
+      Game inProgressGame = store.createGame(DUMMY_USER_NAME);
+      completedGame.stand();
+      accessedCompletedGame.stand();
+
+      clock.set(5000);
+      store.findByUsernameAndGameId(DUMMY_USER_NAME, accessedCompletedGame.getId());
+
+      // still within TTL of all games
+      clock.set(10000);
+      store.evict();
+      assertEquals(3, store.getGameCount());
+
+      // TTL of completed game exceeded, TTL of accessed game not exceeded and in progress game never expires
+      clock.set(10001);
+      store.evict();
+      assertGameNotFound(store, DUMMY_USER_NAME, completedGame.getId());
+      assertEquals(accessedCompletedGame.getId(), store.findByUsernameAndGameId(DUMMY_USER_NAME, accessedCompletedGame.getId()).getId());
+      assertSame(inProgressGame, store.findByUsernameAndGameId(DUMMY_USER_NAME, inProgressGame.getId()));
+      assertEquals(2, store.getGameCount());
+      assertEquals(1, store.getExpiredCount());
+      assertEquals(0, store.getEvictedCount());
+
+      clock.set(100000);
+      store.evict();
+      assertSet(findGameIdsByUsername(store, DUMMY_USER_NAME), inProgressGame.getId());
+      assertEquals(1, store.getGameCount());
+      assertEquals(2, store.getExpiredCount());
+   }
+
+   @Test
+   public void testEvict_MaxCompletedGamesPerUser() {
+      AtomicLong clock = new AtomicLong();
+      MemoryGameStore store = createStoreWithEvictionPolicy(new GameEvictionPolicy(Duration.ZERO, 2, 0, Duration.ofMinutes(1)), clock::get);
+      Game game1 = store.createGame(DUMMY_USER_NAME);
+      game1.stand();
+      clock.set(1);
+      Game game2 = store.createGame(DUMMY_USER_NAME);
+      game2.stand();
+      clock.set(2);
+      Game game3 = store.createGame(DUMMY_USER_NAME);
+      Game otherUsersGame = store.createGame("other user name");
+      otherUsersGame.stand();
+      clock.set(3);
+      store.findByUsernameAndGameId(DUMMY_USER_NAME, game1.getId());
+
+      // limit not exceeded until the in progress game completes
+      assertEquals(4, store.getGameCount());
+      game3.stand();
+
+      // game 2 is the least recently accessed completed game of the user
+      assertSet(findGameIdsByUsername(store, DUMMY_USER_NAME), game1.getId(), game3.getId());
+      assertSet(findGameIdsByUsername(store, "other user name"), otherUsersGame.getId());
+      assertGameNotFound(store, DUMMY_USER_NAME, game2.getId());
+      assertEquals(3, store.getGameCount());
+      assertEquals(1, store.getEvictedCount());
+      assertEquals(0, store.getExpiredCount());
+   }
+
+   /** Test that the per-user limit is enforced when a game is stood by the idle game policy, without removing the game that has just completed. */
+   @Test
+   public void testEvict_MaxCompletedGamesPerUser_IdleStood() {
+      AtomicLong clock = new AtomicLong();
+      IdleGamePolicy idleGamePolicy = new IdleGamePolicy(Duration.ofSeconds(10), IdleGamePolicy.Action.STAND, Duration.ofSeconds(1));
+      MemoryGameStore store = createStore(new GameEvictionPolicy(Duration.ZERO, 1, 0, Duration.ofMinutes(1)), idleGamePolicy, clock::get);
+      Game idleGame = store.createGame(DUMMY_USER_NAME);
+      clock.set(5000);
+      Game completedGame = store.createGame(DUMMY_USER_NAME);
+      completedGame.stand();
+
+      // the idle game was accessed less recently, but has only just completed
+      clock.set(10001);
+      store.reapIdleGames();
+      assertTrue(idleGame.isComplete());
+      assertSet(findGameIdsByUsername(store, DUMMY_USER_NAME), idleGame.getId());
+      assertEquals(1, store.getEvictedCount());
+   }
+
+   @Test
+   public void testEvict_MaxGames() {
+      AtomicLong clock = new AtomicLong();
+      MemoryGameStore store = createStoreWithEvictionPolicy(new GameEvictionPolicy(Duration.ZERO, 0, 1, Duration.ofMinutes(1)), clock::get);
+      Game game1 = store.createGame("user1");
+      game1.stand();
+      clock.set(1);
+      Game game2 = store.createGame("user2");
+      game2.stand();
+      clock.set(2);
+      Game game3 = store.createGame("user1");
+      clock.set(3);
+      store.findByUsernameAndGameId("user1", game1.getId());
+
+      // game 2 is the least recently accessed completed game
+      assertEquals(2, store.getCompletedGameCount());
+      store.evict();
+      assertSet(findGameIdsByUsername(store, "user1"), game1.getId(), game3.getId());
+      assertTrue(findGameIdsByUsername(store, "user2").isEmpty());
+      assertEquals(2, store.getGameCount());
+      assertEquals(1, store.getCompletedGameCount());
+      assertEquals(1, store.getEvictedCount());
+
+      // games in progress do not count towards the limit, and are never evicted
+      Game game4 = store.createGame("user2");
+      Game game5 = store.createGame("user2");
+      store.evict();
+      assertEquals(4, store.getGameCount());
+      assertEquals(1, store.getEvictedCount());
+
+      // game 3 was last accessed when it was created
+      game3.stand();
+      store.evict();
+      assertSet(findGameIdsByUsername(store, "user1"), game1.getId());
+      assertSet(findGameIdsByUsername(store, "user2"), game4.getId(), game5.getId());
+      assertEquals(3, store.getGameCount());
+      assertEquals(1, store.getCompletedGameCount());
+      assertEquals(2, store.getEvictedCount());
+   }
+
+   /** Test that games removed to enforce the total limit are chosen from a sample, continuing from where the previous sample ended. */
+   @Test
+   public void testEvict_MaxGames_Sampled() {
+      AtomicLong clock = new AtomicLong();
+      MemoryGameStore store = createStoreWithEvictionPolicy(new GameEvictionPolicy(Duration.ZERO, 0, 20, Duration.ofMinutes(1)), clock::get);
+      AtomicInteger gameIds = new AtomicInteger();
+      when(mockIdGenerator.generate()).thenAnswer(i -> Integer.toString(gameIds.incrementAndGet()));
+      List<Game> games = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+         clock.set(i);
+         Game game = store.createGame("user" + (i % 7));
+         game.stand();
+         games.add(game);
+      }
+
+      store.evict();
+      assertEquals(20, store.getCompletedGameCount());
+      assertEquals(20, store.getGameCount());
+      assertEquals(80, store.getEvictedCount());
+      // each game removed was the least recently accessed of its sample - so the most recently accessed game is always kept
+      assertEquals(games.get(99).getId(), store.findByUsernameAndGameId("user" + (99 % 7), games.get(99).getId()).getId());
+
+      // further games are sampled from where the previous sample ended
+      for (int i = 0; i < 10; i++) {
+         clock.set(100 + i);
+         store.createGame("user").stand();
+      }
+      store.evict();
+      assertEquals(20, store.getCompletedGameCount());
+      assertEquals(90, store.getEvictedCount());
+   }
+
+   /** Test that the completed games of each user, and in total, are counted as they complete and are removed. */
+   @Test
+   public void testCompletedGameCount() {
+      AtomicLong clock = new AtomicLong();
+      IdleGamePolicy idleGamePolicy = new IdleGamePolicy(Duration.ofSeconds(10), IdleGamePolicy.Action.EXPIRE, Duration.ofSeconds(1));
+      MemoryGameStore store = createStore(new GameEvictionPolicy(Duration.ofSeconds(10), 0, 0, Duration.ofMinutes(1)), idleGamePolicy, clock::get);
+      Game completed = store.createGame(DUMMY_USER_NAME);
+      completed.stand();
+      Game inProgress = store.createGame(DUMMY_USER_NAME);
+      assertEquals(1, store.getCompletedGameCount());
+      // completing an already completed game has no effect
+      assertThrows(GameAlreadyCompleteException.class, () -> completed.stand());
+      assertEquals(1, store.getCompletedGameCount());
+
+      // a game in progress removed as idle was never counted
+      clock.set(10001);
+      store.reapIdleGames();
+      assertGameNotFound(store, DUMMY_USER_NAME, inProgress.getId());
+      assertEquals(1, store.getCompletedGameCount());
+
+      store.evict();
+      assertEquals(0, store.getCompletedGameCount());
+      assertEquals(0, store.getGameCount());
+   }
+
+   @Test
+   public void testEvict_NoPolicy() {
+      when(mockIdGenerator.generate()).thenReturn("1", "2");
+      when(mockDeckFactory.createDeck()).thenAnswer(i -> new ShuffledDeck(toCards("TS 3S 4S 7S")));
+      MemoryGameStore store = (MemoryGameStore) testObject;
+      store.createGame(DUMMY_USER_NAME).stand();
+      store.createGame(DUMMY_USER_NAME).stand();
+
+      store.evict();
+      assertSet(findGameIdsByUsername(store, DUMMY_USER_NAME), "1", "2");
+      assertEquals(2, store.getGameCount());
+      assertEquals(0, store.getExpiredCount());
+      assertEquals(0, store.getEvictedCount());
+   }
+
+   @Test
+   public void testBackgroundEviction() throws InterruptedException {
+      MemoryGameStore store = createStoreWithEvictionPolicy(new GameEvictionPolicy(Duration.ZERO, 0, 1, Duration.ofMinutes(1)), System::currentTimeMillis);
+      store.start();
+      try {
+         Game completedGame = store.createGame(DUMMY_USER_NAME);
+         completedGame.stand();
+         // games in progress do not count towards the limit
+         Game inProgressGame = store.createGame(DUMMY_USER_NAME);
+         Thread.sleep(50);
+         assertEquals(0, store.getEvictedCount());
+
+         // a game completing that exceeds the limit wakes the background thread, rather than waiting for the next interval
+         inProgressGame.stand();
+         long deadline = System.currentTimeMillis() + 5000;
+         while (store.getEvictedCount() != 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+         }
+
+         assertEquals(1, store.getEvictedCount());
+         assertEquals(1, store.getGameCount());
+         assertEquals(1, store.getCompletedGameCount());
+      } finally {
+         store.stop();
+      }
+   }
+
+   @Test
+   public void testReapIdleGames_Stand() {
+      AtomicLong clock = new AtomicLong();
+      IdleGamePolicy idleGamePolicy = new IdleGamePolicy(Duration.ofSeconds(10), IdleGamePolicy.Action.STAND, Duration.ofSeconds(1));
+      MemoryGameStore store = createStore(GameEvictionPolicy.NONE, idleGamePolicy, clock::get);
+      Game idleGame = store.createGame(DUMMY_USER_NAME);
+      Game accessedGame = store.createGame(DUMMY_USER_NAME);
+      Game completedGame = store.createGame(DUMMY_USER_NAME);
+      completedGame.stand();
+      GameState completedState = completedGame.snapshotCurrentState();
+
+      clock.set(5000);
+      store.reapIdleGames();
+      store.findByUsernameAndGameId(DUMMY_USER_NAME, accessedGame.getId());
+
+      clock.set(9999);
+      store.reapIdleGames();
+      assertEquals(0, store.getIdleStoodCount());
+
+      // idle game stood on behalf of the player, game accessed within the timeout and game completed by the player left as they were
+      clock.set(10000);
+      store.reapIdleGames();
+      assertEquals(Status.DEALER_WON, idleGame.snapshotCurrentState().getStatus());
+      assertEquals(Status.PLAYERS_TURN, accessedGame.snapshotCurrentState().getStatus());
+      assertSame(completedState, completedGame.snapshotCurrentState());
+      assertEquals(1, store.getIdleStoodCount());
+
+      // timeout of accessed game is from when it was last accessed
+      clock.set(14999);
+      store.reapIdleGames();
+      assertEquals(Status.PLAYERS_TURN, accessedGame.snapshotCurrentState().getStatus());
+      clock.set(15000);
+      store.reapIdleGames();
+      assertEquals(Status.DEALER_WON, accessedGame.snapshotCurrentState().getStatus());
+      assertEquals(2, store.getIdleStoodCount());
+
+      // stood games are kept, so the player can see the outcome
+      assertSet(findGameIdsByUsername(store, DUMMY_USER_NAME), idleGame.getId(), accessedGame.getId(), completedGame.getId());
+      assertEquals(3, store.getGameCount());
+      assertEquals(0, store.getIdleExpiredCount());
+   }
+
+   @Test
+   public void testReapIdleGames_Expire() {
+      AtomicLong clock = new AtomicLong();
+      IdleGamePolicy idleGamePolicy = new IdleGamePolicy(Duration.ofSeconds(10), IdleGamePolicy.Action.EXPIRE, Duration.ofSeconds(1));
+      MemoryGameStore store = createStore(GameEvictionPolicy.NONE, idleGamePolicy, clock::get);
+      Game idleGame = store.createGame(DUMMY_USER_NAME);
+      Game accessedGame = store.createGame(DUMMY_USER_NAME);
+      Game completedGame = store.createGame(DUMMY_USER_NAME);
+      completedGame.stand();
+
+      clock.set(5000);
+      store.findByUsernameAndGameId(DUMMY_USER_NAME, accessedGame.getId());
+
+      clock.set(10000);
+      store.reapIdleGames();
+      assertGameNotFound(store, DUMMY_USER_NAME, idleGame.getId());
+      assertSet(findGameIdsByUsername(store, DUMMY_USER_NAME), accessedGame.getId(), completedGame.getId());
+      assertEquals(2, store.getGameCount());
+      assertEquals(1, store.getIdleExpiredCount());
+
+      clock.set(15000);
+      store.reapIdleGames();
+      assertSet(findGameIdsByUsername(store, DUMMY_USER_NAME), completedGame.getId());
+      assertEquals(1, store.getGameCount());
+      assertEquals(2, store.getIdleExpiredCount());
+      assertEquals(0, store.getIdleStoodCount());
+   }
+
+   @Test
+   public void testBackgroundReaping() throws InterruptedException {
+      IdleGamePolicy idleGamePolicy = new IdleGamePolicy(Duration.ofMillis(50), IdleGamePolicy.Action.STAND, Duration.ofMillis(10));
+      MemoryGameStore store = createStore(GameEvictionPolicy.NONE, idleGamePolicy, System::currentTimeMillis);
+      store.start();
+      try {
+         Game game = store.createGame(DUMMY_USER_NAME);
+         long deadline = System.currentTimeMillis() + 5000;
+         while (store.getIdleStoodCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+         }
+
+         assertTrue(game.isComplete());
+         assertEquals(1, store.getIdleStoodCount());
+      } finally {
+         store.stop();
+      }
+   }
+
+   @Test
+   public void testFreezeCompletedGames() {
+      MemoryGameStore store = createStore(GameEvictionPolicy.NONE, IdleGamePolicy.NONE, System::currentTimeMillis);
+      Game game = store.createGame(DUMMY_USER_NAME);
+      assertSame(game, store.findByUsernameAndGameId(DUMMY_USER_NAME, game.getId()));
+
+      GameState completedState = game.stand();
+
+      Game frozen = store.findByUsernameAndGameId(DUMMY_USER_NAME, game.getId());
+      assertTrue(frozen instanceof FrozenGame);
+      assertEquals(game.getId(), frozen.getId());
+      assertTrue(frozen.isComplete());
+      GameState frozenState = frozen.snapshotCurrentState();
+      assertEquals(completedState.getStatus(), frozenState.getStatus());
+      assertEquals(completedState.getVersion(), frozenState.getVersion());
+      assertEquals(completedState.getDealer().getCards().toString(), frozenState.getDealer().getCards().toString());
+      assertEquals(completedState.getPlayer().getCards().toString(), frozenState.getPlayer().getCards().toString());
+      assertEquals(1, store.getGameCount());
+   }
+
+   @Test
+   public void testFreezeCompletedGames_Blackjack() {
+      when(mockIdGenerator.generate()).thenReturn(DUMMY_GAME_ID);
+      when(mockDeckFactory.createDeck()).thenAnswer(i -> new ShuffledDeck(toCards("2S AS KS")));
+      MemoryGameStore store = (MemoryGameStore) testObject;
+
+      Game game = store.createGame(DUMMY_USER_NAME);
+
+      assertEquals(Status.PLAYER_WON, game.snapshotCurrentState().getStatus());
+      assertTrue(store.findByUsernameAndGameId(DUMMY_USER_NAME, DUMMY_GAME_ID) instanceof FrozenGame);
+   }
+
+   @Test
+   public void testFreezeCompletedGames_Disabled() {
+      MemoryGameStore store = createStore(GameEvictionPolicy.NONE, IdleGamePolicy.NONE, System::currentTimeMillis);
+      store.setFreezeCompletedGames(false);
+      Game game = store.createGame(DUMMY_USER_NAME);
+      game.stand();
+
+      assertSame(game, store.findByUsernameAndGameId(DUMMY_USER_NAME, game.getId()));
+   }
+
+   /** Test the index of a user is removed once all of their games have been removed, and that the user can then create new games. */
+   @Test
+   public void testRemoveLastGameOfUser() {
+      AtomicLong clock = new AtomicLong();
+      MemoryGameStore store = createStoreWithEvictionPolicy(new GameEvictionPolicy(Duration.ofSeconds(1), 0, 0, Duration.ofMinutes(1)), clock::get);
+      Game game1 = store.createGame(DUMMY_USER_NAME);
+      game1.stand();
+
+      clock.set(5000);
+      store.evict();
+      assertGameNotFound(store, DUMMY_USER_NAME, game1.getId());
+      assertTrue(findGameIdsByUsername(store, DUMMY_USER_NAME).isEmpty());
+
+      Game game2 = store.createGame(DUMMY_USER_NAME);
+      assertSame(game2, store.findByUsernameAndGameId(DUMMY_USER_NAME, game2.getId()));
+      assertSet(findGameIdsByUsername(store, DUMMY_USER_NAME), game2.getId());
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_ManyGames() {
+      MemoryGameStore store = (MemoryGameStore) testObject;
+      when(mockDeckFactory.createDeck()).thenAnswer(i -> new ShuffledDeck(toCards("2S 3S 4S")));
+      String[] gameIds = new String[25];
+      for (int i = 0; i < gameIds.length; i++) {
+         gameIds[i] = Integer.toString(i);
+         when(mockIdGenerator.generate()).thenReturn(gameIds[i]);
+         store.createGame(DUMMY_USER_NAME);
+      }
+
+      assertSet(findGameIdsByUsername(store, DUMMY_USER_NAME), gameIds);
+      for (String gameId : gameIds) {
+         assertEquals(gameId, store.findByUsernameAndGameId(DUMMY_USER_NAME, gameId).getId());
+         assertGameNotFound(store, "wrong user name", gameId);
+      }
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_Pages() {
+      MemoryGameStore store = createStoreWithEvictionPolicy(GameEvictionPolicy.NONE, System::currentTimeMillis);
+      AtomicInteger gameIds = new AtomicInteger();
+      when(mockIdGenerator.generate()).thenAnswer(i -> Integer.toString(gameIds.incrementAndGet()));
+      for (int i = 0; i < 25; i++) {
+         store.createGame(DUMMY_USER_NAME);
+      }
+      store.createGame("other user name");
+
+      GameIdPage page1 = store.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 10);
+      assertEquals(asList("1", "2", "3", "4", "5", "6", "7", "8", "9", "10"), page1.getGameIds());
+      assertTrue(page1.hasNext());
+      GameIdPage page2 = store.findGameIdsByUsername(DUMMY_USER_NAME, null, page1.getNextCursor(), 10);
+      assertEquals(asList("11", "12", "13", "14", "15", "16", "17", "18", "19", "20"), page2.getGameIds());
+      assertTrue(page2.hasNext());
+      GameIdPage page3 = store.findGameIdsByUsername(DUMMY_USER_NAME, null, page2.getNextCursor(), 10);
+      assertEquals(asList("21", "22", "23", "24", "25"), page3.getGameIds());
+      assertFalse(page3.hasNext());
+      assertNull(page3.getNextCursor());
+
+      // a game created after the last page was returned can be found using the cursor of the previous page
+      store.createGame(DUMMY_USER_NAME);
+      assertEquals(asList("21", "22", "23", "24", "25", "27"), store.findGameIdsByUsername(DUMMY_USER_NAME, null, page2.getNextCursor(), 10).getGameIds());
+   }
+
+   /** Test that removing games, including the last game of the previous page, does not cause games to be skipped or repeated. */
+   @Test
+   public void testFindGameIdsByUsername_RemovedBetweenPages() {
+      AtomicLong clock = new AtomicLong();
+      MemoryGameStore store = createStoreWithEvictionPolicy(new GameEvictionPolicy(Duration.ofSeconds(1), 0, 0, Duration.ofMinutes(1)), clock::get);
+      Game[] games = new Game[6];
+      for (int i = 0; i < games.length; i++) {
+         games[i] = store.createGame(DUMMY_USER_NAME);
+      }
+
+      GameIdPage page1 = store.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 3);
+      assertEquals(asList("1", "2", "3"), page1.getGameIds());
+
+      games[1].stand();
+      games[2].stand();
+      games[3].stand();
+      clock.set(5000);
+      store.evict();
+
+      GameIdPage page2 = store.findGameIdsByUsername(DUMMY_USER_NAME, null, page1.getNextCursor(), 3);
+      assertEquals(asList("5", "6"), page2.getGameIds());
+      assertFalse(page2.hasNext());
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_Status() {
+      MemoryGameStore store = createStoreWithEvictionPolicy(GameEvictionPolicy.NONE, System::currentTimeMillis);
+      for (int i = 0; i < 6; i++) {
+         Game game = store.createGame(DUMMY_USER_NAME);
+         if (i == 1 || i == 4) {
+            assertEquals(Status.DEALER_WON, game.stand().getStatus());
+         }
+      }
+
+      assertEquals(asList("1", "3", "4", "6"), store.findGameIdsByUsername(DUMMY_USER_NAME, Status.PLAYERS_TURN, null, 10).getGameIds());
+      assertEquals(asList("2", "5"), store.findGameIdsByUsername(DUMMY_USER_NAME, Status.DEALER_WON, null, 10).getGameIds());
+      assertTrue(store.findGameIdsByUsername(DUMMY_USER_NAME, Status.DRAW, null, 10).getGameIds().isEmpty());
+
+      GameIdPage page1 = store.findGameIdsByUsername(DUMMY_USER_NAME, Status.PLAYERS_TURN, null, 2);
+      assertEquals(asList("1", "3"), page1.getGameIds());
+      GameIdPage page2 = store.findGameIdsByUsername(DUMMY_USER_NAME, Status.PLAYERS_TURN, page1.getNextCursor(), 2);
+      assertEquals(asList("4", "6"), page2.getGameIds());
+      assertFalse(page2.hasNext());
+   }
+
+   /** Test that the number of games examined is bounded by the limit, even if none of the games have the requested status. */
+   @Test
+   public void testFindGameIdsByUsername_StatusNotFound() {
+      MemoryGameStore store = createStoreWithEvictionPolicy(GameEvictionPolicy.NONE, System::currentTimeMillis);
+      AtomicInteger gameIds = new AtomicInteger();
+      when(mockIdGenerator.generate()).thenAnswer(i -> Integer.toString(gameIds.incrementAndGet()));
+      for (int i = 0; i < 20; i++) {
+         store.createGame(DUMMY_USER_NAME);
+      }
+
+      int pages = 0;
+      String cursor = null;
+      do {
+         GameIdPage page = store.findGameIdsByUsername(DUMMY_USER_NAME, Status.DRAW, cursor, 1);
+         assertTrue(page.getGameIds().isEmpty());
+         cursor = page.getNextCursor();
+         pages++;
+      } while (cursor != null);
+      // 8 games examined per page
+      assertEquals(3, pages);
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_UnknownUser() {
+      assertSame(GameIdPage.EMPTY, testObject.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 10));
+      assertSame(GameIdPage.EMPTY, testObject.findGameIdsByUsername(DUMMY_USER_NAME, Status.DRAW, "7", 10));
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_InvalidCursor() {
+      when(mockIdGenerator.generate()).thenReturn(DUMMY_GAME_ID);
+      testObject.createGame(DUMMY_USER_NAME);
+      for (String cursor : new String[] { "", "x", "-1", "99999999999" }) {
+         InvalidCursorException e = assertThrows(InvalidCursorException.class, () -> testObject.findGameIdsByUsername(DUMMY_USER_NAME, null, cursor, 10));
+         assertEquals("invalid cursor: " + cursor, e.getMessage());
+      }
+   }
+
+   @Test
+   public void testFindGameIdsByUsername_InvalidLimit() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> testObject.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 0));
+      assertEquals("limit must be positive but was 0", e.getMessage());
+   }
+
+   /**
+    * Test that the games of a store with a journal are restored, in the same state, by a new store using the same journal - both when the store was stopped,
+    * so the games are restored from a checkpoint, and when it was not, so the games are restored by replaying every event.
+    */
+   @Test
+   public void testJournal(@TempDir Path directory) {
+      for (DeckFactory.Mode mode : new DeckFactory.Mode[] { DeckFactory.Mode.SHUFFLED, DeckFactory.Mode.SEEDED }) {
+         for (boolean stopped : new boolean[] { true, false }) {
+            Path journalDirectory = directory.resolve(mode.getPropertyValue() + "-" + stopped);
+            DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<>(), mode);
+            GameJournal journal = new GameJournal(journalDirectory, GameJournal.Durability.FSYNC, Duration.ZERO);
+            MemoryGameStore store = createJournaledStore(deckFactory, journal);
+            Map<Game, String> games = new HashMap<>();
+            for (int i = 0; i < 20; i++) {
+               String username = i % 2 == 0 ? DUMMY_USER_NAME : "other user name";
+               Game game = store.createGame(username);
+               games.put(game, username);
+               try {
+                  if (i % 3 == 0) {
+                     game.hit();
+                  }
+                  if (i % 4 == 0) {
+                     game.stand();
+                  }
+               } catch (GameAlreadyCompleteException e) {
+                  // dealt blackjack, or bust
+               }
+            }
+            if (stopped) {
+               store.stop();
+            }
+            journal.close();
+
+            journal = new GameJournal(journalDirectory, GameJournal.Durability.FSYNC, Duration.ZERO);
+            MemoryGameStore restored = createJournaledStore(deckFactory, journal);
+            assertEquals(20, restored.getGameCount());
+            assertEquals(stopped ? 20 : 0, journal.getRestoredGameCount());
+            assertEquals(stopped ? 0 : 20 + countUpdates(games.keySet()), journal.getRecoveredEventCount());
+            assertSameGames(restored, games);
+            for (String username : new String[] { DUMMY_USER_NAME, "other user name" }) {
+               assertEquals(store.findGameIdsByUsername(username, null, null, 100).getGameIds(),
+                           restored.findGameIdsByUsername(username, null, null, 100).getGameIds());
+            }
+            restored.stop();
+            journal.close();
+         }
+      }
+   }
+
+   /**
+    * Test that the games of a store are restored, in the same state, from a checkpoint written while the games were being created and updated, along with
+    * the events appended after the checkpoint was started.
+    * <p>
+    * The order of the games of each user is not compared, as games created at the same time by different threads may be appended to the journal in a
+    * different order to the order they were added to the store.
+    */
+   @Test
+   public void testJournal_CheckpointWhileUpdating(@TempDir Path directory) throws InterruptedException {
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<>(), DeckFactory.Mode.SHUFFLED);
+      GameJournal journal = new GameJournal(directory, GameJournal.Durability.NONE, Duration.ZERO);
+      MemoryGameStore store = createJournaledStore(deckFactory, journal);
+      Map<Game, String> games = new ConcurrentHashMap<>();
+      AtomicBoolean running = new AtomicBoolean(true);
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+         String username = "user" + (t % 2);
+         threads.add(new Thread(() -> {
+            while (running.get()) {
+               Game game = store.createGame(username);
+               games.put(game, username);
+               try {
+                  game.hit();
+                  game.stand();
+               } catch (GameAlreadyCompleteException e) {
+                  // dealt blackjack, or bust
+               }
+            }
+         }));
+      }
+      threads.forEach(Thread::start);
+      for (int i = 0; i < 5; i++) {
+         store.checkpoint();
+      }
+      running.set(false);
+      for (Thread t : threads) {
+         t.join();
+      }
+      journal.close();
+
+      journal = new GameJournal(directory, GameJournal.Durability.NONE, Duration.ZERO);
+      MemoryGameStore restored = createJournaledStore(deckFactory, journal);
+      assertEquals(games.size(), restored.getGameCount());
+      assertTrue(journal.getRestoredGameCount() > 0);
+      assertSameGames(restored, games);
+      restored.stop();
+      journal.close();
+   }
+
+   @Test
+   public void testJournal_CheckpointNotEnabled() {
+      MemoryGameStore store = new MemoryGameStore(new GameIdGenerator(0), mockDeckFactory);
+      IllegalStateException e = assertThrows(IllegalStateException.class, store::checkpoint);
+      assertEquals("journal is not enabled", e.getMessage());
+   }
+
+   /** Test that updates made to a restored game are recorded, and that removed games are not restored. */
+   @Test
+   public void testJournal_UpdateRestoredAndRemove(@TempDir Path directory) {
+      DeckFactory deckFactory = mock(DeckFactory.class);
+      when(deckFactory.createDeck()).thenAnswer(i -> new ShuffledDeck(toCards("TS 3S 4S 7S 2C")));
+      AtomicLong clock = new AtomicLong();
+      GameEvictionPolicy evictionPolicy = new GameEvictionPolicy(Duration.ofSeconds(1), 0, 0, Duration.ofMinutes(1));
+
+      GameJournal journal = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      MemoryGameStore store = createJournaledStore(deckFactory, evictionPolicy, clock, journal);
+      Game removed = store.createGame(DUMMY_USER_NAME);
+      removed.stand();
+      Game kept = store.createGame(DUMMY_USER_NAME);
+      clock.set(5000);
+      store.evict();
+      store.stop();
+      journal.close();
+
+      journal = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      store = createJournaledStore(deckFactory, evictionPolicy, clock, journal);
+      assertGameNotFound(store, DUMMY_USER_NAME, removed.getId());
+      GameState hit = store.findByUsernameAndGameId(DUMMY_USER_NAME, kept.getId()).hit();
+      store.stop();
+      journal.close();
+
+      journal = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      store = createJournaledStore(deckFactory, evictionPolicy, clock, journal);
+      assertSameState(hit, store.findByUsernameAndGameId(DUMMY_USER_NAME, kept.getId()).snapshotCurrentState());
+      assertEquals(1, store.getGameCount());
+      store.stop();
+      journal.close();
+   }
+
+   /** Test that a journal cannot be used with lazily shuffled decks, as their order cannot be recorded. */
+   @Test
+   public void testJournal_LazyShuffle(@TempDir Path directory) {
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<>(), DeckFactory.Mode.LAZY_SHUFFLE);
+      MemoryGameStore store = new MemoryGameStore(new GameIdGenerator(0), deckFactory);
+      GameJournal journal = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      IllegalStateException e = assertThrows(IllegalStateException.class, () -> store.setJournal(journal));
+      assertEquals("the journal requires a deck mode of shuffled or seeded but was lazy-shuffle", e.getMessage());
+   }
+
+   /** Test that completed games not accessed within the archive-after duration are moved to the archive, where they can still be found and listed. */
+   @Test
+   public void testArchive(@TempDir Path directory) {
+      AtomicLong clock = new AtomicLong();
+      GameArchive archive = new GameArchive(directory, Duration.ofSeconds(10), GameArchive.RECORD_SIZE * 4);
+      MemoryGameStore store = createArchivedStore(GameEvictionPolicy.NONE, clock, archive, null);
+      Game archived = store.createGame(DUMMY_USER_NAME);
+      Game inProgress = store.createGame(DUMMY_USER_NAME);
+      Game accessed = store.createGame(DUMMY_USER_NAME);
+      Game otherUsersGame = store.createGame("other user name");
+      archived.stand();
+      accessed.stand();
+      otherUsersGame.stand();
+      clock.set(5000);
+      store.findByUsernameAndGameId(DUMMY_USER_NAME, accessed.getId());
+
+      clock.set(10001);
+      store.evict();
+      assertEquals(2, store.getArchivedCount());
+      assertEquals(2, archive.getGameCount());
+      assertEquals(4, store.getGameCount());
+      Game found = store.findByUsernameAndGameId(DUMMY_USER_NAME, archived.getId());
+      assertTrue(found instanceof FrozenGame);
+      assertSameState(archived.snapshotCurrentState(), found.snapshotCurrentState());
+      assertSame(inProgress, store.findByUsernameAndGameId(DUMMY_USER_NAME, inProgress.getId()));
+      assertGameNotFound(store, "other user name", archived.getId());
+      assertEquals(1, archive.getFoundCount());
+
+      // listed in the order created, whether archived or not
+      Game created = store.createGame(DUMMY_USER_NAME);
+      assertEquals(asList(archived.getId(), inProgress.getId(), accessed.getId(), created.getId()),
+                  store.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 10).getGameIds());
+      assertEquals(asList(otherUsersGame.getId()), store.findGameIdsByUsername("other user name", null, null, 10).getGameIds());
+      assertEquals(asList(archived.getId(), accessed.getId()),
+                  store.findGameIdsByUsername(DUMMY_USER_NAME, Status.DEALER_WON, null, 10).getGameIds());
+      store.stop();
+      archive.close();
+   }
+
+   /** Test that games moved to another store are removed whether archived or not, and that games moved from another store are added once. */
+   @Test
+   public void testMovedGames_Archive(@TempDir Path directory) {
+      AtomicLong clock = new AtomicLong();
+      GameArchive archive = new GameArchive(directory, Duration.ofSeconds(10), GameArchive.RECORD_SIZE * 4);
+      MemoryGameStore store = createArchivedStore(GameEvictionPolicy.NONE, clock, archive, null);
+      Game archived = store.createGame(DUMMY_USER_NAME);
+      Game inProgress = store.createGame(DUMMY_USER_NAME);
+      Game otherUsersGame = store.createGame("other user name");
+      archived.stand();
+      clock.set(10001);
+      store.evict();
+      assertEquals(1, store.getArchivedCount());
+      store.removeMovedGame(otherUsersGame.getId(), Game.INITIAL_VERSION);
+      assertEquals(Set.of(DUMMY_USER_NAME), store.getUsernames());
+
+      assertTrue(store.removeMovedGame(archived.getId(), 1));
+      // not removed if updated since it was copied
+      assertFalse(store.removeMovedGame(inProgress.getId(), Game.INITIAL_VERSION + 1));
+      assertTrue(store.removeMovedGame(inProgress.getId(), Game.INITIAL_VERSION));
+      assertFalse(store.removeMovedGame(inProgress.getId(), Game.INITIAL_VERSION));
+      assertEquals(3, store.getMovedCount());
+      assertEquals(0, store.getGameCount());
+      assertEquals(0, archive.getGameCount());
+      assertTrue(store.getUsernames().isEmpty());
+
+      // moving the same games back does not duplicate them
+      for (int i = 0; i < 2; i++) {
+         store.addMovedGame(DUMMY_USER_NAME, new FrozenGame(archived.snapshotCurrentState()));
+         store.addMovedGame(inProgress.getId(), DUMMY_USER_NAME, new ShuffledDeck(toCards("TS 3S 4S 7S")), 0, false, Game.INITIAL_VERSION);
+      }
+      assertEquals(2, store.getGameCount());
+      assertEquals(asList(archived.getId(), inProgress.getId()), store.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 10).getGameIds());
+      assertSameState(archived.snapshotCurrentState(), store.findByUsernameAndGameId(DUMMY_USER_NAME, archived.getId()).snapshotCurrentState());
+      assertSameState(inProgress.snapshotCurrentState(), store.findByUsernameAndGameId(DUMMY_USER_NAME, inProgress.getId()).snapshotCurrentState());
+
+      // a copy at a higher version replaces the game, but not a copy at a lower version
+      GameState stood = inProgress.stand();
+      store.addMovedGame(inProgress.getId(), DUMMY_USER_NAME, new ShuffledDeck(toCards("TS 3S 4S 7S")), 0, true, stood.getVersion());
+      store.addMovedGame(inProgress.getId(), DUMMY_USER_NAME, new ShuffledDeck(toCards("TS 3S 4S 7S")), 0, false, Game.INITIAL_VERSION);
+      assertEquals(2, store.getGameCount());
+      assertSameState(stood, store.findByUsernameAndGameId(DUMMY_USER_NAME, inProgress.getId()).snapshotCurrentState());
+      assertEquals(asList(archived.getId(), inProgress.getId()), store.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 10).getGameIds());
+      archive.close();
+   }
+
+   /** Test that the games of a user are listed a page at a time in the order they were created, after every earlier game has been archived. */
+   @Test
+   public void testArchive_Pages(@TempDir Path directory) {
+      AtomicLong clock = new AtomicLong();
+      GameArchive archive = new GameArchive(directory, Duration.ZERO, GameArchive.RECORD_SIZE * 4);
+      MemoryGameStore store = createArchivedStore(GameEvictionPolicy.NONE, clock, archive, null);
+      List<String> expected = new ArrayList<>();
+      for (int i = 0; i < 9; i++) {
+         Game game = store.createGame(DUMMY_USER_NAME);
+         expected.add(game.getId());
+         if (i % 3 != 1) {
+            game.stand();
+         }
+         if (i == 5) {
+            // every game created so far is archived, except those still in progress
+            clock.set(1);
+            store.evict();
+         }
+      }
+      assertEquals(4, store.getArchivedCount());
+
+      List<String> gameIds = new ArrayList<>();
+      String cursor = null;
+      do {
+         GameIdPage page = store.findGameIdsByUsername(DUMMY_USER_NAME, null, cursor, 2);
+         assertTrue(page.getGameIds().size() <= 2);
+         gameIds.addAll(page.getGameIds());
+         cursor = page.getNextCursor();
+      } while (cursor != null);
+      assertEquals(expected, gameIds);
+
+      // once every game of the user is archived, games created later still follow them
+      store.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 10).getGameIds().forEach(id -> {
+         Game game = store.findByUsernameAndGameId(DUMMY_USER_NAME, id);
+         if (!game.isComplete()) {
+            game.stand();
+         }
+      });
+      clock.set(2);
+      store.evict();
+      assertEquals(9, archive.getGameCount());
+      expected.add(store.createGame(DUMMY_USER_NAME).getId());
+      assertEquals(expected, store.findGameIdsByUsername(DUMMY_USER_NAME, null, null, 100).getGameIds());
+      store.stop();
+      archive.close();
+   }
+
+   /** Test that archived games are removed once they exceed the limits of the eviction policy. */
+   @Test
+   public void testArchive_Evict(@TempDir Path directory) {
+      AtomicLong clock = new AtomicLong();
+      GameArchive archive = new GameArchive(directory, Duration.ofSeconds(10), GameArchive.RECORD_SIZE * 4);
+      GameEvictionPolicy evictionPolicy = new GameEvictionPolicy(Duration.ofSeconds(20), 2, 2, Duration.ofMinutes(1));
+      MemoryGameStore store = createArchivedStore(evictionPolicy, clock, archive, null);
+      Game expired = store.createGame(DUMMY_USER_NAME);
+      expired.stand();
+      clock.set(10000);
+      Game archived1 = store.createGame(DUMMY_USER_NAME);
+      archived1.stand();
+      Game archived2 = store.createGame("other user name");
+      archived2.stand();
+      clock.set(20001);
+      store.evict();
+      assertEquals(1, store.getExpiredCount());
+      assertEquals(2, archive.getGameCount());
+      assertGameNotFound(store, DUMMY_USER_NAME, expired.getId());
+
+      // per-user limit - the user's archived game is removed first
+      store.createGame(DUMMY_USER_NAME).stand();
+      assertEquals(0, store.getEvictedCount());
+      store.createGame(DUMMY_USER_NAME).stand();
+      assertEquals(1, store.getEvictedCount());
+      Game inProgress = store.createGame(DUMMY_USER_NAME);
+      assertGameNotFound(store, DUMMY_USER_NAME, archived1.getId());
+      assertEquals(1, archive.getGameCount());
+
+      // total limit - the archived game is removed first
+      assertEquals(4, store.getGameCount());
+      store.evict();
+      assertEquals(2, store.getEvictedCount());
+      assertEquals(0, archive.getGameCount());
+      assertGameNotFound(store, "other user name", archived2.getId());
+      assertEquals(3, store.getGameCount());
+      assertSame(inProgress, store.findByUsernameAndGameId(DUMMY_USER_NAME, inProgress.getId()));
+      store.stop();
+      archive.close();
+   }
+
+   /** Test that archived games are written to checkpoints, and restored into the archive, in the same order as before. */
+   @Test
+   public void testArchive_Journal(@TempDir Path directory) {
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<>(), DeckFactory.Mode.SHUFFLED);
+      AtomicLong clock = new AtomicLong();
+      GameEvictionPolicy evictionPolicy = new GameEvictionPolicy(Duration.ofSeconds(20), 0, 0, Duration.ofMinutes(1));
+      for (boolean stopped : new boolean[] { true, false }) {
+         Path journalDirectory = directory.resolve("journal-" + stopped);
+         Path archiveDirectory = directory.resolve("archive-" + stopped);
+         clock.set(0);
+         GameJournal journal = new GameJournal(journalDirectory, GameJournal.Durability.NONE, Duration.ZERO);
+         GameArchive archive = new GameArchive(archiveDirectory, Duration.ofSeconds(10), GameArchive.RECORD_SIZE * 4);
+         MemoryGameStore store = createArchivedStore(deckFactory, evictionPolicy, clock, archive, journal);
+         Map<Game, String> games = new HashMap<>();
+         Game expired = null;
+         for (int i = 0; i < 20; i++) {
+            String username = i % 2 == 0 ? DUMMY_USER_NAME : "other user name";
+            Game game = store.createGame(username);
+            if (i % 4 != 0 && !game.isComplete()) {
+               game.stand();
+            }
+            if (i == 0) {
+               expired = game;
+               if (!expired.isComplete()) {
+                  expired.stand();
+               }
+               clock.set(15000);
+            } else {
+               games.put(game, username);
+            }
+            if (i == 9) {
+               // the first game is archived, then expires as the others are archived
+               store.evict();
+               clock.set(25001);
+               store.evict();
+            }
+         }
+         assertEquals(1, store.getExpiredCount());
+         assertTrue(archive.getGameCount() > 0);
+         Map<String, List<String>> gameIds = new HashMap<>();
+         for (String username : new String[] { DUMMY_USER_NAME, "other user name" }) {
+            gameIds.put(username, store.findGameIdsByUsername(username, null, null, 100).getGameIds());
+         }
+         if (stopped) {
+            store.stop();
+         }
+         journal.close();
+         archive.close();
+
+         journal = new GameJournal(journalDirectory, GameJournal.Durability.NONE, Duration.ZERO);
+         GameArchive restoredArchive = new GameArchive(archiveDirectory, Duration.ofSeconds(10), GameArchive.RECORD_SIZE * 4);
+         MemoryGameStore restored = createArchivedStore(deckFactory, evictionPolicy, clock, restoredArchive, journal);
+         assertEquals(19, restored.getGameCount());
+         if (stopped) {
+            // completed games are restored straight into the archive
+            assertEquals(games.keySet().stream().filter(Game::isComplete).count(), restoredArchive.getGameCount());
+         }
+         assertSameGames(restored, games);
+         assertGameNotFound(restored, DUMMY_USER_NAME, expired.getId());
+         gameIds.forEach((username, expected) -> assertEquals(expected, restored.findGameIdsByUsername(username, null, null, 100).getGameIds()));
+         restored.stop();
+         journal.close();
+         restoredArchive.close();
+      }
+   }
+
+   private MemoryGameStore createArchivedStore(GameEvictionPolicy evictionPolicy, AtomicLong clock, GameArchive archive, GameJournal journal) {
+      when(mockDeckFactory.createDeck()).thenAnswer(i -> new ShuffledDeck(toCards("TS 3S 4S 7S")));
+      return createArchivedStore(mockDeckFactory, evictionPolicy, clock, archive, journal);
+   }
+
+   private static MemoryGameStore createArchivedStore(DeckFactory deckFactory, GameEvictionPolicy evictionPolicy, AtomicLong clock, GameArchive archive,
+               GameJournal journal) {
+      MemoryGameStore store = new MemoryGameStore(new GameIdGenerator(0), deckFactory, evictionPolicy, IdleGamePolicy.NONE, clock::get);
+      store.setArchive(archive);
+      if (journal != null) {
+         store.setJournal(journal);
+         store.start();
+      } else {
+         // not started, so games are only archived when the test calls evict()
+         archive.open();
+      }
+      return store;
+   }
+
+   private static MemoryGameStore createJournaledStore(DeckFactory deckFactory, GameJournal journal) {
+      return createJournaledStore(deckFactory, GameEvictionPolicy.NONE, new AtomicLong(), journal);
+   }
+
+   private static MemoryGameStore createJournaledStore(DeckFactory deckFactory, GameEvictionPolicy evictionPolicy, AtomicLong clock, GameJournal journal) {
+      MemoryGameStore store = new MemoryGameStore(new GameIdGenerator(0), deckFactory, evictionPolicy, IdleGamePolicy.NONE, clock::get);
+      store.setJournal(journal);
+      store.start();
+      return store;
+   }
+
+   /** Asserts that the given store contains the given games, keyed by the user they belong to, in the same state. */
+   private static void assertSameGames(GameStore store, Map<Game, String> games) {
+      games.forEach((game, username) -> {
+         assertSameState(game.snapshotCurrentState(), store.findByUsernameAndGameId(username, game.getId()).snapshotCurrentState());
+      });
+   }
+
+   /** Returns the number of hits and stands made by the player of each game - i.e. the version of each game. */
+   private static int countUpdates(Collection<Game> games) {
+      return games.stream().mapToInt(g -> g.snapshotCurrentState().getVersion()).sum();
+   }
+
+   private static void assertSameState(GameState expected, GameState actual) {
+      assertEquals(expected.getId(), actual.getId());
+      assertEquals(expected.getStatus(), actual.getStatus());
+      assertEquals(expected.getVersion(), actual.getVersion());
+      assertEquals(expected.getDealer().getCards().toString(), actual.getDealer().getCards().toString());
+      assertEquals(expected.getPlayer().getCards().toString(), actual.getPlayer().getCards().toString());
+   }
+
+   /** Returns the IDs of every game belonging to the given user. */
+   private static Set<String> findGameIdsByUsername(GameStore store, String username) {
+      GameIdPage page = store.findGameIdsByUsername(username, null, null, Integer.MAX_VALUE);
+      assertFalse(page.hasNext());
+      return new HashSet<>(page.getGameIds());
+   }
+
+   /** Creates a store where each game is given a unique ID and its own deck, where standing immediately completes the game. */
+   private MemoryGameStore createStoreWithEvictionPolicy(GameEvictionPolicy evictionPolicy, LongSupplier clock) {
+      return createStore(evictionPolicy, IdleGamePolicy.NONE, clock);
+   }
+
+   /** Creates a store where each game is given a unique ID and its own deck, where standing immediately completes the game. */
+   private MemoryGameStore createStore(GameEvictionPolicy evictionPolicy, IdleGamePolicy idleGamePolicy, LongSupplier clock) {
+      when(mockIdGenerator.generate()).thenReturn("1", "2", "3", "4", "5", "6");
+      when(mockDeckFactory.createDeck()).thenAnswer(i -> new ShuffledDeck(toCards("TS 3S 4S 7S")));
+      return new MemoryGameStore(mockIdGenerator, mockDeckFactory, evictionPolicy, idleGamePolicy, clock);
    }
 
    private void assertSet(Set<String> set, String... contents) {
@@ -0,0 +1,347 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.blackjack.CardReader;
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Hand;
+import com.example.blackjack.view.Status;
+
+public class PlayableGameTest {
+   private static final String DUMMY_GAME_ID = "375423b0-e862-4145-bec4-511fbe723227";
+
+   @Test
+   public void testGetId() {
+      Game game = new PlayableGame(DUMMY_GAME_ID, toDeck("AS 2H 3C"));
+      assertSame(DUMMY_GAME_ID, game.getId());
+   }
+
+   @Test
+   public void testIsComplete() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("7D TH 7H TD"));
+      assertEquals(Status.PLAYERS_TURN, g.getStatus());
+      assertFalse(g.isComplete());
+      g.stand();
+      assertEquals(Status.DRAW, g.getStatus());
+      assertTrue(g.isComplete());
+   }
+
+   @Test
+   public void testCompletionListener() {
+      List<Game> completed = new ArrayList<>();
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("7D TH 2H 4D 3C TD"), completed::add);
+      g.hit();
+      assertTrue(completed.isEmpty());
+      g.stand();
+      assertEquals(1, completed.size());
+      assertSame(g, completed.get(0));
+
+      // failed updates do not notify
+      assertThrows(GameAlreadyCompleteException.class, g::stand);
+      assertEquals(1, completed.size());
+   }
+
+   /** Test that each update is recorded by the journal, and that an update the journal fails to record is not applied. */
+   @Test
+   public void testJournal(@TempDir Path directory) {
+      GameJournal journal = new GameJournal(directory, GameJournal.Durability.FSYNC, Duration.ZERO);
+      journal.open(mock(GameJournal.Listener.class));
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("7D TH 2H 4D 3C TD"), null, journal);
+      g.hit();
+      g.hit(1);
+      assertEquals(2, journal.getEventCount());
+
+      journal.close();
+      GameState before = g.snapshotCurrentState();
+      assertThrows(IllegalStateException.class, g::stand);
+      assertSame(before, g.snapshotCurrentState());
+      assertEquals(Status.PLAYERS_TURN, g.getStatus());
+   }
+
+   @Test
+   public void testBothHave21NotBlackjack() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("7S TH 3S 4S 4C 7H 7D"));
+      g.hit();
+      g.hit();
+      assertOutcome(g, Status.DRAW, 21, 21);
+   }
+
+   @Test
+   public void testBothHave17() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("7D TH 7H TD"));
+      g.stand();
+      assertOutcome(g, Status.DRAW, 17, 17);
+   }
+
+   @Test
+   public void testPlayerHas18DealerHas17() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("7D TH 8H TD"));
+      g.stand();
+      assertOutcome(g, Status.PLAYER_WON, 17, 18);
+   }
+
+   @Test
+   public void testPlayerHas18DealerHas19() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9D TH 8H TD"));
+      g.stand();
+      assertOutcome(g, Status.DEALER_WON, 19, 18);
+   }
+
+   @Test
+   public void testPlayerHas15DealerBust() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("7D TH 5H 9D 6D"));
+      g.stand();
+      assertOutcome(g, Status.PLAYER_WON, 22, 15);
+   }
+
+   @Test
+   public void testPlayerHas16DealerBust() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("7D TH 6H 9D 6D"));
+      g.stand();
+      assertOutcome(g, Status.PLAYER_WON, 22, 16);
+   }
+
+   @Test
+   public void testPlayerBust() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("2C TH TD 2S"));
+      g.hit();
+      assertOutcome(g, Status.DEALER_WON, 2, 22);
+   }
+
+   @Test
+   public void testDealerContinuesUntil17() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("2S TD 4D 2H 2D 2C 3S 3H 3D"));
+      g.stand();
+      assertOutcome(g, Status.DEALER_WON, 17, 14);
+   }
+
+   @Test
+   public void testDealerBust() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("TH TD 4D 5H 7H"));
+      g.stand();
+      assertOutcome(g, Status.PLAYER_WON, 22, 14);
+   }
+
+   @Test
+   public void testPlayerHasBlackjackDealerHasTwo() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("2C AS KH"));
+      assertOutcome(g, Status.PLAYER_WON, 2, 21);
+   }
+
+   @Test
+   public void testPlayerHasBlackjackDealerHasNine() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9C AS KH"));
+      assertOutcome(g, Status.PLAYER_WON, 9, 21);
+   }
+
+   @Test
+   public void testDealerHasBlackjack() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("KH 7D 3H 8C AS"));
+      g.hit();
+      g.stand();
+      assertOutcome(g, Status.DEALER_WON, 21, 18);
+   }
+
+   @Test
+   public void testPlayerHasBlackjackDealerHasAce() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("AS AC TC 4C"));
+      assertOutcome(g, Status.PLAYER_WON, 15, 21);
+   }
+
+   @Test
+   public void testPlayerHasBlackjackDealerHasTen() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("TS AC TC 4C"));
+      assertOutcome(g, Status.PLAYER_WON, 14, 21);
+   }
+
+   @Test
+   public void testPlayerHas21DealerHasBlackjack() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("AS 9S 4S 8S TS"));
+      g.hit();
+      assertOutcome(g, Status.DEALER_WON, 21, 21);
+   }
+
+   @Test
+   public void testBothHaveBlackjack() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("KH AS TD AC"));
+      assertOutcome(g, Status.DRAW, 21, 21);
+   }
+
+   @Test
+   public void testCannotUpdateAfterStand() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9D TH 7H TD"));
+      g.stand();
+      assertCannotUpdate(g);
+      assertOutcome(g, Status.DEALER_WON, 19, 17);
+   }
+
+   @Test
+   public void testCannotUpdateAfterBust() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9D TH 5H 7H"));
+      g.hit();
+      assertCannotUpdate(g);
+      assertOutcome(g, Status.DEALER_WON, 9, 22);
+   }
+
+   @Test
+   public void testCannotUpdateReachedTarget() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9D TH 5H 6H 8D"));
+      g.hit();
+      assertCannotUpdate(g);
+      assertOutcome(g, Status.PLAYER_WON, 17, 21);
+   }
+
+   @Test
+   public void testSnapshotCurrentState() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9D TH 5H 3H 2H 4D 5D"));
+
+      // check initial state
+      GameState gs = g.snapshotCurrentState();
+      assertSame(DUMMY_GAME_ID, gs.getId());
+      assertSame(Status.PLAYERS_TURN, gs.getStatus());
+      assertHand("9D", gs.getDealer());
+      assertHand("TH 5H", gs.getPlayer());
+
+      // check state after first hit
+      g.hit();
+      gs = g.snapshotCurrentState();
+      assertSame(DUMMY_GAME_ID, gs.getId());
+      assertSame(Status.PLAYERS_TURN, gs.getStatus());
+      assertHand("9D", gs.getDealer());
+      assertHand("TH 5H 3H", gs.getPlayer());
+
+      // check state after second hit
+      g.hit();
+      gs = g.snapshotCurrentState();
+      assertSame(DUMMY_GAME_ID, gs.getId());
+      assertSame(Status.PLAYERS_TURN, gs.getStatus());
+      assertHand("9D", gs.getDealer());
+      assertHand("TH 5H 3H 2H", gs.getPlayer());
+
+      // check state after stand
+      g.stand();
+      gs = g.snapshotCurrentState();
+      assertSame(DUMMY_GAME_ID, gs.getId());
+      assertSame(Status.PLAYER_WON, gs.getStatus());
+      assertHand("9D 4D 5D", gs.getDealer());
+      assertHand("TH 5H 3H 2H", gs.getPlayer());
+   }
+
+   /** Test the same snapshot is returned until the game is updated. */
+   @Test
+   public void testSnapshotCached() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9D TH 5H 3H 4D 5D"));
+
+      GameState initial = g.snapshotCurrentState();
+      assertSame(initial, g.snapshotCurrentState());
+
+      GameState afterHit = g.hit();
+      assertNotSame(initial, afterHit);
+      assertSame(afterHit, g.snapshotCurrentState());
+      assertHand("TH 5H", initial.getPlayer());
+      assertHand("TH 5H 3H", afterHit.getPlayer());
+
+      GameState afterStand = g.stand();
+      assertNotSame(afterHit, afterStand);
+      assertSame(afterStand, g.snapshotCurrentState());
+
+      // check a rejected update does not replace the snapshot
+      assertCannotUpdate(g);
+      assertSame(afterStand, g.snapshotCurrentState());
+   }
+
+   @Test
+   public void testVersion() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9D TH 5H 3H 4D 5D"));
+      assertEquals(Game.INITIAL_VERSION, g.snapshotCurrentState().getVersion());
+      assertEquals(1, g.hit().getVersion());
+      assertEquals(2, g.stand().getVersion());
+
+      // check a rejected update does not increment the version
+      assertCannotUpdate(g);
+      assertEquals(2, g.snapshotCurrentState().getVersion());
+   }
+
+   @Test
+   public void testExpectedVersion() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9D TH 5H 3H 4D 5D"));
+      assertEquals(1, g.hit(0).getVersion());
+      assertEquals(2, g.stand(1).getVersion());
+   }
+
+   @Test
+   public void testVersionMismatch() {
+      Game g = new PlayableGame(DUMMY_GAME_ID, toDeck("9D TH 5H 3H 4D 5D"));
+      g.hit();
+      GameState before = g.snapshotCurrentState();
+
+      assertVersionMismatch(() -> g.hit(0), 0, 1);
+      assertVersionMismatch(() -> g.stand(2), 2, 1);
+
+      // check rejected updates do not change the game
+      assertSame(before, g.snapshotCurrentState());
+      assertSame(Status.PLAYERS_TURN, before.getStatus());
+   }
+
+   private void assertVersionMismatch(Runnable operation, int expectedVersion, int actualVersion) {
+      try {
+         operation.run();
+         fail();
+      } catch (GameVersionMismatchException e) {
+         assertEquals("cannot update game with id " + DUMMY_GAME_ID + " as expected version " + expectedVersion + " but was " + actualVersion, e.getMessage());
+      }
+   }
+
+   private void assertHand(String string, Hand hand) {
+      Collection<Card> cards = CardReader.toCards(string);
+      assertEquals(HandValuer.value(cards), hand.getValue());
+      assertEquals(cards.toString(), hand.getCards().toString());
+   }
+
+   private void assertCannotUpdate(Game g) {
+      assertGameAlreadyCompleteException(g::hit);
+      assertGameAlreadyCompleteException(g::stand);
+   }
+
+   private void assertGameAlreadyCompleteException(Runnable operation) {
+      try {
+         operation.run();
+         fail();
+      } catch (GameAlreadyCompleteException e) {
+         assertEquals("cannot update already completed game with id " + DUMMY_GAME_ID, e.getMessage());
+      }
+   }
+
+   private void assertOutcome(Game g, Status expectedOutome, int expectedDealerValue, int expectedPlayerValue) {
+      GameState s = g.snapshotCurrentState();
+      assertSame(expectedOutome, s.getStatus());
+      assertEquals(expectedDealerValue, s.getDealer().getValue());
+      assertEquals(expectedPlayerValue, s.getPlayer().getValue());
+   }
+
+   /**
+    * @param cards
+    *           A space separated sequence of two character codes where the first character represents the rank and the second character represents the suit.
+    *           e.g. {@code TH AC 3D KS}
+    */
+   private static Deck toDeck(String cards) {
+      return new ShuffledDeck(CardReader.toCards(cards));
+   }
+}
@@ -0,0 +1,66 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+public class SchemaMigratorTest {
+   private DriverManagerDataSource dataSource;
+   private JdbcTemplate jdbcTemplate;
+
+   @BeforeEach
+   public void setUp() {
+      dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+      jdbcTemplate = new JdbcTemplate(dataSource);
+   }
+
+   @AfterEach
+   public void tearDown() {
+      jdbcTemplate.execute("SHUTDOWN");
+   }
+
+   @Test
+   public void testMigrate() {
+      SchemaMigrator testObject = new SchemaMigrator(dataSource, JdbcGameStore.MIGRATIONS);
+
+      assertEquals(1, testObject.migrate());
+
+      assertEquals("create games", jdbcTemplate.queryForObject("SELECT description FROM schema_version WHERE version = 1", String.class));
+      assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM game", Integer.class));
+      assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM game_card", Integer.class));
+   }
+
+   @Test
+   public void testMigrate_AlreadyMigrated() {
+      assertEquals(1, new SchemaMigrator(dataSource, JdbcGameStore.MIGRATIONS).migrate());
+      jdbcTemplate.update("INSERT INTO game (game_id, username, status, version, hits) VALUES (1, 'qwerty', 'PLAYERS_TURN', 0, 0)");
+
+      assertEquals(0, new SchemaMigrator(dataSource, JdbcGameStore.MIGRATIONS).migrate());
+
+      assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM schema_version", Integer.class));
+      assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM game", Integer.class));
+   }
+
+   @Test
+   public void testMigrate_NewerThanMigrations() {
+      SchemaMigrator testObject = new SchemaMigrator(dataSource, JdbcGameStore.MIGRATIONS);
+      testObject.migrate();
+      jdbcTemplate.update("INSERT INTO schema_version (version, description, applied_at) VALUES (2, 'from the future', CURRENT_TIMESTAMP)");
+
+      IllegalStateException e = assertThrows(IllegalStateException.class, testObject::migrate);
+      assertEquals("database schema is at version 2 but the latest migration in db/game-store is version 1", e.getMessage());
+   }
+
+   @Test
+   public void testMigrate_NoMigrations() {
+      assertEquals(0, new SchemaMigrator(dataSource, "db/does-not-exist").migrate());
+      assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM schema_version", Integer.class));
+   }
+}
@@ -0,0 +1,66 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.view.Card;
+
+public class SeededDeckTest {
+   @Test
+   public void testDealsEveryCard() {
+      Deck d = new SeededDeck(42);
+
+      List<Card> dealt = dealAll(d);
+      assertEquals(DeckFactory.CARDS.size(), dealt.size());
+      assertEquals(new HashSet<>(DeckFactory.CARDS), new HashSet<>(dealt));
+
+      // check there are not more than the expected number of cards in the deck
+      try {
+         d.deal();
+         fail();
+      } catch (IllegalStateException e) {
+         assertEquals("deck is empty", e.getMessage());
+      }
+   }
+
+   @Test
+   public void testSameSeedSameOrder() {
+      assertEquals(dealAll(new SeededDeck(42)), dealAll(new SeededDeck(42)));
+      assertEquals(dealAll(new SeededDeck(Long.MIN_VALUE)), dealAll(new SeededDeck(Long.MIN_VALUE)));
+   }
+
+   @Test
+   public void testDifferentSeedDifferentOrder() {
+      assertNotEquals(dealAll(new SeededDeck(42)), dealAll(new SeededDeck(43)));
+      assertNotEquals(dealAll(new SeededDeck(0)), dealAll(new SeededDeck(-1)));
+   }
+
+   @Test
+   public void testGetSeed() {
+      assertEquals(42, new SeededDeck(42).getSeed());
+      assertEquals(Long.MAX_VALUE, new SeededDeck(Long.MAX_VALUE).getSeed());
+   }
+
+   /** Test that, for each of the first few cards dealt from decks created from consecutive seeds, every card is equally likely to be dealt. */
+   @Test
+   public void testUniformDistributionOfEachPosition() {
+      AtomicLong seeds = new AtomicLong();
+      ChiSquared.assertUniformDistributionOfEachPosition(() -> new SeededDeck(seeds.getAndIncrement()));
+   }
+
+   private static List<Card> dealAll(Deck d) {
+      List<Card> cards = new ArrayList<>();
+      for (int i = 0; i < DeckFactory.CARDS.size(); i++) {
+         cards.add(d.deal());
+      }
+      return cards;
+   }
+}
@@ -0,0 +1,520 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.view.Action;
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.GameState;
+import com.example.blackjack.view.Status;
+
+/** Tests several {@code ShardedGameStore}s in the same JVM, forwarding requests to each other by calling the methods used by {@code ClusterController}. */
+public class ShardedGameStoreTest {
+   private static final String NODE_A = "http://localhost:8081";
+   private static final String NODE_B = "http://localhost:8082";
+   private static final String NODE_C = "http://localhost:8083";
+   private static final String NODES_AB = NODE_A + "," + NODE_B;
+   private static final String NODES_ABC = NODES_AB + "," + NODE_C;
+   private static final DeckFactory DECK_FACTORY = new DeckFactory(new ThreadLocalRandomShuffleStrategy<>(), DeckFactory.Mode.SEEDED);
+
+   private final Map<String, ShardedGameStore> stores = new HashMap<>();
+   private final Map<String, MemoryGameStore> localStores = new HashMap<>();
+   private final Set<String> unreachable = new HashSet<>();
+   private final ClusterClient client = new InProcessClusterClient();
+   /** Run by {@link InProcessClusterClient} each time games are moved, after they have been added to the node they were moved to. */
+   private Runnable beforeMove = () -> {
+   };
+
+   private ShardedGameStore addNode(String url, String nodes) {
+      MemoryGameStore local = new MemoryGameStore(new GameIdGenerator(stores.size()), DECK_FACTORY);
+      ShardedGameStore store = new ShardedGameStore(local, DECK_FACTORY, client, url, nodes);
+      stores.put(url, store);
+      localStores.put(url, local);
+      return store;
+   }
+
+   @Test
+   public void testConstructor_NoSelf() {
+      MemoryGameStore local = new MemoryGameStore(new GameIdGenerator(0), DECK_FACTORY);
+      assertThrows(IllegalArgumentException.class, () -> new ShardedGameStore(local, DECK_FACTORY, client, " ", ""));
+   }
+
+   @Test
+   public void testConstructor_LazyShuffleDeck() {
+      DeckFactory deckFactory = new DeckFactory(new ThreadLocalRandomShuffleStrategy<>(), DeckFactory.Mode.LAZY_SHUFFLE);
+      MemoryGameStore local = new MemoryGameStore(new GameIdGenerator(0), deckFactory);
+      assertThrows(IllegalStateException.class, () -> new ShardedGameStore(local, deckFactory, client, NODE_A, ""));
+   }
+
+   @Test
+   public void testConstructor_UnsupportedStore() {
+      Optional<MemoryGameStore> local = Optional.of(new MemoryGameStore(new GameIdGenerator(0), DECK_FACTORY));
+      assertEquals("the cache cannot be enabled when the store is shared across a cluster",
+            assertThrows(IllegalStateException.class, () -> new ShardedGameStore(local, DECK_FACTORY, client, NODE_A, "", true, false)).getMessage());
+      assertEquals("the database cannot be enabled when the store is shared across a cluster",
+            assertThrows(IllegalStateException.class, () -> new ShardedGameStore(Optional.empty(), DECK_FACTORY, client, NODE_A, "", false, true)).getMessage());
+      assertEquals(NODE_A, new ShardedGameStore(local, DECK_FACTORY, client, NODE_A, "", false, false).getSelf());
+   }
+
+   /** Test that if the nodes are not specified, the cluster consists of only this node - and URLs are normalized. */
+   @Test
+   public void testConstructor_DefaultNodes() {
+      ShardedGameStore store = addNode(NODE_A + "/", "");
+      assertEquals(NODE_A, store.getSelf());
+      assertEquals(NODE_A, store.getNodes());
+      store.createGame("user");
+      assertEquals(1, store.getLocalCount());
+   }
+
+   @Test
+   public void testSetNodes_Empty() {
+      ShardedGameStore store = addNode(NODE_A, NODES_AB);
+      assertThrows(IllegalArgumentException.class, () -> store.setNodes(" , "));
+      assertEquals(NODES_AB, store.getNodes());
+   }
+
+   @Test
+   public void testCreateGame_Local() {
+      ShardedGameStore a = addNode(NODE_A, NODES_AB);
+      addNode(NODE_B, NODES_AB);
+      String username = userAssignedTo(NODES_AB, NODE_A);
+
+      Game game = a.createGame(username);
+
+      assertEquals(1, a.getLocalCount());
+      assertEquals(0, a.getForwardedCount());
+      assertSameState(game.snapshotCurrentState(), localStores.get(NODE_A).findByUsernameAndGameId(username, game.getId()).snapshotCurrentState());
+   }
+
+   @Test
+   public void testCreateGame_Forwarded() {
+      ShardedGameStore a = addNode(NODE_A, NODES_AB);
+      addNode(NODE_B, NODES_AB);
+      String username = userAssignedTo(NODES_AB, NODE_B);
+
+      Game game = a.createGame(username);
+
+      assertEquals(0, a.getLocalCount());
+      assertEquals(1, a.getForwardedCount());
+      assertSameState(localStores.get(NODE_B).findByUsernameAndGameId(username, game.getId()).snapshotCurrentState(), game.snapshotCurrentState());
+      assertThrows(GameNotFoundException.class, () -> localStores.get(NODE_A).findByUsernameAndGameId(username, game.getId()));
+   }
+
+   /** Test that a game held by another node can be found and updated through any node. */
+   @Test
+   public void testUpdateGame_Forwarded() {
+      ShardedGameStore a = addNode(NODE_A, NODES_ABC);
+      ShardedGameStore b = addNode(NODE_B, NODES_ABC);
+      addNode(NODE_C, NODES_ABC);
+      String username = userAssignedTo(NODES_ABC, NODE_C);
+      Game game = createGameInProgress(b, username);
+      Game held = localStores.get(NODE_C).findByUsernameAndGameId(username, game.getId());
+
+      Game found = a.findByUsernameAndGameId(username, game.getId());
+      assertSameState(held.snapshotCurrentState(), found.snapshotCurrentState());
+
+      assertThrows(GameVersionMismatchException.class, () -> found.stand(Game.INITIAL_VERSION + 1));
+      GameState stood = found.stand(Game.INITIAL_VERSION);
+      assertTrue(stood.getStatus().isComplete());
+      assertSameState(held.snapshotCurrentState(), stood);
+      assertSameState(stood, found.snapshotCurrentState());
+      assertTrue(found.isComplete());
+      assertThrows(GameAlreadyCompleteException.class, () -> found.hit());
+   }
+
+   @Test
+   public void testFindGame_NotFound() {
+      ShardedGameStore a = addNode(NODE_A, NODES_AB);
+      addNode(NODE_B, NODES_AB);
+      String username = userAssignedTo(NODES_AB, NODE_B);
+      Game game = a.createGame(username);
+
+      assertThrows(GameNotFoundException.class, () -> a.findByUsernameAndGameId(username, "unknown"));
+      assertThrows(GameNotFoundException.class, () -> a.findByUsernameAndGameId("another user", game.getId()));
+   }
+
+   /** Test that the games of a user are listed by every node, in the order they were created, regardless of which node created them. */
+   @Test
+   public void testFindGameIdsByUsername_Forwarded() {
+      ShardedGameStore a = addNode(NODE_A, NODES_ABC);
+      ShardedGameStore b = addNode(NODE_B, NODES_ABC);
+      ShardedGameStore c = addNode(NODE_C, NODES_ABC);
+      String username = userAssignedTo(NODES_ABC, NODE_B);
+      List<String> gameIds = List.of(a.createGame(username).getId(), b.createGame(username).getId(), c.createGame(username).getId());
+
+      for (ShardedGameStore store : List.of(a, b, c)) {
+         GameIdPage first = store.findGameIdsByUsername(username, null, null, 2);
+         assertEquals(gameIds.subList(0, 2), first.getGameIds());
+         GameIdPage second = store.findGameIdsByUsername(username, null, first.getNextCursor(), 2);
+         assertEquals(gameIds.subList(2, 3), second.getGameIds());
+      }
+      assertThrows(InvalidCursorException.class, () -> a.findGameIdsByUsername(username, null, "invalid", 2));
+   }
+
+   /** Test that when a node is added the games of the users now assigned to it are moved to it - and can be found, and played, throughout. */
+   @Test
+   public void testSetNodes_AddNode() {
+      ShardedGameStore a = addNode(NODE_A, NODES_AB);
+      ShardedGameStore b = addNode(NODE_B, NODES_AB);
+      Map<String, List<GameState>> states = createGames(a, 100);
+
+      // a node is added by starting it with the current nodes, then setting the nodes on every node
+      ShardedGameStore c = addNode(NODE_C, NODES_AB);
+      for (ShardedGameStore store : List.of(a, b, c)) {
+         store.setNodes(NODES_ABC);
+      }
+
+      // found on the node the user was assigned to, as not moved yet
+      assertGamesFound(states, c);
+      assertTrue(c.getPreviousOwnerCount() > 0);
+
+      assertEquals(0, a.rebalance());
+      assertEquals(0, b.rebalance());
+      assertEquals(0, c.rebalance());
+
+      assertGamesHeldByOwner(states, NODES_ABC);
+      assertGamesFound(states, a);
+      long moved = a.getMovedOutCount() + b.getMovedOutCount();
+      assertTrue(moved > 0);
+      assertEquals(moved, c.getMovedInCount());
+      assertEquals(moved, localStores.get(NODE_C).getGameCount());
+      assertEquals(a.getMovedOutCount(), localStores.get(NODE_A).getMovedCount());
+      assertPlayable(states, b);
+   }
+
+   /** Test that when a node is removed its games are moved to the remaining nodes. */
+   @Test
+   public void testSetNodes_RemoveNode() {
+      ShardedGameStore a = addNode(NODE_A, NODES_ABC);
+      ShardedGameStore b = addNode(NODE_B, NODES_ABC);
+      ShardedGameStore c = addNode(NODE_C, NODES_ABC);
+      Map<String, List<GameState>> states = createGames(c, 100);
+      long held = localStores.get(NODE_B).getGameCount();
+      assertTrue(held > 0);
+
+      String remaining = NODE_A + "," + NODE_C;
+      for (ShardedGameStore store : List.of(a, b, c)) {
+         store.setNodes(remaining);
+      }
+      assertGamesFound(states, a);
+      assertEquals(0, b.rebalance());
+
+      assertEquals(0, localStores.get(NODE_B).getGameCount());
+      assertEquals(held, b.getMovedOutCount());
+      assertEquals(held, a.getMovedInCount() + c.getMovedInCount());
+      assertGamesHeldByOwner(states, remaining);
+      assertGamesFound(states, b);
+      assertPlayable(states, c);
+   }
+
+   /** Test that games which cannot be moved, as the node they are now assigned to cannot be reached, are kept until they can be. */
+   @Test
+   public void testRebalance_Unreachable() {
+      ShardedGameStore a = addNode(NODE_A, NODES_AB);
+      ShardedGameStore b = addNode(NODE_B, NODES_AB);
+      Map<String, List<GameState>> states = createGames(a, 20);
+      long held = localStores.get(NODE_A).getGameCount();
+
+      b.setNodes(NODE_B);
+      a.setNodes(NODE_B);
+      unreachable.add(NODE_B);
+      assertTrue(a.rebalance() > 0);
+      assertTrue(a.getMoveFailureCount() > 0);
+      assertEquals(held, localStores.get(NODE_A).getGameCount());
+      // not updatable until moved
+      assertNotUpdatable(states, localStores.get(NODE_A));
+
+      unreachable.clear();
+      assertEquals(0, a.rebalance());
+      assertEquals(0, localStores.get(NODE_A).getGameCount());
+      assertEquals(2, a.getRebalanceCount());
+      assertGamesHeldByOwner(states, NODE_B);
+   }
+
+   /** Test that the games of a user assigned back to this node, before they could be moved, can be updated again. */
+   @Test
+   public void testRebalance_AssignedBack() {
+      ShardedGameStore a = addNode(NODE_A, NODES_AB);
+      addNode(NODE_B, NODES_AB);
+      Map<String, List<GameState>> states = createGames(a, 20);
+      long held = localStores.get(NODE_A).getGameCount();
+
+      a.setNodes(NODE_B);
+      unreachable.add(NODE_B);
+      assertTrue(a.rebalance() > 0);
+      assertNotUpdatable(states, localStores.get(NODE_A));
+
+      a.setNodes(NODES_AB);
+      assertEquals(0, a.rebalance());
+      assertEquals(held, localStores.get(NODE_A).getGameCount());
+      states.forEach((username, games) -> {
+         for (GameState state : games) {
+            if (!state.getStatus().isComplete() && localStores.get(NODE_A).getUsernames().contains(username)) {
+               Game game = localStores.get(NODE_A).findByUsernameAndGameId(username, state.getId());
+               assertTrue(game.stand(state.getVersion()).getStatus().isComplete());
+            }
+         }
+      });
+   }
+
+   /** Test that an update made while a game is being moved is rejected, rather than made to the game after it has been copied and so lost. */
+   @Test
+   public void testRebalance_UpdatedWhileMoving() {
+      ShardedGameStore a = addNode(NODE_A, NODES_AB);
+      ShardedGameStore b = addNode(NODE_B, NODES_AB);
+      String username = userAssignedTo(NODES_AB, NODE_A);
+      Game game = createGameInProgress(a, username);
+      GameState created = game.snapshotCurrentState();
+
+      a.setNodes(NODE_B);
+      b.setNodes(NODE_B);
+      // an update by a request that found the game before it was moved - made once the game has been copied, but before it has been removed
+      beforeMove = () -> assertThrows(GameNotFoundException.class, () -> game.hit());
+      assertEquals(0, a.rebalance());
+
+      assertSameState(created, game.snapshotCurrentState());
+      Game moved = b.findByUsernameAndGameId(username, game.getId());
+      assertSameState(created, moved.snapshotCurrentState());
+      assertEquals(0, localStores.get(NODE_A).getGameCount());
+      assertTrue(moved.stand(created.getVersion()).getStatus().isComplete());
+   }
+
+   /** Test that a copy of a game moved at a higher version replaces a copy moved earlier, but not the other way around. */
+   @Test
+   public void testAddMovedGames_HigherVersion() {
+      ShardedGameStore a = addNode(NODE_A, NODE_A);
+      MemoryGameStore source = new MemoryGameStore(new GameIdGenerator(1), DECK_FACTORY);
+      Game game = createGameInProgress(source, "user");
+      byte[] earlier = ShardedGameStore.encode(List.of(game));
+      game.stand();
+      byte[] later = ShardedGameStore.encode(List.of(source.findByUsernameAndGameId("user", game.getId())));
+
+      a.addMovedGames("user", earlier);
+      a.addMovedGames("user", later);
+      a.addMovedGames("user", earlier);
+
+      assertEquals(1, localStores.get(NODE_A).getGameCount());
+      assertSameState(game.snapshotCurrentState(), a.findByUsernameAndGameId("user", game.getId()).snapshotCurrentState());
+      assertEquals(List.of(game.getId()), a.findGameIdsByUsername("user", null, null, 10).getGameIds());
+   }
+
+   /** Test that moving the same games again does not duplicate them. */
+   @Test
+   public void testAddMovedGames_AlreadyExists() {
+      ShardedGameStore a = addNode(NODE_A, NODE_A);
+      MemoryGameStore source = new MemoryGameStore(new GameIdGenerator(1), DECK_FACTORY);
+      Game game = source.createGame("user");
+      byte[] encoded = ShardedGameStore.encode(List.of(game));
+
+      a.addMovedGames("user", encoded);
+      a.addMovedGames("user", encoded);
+
+      assertEquals(1, localStores.get(NODE_A).getGameCount());
+      assertSameState(game.snapshotCurrentState(), a.findByUsernameAndGameId("user", game.getId()).snapshotCurrentState());
+   }
+
+   @Test
+   public void testAddMovedGames_Invalid() {
+      ShardedGameStore a = addNode(NODE_A, NODE_A);
+      assertThrows(IllegalArgumentException.class, () -> a.addMovedGames("user", new byte[] {9, 0, 1, 'x'}));
+      assertThrows(IllegalArgumentException.class, () -> a.addMovedGames("user", new byte[] {1, 0}));
+   }
+
+   @Test
+   public void testEncode_ShuffledDeck() {
+      assertEncode(new DeckFactory(new ThreadLocalRandomShuffleStrategy<>(), DeckFactory.Mode.SHUFFLED), true);
+   }
+
+   @Test
+   public void testEncode_SeededDeck() {
+      assertEncode(DECK_FACTORY, true);
+   }
+
+   @Test
+   public void testEncode_CompletedGamesNotFrozen() {
+      assertEncode(DECK_FACTORY, false);
+   }
+
+   /** Asserts that games in progress, and completed games, are in the same state once moved - and that games in progress deal the same cards. */
+   private void assertEncode(DeckFactory deckFactory, boolean freezeCompletedGames) {
+      MemoryGameStore source = new MemoryGameStore(new GameIdGenerator(1), deckFactory);
+      source.setFreezeCompletedGames(freezeCompletedGames);
+      List<Game> games = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+         Game game = source.createGame("user");
+         if (!game.isComplete() && i % 3 != 0) {
+            game.hit();
+         }
+         if (!game.isComplete() && i % 3 == 1) {
+            game.stand();
+         }
+         games.add(game);
+      }
+      ShardedGameStore target = addNode(NODE_A, NODE_A);
+
+      // encoded as held by the store, so completed games are encoded as frozen, if enabled
+      List<Game> held = games.stream().map(game -> source.findByUsernameAndGameId("user", game.getId())).toList();
+      assertEquals(freezeCompletedGames, held.stream().anyMatch(game -> game instanceof FrozenGame));
+
+      target.addMovedGames("user", ShardedGameStore.encode(held));
+
+      for (Game game : games) {
+         Game moved = target.findByUsernameAndGameId("user", game.getId());
+         assertSameState(game.snapshotCurrentState(), moved.snapshotCurrentState());
+         // completed games are frozen by the target, even if they were not by the source
+         assertEquals(game.isComplete(), moved instanceof FrozenGame);
+         if (!game.isComplete()) {
+            assertSameState(game.hit(), moved.hit());
+         }
+      }
+   }
+
+   /** Creates games, some in progress and some completed, for users assigned to every node - returning the state of the games of each user. */
+   private Map<String, List<GameState>> createGames(ShardedGameStore store, int numberOfUsers) {
+      Map<String, List<GameState>> states = new LinkedHashMap<>();
+      for (int i = 0; i < numberOfUsers; i++) {
+         String username = "user" + i;
+         List<GameState> games = new ArrayList<>();
+         for (int j = 0; j < 3; j++) {
+            Game game = store.createGame(username);
+            GameState state = game.snapshotCurrentState();
+            if (j == 1 && !state.getStatus().isComplete()) {
+               state = game.stand();
+            }
+            games.add(state);
+         }
+         states.put(username, games);
+      }
+      return states;
+   }
+
+   private void assertGamesFound(Map<String, List<GameState>> states, ShardedGameStore store) {
+      states.forEach((username, games) -> {
+         for (GameState expected : games) {
+            assertSameState(expected, store.findByUsernameAndGameId(username, expected.getId()).snapshotCurrentState());
+         }
+      });
+   }
+
+   /** Asserts that the games of each user are only held by the node the user is assigned to, and are listed in the order they were created. */
+   private void assertGamesHeldByOwner(Map<String, List<GameState>> states, String nodes) {
+      ConsistentHashRing ring = new ConsistentHashRing(List.of(nodes.split(",")));
+      states.forEach((username, games) -> {
+         String owner = ring.ownerOf(username);
+         for (Map.Entry<String, MemoryGameStore> local : localStores.entrySet()) {
+            for (GameState expected : games) {
+               if (local.getKey().equals(owner)) {
+                  assertSameState(expected, local.getValue().findByUsernameAndGameId(username, expected.getId()).snapshotCurrentState());
+               } else {
+                  assertThrows(GameNotFoundException.class, () -> local.getValue().findByUsernameAndGameId(username, expected.getId()));
+               }
+            }
+         }
+         List<String> gameIds = games.stream().map(GameState::getId).toList();
+         assertEquals(gameIds, localStores.get(owner).findGameIdsByUsername(username, null, null, 10).getGameIds());
+      });
+   }
+
+   /** Asserts that the games in progress held by {@code store} cannot be updated, as they are being moved. */
+   private void assertNotUpdatable(Map<String, List<GameState>> states, MemoryGameStore store) {
+      states.forEach((username, games) -> {
+         for (GameState state : games) {
+            if (!state.getStatus().isComplete() && store.getUsernames().contains(username)) {
+               Game game = store.findByUsernameAndGameId(username, state.getId());
+               assertThrows(GameNotFoundException.class, () -> game.stand(state.getVersion()));
+            }
+         }
+      });
+   }
+
+   /** Asserts that the games in progress can still be played to completion. */
+   private void assertPlayable(Map<String, List<GameState>> states, ShardedGameStore store) {
+      states.forEach((username, games) -> {
+         for (GameState state : games) {
+            if (!state.getStatus().isComplete()) {
+               Game game = store.findByUsernameAndGameId(username, state.getId());
+               assertTrue(game.stand(state.getVersion()).getStatus().isComplete());
+            }
+         }
+      });
+   }
+
+   private Game createGameInProgress(GameStore store, String username) {
+      Game game;
+      do {
+         game = store.createGame(username);
+      } while (game.isComplete());
+      return game;
+   }
+
+   private static String userAssignedTo(String nodes, String node) {
+      ConsistentHashRing ring = new ConsistentHashRing(List.of(nodes.split(",")));
+      for (int i = 0;; i++) {
+         if (ring.ownerOf("user" + i).equals(node)) {
+            return "user" + i;
+         }
+      }
+   }
+
+   private static void assertSameState(GameState expected, GameState actual) {
+      assertEquals(expected.getId(), actual.getId());
+      assertEquals(expected.getVersion(), actual.getVersion());
+      assertEquals(expected.getStatus(), actual.getStatus());
+      assertEquals(toString(expected.getDealer().getCards()), toString(actual.getDealer().getCards()));
+      assertEquals(toString(expected.getPlayer().getCards()), toString(actual.getPlayer().getCards()));
+      assertEquals(expected.getPlayer().getValue(), actual.getPlayer().getValue());
+   }
+
+   private static List<String> toString(List<Card> cards) {
+      return cards.stream().map(Card::toString).toList();
+   }
+
+   /** Forwards each request to the {@code ShardedGameStore} of the given node, as {@code ClusterController} would. */
+   private final class InProcessClusterClient implements ClusterClient {
+      @Override
+      public GameState createGame(String node, String username) {
+         return store(node).createLocalGame(username).snapshotCurrentState();
+      }
+
+      @Override
+      public GameState findGame(String node, String username, String gameId) {
+         return store(node).findLocalGame(username, gameId).snapshotCurrentState();
+      }
+
+      @Override
+      public GameState updateGame(String node, String username, String gameId, Action action, int expectedVersion) {
+         Game game = store(node).findLocalGame(username, gameId);
+         return expectedVersion < 0 ? action.update(game) : action.update(game, expectedVersion);
+      }
+
+      @Override
+      public GameIdPage findGameIds(String node, String username, Status status, String cursor, int limit) {
+         return store(node).findLocalGameIds(username, status, cursor, limit);
+      }
+
+      @Override
+      public void moveGames(String node, String username, byte[] games) {
+         store(node).addMovedGames(username, games);
+         beforeMove.run();
+      }
+
+      private ShardedGameStore store(String node) {
+         if (unreachable.contains(node)) {
+            throw new IllegalStateException("could not reach " + node);
+         }
+         return stores.get(node);
+      }
+   }
+}
@@ -2,20 +2,31 @@ package com.example.blackjack.model;
 
 import static java.util.Collections.unmodifiableList;
 import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
+import java.util.random.RandomGenerator;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
 
 public class ShuffleStrategyTest {
-   @Test
-   public void test() {
-      ShuffleStrategy<Integer> s = new ShuffleStrategy<Integer>();
+   private static Stream<ShuffleStrategy<Integer>> strategies() {
+      return Stream.of(new ThreadLocalRandomShuffleStrategy<>(), new SplittableRandomShuffleStrategy<>(), new SecureRandomShuffleStrategy<>());
+   }
 
+   @ParameterizedTest
+   @MethodSource("strategies")
+   public void test(ShuffleStrategy<Integer> s) {
       List<Integer> input = unmodifiableList(IntStream.range(0, 100).mapToObj(Integer::valueOf).collect(toList()));
       List<Integer> output1 = s.shuffle(input);
       List<Integer> output2 = s.shuffle(input);
@@ -27,6 +38,28 @@ public class ShuffleStrategyTest {
       assertContainSameElements(input, output2);
    }
 
+   @ParameterizedTest
+   @MethodSource("strategies")
+   public void testRandom(ShuffleStrategy<Integer> s) {
+      RandomGenerator random = s.random();
+      assertNotNull(random);
+      assertSame(random, s.random());
+   }
+
+   @Test
+   public void testSelectedByProperty() {
+      ApplicationContextRunner runner = new ApplicationContextRunner().withUserConfiguration(ThreadLocalRandomShuffleStrategy.class,
+                  SplittableRandomShuffleStrategy.class, SecureRandomShuffleStrategy.class);
+
+      runner.run(c -> assertThat(c).hasSingleBean(ShuffleStrategy.class).hasSingleBean(ThreadLocalRandomShuffleStrategy.class));
+      runner.withPropertyValues("blackjack.shuffle-strategy=thread-local-random")
+                  .run(c -> assertThat(c).hasSingleBean(ShuffleStrategy.class).hasSingleBean(ThreadLocalRandomShuffleStrategy.class));
+      runner.withPropertyValues("blackjack.shuffle-strategy=splittable-random")
+                  .run(c -> assertThat(c).hasSingleBean(ShuffleStrategy.class).hasSingleBean(SplittableRandomShuffleStrategy.class));
+      runner.withPropertyValues("blackjack.shuffle-strategy=secure-random")
+                  .run(c -> assertThat(c).hasSingleBean(ShuffleStrategy.class).hasSingleBean(SecureRandomShuffleStrategy.class));
+   }
+
    private void assertContainSameElements(List<?> list1, List<?> list2) {
       assertEquals(list1.size(), list2.size());
       list1.stream().forEach(i -> assertTrue(list2.contains(i)));
@@ -0,0 +1,77 @@
+package com.example.blackjack.model;
+
+import static com.example.blackjack.CardReader.toCards;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.blackjack.view.Card;
+import com.example.blackjack.view.Rank;
+import com.example.blackjack.view.Suit;
+
+public class ShuffledDeckTest {
+   @Test
+   public void test() {
+      // create input
+      Card c1 = new Card(Rank.TWO, Suit.HEARTS);
+      Card c2 = new Card(Rank.KING, Suit.DIAMONDS);
+      Card c3 = new Card(Rank.EIGHT, Suit.SPADES);
+      List<Card> cards = asList(c1, c2, c3);
+
+      // create object to test
+      Deck d = new ShuffledDeck(cards);
+
+      // mutate List used to create Deck -
+      // this will test that Deck is not affected by subsequent changes to the List passed as an argument to its constructor
+      cards.set(0, null);
+      cards.set(1, null);
+      cards.set(2, null);
+
+      // test deal() returns the cards
+      assertCard(c1, d.deal());
+      assertCard(c2, d.deal());
+      assertCard(c3, d.deal());
+
+      // check there are not more than the expected number of cards in the deck
+      try {
+         d.deal();
+         fail();
+      } catch (IllegalStateException e) {
+         assertEquals("deck is empty", e.getMessage());
+      }
+   }
+
+   /** Test that decks deal the shared {@code Card} instances rather than the instances used to create them. */
+   @Test
+   public void testDealsSharedCards() {
+      Deck d1 = new ShuffledDeck(asList(new Card(Rank.ACE, Suit.CLUBS)));
+      Deck d2 = new ShuffledDeck(asList(new Card(Rank.ACE, Suit.CLUBS)));
+      assertSame(d1.deal(), d2.deal());
+   }
+
+   /** Test that a deck created from the cards of another deck deals the same cards, in the same order - regardless of how many have been dealt. */
+   @Test
+   public void testCards() {
+      ShuffledDeck original = new ShuffledDeck(toCards("2H KD 8S"));
+      Card first = original.deal();
+      byte[] cards = original.getCards();
+      Deck copy = new ShuffledDeck(cards);
+      // modifying the array used to create the copy does not affect it
+      cards[0] = 0;
+
+      assertEquals(3, original.size());
+      assertSame(first, copy.deal());
+      assertSame(original.deal(), copy.deal());
+      assertSame(original.deal(), copy.deal());
+   }
+
+   private void assertCard(Card expected, Card actual) {
+      assertSame(expected.getRank(), actual.getRank());
+      assertSame(expected.getSuit(), actual.getSuit());
+   }
+}
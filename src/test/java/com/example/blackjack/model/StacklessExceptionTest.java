@@ -0,0 +1,36 @@
+package com.example.blackjack.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class StacklessExceptionTest {
+   @Test
+   public void testGameNotFoundException() {
+      assertStackless("could not find game id g for the user: u", new GameNotFoundException("u", "g"));
+   }
+
+   @Test
+   public void testGameAlreadyCompleteException() {
+      assertStackless("cannot update already completed game with id g", new GameAlreadyCompleteException("g"));
+   }
+
+   @Test
+   public void testGameVersionMismatchException() {
+      assertStackless("cannot update game with id g as expected version 3 but was 4", new GameVersionMismatchException("g", 3, 4));
+   }
+
+   @Test
+   public void testInvalidCursorException() {
+      assertStackless("invalid cursor: x", new InvalidCursorException("x"));
+   }
+
+   private static void assertStackless(String expectedMessage, StacklessException e) {
+      assertEquals(expectedMessage, e.getMessage());
+      assertNull(e.getCause());
+      assertEquals(0, e.getStackTrace().length);
+      e.addSuppressed(new RuntimeException());
+      assertEquals(0, e.getSuppressed().length);
+   }
+}
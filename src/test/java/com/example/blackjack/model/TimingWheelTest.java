@@ -0,0 +1,148 @@
+package com.example.blackjack.model;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TimingWheelTest {
+   @Test
+   public void testInvalidTick() {
+      assertThrows(IllegalArgumentException.class, () -> new TimingWheel<TestTimer>(0, 0));
+      assertThrows(IllegalArgumentException.class, () -> new TimingWheel<TestTimer>(-1, 0));
+   }
+
+   @Test
+   public void testExpiry() {
+      TimingWheel<TestTimer> wheel = new TimingWheel<>(10, 1000);
+      List<TestTimer> expired = new ArrayList<>();
+      TestTimer a = new TestTimer("a");
+      TestTimer b = new TestTimer("b");
+      TestTimer c = new TestTimer("c");
+      wheel.schedule(a, 1025);
+      wheel.schedule(b, 1030);
+      wheel.schedule(c, 1100);
+      assertEquals(3, wheel.size());
+
+      // a timer is rounded up to the next tick, so is never early
+      wheel.advance(1029, expired::add);
+      assertTrue(expired.isEmpty());
+
+      wheel.advance(1030, expired::add);
+      assertEquals(asList(b, a), expired);
+      assertEquals(1, wheel.size());
+
+      wheel.advance(1099, expired::add);
+      assertEquals(2, expired.size());
+
+      wheel.advance(1100, expired::add);
+      assertEquals(asList(b, a, c), expired);
+      assertEquals(0, wheel.size());
+   }
+
+   @Test
+   public void testDeadlineInPast() {
+      TimingWheel<TestTimer> wheel = new TimingWheel<>(10, 1000);
+      List<TestTimer> expired = new ArrayList<>();
+      TestTimer a = new TestTimer("a");
+      wheel.schedule(a, 500);
+
+      // expires on the next tick
+      wheel.advance(1009, expired::add);
+      assertTrue(expired.isEmpty());
+      wheel.advance(1010, expired::add);
+      assertEquals(asList(a), expired);
+   }
+
+   @Test
+   public void testReschedule() {
+      TimingWheel<TestTimer> wheel = new TimingWheel<>(1, 0);
+      List<Long> expiryTimes = new ArrayList<>();
+      TestTimer a = new TestTimer("a");
+      wheel.schedule(a, 5);
+
+      for (long now = 1; now <= 100; now++) {
+         long t = now;
+         wheel.advance(now, timer -> {
+            expiryTimes.add(t);
+            if (expiryTimes.size() < 3) {
+               // timers can be rescheduled when they expire
+               wheel.schedule(timer, t + 40);
+            }
+         });
+      }
+
+      assertEquals(asList(5L, 45L, 85L), expiryTimes);
+      assertEquals(0, wheel.size());
+   }
+
+   /** Schedule timers across every level of the wheel, and beyond its range, and check each expires on the first tick at or after its deadline. */
+   @Test
+   public void testHierarchy() {
+      long tick = 3;
+      long start = 123456789;
+      TimingWheel<TestTimer> wheel = new TimingWheel<>(tick, start);
+      Random random = new Random(42);
+      List<TestTimer> timers = new ArrayList<>();
+      long[] delays = { 0, 1, 63, 64, 65, 4095, 4096, 4097, 262143, 262144, 16777215, 16777216, 20000000, 50000000 };
+      for (long delay : delays) {
+         timers.add(new TestTimer(delay * tick));
+         timers.add(new TestTimer(delay * tick + 1));
+         timers.add(new TestTimer(delay * tick + random.nextInt(1000)));
+      }
+      for (int i = 0; i < 1000; i++) {
+         timers.add(new TestTimer((long) random.nextInt(60000000)));
+      }
+      for (TestTimer t : timers) {
+         wheel.schedule(t, start + t.delay);
+      }
+      assertEquals(timers.size(), wheel.size());
+
+      // advance by a varying number of ticks at a time
+      long now = start;
+      long end = start + 60000000L * tick;
+      while (now < end) {
+         long n = now += 1 + random.nextInt(5000);
+         wheel.advance(now, t -> {
+            long deadline = start + t.delay;
+            assertTrue(deadline <= n, () -> t.delay + " expired early at " + n);
+            t.expiredAt = n;
+         });
+      }
+
+      assertEquals(0, wheel.size());
+      for (TestTimer t : timers) {
+         long deadline = Math.max(start + t.delay, start + tick);
+         // will have expired when wheel was advanced to the first time at or after the tick containing the deadline
+         long deadlineTickEnd = ((deadline + tick - 1) / tick) * tick;
+         assertTrue(t.expiredAt >= deadlineTickEnd && t.expiredAt < deadlineTickEnd + 5001, () -> t.delay + " expired at " + t.expiredAt);
+      }
+   }
+
+   private static final class TestTimer extends TimingWheel.Timer {
+      private final String name;
+      private final long delay;
+      private long expiredAt;
+
+      TestTimer(String name) {
+         this.name = name;
+         this.delay = 0;
+      }
+
+      TestTimer(long delay) {
+         this.name = Long.toString(delay);
+         this.delay = delay;
+      }
+
+      @Override
+      public String toString() {
+         return name;
+      }
+   }
+}
@@ -0,0 +1,264 @@
+package com.example.blackjack.model;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class UserGameIndexTest {
+   @Test
+   public void testUsername() {
+      assertEquals("dummy user name", new UserGameIndex<TestMember>("dummy user name").getUsername());
+   }
+
+   @Test
+   public void testEmpty() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      assertEquals(0, index.size());
+      assertTrue(index.snapshot().isEmpty());
+   }
+
+   @Test
+   public void testAddAndRemove() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      List<TestMember> games = createMembers(8);
+      for (TestMember game : games) {
+         assertTrue(index.add(game));
+      }
+      assertEquals(8, index.size());
+      assertEquals(games, index.snapshot());
+
+      // removing retains the order the remaining games were added
+      index.remove(games.get(3));
+      index.remove(games.get(0));
+      index.remove(games.get(7));
+      assertEquals(5, index.size());
+      assertEquals(asList(games.get(1), games.get(2), games.get(4), games.get(5), games.get(6)), index.snapshot());
+   }
+
+   @Test
+   public void testRemoveNotInIndex() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      UserGameIndex<TestMember> other = new UserGameIndex<>("other");
+      TestMember game = new TestMember("game");
+      TestMember otherGame = new TestMember("other game");
+      index.add(game);
+      // same sequence number as game, but in a different index
+      other.add(otherGame);
+
+      index.remove(otherGame);
+      assertEquals(asList(game), index.snapshot());
+
+      index.remove(game);
+      index.remove(game);
+      assertEquals(0, index.size());
+   }
+
+   @Test
+   public void testAddAndRemoveRandomised() {
+      Random random = new Random(42);
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      List<TestMember> expected = new ArrayList<>();
+      for (int i = 0; i < 10000; i++) {
+         // remove more often than add while large, so the index repeatedly grows and shrinks
+         if (!expected.isEmpty() && random.nextInt(expected.size() > 500 ? 3 : 5) == 0) {
+            for (int j = random.nextInt(expected.size()); j > 0 && !expected.isEmpty(); j -= random.nextInt(10) + 1) {
+               index.remove(expected.remove(random.nextInt(expected.size())));
+            }
+         } else {
+            TestMember game = new TestMember("game" + i);
+            assertTrue(index.add(game));
+            expected.add(game);
+         }
+         assertEquals(expected.size(), index.size());
+      }
+      assertEquals(expected, index.snapshot());
+   }
+
+   @Test
+   public void testSnapshotIsCopy() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      TestMember game1 = new TestMember("game1");
+      index.add(game1);
+      List<TestMember> snapshot = index.snapshot();
+      index.add(new TestMember("game2"));
+      index.remove(game1);
+      assertEquals(asList(game1), snapshot);
+   }
+
+   @Test
+   public void testCompletedCount() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      assertEquals(0, index.getCompletedCount());
+      index.addCompletedCount(1);
+      index.addCompletedCount(1);
+      index.addCompletedCount(-1);
+      assertEquals(1, index.getCompletedCount());
+      // not affected by adding games
+      index.add(new TestMember("game"));
+      assertEquals(1, index.getCompletedCount());
+   }
+
+   @Test
+   public void testMarkRemovedIfEmpty() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      TestMember game1 = new TestMember("game1");
+      TestMember game2 = new TestMember("game2");
+      index.add(game1);
+      assertFalse(index.markRemovedIfEmpty());
+      assertTrue(index.add(game2));
+
+      index.remove(game1);
+      index.remove(game2);
+      assertTrue(index.markRemovedIfEmpty());
+
+      // once removed nothing more can be added
+      assertFalse(index.add(new TestMember("game3")));
+      assertEquals(0, index.size());
+      assertTrue(index.markRemovedIfEmpty());
+   }
+
+   @Test
+   public void testFirstSequence() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user", 5);
+      TestMember game = new TestMember("game");
+      index.add(game);
+      assertEquals(5, game.getSequence());
+   }
+
+   /** Test that a reserved sequence number is skipped, so is ordered between the games added before and after it. */
+   @Test
+   public void testReserveSequence() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      TestMember game1 = new TestMember("game1");
+      TestMember game2 = new TestMember("game2");
+      index.add(game1);
+      assertEquals(1, index.reserveSequence());
+      index.add(game2);
+      assertEquals(0, game1.getSequence());
+      assertEquals(2, game2.getSequence());
+      assertEquals(2, index.size());
+
+      // once removed no more sequence numbers can be reserved
+      index.remove(game1);
+      index.remove(game2);
+      assertTrue(index.markRemovedIfEmpty());
+      assertEquals(UserGameIndex.START, index.reserveSequence());
+   }
+
+   @Test
+   public void testList() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      List<TestMember> games = createMembers(7);
+      games.forEach(index::add);
+
+      List<TestMember> results = new ArrayList<>();
+      int next = index.list(UserGameIndex.START, 3, 3, g -> true, results);
+      assertEquals(games.subList(0, 3), results);
+
+      results.clear();
+      next = index.list(next, 3, 3, g -> true, results);
+      assertEquals(games.subList(3, 6), results);
+
+      results.clear();
+      next = index.list(next, 3, 3, g -> true, results);
+      assertEquals(games.subList(6, 7), results);
+      assertEquals(UserGameIndex.START, next);
+   }
+
+   @Test
+   public void testList_Empty() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      List<TestMember> results = new ArrayList<>();
+      assertEquals(UserGameIndex.START, index.list(UserGameIndex.START, 3, 3, g -> true, results));
+      assertTrue(results.isEmpty());
+   }
+
+   /** Test that the number of positions examined is limited, whether or not the games at those positions are added to the results. */
+   @Test
+   public void testList_MaxExamined() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      List<TestMember> games = createMembers(10);
+      games.forEach(index::add);
+      index.remove(games.get(1));
+
+      List<TestMember> results = new ArrayList<>();
+      int next = index.list(UserGameIndex.START, 10, 4, g -> g != games.get(2), results);
+      assertEquals(asList(games.get(0), games.get(3)), results);
+
+      results.clear();
+      next = index.list(next, 10, 4, g -> false, results);
+      assertTrue(results.isEmpty());
+
+      results.clear();
+      next = index.list(next, 10, 4, g -> true, results);
+      assertEquals(games.subList(8, 10), results);
+      assertEquals(UserGameIndex.START, next);
+   }
+
+   /** Test listing continues from the right position after games, including the last game listed, are removed and the index compacted. */
+   @Test
+   public void testList_RemovedBetweenCalls() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      List<TestMember> games = createMembers(16);
+      games.forEach(index::add);
+
+      List<TestMember> results = new ArrayList<>();
+      int next = index.list(UserGameIndex.START, 4, 4, g -> true, results);
+      assertEquals(games.subList(0, 4), results);
+
+      // remove enough games to cause the index to be compacted
+      for (int i = 0; i < 12; i++) {
+         index.remove(games.get(i));
+      }
+      TestMember added = new TestMember("added");
+      index.add(added);
+
+      results.clear();
+      next = index.list(next, 10, 10, g -> true, results);
+      List<TestMember> expected = new ArrayList<>(games.subList(12, 16));
+      expected.add(added);
+      assertEquals(expected, results);
+      assertEquals(UserGameIndex.START, next);
+   }
+
+   /** Test that there is no next position if only removed games remain after the last game listed. */
+   @Test
+   public void testList_RemovedAtEnd() {
+      UserGameIndex<TestMember> index = new UserGameIndex<>("user");
+      List<TestMember> games = createMembers(4);
+      games.forEach(index::add);
+      index.remove(games.get(3));
+
+      List<TestMember> results = new ArrayList<>();
+      assertEquals(UserGameIndex.START, index.list(UserGameIndex.START, 3, 3, g -> true, results));
+      assertEquals(games.subList(0, 3), results);
+   }
+
+   private static List<TestMember> createMembers(int count) {
+      List<TestMember> members = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+         members.add(new TestMember("game" + i));
+      }
+      return members;
+   }
+
+   private static final class TestMember extends UserGameIndex.Member {
+      private final String name;
+
+      TestMember(String name) {
+         this.name = name;
+      }
+
+      @Override
+      public String toString() {
+         return name;
+      }
+   }
+}
@@ -0,0 +1,201 @@
+package com.example.blackjack.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+public class CachingPasswordEncoderTest {
+   private static final String RAW_PASSWORD = "password";
+   private static final String ENCODED_PASSWORD = "encoded password";
+   private static final Duration TTL = Duration.ofMinutes(5);
+
+   private PasswordEncoder mockDelegate;
+   private AtomicLong clock;
+
+   @BeforeEach
+   public void setUp() {
+      mockDelegate = mock(PasswordEncoder.class);
+      when(mockDelegate.matches(RAW_PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
+      clock = new AtomicLong();
+   }
+
+   @Test
+   public void testMatchesRemembered() {
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, 10, clock::get);
+      for (int i = 0; i < 5; i++) {
+         assertTrue(testObject.matches(RAW_PASSWORD, ENCODED_PASSWORD));
+      }
+      verify(mockDelegate, times(1)).matches(RAW_PASSWORD, ENCODED_PASSWORD);
+      assertEquals(4, testObject.getHitCount());
+      assertEquals(1, testObject.getMissCount());
+      assertEquals(1, testObject.getSize());
+   }
+
+   /** Test that a wrong password is always checked by the delegate, and is never remembered. */
+   @Test
+   public void testMismatchNotRemembered() {
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, 10, clock::get);
+      for (int i = 0; i < 3; i++) {
+         assertFalse(testObject.matches("wrong password", ENCODED_PASSWORD));
+      }
+      verify(mockDelegate, times(3)).matches("wrong password", ENCODED_PASSWORD);
+      assertEquals(0, testObject.getSize());
+   }
+
+   /** Test that a remembered verification does not match a different encoded password - e.g. once the password of the account has been changed. */
+   @Test
+   public void testEncodedPasswordChanged() {
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, 10, clock::get);
+      assertTrue(testObject.matches(RAW_PASSWORD, ENCODED_PASSWORD));
+      assertFalse(testObject.matches(RAW_PASSWORD, "new encoded password"));
+      verify(mockDelegate).matches(RAW_PASSWORD, "new encoded password");
+   }
+
+   @Test
+   public void testTtl() {
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, 10, clock::get);
+      assertTrue(testObject.matches(RAW_PASSWORD, ENCODED_PASSWORD));
+
+      clock.set(TTL.toMillis() - 1);
+      assertTrue(testObject.matches(RAW_PASSWORD, ENCODED_PASSWORD));
+      verify(mockDelegate, times(1)).matches(RAW_PASSWORD, ENCODED_PASSWORD);
+
+      clock.set(TTL.toMillis());
+      assertTrue(testObject.matches(RAW_PASSWORD, ENCODED_PASSWORD));
+      verify(mockDelegate, times(2)).matches(RAW_PASSWORD, ENCODED_PASSWORD);
+   }
+
+   @Test
+   public void testMaxSize() {
+      when(mockDelegate.matches(RAW_PASSWORD + 1, ENCODED_PASSWORD)).thenReturn(true);
+      when(mockDelegate.matches(RAW_PASSWORD + 2, ENCODED_PASSWORD)).thenReturn(true);
+      when(mockDelegate.matches(RAW_PASSWORD + 3, ENCODED_PASSWORD)).thenReturn(true);
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, 2, clock::get);
+      assertTrue(testObject.matches(RAW_PASSWORD + 1, ENCODED_PASSWORD));
+      assertTrue(testObject.matches(RAW_PASSWORD + 2, ENCODED_PASSWORD));
+      assertTrue(testObject.matches(RAW_PASSWORD + 3, ENCODED_PASSWORD));
+      assertEquals(2, testObject.getSize());
+      assertEquals(2, testObject.getMaxSize());
+   }
+
+   /** Test that, once the cache is full, an expired verification is forgotten before one that has not expired. */
+   @Test
+   public void testMaxSize_ExpiredRemovedFirst() {
+      when(mockDelegate.matches(RAW_PASSWORD + 1, ENCODED_PASSWORD)).thenReturn(true);
+      when(mockDelegate.matches(RAW_PASSWORD + 2, ENCODED_PASSWORD)).thenReturn(true);
+      when(mockDelegate.matches(RAW_PASSWORD + 3, ENCODED_PASSWORD)).thenReturn(true);
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, 2, clock::get);
+      assertTrue(testObject.matches(RAW_PASSWORD + 1, ENCODED_PASSWORD));
+      clock.set(TTL.toMillis() / 2);
+      assertTrue(testObject.matches(RAW_PASSWORD + 2, ENCODED_PASSWORD));
+
+      clock.set(TTL.toMillis());
+      assertTrue(testObject.matches(RAW_PASSWORD + 3, ENCODED_PASSWORD));
+      assertEquals(2, testObject.getSize());
+      assertTrue(testObject.matches(RAW_PASSWORD + 2, ENCODED_PASSWORD));
+      assertTrue(testObject.matches(RAW_PASSWORD + 3, ENCODED_PASSWORD));
+      verify(mockDelegate, times(1)).matches(RAW_PASSWORD + 2, ENCODED_PASSWORD);
+      verify(mockDelegate, times(1)).matches(RAW_PASSWORD + 3, ENCODED_PASSWORD);
+   }
+
+   /** Test that concurrent verifications of different passwords cannot take the cache past its maximum size. */
+   @Test
+   public void testMaxSize_Concurrent() throws InterruptedException {
+      when(mockDelegate.matches(anyString(), eq(ENCODED_PASSWORD))).thenReturn(true);
+      int maxSize = 16;
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, maxSize, clock::get);
+      AtomicInteger largest = new AtomicInteger();
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+         int thread = t;
+         threads.add(new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+               testObject.matches(RAW_PASSWORD + thread + ":" + i, ENCODED_PASSWORD);
+               largest.accumulateAndGet(testObject.getSize(), Math::max);
+            }
+         }));
+      }
+      threads.forEach(Thread::start);
+      for (Thread thread : threads) {
+         thread.join();
+      }
+      assertTrue(largest.get() <= maxSize, "largest " + largest.get());
+      assertEquals(maxSize, testObject.getSize());
+   }
+
+   @Test
+   public void testInvalidateAll() {
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, 10, clock::get);
+      assertTrue(testObject.matches(RAW_PASSWORD, ENCODED_PASSWORD));
+      testObject.invalidateAll();
+      assertEquals(0, testObject.getSize());
+      assertTrue(testObject.matches(RAW_PASSWORD, ENCODED_PASSWORD));
+      verify(mockDelegate, times(2)).matches(RAW_PASSWORD, ENCODED_PASSWORD);
+   }
+
+   /** Test that a TTL of zero disables the cache. */
+   @Test
+   public void testDisabled() {
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, Duration.ZERO, 10, clock::get);
+      assertTrue(testObject.matches(RAW_PASSWORD, ENCODED_PASSWORD));
+      assertTrue(testObject.matches(RAW_PASSWORD, ENCODED_PASSWORD));
+      verify(mockDelegate, times(2)).matches(RAW_PASSWORD, ENCODED_PASSWORD);
+      assertEquals(0, testObject.getSize());
+      assertEquals(0, testObject.getHitCount());
+   }
+
+   @Test
+   public void testNullPassword() {
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, 10, clock::get);
+      assertFalse(testObject.matches(null, ENCODED_PASSWORD));
+      verify(mockDelegate).matches(null, ENCODED_PASSWORD);
+   }
+
+   @Test
+   public void testEncodeAndUpgradeEncodingDelegated() {
+      when(mockDelegate.encode(RAW_PASSWORD)).thenReturn(ENCODED_PASSWORD);
+      when(mockDelegate.upgradeEncoding(ENCODED_PASSWORD)).thenReturn(true);
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(mockDelegate, TTL, 10, clock::get);
+      assertSame(ENCODED_PASSWORD, testObject.encode(RAW_PASSWORD));
+      assertTrue(testObject.upgradeEncoding(ENCODED_PASSWORD));
+   }
+
+   @Test
+   public void testBCrypt() {
+      BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder();
+      String encoded = bcrypt.encode(RAW_PASSWORD);
+      CachingPasswordEncoder testObject = new CachingPasswordEncoder(bcrypt, TTL, 10);
+      assertTrue(testObject.matches(RAW_PASSWORD, encoded));
+      assertTrue(testObject.matches(RAW_PASSWORD, encoded));
+      assertFalse(testObject.matches("wrong password", encoded));
+      assertFalse(testObject.matches(RAW_PASSWORD, bcrypt.encode("other password")));
+      assertEquals(1, testObject.getHitCount());
+   }
+
+   @Test
+   public void testInvalidArguments() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new CachingPasswordEncoder(mockDelegate, Duration.ofSeconds(-1), 10));
+      assertEquals("ttl must not be negative but was PT-1S", e.getMessage());
+      e = assertThrows(IllegalArgumentException.class, () -> new CachingPasswordEncoder(mockDelegate, TTL, 0));
+      assertEquals("max size must be positive but was 0", e.getMessage());
+   }
+}
@@ -0,0 +1,118 @@
+package com.example.blackjack.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TokenServiceTest {
+   private static final Duration TTL = Duration.ofMinutes(15);
+   private static final String USERNAME = "username";
+
+   private byte[] key;
+   private AtomicLong clock;
+   private TokenService testObject;
+
+   @BeforeEach
+   public void setUp() {
+      key = new byte[32];
+      Arrays.fill(key, (byte) 7);
+      clock = new AtomicLong(1_717_171_717_171L);
+      testObject = new TokenService(key, TTL, clock::get);
+   }
+
+   @Test
+   public void testIssueAndVerify() {
+      String token = testObject.issue(USERNAME);
+      assertEquals(USERNAME, testObject.verify(token));
+      assertEquals(TTL, testObject.getTtl());
+   }
+
+   @Test
+   public void testNonAsciiUsername() {
+      String username = "j\u00f6rg.\u7528\u6237";
+      assertEquals(username, testObject.verify(testObject.issue(username)));
+   }
+
+   @Test
+   public void testDifferentUsersHaveDifferentTokens() {
+      assertNotEquals(testObject.issue("a"), testObject.issue("b"));
+   }
+
+   @Test
+   public void testExpiry() {
+      String token = testObject.issue(USERNAME);
+      clock.addAndGet(TTL.toMillis() - 1);
+      assertEquals(USERNAME, testObject.verify(token));
+      clock.incrementAndGet();
+      assertNull(testObject.verify(token));
+   }
+
+   /** Test that a token signed with a different key is rejected. */
+   @Test
+   public void testDifferentKey() {
+      byte[] otherKey = key.clone();
+      otherKey[0]++;
+      String token = new TokenService(otherKey, TTL, clock::get).issue(USERNAME);
+      assertNull(testObject.verify(token));
+   }
+
+   /** Test that changing the username or expiry of a token invalidates its signature. */
+   @Test
+   public void testTampered() {
+      String token = testObject.issue(USERNAME);
+      String signature = token.substring(token.indexOf('.'));
+      Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+      byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.')));
+      payload[payload.length - 1] = 'X';
+      assertNull(testObject.verify(encoder.encodeToString(payload) + signature));
+
+      payload = Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.')));
+      payload[0]++;
+      assertNull(testObject.verify(encoder.encodeToString(payload) + signature));
+
+      assertNull(testObject.verify(token.substring(0, token.length() - 2)));
+   }
+
+   @Test
+   public void testMalformed() {
+      for (String invalid : new String[] { "", ".", "abc", "abc.", ".abc", "!!!.!!!", "AAAA.AAAA", USERNAME }) {
+         assertNull(testObject.verify(invalid), invalid);
+      }
+   }
+
+   @Test
+   public void testSecret() {
+      TokenService a = new TokenService(Base64.getEncoder().encodeToString(key), TTL);
+      TokenService b = new TokenService(Base64.getEncoder().encodeToString(key), TTL);
+      assertEquals(USERNAME, b.verify(a.issue(USERNAME)));
+   }
+
+   /** Test that, if no secret is specified, a random key is used. */
+   @Test
+   public void testRandomSecret() {
+      TokenService a = new TokenService("", TTL);
+      TokenService b = new TokenService("", TTL);
+      assertEquals(USERNAME, a.verify(a.issue(USERNAME)));
+      assertNull(b.verify(a.issue(USERNAME)));
+   }
+
+   @Test
+   public void testInvalidArguments() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new TokenService(new byte[31], TTL, clock::get));
+      assertEquals("token secret must be at least 32 bytes but was 31", e.getMessage());
+      e = assertThrows(IllegalArgumentException.class, () -> new TokenService(key, Duration.ZERO, clock::get));
+      assertEquals("token ttl must be positive but was PT0S", e.getMessage());
+      e = assertThrows(IllegalArgumentException.class, () -> new TokenService(key, Duration.ofSeconds(-1), clock::get));
+      assertEquals("token ttl must be positive but was PT-1S", e.getMessage());
+   }
+}
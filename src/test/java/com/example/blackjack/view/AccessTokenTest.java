@@ -0,0 +1,29 @@
+package com.example.blackjack.view;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AccessTokenTest {
+   @Test
+   public void testGetters() {
+      AccessToken accessToken = new AccessToken("abc.def", 900);
+      assertEquals("abc.def", accessToken.getAccessToken());
+      assertEquals("Bearer", accessToken.getTokenType());
+      assertEquals(900, accessToken.getExpiresIn());
+   }
+
+   @Test
+   public void testJson() throws Exception {
+      String json = new ObjectMapper().writeValueAsString(new AccessToken("abc.def", 900));
+      assertEquals("{\"access_token\":\"abc.def\",\"token_type\":\"Bearer\",\"expires_in\":900}", json);
+   }
+
+   @Test
+   public void testNullToken() {
+      assertThrows(NullPointerException.class, () -> new AccessToken(null, 900));
+   }
+}
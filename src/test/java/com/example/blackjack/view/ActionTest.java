@@ -34,6 +34,24 @@ public class ActionTest {
       assertSame(expected, actual);
    }
 
+   @Test
+   public void testHitExpectedVersion() {
+      Game game = mock(Game.class);
+      GameState expected = createDummyGameState();
+      when(game.hit(7)).thenReturn(expected);
+      GameState actual = Action.HIT.update(game, 7);
+      assertSame(expected, actual);
+   }
+
+   @Test
+   public void testStandExpectedVersion() {
+      Game game = mock(Game.class);
+      GameState expected = createDummyGameState();
+      when(game.stand(7)).thenReturn(expected);
+      GameState actual = Action.STAND.update(game, 7);
+      assertSame(expected, actual);
+   }
+
    private GameState createDummyGameState() {
       return new GameState("dummy game id", Status.PLAYERS_TURN, new Hand(CardReader.toCards("7D")), new Hand(CardReader.toCards("TC 6D")));
    }
@@ -1,10 +1,17 @@
 package com.example.blackjack.view;
 
 import static com.example.blackjack.CardReader.toCards;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
 public class GameStateTest {
    @Test
    public void test() {
@@ -17,5 +24,30 @@ public class GameStateTest {
       assertSame(status, gameState.getStatus());
       assertSame(dealers, gameState.getDealer());
       assertSame(players, gameState.getPlayer());
+      assertEquals(0, gameState.getVersion());
+   }
+
+   @Test
+   public void testVersion() {
+      Hand dealers = new Hand(toCards("AS 7C"));
+      Hand players = new Hand(toCards("QH JD"));
+      GameState gameState = new GameState("dummy game id", 3, Status.DEALERS_TURN, dealers, players);
+      assertEquals(3, gameState.getVersion());
+   }
+
+   @Test
+   public void testToJson() throws Exception {
+      GameState gameState = new GameState("dummy game id", 2, Status.DEALER_WON, new Hand(toCards("AS 9C")), new Hand(toCards("QH 3D 8S")));
+      ObjectWriter writer = spy(new ObjectMapper().writer());
+
+      // check the version is not included in the JSON
+      byte[] json = gameState.toJson(writer);
+      assertEquals("{\"id\":\"dummy game id\",\"status\":\"DEALER_WON\",\"dealer\":{\"cards\":[{\"rank\":\"ACE\",\"suit\":\"SPADES\"},"
+            + "{\"rank\":\"NINE\",\"suit\":\"CLUBS\"}],\"value\":20},\"player\":{\"cards\":[{\"rank\":\"QUEEN\",\"suit\":\"HEARTS\"},"
+            + "{\"rank\":\"THREE\",\"suit\":\"DIAMONDS\"},{\"rank\":\"EIGHT\",\"suit\":\"SPADES\"}],\"value\":21}}", new String(json, "UTF-8"));
+
+      // check the JSON is only created once
+      assertSame(json, gameState.toJson(writer));
+      verify(writer, times(1)).writeValueAsBytes(gameState);
    }
 }
@@ -21,6 +21,13 @@ public class HandTest {
       assertEquals(18, hand.getValue());
    }
 
+   @Test
+   public void testGivenValue() {
+      Hand hand = new Hand(toCards("AS 7C"), 8);
+      assertEquals(8, hand.getValue());
+      assertEquals("[[ACE SPADES], [SEVEN CLUBS]]", hand.getCards().toString());
+   }
+
    @Test
    public void testToString() {
       Hand hand = new Hand(toCards("AS 7C"));
@@ -34,6 +41,13 @@ public class HandTest {
       assertImmutableCopy(cards, hand.getCards());
    }
 
+   @Test
+   public void testImmutableGivenValue() {
+      Collection<Card> cards = toCards("AS 7C");
+      Hand hand = new Hand(cards, 18);
+      assertImmutableCopy(cards, hand.getCards());
+   }
+
    private void assertImmutableCopy(Collection<Card> original, List<Card> copy) {
       assertContainSameElements(original, copy);
       assertImmutable(copy);
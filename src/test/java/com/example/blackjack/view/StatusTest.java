@@ -0,0 +1,17 @@
+package com.example.blackjack.view;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class StatusTest {
+   @Test
+   public void testIsComplete() {
+      assertFalse(Status.PLAYERS_TURN.isComplete());
+      assertFalse(Status.DEALERS_TURN.isComplete());
+      assertTrue(Status.DRAW.isComplete());
+      assertTrue(Status.PLAYER_WON.isComplete());
+      assertTrue(Status.DEALER_WON.isComplete());
+   }
+}